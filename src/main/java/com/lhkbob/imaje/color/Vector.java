@@ -122,6 +122,41 @@ public abstract class Vector<V extends Vector<V, S>, S extends VectorSpace<V, S>
     System.arraycopy(values, 0, channels, 0, channels.length);
   }
 
+  /**
+   * Copy the `values` into this Vector, widening each value to double precision. The array must
+   * have a length equal to {@link #getChannelCount()}. This is the `float` equivalent of {@link
+   * #set(double...)}.
+   *
+   * @param values
+   *     The new set of channel values to store in this vector
+   * @throws IllegalArgumentException
+   *     if `values.length` is not equal to the channel count
+   */
+  public final void set(float[] values) {
+    Arguments.equals("channel count", channels.length, values.length);
+
+    for (int i = 0; i < channels.length; i++) {
+      channels[i] = values[i];
+    }
+  }
+
+  /**
+   * Copy the channel values of this Vector into `values`, narrowing each value to single precision.
+   * The array must have a length equal to {@link #getChannelCount()}.
+   *
+   * @param values
+   *     The array that receives the channel values of this vector
+   * @throws IllegalArgumentException
+   *     if `values.length` is not equal to the channel count
+   */
+  public final void get(float[] values) {
+    Arguments.equals("channel count", channels.length, values.length);
+
+    for (int i = 0; i < channels.length; i++) {
+      values[i] = (float) channels[i];
+    }
+  }
+
   /**
    * Get the raw array that stores the channel values for this Vector instance. The length of the
    * array is equal to {@link #getChannelCount()}. Modifications to the returned array will be
@@ -85,8 +85,24 @@ public abstract class AbstractHueToRGBTransform<SI extends ColorSpace<I, SI>, I
     Arguments.equals("input.length", 3, input.length);
     Arguments.equals("output.length", 3, output.length);
 
-    toHueChromaM(input, output);
-    hueChromaMToRGB(output);
+    toHueChromaM(input, 0, output, 0);
+    hueChromaMToRGB(output, 0);
+    return true;
+  }
+
+  @Override
+  public boolean applyUnchecked(
+      double[] input, int inOffset, double[] output, int outOffset, int count) {
+    if (count == 0) {
+      return true;
+    }
+    Arguments.checkArrayRange("input", input.length, inOffset, 3 * count);
+    Arguments.checkArrayRange("output", output.length, outOffset, 3 * count);
+
+    for (int p = 0; p < count; p++) {
+      toHueChromaM(input, inOffset + 3 * p, output, outOffset + 3 * p);
+      hueChromaMToRGB(output, outOffset + 3 * p);
+    }
     return true;
   }
 
@@ -112,48 +128,54 @@ public abstract class AbstractHueToRGBTransform<SI extends ColorSpace<I, SI>, I
   }
 
   /**
-   * Convert the `input` array of channel values, arranged as expected by the subclass, into the
-   * internal hue, chroma, and M representation used for the final RGB process. These values should
-   * be ordered hue, chroma, and M in the `hcm` array, which has length 3.
+   * Convert the three channel values in `input` starting at `inOffset`, arranged as expected by the
+   * subclass, into the internal hue, chroma, and M representation used for the final RGB process.
+   * These values should be stored in order as hue, chroma, and M in the `hcm` array starting at
+   * `hcmOffset`.
    *
    * @param input
    *     The input channel values
+   * @param inOffset
+   *     The index into `input` of the first channel value
    * @param hcm
    *     The hue, chroma, M output
+   * @param hcmOffset
+   *     The index into `hcm` that receives the hue
    */
-  protected abstract void toHueChromaM(double[] input, double[] hcm);
+  protected abstract void toHueChromaM(
+      double[] input, int inOffset, double[] hcm, int hcmOffset);
 
-  private void hueChromaMToRGB(double[] output) {
+  private void hueChromaMToRGB(double[] output, int offset) {
     // This assumes that output has been rewritten to hold hue, chroma, and m
-    double chroma = output[1];
-    double hp = output[0] / 60.0;
+    double chroma = output[offset + 1];
+    double hp = output[offset] / 60.0;
     double x = chroma * (1.0 - Math.abs(hp % 2.0 - 1.0));
-    double m = output[2];
+    double m = output[offset + 2];
 
     if (hp < 1.0) {
-      output[0] = chroma + m;
-      output[1] = x + m;
-      output[2] = m;
+      output[offset] = chroma + m;
+      output[offset + 1] = x + m;
+      output[offset + 2] = m;
     } else if (hp < 2.0) {
-      output[0] = x + m;
-      output[1] = chroma + m;
-      output[2] = m;
+      output[offset] = x + m;
+      output[offset + 1] = chroma + m;
+      output[offset + 2] = m;
     } else if (hp < 3.0) {
-      output[0] = m;
-      output[1] = chroma + m;
-      output[2] = x + m;
+      output[offset] = m;
+      output[offset + 1] = chroma + m;
+      output[offset + 2] = x + m;
     } else if (hp < 4.0) {
-      output[0] = m;
-      output[1] = x + m;
-      output[2] = chroma + m;
+      output[offset] = m;
+      output[offset + 1] = x + m;
+      output[offset + 2] = chroma + m;
     } else if (hp < 5.0) {
-      output[0] = x + m;
-      output[1] = m;
-      output[2] = chroma + m;
+      output[offset] = x + m;
+      output[offset + 1] = m;
+      output[offset + 2] = chroma + m;
     } else {
-      output[0] = chroma + m;
-      output[1] = m;
-      output[2] = x + m;
+      output[offset] = chroma + m;
+      output[offset + 1] = m;
+      output[offset + 2] = x + m;
     }
   }
 }
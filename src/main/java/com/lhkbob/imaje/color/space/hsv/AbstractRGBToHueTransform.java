@@ -106,39 +106,65 @@ public abstract class AbstractRGBToHueTransform<SI extends ColorSpace<RGB<SI>, S
     Arguments.equals("input.length", 3, input.length);
     Arguments.equals("output.length", 3, output.length);
 
-    double hue, min, max;
-    if (input[0] >= input[1] && input[0] >= input[2]) {
-      // Red is the largest component
-      max = input[0];
-      min = Math.min(input[1], input[2]);
-      hue = ((input[1] - input[2]) / (max - min)) % 6.0;
-    } else if (input[1] >= input[2]) {
-      // Green is the largest component
-      max = input[1];
-      min = Math.min(input[0], input[2]);
-      hue = (input[2] - input[0]) / (max - min) + 2.0;
-    } else {
-      // Blue is the largest component
-      max = input[2];
-      min = Math.min(input[0], input[1]);
-      hue = (input[0] - input[1]) / (max - min) + 4.0;
+    convert(input, 0, output, 0);
+    return true;
+  }
+
+  @Override
+  public boolean applyUnchecked(
+      double[] input, int inOffset, double[] output, int outOffset, int count) {
+    if (count == 0) {
+      return true;
     }
+    Arguments.checkArrayRange("input", input.length, inOffset, 3 * count);
+    Arguments.checkArrayRange("output", output.length, outOffset, 3 * count);
 
-    output[0] = hue;
-    output[1] = min;
-    output[2] = max;
-    fromHueMinMax(output);
+    for (int p = 0; p < count; p++) {
+      convert(input, inOffset + 3 * p, output, outOffset + 3 * p);
+    }
     return true;
   }
 
   /**
    * Convert to the subclasses hue color space. This conversion is done in place, modifying `output`
    * after using the values contained in `output` for its calculations. When called, `output`
-   * contains the hue and minimum and maximum values of the RGB color being transformed.
+   * contains the hue and minimum and maximum values of the RGB color being transformed, starting at
+   * `offset`.
    *
    * @param output
    *     The array containing hue, min, and max that must be modified to contain the
    *     final hue color values
+   * @param offset
+   *     The index into `output` of the hue value
    */
-  protected abstract void fromHueMinMax(double[] output);
+  protected abstract void fromHueMinMax(double[] output, int offset);
+
+  private void convert(double[] input, int inOffset, double[] output, int outOffset) {
+    double r = input[inOffset];
+    double g = input[inOffset + 1];
+    double b = input[inOffset + 2];
+
+    double hue, min, max;
+    if (r >= g && r >= b) {
+      // Red is the largest component
+      max = r;
+      min = Math.min(g, b);
+      hue = ((g - b) / (max - min)) % 6.0;
+    } else if (g >= b) {
+      // Green is the largest component
+      max = g;
+      min = Math.min(r, b);
+      hue = (b - r) / (max - min) + 2.0;
+    } else {
+      // Blue is the largest component
+      max = b;
+      min = Math.min(r, g);
+      hue = (r - g) / (max - min) + 4.0;
+    }
+
+    output[outOffset] = hue;
+    output[outOffset + 1] = min;
+    output[outOffset + 2] = max;
+    fromHueMinMax(output, outOffset);
+  }
 }
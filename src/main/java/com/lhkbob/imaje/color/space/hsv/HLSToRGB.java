@@ -65,10 +65,11 @@ public class HLSToRGB<S extends ColorSpace<RGB<S>, S>> extends AbstractHueToRGBT
   }
 
   @Override
-  protected void toHueChromaM(double[] input, double[] hcm) {
-    hcm[0] = input[0]; // hue
-    hcm[1] = (1.0 - Math.abs(2.0 * input[1] - 1.0)) * input[2]; // chroma
-    hcm[2] = input[1] - 0.5 * hcm[1]; // m
+  protected void toHueChromaM(double[] input, int inOffset, double[] hcm, int hcmOffset) {
+    hcm[hcmOffset] = input[inOffset]; // hue
+    // chroma
+    hcm[hcmOffset + 1] = (1.0 - Math.abs(2.0 * input[inOffset + 1] - 1.0)) * input[inOffset + 2];
+    hcm[hcmOffset + 2] = input[inOffset + 1] - 0.5 * hcm[hcmOffset + 1]; // m
   }
 
   @Override
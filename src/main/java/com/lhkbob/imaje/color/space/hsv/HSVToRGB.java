@@ -75,9 +75,9 @@ public class HSVToRGB<S extends ColorSpace<RGB<S>, S>> extends AbstractHueToRGBT
   }
 
   @Override
-  protected void toHueChromaM(double[] input, double[] hcm) {
-    hcm[0] = input[0]; // hue
-    hcm[1] = input[2] * input[1]; // chroma
-    hcm[2] = input[2] - hcm[1]; // m
+  protected void toHueChromaM(double[] input, int inOffset, double[] hcm, int hcmOffset) {
+    hcm[hcmOffset] = input[inOffset]; // hue
+    hcm[hcmOffset + 1] = input[inOffset + 2] * input[inOffset + 1]; // chroma
+    hcm[hcmOffset + 2] = input[inOffset + 2] - hcm[hcmOffset + 1]; // m
   }
 }
@@ -75,11 +75,11 @@ public class RGBToHLS<S extends ColorSpace<RGB<S>, S>> extends AbstractRGBToHueT
   }
 
   @Override
-  protected void fromHueMinMax(double[] output) {
-    double hue = output[0];
-    double c = output[2] - output[1];
+  protected void fromHueMinMax(double[] output, int offset) {
+    double hue = output[offset];
+    double c = output[offset + 2] - output[offset + 1];
     double saturation;
-    double lightness = 0.5 * (output[2] + output[1]);
+    double lightness = 0.5 * (output[offset + 2] + output[offset + 1]);
     if (c < EPS) {
       // Neutral color, use hue = 0 arbitrarily
       hue = 0.0;
@@ -89,9 +89,9 @@ public class RGBToHLS<S extends ColorSpace<RGB<S>, S>> extends AbstractRGBToHueT
       saturation = c / (1.0 - Math.abs(2.0 * lightness - 1.0));
     }
 
-    output[0] = hue;
-    output[1] = lightness;
-    output[2] = saturation;
+    output[offset] = hue;
+    output[offset + 1] = lightness;
+    output[offset + 2] = saturation;
   }
 
   private static final double EPS = 1e-8;
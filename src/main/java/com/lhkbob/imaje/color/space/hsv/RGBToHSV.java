@@ -75,11 +75,11 @@ public class RGBToHSV<S extends ColorSpace<RGB<S>, S>> extends AbstractRGBToHueT
   }
 
   @Override
-  protected void fromHueMinMax(double[] output) {
-    double hue = output[0];
-    double c = output[2] - output[1];
+  protected void fromHueMinMax(double[] output, int offset) {
+    double hue = output[offset];
+    double c = output[offset + 2] - output[offset + 1];
     double saturation;
-    double value = output[2];
+    double value = output[offset + 2];
     if (c < EPS) {
       // Neutral color, use hue = 0 arbitrarily
       hue = 0.0;
@@ -89,9 +89,9 @@ public class RGBToHSV<S extends ColorSpace<RGB<S>, S>> extends AbstractRGBToHueT
       saturation = c / value;
     }
 
-    output[0] = hue;
-    output[1] = saturation;
-    output[2] = value;
+    output[offset] = hue;
+    output[offset + 1] = saturation;
+    output[offset + 2] = value;
   }
 
   private static final double EPS = 1e-8;
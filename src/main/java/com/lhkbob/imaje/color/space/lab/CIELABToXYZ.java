@@ -107,14 +107,22 @@ public class CIELABToXYZ implements Transform<Lab<CIE>, CIE, XYZ<CIE31>, CIE31>
     Arguments.equals("input.length", 3, input.length);
     Arguments.equals("output.length", 3, output.length);
 
-    double lp = L_SCALE * (input[0] + L_OFFSET);
-    // X from L and a
-    output[0] = referenceWhitepoint.x() * inverseF(lp + A_SCALE * input[1]);
-    // Y from L
-    output[1] = referenceWhitepoint.y() * inverseF(lp);
-    // Z from L and b
-    output[2] = referenceWhitepoint.z() * inverseF(lp - B_SCALE * input[2]);
+    convert(input, 0, output, 0);
+    return true;
+  }
 
+  @Override
+  public boolean applyUnchecked(
+      double[] input, int inOffset, double[] output, int outOffset, int count) {
+    if (count == 0) {
+      return true;
+    }
+    Arguments.checkArrayRange("input", input.length, inOffset, 3 * count);
+    Arguments.checkArrayRange("output", output.length, outOffset, 3 * count);
+
+    for (int p = 0; p < count; p++) {
+      convert(input, inOffset + 3 * p, output, outOffset + 3 * p);
+    }
     return true;
   }
 
@@ -123,6 +131,16 @@ public class CIELABToXYZ implements Transform<Lab<CIE>, CIE, XYZ<CIE31>, CIE31>
     return String.format("CIELAB -> XYZ Transform (whitepoint: %s)", referenceWhitepoint);
   }
 
+  private void convert(double[] input, int inOffset, double[] output, int outOffset) {
+    double lp = L_SCALE * (input[inOffset] + L_OFFSET);
+    // X from L and a
+    output[outOffset] = referenceWhitepoint.x() * inverseF(lp + A_SCALE * input[inOffset + 1]);
+    // Y from L
+    output[outOffset + 1] = referenceWhitepoint.y() * inverseF(lp);
+    // Z from L and b
+    output[outOffset + 2] = referenceWhitepoint.z() * inverseF(lp - B_SCALE * input[inOffset + 2]);
+  }
+
   static double inverseF(double t) {
     if (t > LINEAR_THRESHOLD) {
       return t * t * t;
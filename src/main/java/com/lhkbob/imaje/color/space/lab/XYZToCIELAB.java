@@ -108,14 +108,22 @@ public class XYZToCIELAB implements Transform<XYZ<CIE31>, CIE31, Lab<CIE>, CIE>
     Arguments.equals("input.length", 3, input.length);
     Arguments.equals("output.length", 3, output.length);
 
-    double fx = f(input[0] / referenceWhitepoint.x());
-    double fy = f(input[1] / referenceWhitepoint.y());
-    double fz = f(input[2] / referenceWhitepoint.z());
+    convert(input, 0, output, 0);
+    return true;
+  }
 
-    output[0] = 116.0 * fy - 16.0; // L*
-    output[1] = 500 * (fx - fy); // a*
-    output[2] = 200 * (fy - fz); // b*
+  @Override
+  public boolean applyUnchecked(
+      double[] input, int inOffset, double[] output, int outOffset, int count) {
+    if (count == 0) {
+      return true;
+    }
+    Arguments.checkArrayRange("input", input.length, inOffset, 3 * count);
+    Arguments.checkArrayRange("output", output.length, outOffset, 3 * count);
 
+    for (int p = 0; p < count; p++) {
+      convert(input, inOffset + 3 * p, output, outOffset + 3 * p);
+    }
     return true;
   }
 
@@ -124,6 +132,16 @@ public class XYZToCIELAB implements Transform<XYZ<CIE31>, CIE31, Lab<CIE>, CIE>
     return String.format("XYZ -> CIELAB Transform (whitepoint: %s)", referenceWhitepoint);
   }
 
+  private void convert(double[] input, int inOffset, double[] output, int outOffset) {
+    double fx = f(input[inOffset] / referenceWhitepoint.x());
+    double fy = f(input[inOffset + 1] / referenceWhitepoint.y());
+    double fz = f(input[inOffset + 2] / referenceWhitepoint.z());
+
+    output[outOffset] = 116.0 * fy - 16.0; // L*
+    output[outOffset + 1] = 500 * (fx - fy); // a*
+    output[outOffset + 2] = 200 * (fy - fz); // b*
+  }
+
   static double f(double r) {
     if (r > LINEAR_THRESHOLD) {
       return Math.cbrt(r);
@@ -8,6 +8,7 @@ import com.lhkbob.imaje.color.space.xyz.CIE31;
 import com.lhkbob.imaje.color.space.xyz.XYZSpace;
 import com.lhkbob.imaje.color.transform.Transform;
 import com.lhkbob.imaje.color.transform.Composition;
+import com.lhkbob.imaje.color.transform.TransformCache;
 import com.lhkbob.imaje.color.transform.curves.Curve;
 import com.lhkbob.imaje.util.Arguments;
 
@@ -33,7 +34,8 @@ import java.util.Objects;
  */
 public abstract class RGBSpace<S extends RGBSpace<S, T>, T extends XYZSpace<T>> implements ColorSpace<RGB<S>, S> {
   private RGBToXYZ<S, T> toXYZ = null; // final after initialize()
-  private Transform<RGB<S>, S, XYZ<CIE31>, CIE31> toCIE31 = null;
+  // Created on first use through the shared TransformCache when T is not CIE31
+  private volatile Transform<RGB<S>, S, XYZ<CIE31>, CIE31> toCIE31 = null;
 
   /**
    * Finish initialization of this space by computing its transformation from RGB to XYZ
@@ -61,7 +63,6 @@ public abstract class RGBSpace<S extends RGBSpace<S, T>, T extends XYZSpace<T>>
 
     toXYZ = RGBToXYZ
         .newRGBToXYZ((S) this, whitepoint, redPrimary, greenPrimary, bluePrimary, gammaCurve);
-    initializeCIE31FromXYZ();
   }
 
   @SuppressWarnings("unchecked")
@@ -75,17 +76,18 @@ public abstract class RGBSpace<S extends RGBSpace<S, T>, T extends XYZSpace<T>>
     FixedMatrix3x3_64F transform = RGBToXYZ
         .calculateLinearRGBToXYZ(rx, ry, gx, gy, bx, by, wx, wy, wz);
     toXYZ = new RGBToXYZ<>((S) this, xyzSpace, transform, gammaCurve);
-    initializeCIE31FromXYZ();
   }
 
-  @SuppressWarnings("unchecked")
-  private void initializeCIE31FromXYZ() {
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private Transform<RGB<S>, S, XYZ<CIE31>, CIE31> createTransformToCIE31() {
     if (Objects.equals(toXYZ.getOutputSpace(), CIE31.SPACE)) {
       // toXYZ is the exact transform, so just cast it without introducing any identity step
-      toCIE31 = (Transform) toXYZ;
+      return (Transform) toXYZ;
     } else {
-      // Compose toXYZ with a transform going from T to CIE31
-      toCIE31 = new Composition<>(toXYZ, toXYZ.getOutputSpace().getTransformToXYZ());
+      // Compose toXYZ with a transform going from T to CIE31, sharing the compiled composition
+      // with equal spaces
+      return TransformCache.getDefault().getTransform((S) this, CIE31.SPACE, null,
+          () -> new Composition<>(toXYZ, toXYZ.getOutputSpace().getTransformToXYZ()));
     }
   }
 
@@ -119,7 +121,13 @@ public abstract class RGBSpace<S extends RGBSpace<S, T>, T extends XYZSpace<T>>
 
   @Override
   public Transform<RGB<S>, S, XYZ<CIE31>, CIE31> getTransformToXYZ() {
-    return toCIE31;
+    Transform<RGB<S>, S, XYZ<CIE31>, CIE31> t = toCIE31;
+    if (t == null) {
+      // Racing threads receive the same cached transform, so the benign race is harmless
+      t = createTransformToCIE31();
+      toCIE31 = t;
+    }
+    return t;
   }
 
   @Override
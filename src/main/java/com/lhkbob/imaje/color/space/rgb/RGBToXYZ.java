@@ -36,8 +36,10 @@ import com.lhkbob.imaje.color.ColorSpace;
 import com.lhkbob.imaje.color.RGB;
 import com.lhkbob.imaje.color.XYZ;
 import com.lhkbob.imaje.color.Yxy;
+import com.lhkbob.imaje.color.transform.CurveTransform;
 import com.lhkbob.imaje.color.transform.Transform;
 import com.lhkbob.imaje.color.transform.curves.Curve;
+import com.lhkbob.imaje.layout.PixelFormat;
 import com.lhkbob.imaje.util.Arguments;
 import com.lhkbob.imaje.util.Functions;
 
@@ -132,6 +134,31 @@ public class RGBToXYZ<I extends ColorSpace<RGB<I>, I>, O extends ColorSpace<XYZ<
     return decodingGammaCurve;
   }
 
+  /**
+   * Get an equivalent transform whose decoding gamma curve is tabulated for RGB values read from
+   * pixel data described by `format`, as in {@link CurveTransform#tabulateFor(PixelFormat)}. All
+   * color channels must share the same type and bit size, otherwise this transform is returned.
+   *
+   * @param format
+   *     The format of the RGB pixel data
+   * @return A transform with a tabulated decoding curve, or this transform
+   */
+  public RGBToXYZ<I, O> tabulateFor(PixelFormat format) {
+    Arguments.notNull("format", format);
+    Arguments.equals("format.getColorChannelCount()", 3, format.getColorChannelCount());
+    if (decodingGammaCurve == null || !hasUniformChannels(format)) {
+      return this;
+    }
+
+    Curve tabulated = CurveTransform
+        .tabulateFor(decodingGammaCurve, format.getColorChannelType(0),
+            format.getColorChannelBitSize(0), CurveTransform.DEFAULT_FLOAT_TABLE_ERROR);
+    if (tabulated == decodingGammaCurve) {
+      return this;
+    }
+    return new RGBToXYZ<>(inputSpace, outputSpace, linearRGBToXYZ, tabulated);
+  }
+
   /**
    * @return The 3x3 transformation from linear RGB to XYZ tristimulus values.
    */
@@ -292,27 +319,22 @@ public class RGBToXYZ<I extends ColorSpace<RGB<I>, I>, O extends ColorSpace<XYZ<
     Arguments.equals("input.length", 3, input.length);
     Arguments.equals("output.length", 3, output.length);
 
-    // Rely on escape analysis for performance
-    FixedMatrix3_64F in = new FixedMatrix3_64F();
-    FixedMatrix3_64F out = new FixedMatrix3_64F();
+    convert(input, 0, output, 0);
+    return true;
+  }
 
-    // Apply linearization curve
-    if (decodingGammaCurve != null) {
-      in.a1 = decodingGammaCurve.evaluate(clampToCurveDomain(input[0]));
-      in.a2 = decodingGammaCurve.evaluate(clampToCurveDomain(input[1]));
-      in.a3 = decodingGammaCurve.evaluate(clampToCurveDomain(input[2]));
-    } else {
-      in.a1 = input[0];
-      in.a2 = input[1];
-      in.a3 = input[2];
+  @Override
+  public boolean applyUnchecked(
+      double[] input, int inOffset, double[] output, int outOffset, int count) {
+    if (count == 0) {
+      return true;
     }
+    Arguments.checkArrayRange("input", input.length, inOffset, 3 * count);
+    Arguments.checkArrayRange("output", output.length, outOffset, 3 * count);
 
-    // Transform by the matrix from linear RGB to XYZ
-    FixedOps3.mult(linearRGBToXYZ, in, out);
-
-    output[0] = out.a1;
-    output[1] = out.a2;
-    output[2] = out.a3;
+    for (int p = 0; p < count; p++) {
+      convert(input, inOffset + 3 * p, output, outOffset + 3 * p);
+    }
     return true;
   }
 
@@ -357,6 +379,36 @@ public class RGBToXYZ<I extends ColorSpace<RGB<I>, I>, O extends ColorSpace<XYZ<
     return sb.toString();
   }
 
+  private void convert(double[] input, int inOffset, double[] output, int outOffset) {
+    // Apply linearization curve
+    double r, g, b;
+    if (decodingGammaCurve != null) {
+      r = decodingGammaCurve.evaluate(clampToCurveDomain(input[inOffset]));
+      g = decodingGammaCurve.evaluate(clampToCurveDomain(input[inOffset + 1]));
+      b = decodingGammaCurve.evaluate(clampToCurveDomain(input[inOffset + 2]));
+    } else {
+      r = input[inOffset];
+      g = input[inOffset + 1];
+      b = input[inOffset + 2];
+    }
+
+    // Transform by the matrix from linear RGB to XYZ
+    FixedMatrix3x3_64F m = linearRGBToXYZ;
+    output[outOffset] = m.a11 * r + m.a12 * g + m.a13 * b;
+    output[outOffset + 1] = m.a21 * r + m.a22 * g + m.a23 * b;
+    output[outOffset + 2] = m.a31 * r + m.a32 * g + m.a33 * b;
+  }
+
+  static boolean hasUniformChannels(PixelFormat format) {
+    for (int i = 1; i < format.getColorChannelCount(); i++) {
+      if (format.getColorChannelType(i) != format.getColorChannelType(0)
+          || format.getColorChannelBitSize(i) != format.getColorChannelBitSize(0)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private double clampToCurveDomain(double c) {
     // Only called when curve is not null, so this is safe
     return Functions.clamp(c, decodingGammaCurve.getDomainMin(), decodingGammaCurve.getDomainMax());
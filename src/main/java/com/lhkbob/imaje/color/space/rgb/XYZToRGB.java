@@ -36,13 +36,15 @@ import com.lhkbob.imaje.color.ColorSpace;
 import com.lhkbob.imaje.color.RGB;
 import com.lhkbob.imaje.color.XYZ;
 import com.lhkbob.imaje.color.Yxy;
+import com.lhkbob.imaje.color.transform.CurveTransform;
 import com.lhkbob.imaje.color.transform.Transform;
 import com.lhkbob.imaje.color.transform.curves.Curve;
+import com.lhkbob.imaje.color.transform.curves.TabulatedCurve;
+import com.lhkbob.imaje.layout.PixelFormat;
 import com.lhkbob.imaje.util.Arguments;
 import com.lhkbob.imaje.util.Functions;
 
 import org.ejml.alg.fixed.FixedOps3;
-import org.ejml.data.FixedMatrix3_64F;
 import org.ejml.data.FixedMatrix3x3_64F;
 
 import java.util.Objects;
@@ -177,21 +179,21 @@ public class XYZToRGB<I extends ColorSpace<XYZ<I>, I>, O extends ColorSpace<RGB<
     Arguments.equals("input.length", 3, input.length);
     Arguments.equals("output.length", 3, output.length);
 
-    FixedMatrix3_64F in = new FixedMatrix3_64F(input[0], input[1], input[2]);
-    FixedMatrix3_64F out = new FixedMatrix3_64F();
+    convert(input, 0, output, 0);
+    return true;
+  }
 
-    // Transform from XYZ to linear RGB
-    FixedOps3.mult(xyzToLinearRGB, in, out);
+  @Override
+  public boolean applyUnchecked(
+      double[] input, int inOffset, double[] output, int outOffset, int count) {
+    if (count == 0) {
+      return true;
+    }
+    Arguments.checkArrayRange("input", input.length, inOffset, 3 * count);
+    Arguments.checkArrayRange("output", output.length, outOffset, 3 * count);
 
-    // Apply gamma correction
-    if (encodingGammaCurve != null) {
-      output[0] = encodingGammaCurve.evaluate(clampToCurveDomain(out.a1));
-      output[1] = encodingGammaCurve.evaluate(clampToCurveDomain(out.a2));
-      output[2] = encodingGammaCurve.evaluate(clampToCurveDomain(out.a3));
-    } else {
-      output[0] = out.a1;
-      output[1] = out.a2;
-      output[2] = out.a3;
+    for (int p = 0; p < count; p++) {
+      convert(input, inOffset + 3 * p, output, outOffset + 3 * p);
     }
     return true;
   }
@@ -241,6 +243,33 @@ public class XYZToRGB<I extends ColorSpace<XYZ<I>, I>, O extends ColorSpace<RGB<
     return rgbSpace;
   }
 
+  /**
+   * Get an equivalent transform whose encoding gamma curve is tabulated for RGB values that will be
+   * stored in pixel data described by `format`. When the color channels are normalized unsigned
+   * integers, the encoding curve is replaced by an interpolated {@link TabulatedCurve} whose
+   * estimated error is within a quarter of the integer step size, so quantizing the output is
+   * unaffected in practice. All color channels must share the same type and bit size, otherwise
+   * this transform is returned.
+   *
+   * @param format
+   *     The format of the RGB pixel data that receives the transform's output
+   * @return A transform with a tabulated encoding curve, or this transform
+   */
+  public XYZToRGB<I, O> tabulateFor(PixelFormat format) {
+    Arguments.notNull("format", format);
+    Arguments.equals("format.getColorChannelCount()", 3, format.getColorChannelCount());
+    if (encodingGammaCurve == null || !RGBToXYZ.hasUniformChannels(format)) {
+      return this;
+    }
+
+    Curve tabulated = CurveTransform.tabulateForOutput(encodingGammaCurve,
+        format.getColorChannelType(0), format.getColorChannelBitSize(0));
+    if (tabulated == encodingGammaCurve) {
+      return this;
+    }
+    return new XYZToRGB<>(xyzSpace, rgbSpace, xyzToLinearRGB, tabulated);
+  }
+
   /**
    * @return The 3x3 transformation from XYZ tristimulus to linear RGB values.
    */
@@ -295,6 +324,29 @@ public class XYZToRGB<I extends ColorSpace<XYZ<I>, I>, O extends ColorSpace<RGB<
     return sb.toString();
   }
 
+  private void convert(double[] input, int inOffset, double[] output, int outOffset) {
+    double x = input[inOffset];
+    double y = input[inOffset + 1];
+    double z = input[inOffset + 2];
+
+    // Transform from XYZ to linear RGB
+    FixedMatrix3x3_64F m = xyzToLinearRGB;
+    double r = m.a11 * x + m.a12 * y + m.a13 * z;
+    double g = m.a21 * x + m.a22 * y + m.a23 * z;
+    double b = m.a31 * x + m.a32 * y + m.a33 * z;
+
+    // Apply gamma correction
+    if (encodingGammaCurve != null) {
+      output[outOffset] = encodingGammaCurve.evaluate(clampToCurveDomain(r));
+      output[outOffset + 1] = encodingGammaCurve.evaluate(clampToCurveDomain(g));
+      output[outOffset + 2] = encodingGammaCurve.evaluate(clampToCurveDomain(b));
+    } else {
+      output[outOffset] = r;
+      output[outOffset + 1] = g;
+      output[outOffset + 2] = b;
+    }
+  }
+
   private double clampToCurveDomain(double c) {
     // Only called when encodingGammaCurve is not null
     return Functions.clamp(c, encodingGammaCurve.getDomainMin(), encodingGammaCurve.getDomainMax());
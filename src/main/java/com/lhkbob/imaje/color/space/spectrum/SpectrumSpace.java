@@ -80,7 +80,7 @@ public abstract class SpectrumSpace<S extends SpectrumSpace<S>> implements Color
   public SpectrumSpace(
       int channelCount, double minWavelength, double maxWavelength, boolean logSampleWavelength) {
     Arguments.isPositive("channelCount", channelCount);
-    Arguments.isPositive("minWavelength", 0.0);
+    Arguments.isPositive("minWavelength", minWavelength);
     Arguments.isGreaterThan("maxWavelength", minWavelength, maxWavelength);
 
     this.channelCount = channelCount;
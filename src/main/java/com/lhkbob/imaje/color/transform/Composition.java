@@ -2,8 +2,21 @@ package com.lhkbob.imaje.color.transform;
 
 import com.lhkbob.imaje.color.Vector;
 import com.lhkbob.imaje.color.VectorSpace;
+import com.lhkbob.imaje.color.space.rgb.RGBToXYZ;
+import com.lhkbob.imaje.color.space.rgb.XYZToRGB;
+import com.lhkbob.imaje.color.transform.curves.Curve;
+import com.lhkbob.imaje.layout.PixelFormat;
 import com.lhkbob.imaje.util.Arguments;
+import com.lhkbob.imaje.util.Functions;
 
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.data.FixedMatrix3x3_64F;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -12,6 +25,15 @@ import java.util.Optional;
  *
  * A Transform implementation that embodies the mathematical composition of two other functions.
  *
+ * When constructed, the composition is compiled into a flat chain of stages. Nested compositions
+ * are flattened, and RGB to XYZ conversions are split into their gamma curves and 3x3 matrices.
+ * Then adjacent {@link MatrixTransform matrix transforms} are multiplied together into a single
+ * matrix, and adjacent {@link CurveTransform curve transforms} are merged into one curve per
+ * channel. For example, a conversion between two RGB spaces becomes a decoding curve, a single
+ * matrix, and an encoding curve. The intermediate values between stages are stored in per-thread
+ * scratch buffers so that applying the composition does not allocate. {@link #apply(double[],
+ * double[], int)} can be used to transform many packed color values with a single call.
+ *
  * @author Michael Ludwig
  */
 public class Composition<A extends Vector<A, SA>, SA extends VectorSpace<A, SA>, B extends Vector<B, SB>, SB extends VectorSpace<B, SB>, C extends Vector<C, SC>, SC extends VectorSpace<C, SC>> implements Transform<A, SA, C, SC> {
@@ -20,6 +42,13 @@ public class Composition<A extends Vector<A, SA>, SA extends VectorSpace<A, SA>,
 
   private final Composition<C, SC, B, SB, A, SA> inverse;
 
+  private static final int BATCH_SIZE = 256;
+
+  private final Transform<?, ?, ?, ?>[] stages;
+  private final ThreadLocal<double[][]> scratch;
+  private final ThreadLocal<float[][]> floatScratch;
+  private final ThreadLocal<double[][]> batchScratch;
+
   /**
    * Create a new composition that represents the net transform of `g(f(x))`. The output channel
    * count of `f` and the input channel count of `g` must be equal.
@@ -43,6 +72,10 @@ public class Composition<A extends Vector<A, SA>, SA extends VectorSpace<A, SA>,
 
     this.f = f;
     this.g = g;
+    stages = compile(f, g);
+    scratch = ThreadLocal.withInitial(() -> newScratch(stages, 1));
+    floatScratch = ThreadLocal.withInitial(() -> newFloatScratch(stages));
+    batchScratch = ThreadLocal.withInitial(() -> newScratch(stages, BATCH_SIZE));
 
     Optional<? extends Transform<B, SB, A, SA>> fInv = f.inverse();
     Optional<? extends Transform<C, SC, B, SB>> gInv = g.inverse();
@@ -58,6 +91,20 @@ public class Composition<A extends Vector<A, SA>, SA extends VectorSpace<A, SA>,
     this.f = f;
     this.g = g;
     this.inverse = inverse;
+    stages = compile(f, g);
+    scratch = ThreadLocal.withInitial(() -> newScratch(stages, 1));
+    floatScratch = ThreadLocal.withInitial(() -> newFloatScratch(stages));
+    batchScratch = ThreadLocal.withInitial(() -> newScratch(stages, BATCH_SIZE));
+  }
+
+  private Composition(Composition<A, SA, B, SB, C, SC> source, Transform<?, ?, ?, ?>[] stages) {
+    f = source.f;
+    g = source.g;
+    inverse = source.inverse;
+    this.stages = stages;
+    scratch = ThreadLocal.withInitial(() -> newScratch(stages, 1));
+    floatScratch = ThreadLocal.withInitial(() -> newFloatScratch(stages));
+    batchScratch = ThreadLocal.withInitial(() -> newScratch(stages, BATCH_SIZE));
   }
 
   @Override
@@ -75,13 +122,363 @@ public class Composition<A extends Vector<A, SA>, SA extends VectorSpace<A, SA>,
     return g.getOutputSpace();
   }
 
+  /**
+   * Transform `pixelCount` color values packed contiguously in `input` and store them in `output`.
+   * Each input value occupies {@link #getInputChannels()} consecutive elements, and each output
+   * value occupies {@link #getOutputChannels()} consecutive elements. This is equivalent to
+   * invoking {@link #applyUnchecked(double[], int, double[], int, int)} with zero offsets.
+   *
+   * @param input
+   *     The packed input values
+   * @param output
+   *     The array that receives the packed output values
+   * @param pixelCount
+   *     The number of color values to transform
+   * @return True if every value was transformed within the gamut of each stage
+   *
+   * @throws IndexOutOfBoundsException
+   *     if `input` or `output` are too small to hold `pixelCount` values
+   */
+  public boolean apply(double[] input, double[] output, int pixelCount) {
+    return applyUnchecked(input, 0, output, 0, pixelCount);
+  }
+
+  /**
+   * @return The number of channels in each input value
+   */
+  public int getInputChannels() {
+    return f.getInputSpace().getChannelCount();
+  }
+
+  /**
+   * @return The number of channels in each output value
+   */
+  public int getOutputChannels() {
+    return g.getOutputSpace().getChannelCount();
+  }
+
+  /**
+   * Get a composition equivalent to this one whose curve stages are tabulated for the pixel data
+   * that provides its inputs and receives its outputs. If the first compiled stage is a curve
+   * transform, its curves are tabulated with {@link CurveTransform#tabulateFor(PixelFormat)} for
+   * `inputFormat`. If the last compiled stage is a curve transform, its curves are tabulated with
+   * {@link CurveTransform#tabulateForOutput(PixelFormat)} for `outputFormat`. For example, the
+   * decoding and encoding curves of a conversion from 8-bit sRGB data to 8-bit data in another RGB
+   * space are both replaced with tables.
+   *
+   * A format is ignored if it is null or its color channel count does not match the input or
+   * output channel count of the composition. The inverse of the returned composition is the
+   * inverse of this composition, since the formats only describe the data in one direction.
+   *
+   * @param inputFormat
+   *     The format of the pixel data providing input values, or null
+   * @param outputFormat
+   *     The format of the pixel data receiving output values, or null
+   * @return A composition with tabulated curves, or this composition if nothing could be
+   * tabulated
+   */
+  public Composition<A, SA, B, SB, C, SC> tabulateFor(
+      @Arguments.Nullable PixelFormat inputFormat, @Arguments.Nullable PixelFormat outputFormat) {
+    Transform<?, ?, ?, ?>[] tabulated = stages.clone();
+    int last = stages.length - 1;
+    if (tabulated[0] instanceof CurveTransform && inputFormat != null
+        && inputFormat.getColorChannelCount() == getInputChannels()) {
+      tabulated[0] = ((CurveTransform<?, ?, ?, ?>) tabulated[0]).tabulateFor(inputFormat);
+    }
+    // When the first and last stage are the same curve, the exact input table is kept since
+    // tabulating a table again leaves it unchanged
+    if (tabulated[last] instanceof CurveTransform && outputFormat != null
+        && outputFormat.getColorChannelCount() == getOutputChannels()) {
+      tabulated[last] = ((CurveTransform<?, ?, ?, ?>) tabulated[last])
+          .tabulateForOutput(outputFormat);
+    }
+
+    if (tabulated[0] == stages[0] && tabulated[last] == stages[last]) {
+      return this;
+    }
+    return new Composition<>(this, tabulated);
+  }
+
+  /**
+   * @return The compiled stages that are applied in order
+   */
+  List<Transform<?, ?, ?, ?>> getStages() {
+    return Collections.unmodifiableList(Arrays.asList(stages));
+  }
+
   @Override
   public boolean applyUnchecked(double[] input, double[] output) {
     Arguments.equals("input.length", f.getInputSpace().getChannelCount(), input.length);
     Arguments.equals("output.length", g.getOutputSpace().getChannelCount(), output.length);
 
-    double[] mid = new double[f.getOutputSpace().getChannelCount()];
-    boolean r = f.applyUnchecked(input, mid);
-    return g.applyUnchecked(mid, output) && r;
+    return applyStages(input, output, scratch.get());
+  }
+
+  @Override
+  public boolean applyUnchecked(
+      double[] input, int inOffset, double[] output, int outOffset, int count) {
+    if (count == 0) {
+      return true;
+    }
+    int inChannels = getInputChannels();
+    int outChannels = getOutputChannels();
+    Arguments.checkArrayRange("input", input.length, inOffset, count * inChannels);
+    Arguments.checkArrayRange("output", output.length, outOffset, count * outChannels);
+
+    // Run every stage over a block of values before moving on to the next stage, so that each
+    // stage's batched loop stays hot and the intermediate blocks remain in cache
+    double[][] buffers = batchScratch.get();
+    boolean inGamut = true;
+    for (int start = 0; start < count; start += BATCH_SIZE) {
+      int block = Math.min(BATCH_SIZE, count - start);
+      double[] in = input;
+      int inStart = inOffset + start * inChannels;
+      for (int i = 0; i < stages.length; i++) {
+        boolean last = (i == stages.length - 1);
+        double[] out = (last ? output : buffers[i]);
+        int outStart = (last ? outOffset + start * outChannels : 0);
+        inGamut &= stages[i].applyUnchecked(in, inStart, out, outStart, block);
+        in = out;
+        inStart = outStart;
+      }
+    }
+    return inGamut;
+  }
+
+  @Override
+  public boolean applyUnchecked(float[] input, float[] output) {
+    Arguments.equals("input.length", f.getInputSpace().getChannelCount(), input.length);
+    Arguments.equals("output.length", g.getOutputSpace().getChannelCount(), output.length);
+
+    float[][] buffers = floatScratch.get();
+    boolean inGamut = true;
+    float[] in = input;
+    for (int i = 0; i < stages.length; i++) {
+      float[] out = (i == stages.length - 1 ? output : buffers[i]);
+      inGamut &= stages[i].applyUnchecked(in, out);
+      in = out;
+    }
+    return inGamut;
+  }
+
+  private boolean applyStages(double[] input, double[] output, double[][] buffers) {
+    boolean inGamut = true;
+    double[] in = input;
+    for (int i = 0; i < stages.length; i++) {
+      double[] out = (i == stages.length - 1 ? output : buffers[i]);
+      inGamut &= stages[i].applyUnchecked(in, out);
+      in = out;
+    }
+    return inGamut;
+  }
+
+  /*
+   * Scratch buffers hold the intermediate values between stages: element i receives the output of
+   * stage i, and the final stage writes directly into the caller's output array. Each buffer has
+   * room for `valueCount` packed values.
+   */
+  private static double[][] newScratch(Transform<?, ?, ?, ?>[] stages, int valueCount) {
+    double[][] buffers = new double[stages.length - 1][];
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = new double[valueCount * stages[i].getOutputSpace().getChannelCount()];
+    }
+    return buffers;
+  }
+
+  private static float[][] newFloatScratch(Transform<?, ?, ?, ?>[] stages) {
+    float[][] buffers = new float[stages.length - 1][];
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = new float[stages[i].getOutputSpace().getChannelCount()];
+    }
+    return buffers;
+  }
+
+  private static Transform<?, ?, ?, ?>[] compile(
+      Transform<?, ?, ?, ?> f, Transform<?, ?, ?, ?> g) {
+    List<Transform<?, ?, ?, ?>> flat = new ArrayList<>();
+    flatten(f, flat);
+    flatten(g, flat);
+    if (flat.stream().anyMatch(t -> !isCopy(t))) {
+      // Identity stages between equal dimensions only copy values, so drop them unless nothing
+      // else remains
+      flat.removeIf(Composition::isCopy);
+    } else {
+      flat.subList(1, flat.size()).clear();
+    }
+
+    List<Transform<?, ?, ?, ?>> fused = new ArrayList<>();
+    for (Transform<?, ?, ?, ?> t : flat) {
+      if (fused.isEmpty()) {
+        fused.add(t);
+        continue;
+      }
+
+      Transform<?, ?, ?, ?> prev = fused.get(fused.size() - 1);
+      Transform<?, ?, ?, ?> merged = null;
+      if (prev instanceof MatrixTransform && t instanceof MatrixTransform) {
+        merged = mergeMatrices((MatrixTransform<?, ?, ?, ?>) prev, (MatrixTransform<?, ?, ?, ?>) t);
+      } else if (prev instanceof CurveTransform && t instanceof CurveTransform) {
+        merged = mergeCurves((CurveTransform<?, ?, ?, ?>) prev, (CurveTransform<?, ?, ?, ?>) t);
+      }
+
+      if (merged != null) {
+        fused.set(fused.size() - 1, merged);
+      } else {
+        fused.add(t);
+      }
+    }
+
+    return fused.toArray(new Transform<?, ?, ?, ?>[fused.size()]);
+  }
+
+  private static void flatten(Transform<?, ?, ?, ?> t, List<Transform<?, ?, ?, ?>> stages) {
+    if (t instanceof Composition) {
+      // Already compiled, so its stages are flat and fused internally
+      for (Transform<?, ?, ?, ?> s : ((Composition<?, ?, ?, ?, ?, ?>) t).stages) {
+        stages.add(s);
+      }
+    } else if (t instanceof RGBToXYZ) {
+      // Split into its linearization curve and matrix so the matrix can fuse with its neighbors
+      RGBToXYZ<?, ?> rgbToXYZ = (RGBToXYZ<?, ?>) t;
+      Curve gamma = rgbToXYZ.getDecodingGammaFunction();
+      if (gamma != null) {
+        stages.add(newCurves(t.getInputSpace(), t.getInputSpace(), gamma));
+      }
+      stages.add(newMatrix(t.getInputSpace(), t.getOutputSpace(), rgbToXYZ.getLinearRGBToXYZ()));
+    } else if (t instanceof XYZToRGB) {
+      XYZToRGB<?, ?> xyzToRGB = (XYZToRGB<?, ?>) t;
+      Curve gamma = xyzToRGB.getEncodingGammaFunction();
+      stages.add(newMatrix(t.getInputSpace(), t.getOutputSpace(), xyzToRGB.getXYZToLinearRGB()));
+      if (gamma != null) {
+        stages.add(newCurves(t.getOutputSpace(), t.getOutputSpace(), gamma));
+      }
+    } else {
+      stages.add(t);
+    }
+  }
+
+  private static boolean isCopy(Transform<?, ?, ?, ?> t) {
+    return t instanceof Identity && t.getInputSpace().getChannelCount() == t.getOutputSpace()
+        .getChannelCount();
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static Transform<?, ?, ?, ?> newCurves(
+      VectorSpace<?, ?> inputSpace, VectorSpace<?, ?> outputSpace, Curve curve) {
+    return new CurveTransform(inputSpace, outputSpace, Arrays.asList(curve, curve, curve));
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static Transform<?, ?, ?, ?> newMatrix(
+      VectorSpace<?, ?> inputSpace, VectorSpace<?, ?> outputSpace, FixedMatrix3x3_64F m) {
+    return new MatrixTransform(inputSpace, outputSpace, new double[] {
+        m.a11, m.a12, m.a13, m.a21, m.a22, m.a23, m.a31, m.a32, m.a33
+    });
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static Transform<?, ?, ?, ?> mergeMatrices(
+      MatrixTransform<?, ?, ?, ?> first, MatrixTransform<?, ?, ?, ?> second) {
+    // Multiply the homogeneous forms, second * first
+    int n = first.getInputSpace().getChannelCount() + 1;
+    int k = first.getOutputSpace().getChannelCount() + 1;
+    int m = second.getOutputSpace().getChannelCount() + 1;
+    double[] a = first.getHomogeneousMatrix();
+    double[] b = second.getHomogeneousMatrix();
+
+    boolean affine = first.isAffine() || second.isAffine();
+    int rows = (affine ? m : m - 1);
+    int cols = (affine ? n : n - 1);
+    double[] product = new double[rows * cols];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        double sum = 0.0;
+        for (int l = 0; l < k; l++) {
+          sum += b[i * k + l] * a[l * n + j];
+        }
+        product[i * cols + j] = sum;
+      }
+    }
+
+    return new MatrixTransform(first.getInputSpace(), second.getOutputSpace(),
+        new DenseMatrix64F(rows, cols, true, product), affine);
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static Transform<?, ?, ?, ?> mergeCurves(
+      CurveTransform<?, ?, ?, ?> first, CurveTransform<?, ?, ?, ?> second) {
+    List<Curve> a = first.getCurves();
+    List<Curve> b = second.getCurves();
+    List<Curve> merged = new ArrayList<>(a.size());
+    for (int i = 0; i < a.size(); i++) {
+      if (a.get(i) == null) {
+        merged.add(b.get(i));
+      } else if (b.get(i) == null) {
+        merged.add(a.get(i));
+      } else {
+        merged.add(new ClampedComposition(a.get(i), b.get(i)));
+      }
+    }
+
+    return new CurveTransform(first.getInputSpace(), second.getOutputSpace(), merged);
+  }
+
+  /*
+   * Curve that evaluates `g(clamp(f(x)))`, clamping the intermediate value to g's domain the same
+   * way CurveTransform clamps its inputs. This differs from ComposedCurve, which reports NaN when
+   * the intermediate value is outside of the outer domain, so it is only used to fuse stages.
+   */
+  private static class ClampedComposition implements Curve {
+    private final Curve f;
+    private final Curve g;
+
+    ClampedComposition(Curve f, Curve g) {
+      this.f = f;
+      this.g = g;
+    }
+
+    @Override
+    public double evaluate(double x) {
+      double y = f.evaluate(x);
+      return g.evaluate(Functions.clamp(y, g.getDomainMin(), g.getDomainMax()));
+    }
+
+    @Override
+    public double getDomainMax() {
+      return f.getDomainMax();
+    }
+
+    @Override
+    public double getDomainMin() {
+      return f.getDomainMin();
+    }
+
+    @Override
+    public Optional<Curve> inverse() {
+      // Fused stages are never inverted, the original transforms provide the inverse
+      return Optional.empty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      if (!(o instanceof ClampedComposition)) {
+        return false;
+      }
+      ClampedComposition c = (ClampedComposition) o;
+      return Objects.equals(c.f, f) && Objects.equals(c.g, g);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(f, g);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s(clamp(%s(x)))", g, f);
+    }
   }
 }
@@ -34,10 +34,13 @@ package com.lhkbob.imaje.color.transform;
 import com.lhkbob.imaje.color.Vector;
 import com.lhkbob.imaje.color.VectorSpace;
 import com.lhkbob.imaje.color.transform.curves.Curve;
+import com.lhkbob.imaje.color.transform.curves.TabulatedCurve;
+import com.lhkbob.imaje.layout.PixelFormat;
 import com.lhkbob.imaje.util.Arguments;
 import com.lhkbob.imaje.util.Functions;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -118,6 +121,155 @@ public class CurveTransform<I extends Vector<I, SI>, SI extends VectorSpace<I, S
     this.curves = curves;
   }
 
+  /**
+   * The default error target used when tabulating curves for floating point channels, which is a
+   * quarter of the step size of a 16-bit normalized integer.
+   */
+  public static final double DEFAULT_FLOAT_TABLE_ERROR = 0.25 / 65535.0;
+
+  /**
+   * Get a transform equivalent to this one that has been optimized for input values read from
+   * pixel data described by `format`. This is the same as {@link #tabulateFor(PixelFormat,
+   * double)} with an error target of {@link #DEFAULT_FLOAT_TABLE_ERROR}.
+   *
+   * @param format
+   *     The format of the pixel data that provides inputs to the transform
+   * @return A transform with tabulated curves, or this transform if nothing could be tabulated
+   *
+   * @throws NullPointerException
+   *     if `format` is null
+   * @throws IllegalArgumentException
+   *     if the color channel count of `format` does not equal the input channel count
+   */
+  public CurveTransform<I, SI, O, SO> tabulateFor(PixelFormat format) {
+    return tabulateFor(format, DEFAULT_FLOAT_TABLE_ERROR);
+  }
+
+  /**
+   * Get a transform equivalent to this one that has been optimized for input values read from
+   * pixel data described by `format`. Each channel's curve is replaced with a {@link
+   * TabulatedCurve} according to the type of the corresponding color channel in `format`, as
+   * determined by {@link #tabulateFor(Curve, PixelFormat.Type, int, double)}. Since integer
+   * channels can only produce a fixed set of values, their tables reproduce the curve exactly.
+   *
+   * @param format
+   *     The format of the pixel data that provides inputs to the transform
+   * @param maxFloatError
+   *     The maximum interpolation error allowed for curves on floating point channels
+   * @return A transform with tabulated curves, or this transform if nothing could be tabulated
+   *
+   * @throws NullPointerException
+   *     if `format` is null
+   * @throws IllegalArgumentException
+   *     if the color channel count of `format` does not equal the input channel count, or if
+   *     `maxFloatError` is not positive
+   */
+  public CurveTransform<I, SI, O, SO> tabulateFor(PixelFormat format, double maxFloatError) {
+    Arguments.notNull("format", format);
+    Arguments.equals("format.getColorChannelCount()", curves.size(), format.getColorChannelCount());
+    Arguments.isPositive("maxFloatError", maxFloatError);
+
+    List<Curve> tabulated = new ArrayList<>(curves.size());
+    boolean changed = false;
+    for (int i = 0; i < curves.size(); i++) {
+      Curve c = curves.get(i);
+      Curve t = (c == null ? null : tabulateFor(c, format.getColorChannelType(i),
+          format.getColorChannelBitSize(i), maxFloatError));
+      changed |= (t != c);
+      tabulated.add(t);
+    }
+
+    return changed ? new CurveTransform<>(inputSpace, outputSpace, tabulated) : this;
+  }
+
+  /**
+   * Tabulate `curve` for arguments read from a channel of the given type and bit size. `UNORM`
+   * channels with at most {@link TabulatedCurve#MAX_INTEGER_BITS} bits use an exact table of every
+   * representable value, while `SFLOAT` and `UFLOAT` channels use an interpolated table with the
+   * error target `maxFloatError`. Curves on any other channel type are returned unmodified.
+   *
+   * @param curve
+   *     The curve to tabulate
+   * @param type
+   *     The type of the channel providing arguments to `curve`
+   * @param bitSize
+   *     The bit size of the channel
+   * @param maxFloatError
+   *     The maximum interpolation error allowed for floating point channels
+   * @return The tabulated curve, or `curve` if tabulation is not applicable
+   */
+  public static Curve tabulateFor(
+      Curve curve, PixelFormat.Type type, int bitSize, double maxFloatError) {
+    switch (type) {
+    case UNORM:
+      if (bitSize <= TabulatedCurve.MAX_INTEGER_BITS) {
+        return TabulatedCurve.forIntegerInput(curve, bitSize);
+      } else {
+        return curve;
+      }
+    case SFLOAT:
+    case UFLOAT:
+      return TabulatedCurve.forFloatInput(curve, maxFloatError);
+    default:
+      return curve;
+    }
+  }
+
+  /**
+   * Get a transform equivalent to this one that has been optimized for output values that will be
+   * stored in pixel data described by `format`. The curve of each channel that is stored as a
+   * normalized unsigned integer is replaced as described by {@link #tabulateForOutput(Curve,
+   * PixelFormat.Type, int)}. Other channels keep their curves.
+   *
+   * @param format
+   *     The format of the pixel data that receives the transform's output
+   * @return A transform with tabulated curves, or this transform if nothing could be tabulated
+   *
+   * @throws NullPointerException
+   *     if `format` is null
+   * @throws IllegalArgumentException
+   *     if the color channel count of `format` does not equal the output channel count
+   */
+  public CurveTransform<I, SI, O, SO> tabulateForOutput(PixelFormat format) {
+    Arguments.notNull("format", format);
+    Arguments.equals("format.getColorChannelCount()", curves.size(), format.getColorChannelCount());
+
+    List<Curve> tabulated = new ArrayList<>(curves.size());
+    boolean changed = false;
+    for (int i = 0; i < curves.size(); i++) {
+      Curve c = curves.get(i);
+      Curve t = (c == null ? null : tabulateForOutput(c, format.getColorChannelType(i),
+          format.getColorChannelBitSize(i)));
+      changed |= (t != c);
+      tabulated.add(t);
+    }
+
+    return changed ? new CurveTransform<>(inputSpace, outputSpace, tabulated) : this;
+  }
+
+  /**
+   * Tabulate `curve` for results that will be stored in a channel of the given type and bit size.
+   * The arguments of the curve can be any value, so `UNORM` channels with at most {@link
+   * TabulatedCurve#MAX_INTEGER_BITS} bits use an interpolated table whose error target is a quarter
+   * of the channel's step size, which does not change the quantized results in practice. Curves on
+   * any other channel type are returned unmodified.
+   *
+   * @param curve
+   *     The curve to tabulate
+   * @param type
+   *     The type of the channel receiving the results of `curve`
+   * @param bitSize
+   *     The bit size of the channel
+   * @return The tabulated curve, or `curve` if tabulation is not applicable
+   */
+  public static Curve tabulateForOutput(Curve curve, PixelFormat.Type type, int bitSize) {
+    if (type != PixelFormat.Type.UNORM || bitSize > TabulatedCurve.MAX_INTEGER_BITS) {
+      return curve;
+    }
+    double step = 1.0 / ((1 << bitSize) - 1);
+    return TabulatedCurve.forFloatInput(curve, 0.25 * step);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (o == this) {
@@ -173,6 +325,59 @@ public class CurveTransform<I extends Vector<I, SI>, SI extends VectorSpace<I, S
     return true;
   }
 
+  @Override
+  public boolean applyUnchecked(
+      double[] input, int inOffset, double[] output, int outOffset, int count) {
+    if (count == 0) {
+      return true;
+    }
+    int channels = curves.size();
+    Arguments.checkArrayRange("input", input.length, inOffset, count * channels);
+    Arguments.checkArrayRange("output", output.length, outOffset, count * channels);
+
+    // Process channel by channel so each curve is evaluated in a tight loop over the scanline
+    for (int i = 0; i < channels; i++) {
+      Curve c = curves.get(i);
+      if (c != null) {
+        double min = c.getDomainMin();
+        double max = c.getDomainMax();
+        for (int p = 0; p < count; p++) {
+          double inDomain = Functions.clamp(input[inOffset + p * channels + i], min, max);
+          output[outOffset + p * channels + i] = c.evaluate(inDomain);
+        }
+      } else {
+        for (int p = 0; p < count; p++) {
+          output[outOffset + p * channels + i] = input[inOffset + p * channels + i];
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean applyUnchecked(float[] input, float[] output) {
+    Arguments.equals("input.length", inputSpace.getChannelCount(), input.length);
+    Arguments.equals("output.length", outputSpace.getChannelCount(), output.length);
+
+    for (int i = 0; i < input.length; i++) {
+      Curve c = curves.get(i);
+      if (c != null) {
+        double inDomain = Functions.clamp(input[i], c.getDomainMin(), c.getDomainMax());
+        output[i] = (float) c.evaluate(inDomain);
+      } else {
+        output[i] = input[i];
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return The per-channel curves of this transform, where `null` represents the identity
+   */
+  List<Curve> getCurves() {
+    return Collections.unmodifiableList(curves);
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder("Curve Transform (dim: ").append(curves.size())
@@ -71,6 +71,11 @@ public class ExplicitInverse<I extends Vector<I, SI>, SI extends VectorSpace<I,
     return forward.applyUnchecked(input, output);
   }
 
+  @Override
+  public boolean applyUnchecked(float[] input, float[] output) {
+    return forward.applyUnchecked(input, output);
+  }
+
   @Override
   public int hashCode() {
     int result = ExplicitInverse.class.hashCode();
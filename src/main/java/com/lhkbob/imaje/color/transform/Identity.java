@@ -124,6 +124,28 @@ public class Identity<A extends Vector<A, SA>, SA extends VectorSpace<A, SA>, B
     return true;
   }
 
+  @Override
+  public boolean applyUnchecked(float[] input, float[] output) {
+    Arguments.equals("input.length", inSpace.getChannelCount(), input.length);
+    Arguments.equals("output.length", outSpace.getChannelCount(), output.length);
+
+    if (input.length == output.length) {
+      // Copy input to output
+      System.arraycopy(input, 0, output, 0, input.length);
+    } else if (input.length == 1) {
+      // Set every channel in output equal to input[0]
+      Arrays.fill(output, input[0]);
+    } else {
+      // Set single output channel to average of input
+      float v = 0;
+      for (int i = 0; i < input.length; i++) {
+        v += input[i];
+      }
+      output[0] = v / input.length;
+    }
+    return true;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (o == this) {
@@ -49,9 +49,17 @@ import java.util.Optional;
  * values are grouped by the first sample of the second dimension, etc. The final value for a given
  * input coordinate is a packed vector of primitives, with dimensionality matching the output space.
  *
- * Multidimensional linear interpolation is used to sample the table and estimate a smoothed output
- * value. If the table is two dimensional, this is equivalent to bilinear filtering. The layout and
- * estimation algorithm are compatible with the lookup table used in ICC color profiles.
+ * Tables with three input channels, the typical case for ICC profiles, are sampled with
+ * tetrahedral interpolation: the grid cell is split into six tetrahedra along its main diagonal
+ * and only the four corners of the tetrahedron containing the input are blended. Tables with four
+ * input channels linearly blend two tetrahedral evaluations along the first channel. All other
+ * tables use multidimensional linear interpolation over the 2^N corners of the grid cell, which is
+ * equivalent to bilinear filtering for two dimensional tables. The layout and estimation algorithm
+ * are compatible with the lookup table used in ICC color profiles.
+ *
+ * The table values are stored as packed single precision floats, which halves the memory that
+ * must be touched when large images are transformed. Evaluation does not allocate and has
+ * specialized kernels for tables that produce three output channels.
  *
  * @author Michael Ludwig
  */
@@ -61,7 +69,15 @@ public class LookupTable<A extends Vector<A, SA>, SA extends VectorSpace<A, SA>,
   private final int[] hyperCubeOffsets; // indexed by hypercube index
   private final SA inSpace;
   private final SB outSpace;
-  private final double[] values;
+  private final float[] grid;
+  private final int inputChannels;
+  private final int outputChannels;
+
+  // working space for n alpha values from input channel to grid cell, and 2^n hypercube corner
+  // weights, used by the general interpolation path
+  private final ThreadLocal<double[]> workspace;
+  // widened input and output values for the single precision path
+  private final ThreadLocal<double[]> floatWorkspace;
 
   /**
    * Create a lookup table used to transform between the two spaces. `gridSize` is the resolution of
@@ -119,7 +135,14 @@ public class LookupTable<A extends Vector<A, SA>, SA extends VectorSpace<A, SA>,
     this.inSpace = inSpace;
     this.outSpace = outSpace;
     this.gridSizes = Arrays.copyOf(gridSizes, gridSizes.length);
-    this.values = Arrays.copyOf(values, values.length);
+    this.inputChannels = inputChannels;
+    this.outputChannels = outputChannels;
+    grid = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      grid[i] = (float) values[i];
+    }
+    workspace = ThreadLocal.withInitial(() -> new double[inputChannels + (1 << inputChannels)]);
+    floatWorkspace = ThreadLocal.withInitial(() -> new double[inputChannels + outputChannels]);
 
     // Compute offsets for each input channel; ICC spec says first channel varies least rapidly
     gridOffsets = new int[inputChannels];
@@ -166,6 +189,13 @@ public class LookupTable<A extends Vector<A, SA>, SA extends VectorSpace<A, SA>,
     return outSpace;
   }
 
+  /**
+   * @return The number of single precision values stored in the grid
+   */
+  int getGridValueCount() {
+    return grid.length;
+  }
+
   @Override
   public String toString() {
     return String.format("CLUT (in: %d, out: %d,  grid: %s,)", inSpace.getChannelCount(),
@@ -174,69 +204,209 @@ public class LookupTable<A extends Vector<A, SA>, SA extends VectorSpace<A, SA>,
 
   @Override
   public boolean applyUnchecked(double[] input, double[] output) {
-    int inputChannels = inSpace.getChannelCount();
-    int outputChannels = outSpace.getChannelCount();
     Arguments.equals("input.length", inputChannels, input.length);
     Arguments.equals("output.length", outputChannels, output.length);
 
-    // working space for n alpha values from input channel to grid cell
-    double[] axisAlphas = new double[inputChannels];
-    // working space for 2^n hypercube corners during interpolation
-    double[] weights = new double[1 << inputChannels];
+    interpolate(input, 0, output, 0);
+    return true;
+  }
 
+  @Override
+  public boolean applyUnchecked(float[] input, float[] output) {
+    Arguments.equals("input.length", inputChannels, input.length);
+    Arguments.equals("output.length", outputChannels, output.length);
 
-    // Calculate offset into the grid for the lowest corner of hypercube, and calculate the
-    // alpha value = input - axis for each dimension.
-    int baseOffset = 0;
+    double[] work = floatWorkspace.get();
+    int outStart = inputChannels;
     for (int i = 0; i < inputChannels; i++) {
-      int gridSizeM1 = gridSizes[i] - 1;
-      double valueInGrid = input[i] * gridSizeM1;
-      if (valueInGrid < 0.0) {
-        valueInGrid = 0.0;
-      } else if (valueInGrid > gridSizeM1) {
-        valueInGrid = gridSizeM1;
-      }
+      work[i] = input[i];
+    }
+    interpolate(work, 0, work, outStart);
+    for (int o = 0; o < outputChannels; o++) {
+      output[o] = (float) work[outStart + o];
+    }
+    return true;
+  }
+
+  @Override
+  public boolean applyUnchecked(
+      double[] input, int inOffset, double[] output, int outOffset, int count) {
+    if (count == 0) {
+      return true;
+    }
+    Arguments.checkArrayRange("input", input.length, inOffset, count * inputChannels);
+    Arguments.checkArrayRange("output", output.length, outOffset, count * outputChannels);
+
+    for (int p = 0; p < count; p++) {
+      interpolate(input, inOffset + p * inputChannels, output, outOffset + p * outputChannels);
+    }
+    return true;
+  }
+
+  private void interpolate(double[] input, int inOffset, double[] output, int outOffset) {
+    if (inputChannels == 3) {
+      interpolate3(input, inOffset, 0, 1.0, output, outOffset, false);
+    } else if (inputChannels == 4) {
+      interpolate4(input, inOffset, output, outOffset);
+    } else {
+      interpolateN(input, inOffset, output, outOffset);
+    }
+  }
+
+  private void interpolate4(double[] input, int inOffset, double[] output, int outOffset) {
+    // Blend the tetrahedral interpolation of the two 3D slices that bracket the first channel
+    double g = gridPosition(0, input[inOffset]);
+    int cell = gridCell(0, g);
+    double alpha = g - cell;
+    int base = cell * gridOffsets[0];
+
+    interpolate3(input, inOffset + 1, base, 1.0 - alpha, output, outOffset, false);
+    interpolate3(input, inOffset + 1, base + gridOffsets[0], alpha, output, outOffset, true);
+  }
+
+  /*
+   * Tetrahedral interpolation of the last three input channels, starting at `inOffset` (so 3 input
+   * tables pass the start of the vector and 4 input tables pass the start of the second channel).
+   * `base` is an offset into the grid for the channels that came before, and the result is
+   * multiplied by `scale` before being stored or accumulated into the output.
+   */
+  private void interpolate3(
+      double[] input, int inOffset, int base, double scale, double[] output, int outOffset,
+      boolean accumulate) {
+    int dim = inputChannels - 3;
+
+    double g1 = gridPosition(dim, input[inOffset]);
+    double g2 = gridPosition(dim + 1, input[inOffset + 1]);
+    double g3 = gridPosition(dim + 2, input[inOffset + 2]);
+    int c1 = gridCell(dim, g1);
+    int c2 = gridCell(dim + 1, g2);
+    int c3 = gridCell(dim + 2, g3);
+    double f1 = g1 - c1;
+    double f2 = g2 - c2;
+    double f3 = g3 - c3;
+    int o1 = gridOffsets[dim];
+    int o2 = gridOffsets[dim + 1];
+    int o3 = gridOffsets[dim + 2];
+    base += c1 * o1 + c2 * o2 + c3 * o3;
+
+    // Sort the axes by descending fraction, which selects the tetrahedron containing the input
+    if (f1 < f2) {
+      double f = f1;
+      f1 = f2;
+      f2 = f;
+      int o = o1;
+      o1 = o2;
+      o2 = o;
+    }
+    if (f2 < f3) {
+      double f = f2;
+      f2 = f3;
+      f3 = f;
+      int o = o2;
+      o2 = o3;
+      o3 = o;
+    }
+    if (f1 < f2) {
+      double f = f1;
+      f1 = f2;
+      f2 = f;
+      int o = o1;
+      o1 = o2;
+      o2 = o;
+    }
+
+    // The tetrahedron walks from the base corner to the far corner, one axis at a time
+    int v0 = base;
+    int v1 = v0 + o1;
+    int v2 = v1 + o2;
+    int v3 = v2 + o3;
+    double w0 = scale * (1.0 - f1);
+    double w1 = scale * (f1 - f2);
+    double w2 = scale * (f2 - f3);
+    double w3 = scale * f3;
 
-      int gridCell = (int) Math.floor(valueInGrid);
-      if (gridCell >= gridSizeM1) {
-        // Make sure that the base grid we access is length - 2 for a dimension, so that the
-        // far corner of the hypercube will be at most length - 1 and we don't need to worry about
-        // bounds checks later on in the algorithm.
-        gridCell = gridSizeM1 - 1;
+    if (outputChannels == 3) {
+      double r = w0 * grid[v0] + w1 * grid[v1] + w2 * grid[v2] + w3 * grid[v3];
+      double g = w0 * grid[v0 + 1] + w1 * grid[v1 + 1] + w2 * grid[v2 + 1] + w3 * grid[v3 + 1];
+      double b = w0 * grid[v0 + 2] + w1 * grid[v1 + 2] + w2 * grid[v2 + 2] + w3 * grid[v3 + 2];
+      if (accumulate) {
+        output[outOffset] += r;
+        output[outOffset + 1] += g;
+        output[outOffset + 2] += b;
+      } else {
+        output[outOffset] = r;
+        output[outOffset + 1] = g;
+        output[outOffset + 2] = b;
       }
+    } else {
+      for (int o = 0; o < outputChannels; o++) {
+        double v = w0 * grid[v0 + o] + w1 * grid[v1 + o] + w2 * grid[v2 + o] + w3 * grid[v3 + o];
+        output[outOffset + o] = (accumulate ? output[outOffset + o] + v : v);
+      }
+    }
+  }
 
-      axisAlphas[i] = valueInGrid - gridCell; // Cells are already unit so no normalizing is needed
+  private void interpolateN(double[] input, int inOffset, double[] output, int outOffset) {
+    double[] work = workspace.get();
+    int weightStart = inputChannels;
+    int cornerCount = 1 << inputChannels;
+
+    // Calculate offset into the grid for the lowest corner of hypercube, and calculate the
+    // alpha value = input - axis for each dimension.
+    int baseOffset = 0;
+    for (int i = 0; i < inputChannels; i++) {
+      double valueInGrid = gridPosition(i, input[inOffset + i]);
+      int gridCell = gridCell(i, valueInGrid);
+      work[i] = valueInGrid - gridCell; // Cells are already unit so no normalizing is needed
       baseOffset += gridCell * gridOffsets[i];
     }
 
     // Efficiently iterate over the 2^N hypercube corners and form every combination of
     // alpha_i and (1 - alpha_i) for all dimensions.
     int power = 1;
-    weights[0] = 1.0;
+    work[weightStart] = 1.0;
     for (int i = 0; i < inputChannels; i++) {
       for (int j = 0; j < power; j++) {
-        weights[power + j] = weights[j] * axisAlphas[i];
-        weights[j] *= (1.0 - axisAlphas[i]);
+        work[weightStart + power + j] = work[weightStart + j] * work[i];
+        work[weightStart + j] *= (1.0 - work[i]);
       }
       power *= 2;
     }
 
     // Initialize output to the weighted base corner of the hypercube
     int d = baseOffset + hyperCubeOffsets[0];
-    double w = weights[0];
+    double w = work[weightStart];
     for (int o = 0; o < outputChannels; o++) {
-      output[o] = w * values[d + o];
+      output[outOffset + o] = w * grid[d + o];
     }
     // Incorporate the remaining corners with their associated weights
-    for (int i = 1; i < weights.length; i++) {
+    for (int i = 1; i < cornerCount; i++) {
       d = baseOffset + hyperCubeOffsets[i];
-      w = weights[i];
+      w = work[weightStart + i];
       for (int o = 0; o < outputChannels; o++) {
-        output[o] += w * values[d + o];
+        output[outOffset + o] += w * grid[d + o];
       }
     }
+  }
 
-    return true;
+  private double gridPosition(int dim, double value) {
+    int gridSizeM1 = gridSizes[dim] - 1;
+    double valueInGrid = value * gridSizeM1;
+    if (valueInGrid < 0.0) {
+      return 0.0;
+    } else if (valueInGrid > gridSizeM1) {
+      return gridSizeM1;
+    } else {
+      return valueInGrid;
+    }
+  }
+
+  private int gridCell(int dim, double valueInGrid) {
+    int gridCell = (int) valueInGrid;
+    // Make sure that the base grid we access is length - 2 for a dimension, so that the far corner
+    // of the hypercube will be at most length - 1 and we don't need to worry about bounds checks
+    // later on in the algorithm.
+    return Math.min(gridCell, gridSizes[dim] - 2);
   }
 
   private static int[] createSimpleSizes(int inputChannels, int gridSize) {
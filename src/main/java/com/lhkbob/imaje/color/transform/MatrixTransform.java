@@ -62,6 +62,8 @@ public class MatrixTransform<I extends Vector<I, SI>, SI extends VectorSpace<I,
 
   private final boolean isAffine;
   private final DenseMatrix64F matrix;
+  // Row-major single precision copy of matrix for the float path
+  private final float[] floatMatrix;
 
   private final MatrixTransform<O, SO, I, SI> inverse;
 
@@ -159,6 +161,7 @@ public class MatrixTransform<I extends Vector<I, SI>, SI extends VectorSpace<I,
             outputSpace.getChannelCount());
 
     this.matrix = (ownMatrix ? matrix : matrix.copy());
+    floatMatrix = toFloatArray(this.matrix);
     this.isAffine = isAffine;
     this.inputSpace = inputSpace;
     this.outputSpace = outputSpace;
@@ -173,6 +176,7 @@ public class MatrixTransform<I extends Vector<I, SI>, SI extends VectorSpace<I,
       // Calculate a pseudo-inverse instead of failing completely
       CommonOps.pinv(inverse.matrix, matrix);
     }
+    floatMatrix = toFloatArray(matrix);
 
     isAffine = inverse.isAffine;
     inputSpace = inverse.getOutputSpace();
@@ -224,21 +228,43 @@ public class MatrixTransform<I extends Vector<I, SI>, SI extends VectorSpace<I,
     Arguments
         .equals("output.length", isAffine ? matrix.numRows - 1 : matrix.numRows, output.length);
 
-    DenseMatrix64F in = new DenseMatrix64F(matrix.getNumCols(), 1);
-    DenseMatrix64F out = new DenseMatrix64F(1, matrix.getNumRows());
+    multiply(input, 0, output, 0);
+    return true;
+  }
 
-    // input will be length of input matrix, or 1 less
-    System.arraycopy(input, 0, in.data, 0, input.length);
-    if (isAffine) {
-      // Make sure last value in input matrix is 1.0 (when affine, input.length ==
-      // this.input.numCols - 1)
-      in.set(input.length, 1.0);
+  @Override
+  public boolean applyUnchecked(
+      double[] input, int inOffset, double[] output, int outOffset, int count) {
+    if (count == 0) {
+      return true;
     }
-    CommonOps.mult(matrix, in, out);
+    int inChannels = isAffine ? matrix.numCols - 1 : matrix.numCols;
+    int outChannels = isAffine ? matrix.numRows - 1 : matrix.numRows;
+    Arguments.checkArrayRange("input", input.length, inOffset, count * inChannels);
+    Arguments.checkArrayRange("output", output.length, outOffset, count * outChannels);
 
-    // output will be length output matrix, or 1 less (and we ignore the additional homogeneous
-    // coordinate)
-    System.arraycopy(out.data, 0, output, 0, output.length);
+    for (int p = 0; p < count; p++) {
+      multiply(input, inOffset + p * inChannels, output, outOffset + p * outChannels);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean applyUnchecked(float[] input, float[] output) {
+    Arguments.equals("input.length", isAffine ? matrix.numCols - 1 : matrix.numCols, input.length);
+    Arguments
+        .equals("output.length", isAffine ? matrix.numRows - 1 : matrix.numRows, output.length);
+
+    // Multiply directly against the matrix's rows, the implicit homogeneous coordinate of an affine
+    // input selects the last column and the homogeneous output row is never computed
+    for (int i = 0; i < output.length; i++) {
+      int row = i * matrix.numCols;
+      float value = isAffine ? floatMatrix[row + input.length] : 0f;
+      for (int j = 0; j < input.length; j++) {
+        value += floatMatrix[row + j] * input[j];
+      }
+      output[i] = value;
+    }
     return true;
   }
 
@@ -278,6 +304,49 @@ public class MatrixTransform<I extends Vector<I, SI>, SI extends VectorSpace<I,
     return sb.toString();
   }
 
+  /**
+   * Get the matrix of this transform in homogeneous form, as a row-major array with one more row
+   * and column than the output and input channel counts. Linear matrices are embedded with a zero
+   * translation so that affine and linear transforms can be multiplied together uniformly.
+   *
+   * @return A new array holding the homogeneous matrix
+   */
+  double[] getHomogeneousMatrix() {
+    int rows = (isAffine ? matrix.numRows - 1 : matrix.numRows);
+    int cols = (isAffine ? matrix.numCols - 1 : matrix.numCols);
+    double[] h = new double[(rows + 1) * (cols + 1)];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < matrix.numCols; j++) {
+        h[i * (cols + 1) + j] = matrix.get(i, j);
+      }
+    }
+    h[h.length - 1] = 1.0;
+    return h;
+  }
+
+  /**
+   * @return True if the matrix of this transform includes a translation column
+   */
+  boolean isAffine() {
+    return isAffine;
+  }
+
+  private void multiply(double[] input, int inOffset, double[] output, int outOffset) {
+    // Multiply directly against the matrix's rows, the implicit homogeneous coordinate of an affine
+    // input selects the last column and the homogeneous output row is never computed
+    int inChannels = isAffine ? matrix.numCols - 1 : matrix.numCols;
+    int outChannels = isAffine ? matrix.numRows - 1 : matrix.numRows;
+    double[] m = matrix.data;
+    for (int i = 0; i < outChannels; i++) {
+      int row = i * matrix.numCols;
+      double value = isAffine ? m[row + inChannels] : 0.0;
+      for (int j = 0; j < inChannels; j++) {
+        value += m[row + j] * input[inOffset + j];
+      }
+      output[outOffset + i] = value;
+    }
+  }
+
   private static DenseMatrix64F makeMatrix(
       int numRows, int numCols, double[] matrix, @Arguments.Nullable double[] translation) {
     Arguments.isPositive("numRows", numRows);
@@ -305,4 +374,12 @@ public class MatrixTransform<I extends Vector<I, SI>, SI extends VectorSpace<I,
       return m;
     }
   }
+
+  private static float[] toFloatArray(DenseMatrix64F matrix) {
+    float[] values = new float[matrix.numRows * matrix.numCols];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (float) matrix.data[i];
+    }
+    return values;
+  }
 }
@@ -219,6 +219,32 @@ public class ScaleChannels<I extends Vector<I, SI>, SI extends VectorSpace<I, SI
     Arguments.equals("input.length", inputSpace.getChannelCount(), input.length);
     Arguments.equals("output.length", outputSpace.getChannelCount(), output.length);
 
+    scale(input, 0, output, 0);
+    return true;
+  }
+
+  @Override
+  public boolean applyUnchecked(
+      double[] input, int inOffset, double[] output, int outOffset, int count) {
+    if (count == 0) {
+      return true;
+    }
+    int inChannels = inputSpace.getChannelCount();
+    int outChannels = outputSpace.getChannelCount();
+    Arguments.checkArrayRange("input", input.length, inOffset, count * inChannels);
+    Arguments.checkArrayRange("output", output.length, outOffset, count * outChannels);
+
+    for (int p = 0; p < count; p++) {
+      scale(input, inOffset + p * inChannels, output, outOffset + p * outChannels);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean applyUnchecked(float[] input, float[] output) {
+    Arguments.equals("input.length", inputSpace.getChannelCount(), input.length);
+    Arguments.equals("output.length", outputSpace.getChannelCount(), output.length);
+
     if (input.length > 1 && output.length == 1) {
       // Normalize, then average and then set to output range
       double avgAlpha = 0.0;
@@ -227,26 +253,58 @@ public class ScaleChannels<I extends Vector<I, SI>, SI extends VectorSpace<I, SI
         avgAlpha += (inDomain - getDomainMin(i)) / (getDomainMax(i) - getDomainMin(i));
       }
 
-      output[0] = (avgAlpha / input.length) * (getRangeMax(0) - getRangeMin(0)) + getRangeMin(0);
+      output[0] = (float) ((avgAlpha / input.length) * (getRangeMax(0) - getRangeMin(0))
+          + getRangeMin(0));
     } else if (input.length == 1 && output.length > 1) {
       // Calculate single alpha value and then scale to each output range
       double inDomain = Functions.clamp(input[0], getDomainMin(0), getDomainMax(0));
       double alpha = (inDomain - getDomainMin(0)) / (getDomainMax(0) - getDomainMin(0));
       for (int i = 0; i < output.length; i++) {
-        output[i] = alpha * (getRangeMax(i) - getRangeMin(i)) + getRangeMin(i);
+        output[i] = (float) (alpha * (getRangeMax(i) - getRangeMin(i)) + getRangeMin(i));
       }
     } else {
       // Normalize and set per channel
       for (int i = 0; i < input.length; i++) {
         double inDomain = Functions.clamp(input[i], getDomainMin(i), getDomainMax(i));
         double alpha = (inDomain - getDomainMin(i)) / (getDomainMax(i) - getDomainMin(i));
-        output[i] = alpha * (getRangeMax(i) - getRangeMin(i)) + getRangeMin(i);
+        output[i] = (float) (alpha * (getRangeMax(i) - getRangeMin(i)) + getRangeMin(i));
       }
     }
 
     return true;
   }
 
+  private void scale(double[] input, int inOffset, double[] output, int outOffset) {
+    int inChannels = inputSpace.getChannelCount();
+    int outChannels = outputSpace.getChannelCount();
+
+    if (inChannels > 1 && outChannels == 1) {
+      // Normalize, then average and then set to output range
+      double avgAlpha = 0.0;
+      for (int i = 0; i < inChannels; i++) {
+        double inDomain = Functions.clamp(input[inOffset + i], getDomainMin(i), getDomainMax(i));
+        avgAlpha += (inDomain - getDomainMin(i)) / (getDomainMax(i) - getDomainMin(i));
+      }
+
+      output[outOffset] =
+          (avgAlpha / inChannels) * (getRangeMax(0) - getRangeMin(0)) + getRangeMin(0);
+    } else if (inChannels == 1 && outChannels > 1) {
+      // Calculate single alpha value and then scale to each output range
+      double inDomain = Functions.clamp(input[inOffset], getDomainMin(0), getDomainMax(0));
+      double alpha = (inDomain - getDomainMin(0)) / (getDomainMax(0) - getDomainMin(0));
+      for (int i = 0; i < outChannels; i++) {
+        output[outOffset + i] = alpha * (getRangeMax(i) - getRangeMin(i)) + getRangeMin(i);
+      }
+    } else {
+      // Normalize and set per channel
+      for (int i = 0; i < inChannels; i++) {
+        double inDomain = Functions.clamp(input[inOffset + i], getDomainMin(i), getDomainMax(i));
+        double alpha = (inDomain - getDomainMin(i)) / (getDomainMax(i) - getDomainMin(i));
+        output[outOffset + i] = alpha * (getRangeMax(i) - getRangeMin(i)) + getRangeMin(i);
+      }
+    }
+  }
+
   private double getDomainMin(int channel) {
     if (domainMin.length == 1) {
       return domainMin[0];
@@ -34,6 +34,7 @@ package com.lhkbob.imaje.color.transform;
 import com.lhkbob.imaje.color.Vector;
 import com.lhkbob.imaje.color.VectorSpace;
 import com.lhkbob.imaje.color.transform.curves.Curve;
+import com.lhkbob.imaje.util.Arguments;
 
 import java.util.Optional;
 
@@ -96,6 +97,93 @@ public interface Transform<I extends Vector<I, SI>, SI extends VectorSpace<I, SI
    */
   boolean applyUnchecked(double[] input, double[] output);
 
+  /**
+   * Transform the `input` vector into the output space and store it in `output`, using single
+   * precision values. This has the same contract as {@link #applyUnchecked(double[], double[])},
+   * which remains the precise reference path. The `float` path exists so that loops over large
+   * amounts of pixel data, which are rarely stored with more than 32 bits per channel, can avoid
+   * widening every value and halve the memory they touch.
+   *
+   * The default implementation widens `input` into a temporary double array, invokes the double
+   * precision function and then narrows the result into `output`. Implementations should override
+   * this when their computation can be expressed directly in single precision.
+   *
+   * @param input
+   *     The input values to transform
+   * @param output
+   *     The array to hold the transformed output
+   * @return True if the transformed value is in gamut
+   *
+   * @throws NullPointerException
+   *     if `input` or `output` are null
+   * @throws IllegalArgumentException
+   *     if the array lengths don't match the channel counts of the respective vector spaces
+   */
+  default boolean applyUnchecked(float[] input, float[] output) {
+    double[] in = new double[input.length];
+    for (int i = 0; i < input.length; i++) {
+      in[i] = input[i];
+    }
+
+    double[] out = new double[output.length];
+    boolean inGamut = applyUnchecked(in, out);
+    for (int i = 0; i < output.length; i++) {
+      output[i] = (float) out[i];
+    }
+    return inGamut;
+  }
+
+  /**
+   * Transform `count` vectors packed contiguously in `input`, starting at `inOffset`, and store
+   * the packed results in `output` starting at `outOffset`. Each input vector occupies the channel
+   * count of the input space in consecutive elements, and each output vector occupies the channel
+   * count of the output space. This is equivalent to invoking {@link #applyUnchecked(double[],
+   * double[])} for each vector, but lets an entire scanline be converted with one call and a single
+   * validation of the array bounds.
+   *
+   * The default implementation copies each vector into temporary arrays and invokes the single
+   * vector function. Implementations should override this with a tight loop over the packed data.
+   * The input and output regions should not overlap. When `count` is 0 nothing is transformed and
+   * true is returned.
+   *
+   * @param input
+   *     The packed input values to transform
+   * @param inOffset
+   *     The index into `input` of the first channel of the first vector
+   * @param output
+   *     The array to hold the packed transformed output
+   * @param outOffset
+   *     The index into `output` that receives the first channel of the first vector
+   * @param count
+   *     The number of vectors to transform
+   * @return True if every transformed value is in gamut
+   *
+   * @throws NullPointerException
+   *     if `input` or `output` are null
+   * @throws IndexOutOfBoundsException
+   *     if the offsets and `count` extend past the bounds of `input` or `output`
+   */
+  default boolean applyUnchecked(
+      double[] input, int inOffset, double[] output, int outOffset, int count) {
+    if (count == 0) {
+      return true;
+    }
+    int inChannels = getInputSpace().getChannelCount();
+    int outChannels = getOutputSpace().getChannelCount();
+    Arguments.checkArrayRange("input", input.length, inOffset, count * inChannels);
+    Arguments.checkArrayRange("output", output.length, outOffset, count * outChannels);
+
+    double[] in = new double[inChannels];
+    double[] out = new double[outChannels];
+    boolean inGamut = true;
+    for (int i = 0; i < count; i++) {
+      System.arraycopy(input, inOffset + i * inChannels, in, 0, inChannels);
+      inGamut &= applyUnchecked(in, out);
+      System.arraycopy(out, 0, output, outOffset + i * outChannels, outChannels);
+    }
+    return inGamut;
+  }
+
   /**
    * Transform the given `input` vector or color and store the output value into the provided
    * `output` instance. If the transformation of the input value is outside the gamut for the output
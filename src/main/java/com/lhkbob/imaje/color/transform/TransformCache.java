@@ -0,0 +1,385 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.color.transform;
+
+import com.lhkbob.imaje.color.Color;
+import com.lhkbob.imaje.color.ColorSpace;
+import com.lhkbob.imaje.color.Vector;
+import com.lhkbob.imaje.color.VectorSpace;
+import com.lhkbob.imaje.color.icc.RenderingIntent;
+import com.lhkbob.imaje.color.transform.curves.Curve;
+import com.lhkbob.imaje.color.transform.curves.TabulatedCurve;
+import com.lhkbob.imaje.layout.PixelFormat;
+import com.lhkbob.imaje.util.Arguments;
+import com.lhkbob.imaje.util.LRUCache;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * TransformCache
+ * ==============
+ *
+ * A thread-safe, bounded cache of transforms keyed by their input space, output space, rendering
+ * intent, and the pixel formats of the data they convert. Building a conversion between two color
+ * spaces composes each space's transform to and from XYZ, and the resulting {@link Composition} is
+ * compiled into fused stages when it is created. Caching the compiled transform means that code
+ * converting many small images between the same spaces only pays that setup cost once.
+ *
+ * Transforms are immutable and thread-safe, so a cached transform can be shared freely. The cache
+ * is bounded by the estimated memory of its transforms, which is dominated by the tables of
+ * tabulated curves and lookup tables. A transform with several large float tables can weigh tens
+ * of megabytes, while an untabulated transform only weighs a small fixed amount. When the cache
+ * is full, the least recently used transforms are evicted. Hit, miss, and eviction counts are
+ * tracked so the effectiveness of the cache can be monitored.
+ *
+ * Color space conversions are created automatically by {@link #getTransform(ColorSpace,
+ * ColorSpace)}. Other transforms, such as those defined by the rendering intents of an ICC
+ * profile, can be cached with {@link #getTransform(VectorSpace, VectorSpace, RenderingIntent,
+ * Supplier)}, which only invokes the supplier when the transform is not already cached. Supplied
+ * transforms are cached separately from the automatic conversions, even between the same spaces.
+ *
+ * Code that converts pixel data should use {@link #getPixelTransform(ColorSpace, ColorSpace,
+ * PixelFormat, PixelFormat)}, which caches a variant of the conversion whose gamma curves are
+ * tabulated for the formats of the source and destination data. For 8-bit sRGB data this replaces
+ * a call to `Math.pow` per channel with a table lookup.
+ *
+ * @author Michael Ludwig
+ */
+public final class TransformCache {
+  /**
+   * The maximum estimated memory, in bytes, of the transforms held by the cache returned by {@link
+   * #getDefault()}.
+   */
+  public static final long DEFAULT_MAXIMUM_BYTES = 64L * 1024L * 1024L;
+
+  // A rough estimate of the objects and scratch buffers of a transform, excluding its tables
+  private static final long TRANSFORM_BYTES = 1024L;
+
+  private static final TransformCache DEFAULT = new TransformCache(DEFAULT_MAXIMUM_BYTES);
+
+  private final LRUCache<Key, Transform<?, ?, ?, ?>> transforms;
+
+  /**
+   * Create a new, empty cache that holds transforms up to an estimated total of `maximumBytes`.
+   * The most recently created transform is always kept, even if it alone exceeds the budget.
+   *
+   * @param maximumBytes
+   *     The maximum estimated memory of the cached transforms
+   * @throws IllegalArgumentException
+   *     if `maximumBytes` is less than 1
+   */
+  public TransformCache(long maximumBytes) {
+    transforms = new LRUCache<>(maximumBytes, TransformCache::getEstimatedBytes);
+  }
+
+  /**
+   * @return A shared cache with a maximum size of {@link #DEFAULT_MAXIMUM_BYTES}
+   */
+  public static TransformCache getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Get the transform that converts colors from `input` to `output`. If the two spaces are equal,
+   * this is an {@link Identity}. Otherwise it is the {@link Composition} of the input space's
+   * transform to XYZ and the output space's transform from XYZ.
+   *
+   * @param input
+   *     The input color space
+   * @param output
+   *     The output color space
+   * @return The cached or newly created transform
+   *
+   * @throws NullPointerException
+   *     if `input` or `output` are null
+   * @throws UnsupportedOperationException
+   *     if `output` does not provide a transform from XYZ
+   */
+  @SuppressWarnings("unchecked")
+  public <A extends Color<A, SA>, SA extends ColorSpace<A, SA>, B extends Color<B, SB>,
+      SB extends ColorSpace<B, SB>> Transform<A, SA, B, SB> getTransform(SA input, SB output) {
+    Arguments.notNull("input", input);
+    Arguments.notNull("output", output);
+
+    return (Transform<A, SA, B, SB>) lookup(
+        new Key(Kind.CONVERSION, input, output, null, null, null),
+        () -> newColorTransform(input, output));
+  }
+
+  /**
+   * Get the transform that converts pixel data from `input` to `output`, optimized for data stored
+   * in the given formats. This is the transform returned by {@link #getTransform(ColorSpace,
+   * ColorSpace)}, with its curves tabulated as described in {@link
+   * Composition#tabulateFor(PixelFormat, PixelFormat)}. The tabulated transform is cached
+   * separately for each pair of formats, so the tables are built once per source format.
+   *
+   * Since the color types of pixel data are often only known at runtime, the spaces and the
+   * returned transform are not parameterized. The transform is meant to be used with the array
+   * based functions, such as {@link Transform#applyUnchecked(double[], int, double[], int, int)}.
+   *
+   * @param input
+   *     The color space of the source pixel data
+   * @param output
+   *     The color space of the destination pixel data
+   * @param inputFormat
+   *     The format of the source pixel data, or null if it is unknown
+   * @param outputFormat
+   *     The format of the destination pixel data, or null if it is unknown
+   * @return The cached or newly created transform
+   *
+   * @throws NullPointerException
+   *     if `input` or `output` are null
+   * @throws UnsupportedOperationException
+   *     if `output` does not provide a transform from XYZ
+   */
+  public Transform<?, ?, ?, ?> getPixelTransform(
+      ColorSpace<?, ?> input, ColorSpace<?, ?> output,
+      @Arguments.Nullable PixelFormat inputFormat, @Arguments.Nullable PixelFormat outputFormat) {
+    Arguments.notNull("input", input);
+    Arguments.notNull("output", output);
+
+    Transform<?, ?, ?, ?> transform = lookup(
+        new Key(Kind.CONVERSION, input, output, null, null, null),
+        () -> newColorTransform(input, output));
+    if (!(transform instanceof Composition) || (inputFormat == null && outputFormat == null)) {
+      // Identities and untabulated requests are cached under the plain key
+      return transform;
+    }
+
+    Key key = new Key(Kind.CONVERSION, input, output, null, inputFormat, outputFormat);
+    return lookup(key, () -> ((Composition<?, ?, ?, ?, ?, ?>) transform)
+        .tabulateFor(inputFormat, outputFormat));
+  }
+
+  /**
+   * Get the transform between `input` and `output` for the given rendering intent, invoking
+   * `factory` to create it if it is not already cached. The factory may be invoked concurrently by
+   * multiple threads requesting the same missing transform, in which case the first transform
+   * added to the cache is returned to all of them. It is the caller's responsibility to use a
+   * factory that is consistent with the key; a transform cached under a key is returned for any
+   * later request with an equal key. Supplied transforms never share a key with the conversions
+   * created by {@link #getTransform(ColorSpace, ColorSpace)}.
+   *
+   * @param input
+   *     The input space of the transform
+   * @param output
+   *     The output space of the transform
+   * @param intent
+   *     The rendering intent the transform implements, or null if it is not intent specific
+   * @param factory
+   *     The function that creates the transform on a cache miss
+   * @return The cached or newly created transform
+   *
+   * @throws NullPointerException
+   *     if `input`, `output`, `factory`, or the factory's transform are null
+   */
+  @SuppressWarnings("unchecked")
+  public <I extends Vector<I, SI>, SI extends VectorSpace<I, SI>, O extends Vector<O, SO>,
+      SO extends VectorSpace<O, SO>> Transform<I, SI, O, SO> getTransform(
+      SI input, SO output, @Arguments.Nullable RenderingIntent intent,
+      Supplier<? extends Transform<I, SI, O, SO>> factory) {
+    Arguments.notNull("input", input);
+    Arguments.notNull("output", output);
+    Arguments.notNull("factory", factory);
+
+    return (Transform<I, SI, O, SO>) lookup(
+        new Key(Kind.SUPPLIED, input, output, intent, null, null), factory);
+  }
+
+  /**
+   * Remove every transform from the cache. The hit, miss, and eviction counts are not reset.
+   */
+  public void clear() {
+    transforms.clear();
+  }
+
+  /**
+   * @return The number of transforms currently cached
+   */
+  public int size() {
+    return transforms.size();
+  }
+
+  /**
+   * @return The estimated memory, in bytes, of the currently cached transforms
+   */
+  public long getCurrentBytes() {
+    return transforms.getCurrentWeight();
+  }
+
+  /**
+   * @return The maximum estimated memory, in bytes, of the transforms the cache will hold
+   */
+  public long getMaximumBytes() {
+    return transforms.getMaximumWeight();
+  }
+
+  /**
+   * @return The number of requests that were answered by a cached transform
+   */
+  public long getHitCount() {
+    return transforms.getHitCount();
+  }
+
+  /**
+   * @return The number of requests that had to create a new transform
+   */
+  public long getMissCount() {
+    return transforms.getMissCount();
+  }
+
+  /**
+   * @return The number of transforms removed to keep the cache within its maximum size
+   */
+  public long getEvictionCount() {
+    return transforms.getEvictionCount();
+  }
+
+  /**
+   * @return The fraction of requests answered by a cached transform, or `0` if there have been no
+   * requests
+   */
+  public double getHitRate() {
+    return transforms.getHitRate();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "TransformCache (bytes: %d/%d, size: %d, hits: %d, misses: %d, evictions: %d)",
+        getCurrentBytes(), getMaximumBytes(), size(), getHitCount(), getMissCount(),
+        getEvictionCount());
+  }
+
+  /**
+   * Estimate the memory used by `transform`. Every transform has a small fixed cost, and the
+   * tables of {@link TabulatedCurve tabulated curves} and {@link LookupTable lookup tables} within
+   * it, or within the stages of a {@link Composition}, are added to that.
+   *
+   * @param transform
+   *     The transform to measure
+   * @return The estimated number of bytes
+   */
+  static long getEstimatedBytes(Transform<?, ?, ?, ?> transform) {
+    long bytes = TRANSFORM_BYTES;
+    if (transform instanceof Composition) {
+      for (Transform<?, ?, ?, ?> stage : ((Composition<?, ?, ?, ?, ?, ?>) transform).getStages()) {
+        bytes += getTableBytes(stage);
+      }
+    } else {
+      bytes += getTableBytes(transform);
+    }
+    return bytes;
+  }
+
+  private static long getTableBytes(Transform<?, ?, ?, ?> transform) {
+    long bytes = 0L;
+    if (transform instanceof CurveTransform) {
+      for (Curve curve : ((CurveTransform<?, ?, ?, ?>) transform).getCurves()) {
+        if (curve instanceof TabulatedCurve) {
+          bytes += 8L * ((TabulatedCurve) curve).getTableSize();
+        }
+      }
+    } else if (transform instanceof LookupTable) {
+      bytes += 4L * ((LookupTable<?, ?, ?, ?>) transform).getGridValueCount();
+    }
+    return bytes;
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static Transform<?, ?, ?, ?> newColorTransform(
+      ColorSpace<?, ?> input, ColorSpace<?, ?> output) {
+    if (input.equals(output)) {
+      return new Identity(input, output);
+    } else {
+      return new Composition(input.getTransformToXYZ(), output.getTransformFromXYZ());
+    }
+  }
+
+  private Transform<?, ?, ?, ?> lookup(
+      Key key, Supplier<? extends Transform<?, ?, ?, ?>> factory) {
+    return transforms.get(key, factory::get);
+  }
+
+  // Separates the conversions created by the cache from transforms supplied by the caller
+  private enum Kind {
+    CONVERSION, SUPPLIED
+  }
+
+  private static class Key {
+    private final Kind kind;
+    private final VectorSpace<?, ?> input;
+    private final VectorSpace<?, ?> output;
+    private final RenderingIntent intent;
+    private final PixelFormat inputFormat;
+    private final PixelFormat outputFormat;
+
+    Key(
+        Kind kind, VectorSpace<?, ?> input, VectorSpace<?, ?> output, RenderingIntent intent,
+        PixelFormat inputFormat, PixelFormat outputFormat) {
+      this.kind = kind;
+      this.input = input;
+      this.output = output;
+      this.intent = intent;
+      this.inputFormat = inputFormat;
+      this.outputFormat = outputFormat;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key k = (Key) o;
+      return k.kind == kind && k.input.equals(input) && k.output.equals(output)
+          && k.intent == intent
+          && Objects.equals(k.inputFormat, inputFormat)
+          && Objects.equals(k.outputFormat, outputFormat);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = 17;
+      result = 31 * result + kind.hashCode();
+      result = 31 * result + input.hashCode();
+      result = 31 * result + output.hashCode();
+      result = 31 * result + Objects.hashCode(intent);
+      result = 31 * result + Objects.hashCode(inputFormat);
+      result = 31 * result + Objects.hashCode(outputFormat);
+      return result;
+    }
+  }
+}
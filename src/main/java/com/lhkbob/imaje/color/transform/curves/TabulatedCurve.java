@@ -0,0 +1,297 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.color.transform.curves;
+
+import com.lhkbob.imaje.util.Arguments;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * TabulatedCurve
+ * ==============
+ *
+ * A Curve decorator that precomputes its source curve into a table so that expensive functions,
+ * such as those calling `Math.pow` or `Math.log`, are evaluated once per table entry instead of
+ * once per pixel. The decorated curve has the same domain and inverse as its source. Arguments that
+ * fall outside of the tabulated range are passed through to the source curve.
+ *
+ * There are two tabulation modes:
+ *
+ * + {@link #forIntegerInput(Curve, int)} tabulates the `2^bits` values a normalized unsigned
+ *   integer channel can take in `[0, 1]`. Arguments that land on one of those values (to within a
+ *   millionth of a table step) use the exact precomputed result; all other arguments are evaluated
+ *   by the source curve, so the decorator never changes the curve's output.
+ * + {@link #forFloatInput(Curve, double)} builds a piecewise linear table over `[0, 1]` whose
+ *   resolution is doubled until the interpolation error, estimated by sampling between every pair
+ *   of entries, is at most the requested target. The estimate is not a strict bound: a curve with
+ *   features narrower than a table interval can deviate further between the sampled points. The
+ *   smooth gamma and exponential curves used by color spaces are well within the target.
+ *
+ * @author Michael Ludwig
+ */
+public final class TabulatedCurve implements Curve {
+  /**
+   * The largest bit size supported by {@link #forIntegerInput(Curve, int)}.
+   */
+  public static final int MAX_INTEGER_BITS = 16;
+  /**
+   * The largest table that {@link #forFloatInput(Curve, double)} will build before giving up on
+   * the requested error bound.
+   */
+  public static final int MAX_FLOAT_TABLE_SIZE = 1 << 20;
+
+  private static final int MIN_FLOAT_TABLE_SIZE = 256;
+  private static final double EXACT_TOLERANCE = 1e-6;
+
+  private final Curve source;
+  private final double[] table;
+  private final double tableMin;
+  private final double tableMax;
+  private final double scale; // converts x - tableMin into table index units
+  private final boolean interpolate;
+  private final double estimatedError;
+
+  private TabulatedCurve(
+      Curve source, double[] table, double tableMin, double tableMax, boolean interpolate,
+      double estimatedError) {
+    this.source = source;
+    this.table = table;
+    this.tableMin = tableMin;
+    this.tableMax = tableMax;
+    this.interpolate = interpolate;
+    this.estimatedError = estimatedError;
+    scale = (table.length - 1) / (tableMax - tableMin);
+  }
+
+  /**
+   * Tabulate `source` for arguments produced by a normalized unsigned integer channel with the
+   * given bit size, e.g. `8` creates a 256 entry table holding `source(i / 255)`. The source curve
+   * must be defined over all of `[0, 1]`, otherwise it is returned unmodified since the table could
+   * not hold valid values. Curves that are already tabulated are also returned as is.
+   *
+   * @param source
+   *     The curve to tabulate
+   * @param bits
+   *     The bit size of the integer channel, from 1 to {@link #MAX_INTEGER_BITS}
+   * @return The tabulated curve, or `source` if it cannot be tabulated over `[0, 1]`
+   *
+   * @throws NullPointerException
+   *     if `source` is null
+   * @throws IllegalArgumentException
+   *     if `bits` is not between 1 and {@link #MAX_INTEGER_BITS}
+   */
+  public static Curve forIntegerInput(Curve source, int bits) {
+    Arguments.notNull("source", source);
+    Arguments.inRangeInclusive("bits", 1, MAX_INTEGER_BITS, bits);
+    if (source instanceof TabulatedCurve || !coversUnitInterval(source)) {
+      return source;
+    }
+
+    double[] table = new double[1 << bits];
+    for (int i = 0; i < table.length; i++) {
+      // Divide instead of multiplying by the step so entries match normalized integer decoding
+      table[i] = source.evaluate(i / (double) (table.length - 1));
+    }
+    return new TabulatedCurve(source, table, 0.0, 1.0, false, 0.0);
+  }
+
+  /**
+   * Tabulate `source` over `[0, 1]` with a piecewise linear table, for arguments that come from
+   * floating point channels. The table size starts at 256 entries and is doubled until the absolute
+   * difference between the interpolated value and `source` is at most `maxError` at the quarter,
+   * middle, and three-quarter points of every table interval. If that cannot be achieved with
+   * {@link #MAX_FLOAT_TABLE_SIZE} entries, or if the source is not defined over all of `[0, 1]`,
+   * then `source` is returned unmodified.
+   *
+   * Since the error is only sampled, `maxError` is a target rather than a guarantee for arbitrary
+   * curves. See {@link #getEstimatedError()}.
+   *
+   * @param source
+   *     The curve to tabulate
+   * @param maxError
+   *     The target for the estimated absolute error when interpolating the table
+   * @return The tabulated curve, or `source` if the error target could not be met
+   *
+   * @throws NullPointerException
+   *     if `source` is null
+   * @throws IllegalArgumentException
+   *     if `maxError` is not positive
+   */
+  public static Curve forFloatInput(Curve source, double maxError) {
+    Arguments.notNull("source", source);
+    Arguments.isPositive("maxError", maxError);
+    if (source instanceof TabulatedCurve || !coversUnitInterval(source)) {
+      return source;
+    }
+
+    for (int size = MIN_FLOAT_TABLE_SIZE; size <= MAX_FLOAT_TABLE_SIZE; size *= 2) {
+      double[] table = new double[size + 1];
+      double step = 1.0 / size;
+      for (int i = 0; i < table.length; i++) {
+        table[i] = source.evaluate(i == size ? 1.0 : i * step);
+      }
+
+      double error = measureError(source, table, step);
+      if (error <= maxError) {
+        return new TabulatedCurve(source, table, 0.0, 1.0, true, error);
+      }
+    }
+    return source;
+  }
+
+  /**
+   * @return The curve that was tabulated
+   */
+  public Curve getSource() {
+    return source;
+  }
+
+  /**
+   * @return The number of entries in the table
+   */
+  public int getTableSize() {
+    return table.length;
+  }
+
+  /**
+   * @return True if arguments between table entries are linearly interpolated, or false if only
+   * exact table entries are used
+   */
+  public boolean isInterpolated() {
+    return interpolate;
+  }
+
+  /**
+   * Get the largest absolute interpolation error found when the table was built, by sampling the
+   * quarter, middle, and three-quarter points of every table interval. This is an estimate of the
+   * true maximum error, which may be larger if the source curve changes sharply between samples.
+   * Curves tabulated for integer input reproduce their source exactly and report `0`.
+   *
+   * @return The estimated maximum absolute error of the tabulated values
+   */
+  public double getEstimatedError() {
+    return estimatedError;
+  }
+
+  @Override
+  public double evaluate(double x) {
+    if (x >= tableMin && x <= tableMax) {
+      double t = (x - tableMin) * scale;
+      int i = (int) t;
+      double alpha = t - i;
+      if (interpolate) {
+        if (i == table.length - 1) {
+          return table[i];
+        }
+        return table[i] + alpha * (table[i + 1] - table[i]);
+      } else if (alpha <= EXACT_TOLERANCE) {
+        return table[i];
+      } else if (alpha >= 1.0 - EXACT_TOLERANCE) {
+        return table[i + 1];
+      }
+    }
+
+    // Not representable by the table (this also handles NaN and out of domain arguments)
+    return source.evaluate(x);
+  }
+
+  @Override
+  public double getDomainMax() {
+    return source.getDomainMax();
+  }
+
+  @Override
+  public double getDomainMin() {
+    return source.getDomainMin();
+  }
+
+  @Override
+  public Optional<Curve> inverse() {
+    return source.inverse();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof TabulatedCurve)) {
+      return false;
+    }
+    TabulatedCurve c = (TabulatedCurve) o;
+    return Objects.equals(c.source, source) && c.table.length == table.length
+        && c.interpolate == interpolate && Double.compare(c.estimatedError, estimatedError) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 17;
+    result = 31 * result + source.hashCode();
+    result = 31 * result + table.length;
+    result = 31 * result + Boolean.hashCode(interpolate);
+    result = 31 * result + Double.hashCode(estimatedError);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    if (interpolate) {
+      return String.format("%s (tabulated, %d samples, estimated error %.3g)", source,
+          table.length, estimatedError);
+    } else {
+      return String.format("%s (tabulated, %d exact samples)", source, table.length);
+    }
+  }
+
+  private static boolean coversUnitInterval(Curve curve) {
+    return curve.getDomainMin() <= 0.0 && curve.getDomainMax() >= 1.0;
+  }
+
+  private static double measureError(Curve source, double[] table, double step) {
+    double maxError = 0.0;
+    for (int i = 0; i < table.length - 1; i++) {
+      for (int q = 1; q < 4; q++) {
+        double alpha = 0.25 * q;
+        double expected = source.evaluate((i + alpha) * step);
+        double actual = table[i] + alpha * (table[i + 1] - table[i]);
+        double error = Math.abs(expected - actual);
+        if (Double.isNaN(error)) {
+          // The source is not well behaved, so no table can satisfy the bound
+          return Double.POSITIVE_INFINITY;
+        }
+        maxError = Math.max(maxError, error);
+      }
+    }
+    return maxError;
+  }
+}
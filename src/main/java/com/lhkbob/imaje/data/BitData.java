@@ -31,6 +31,8 @@
  */
 package com.lhkbob.imaje.data;
 
+import java.nio.ByteBuffer;
+
 /**
  * BitData
  * =======
@@ -72,4 +74,40 @@ public interface BitData extends DataBuffer {
    *     if `index` is less than 0 or greater than or equal to {@link #getLength()}
    */
   void setBits(long index, long value);
+
+  /**
+   * Get the bit fields of this buffer, starting at `dataIndex`, and store them into the bytes
+   * remaining in `values`. Each bit field is written as `getBitSize() / 8` consecutive bytes in the
+   * byte order of `values`, so data can be written to little endian files without converting each
+   * element. The number of remaining bytes must be a multiple of the element size. After invoking
+   * this method, the buffer's position will be at its limit.
+   *
+   * @param dataIndex
+   *     The index into this buffer for the start of the read
+   * @param values
+   *     The destination of the bit fields' bytes, in the buffer's byte order
+   * @throws IllegalArgumentException
+   *     if the remaining bytes of `values` are not a multiple of the element size
+   * @throws IndexOutOfBoundsException
+   *     if `dataIndex` and the number of bit fields in `values` would access bad elements
+   */
+  void getBits(long dataIndex, ByteBuffer values);
+
+  /**
+   * Set the bit fields of this buffer, starting at `dataIndex`, from the bytes remaining in
+   * `values`. Each bit field is read from `getBitSize() / 8` consecutive bytes that are interpreted
+   * with the byte order of `values`, so little endian file data can be copied without converting
+   * each element. The number of remaining bytes must be a multiple of the element size. After
+   * invoking this method, the buffer's position will be at its limit.
+   *
+   * @param dataIndex
+   *     The index into this buffer for the start of the write
+   * @param values
+   *     The bytes of the new bit fields, in the buffer's byte order
+   * @throws IllegalArgumentException
+   *     if the remaining bytes of `values` are not a multiple of the element size
+   * @throws IndexOutOfBoundsException
+   *     if `dataIndex` and the number of bit fields in `values` would access bad elements
+   */
+  void setBits(long dataIndex, ByteBuffer values);
 }
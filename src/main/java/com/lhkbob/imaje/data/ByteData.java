@@ -307,4 +307,16 @@ public abstract class ByteData implements BitData {
   public final void setBits(long index, long value) {
     set(index, (byte) value);
   }
+
+  @Override
+  public void getBits(long dataIndex, ByteBuffer values) {
+    // Byte order is irrelevant for single byte fields
+    get(dataIndex, values);
+  }
+
+  @Override
+  public void setBits(long dataIndex, ByteBuffer values) {
+    // Byte order is irrelevant for single byte fields
+    set(dataIndex, values);
+  }
 }
@@ -36,6 +36,7 @@ import com.lhkbob.imaje.data.large.LargeIntData;
 import com.lhkbob.imaje.data.nio.IntBufferData;
 import com.lhkbob.imaje.util.Arguments;
 
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 
 /**
@@ -308,4 +309,26 @@ public abstract class IntData implements BitData {
   public final void setBits(long index, long value) {
     set(index, (int) value);
   }
+
+  @Override
+  public void getBits(long dataIndex, ByteBuffer values) {
+    if (values.remaining() % Integer.BYTES != 0) {
+      throw new IllegalArgumentException(
+          "Remaining bytes must be a multiple of Integer.BYTES: " + values.remaining());
+    }
+    // The view swaps bytes according to values' order while this buffer's bulk get moves them
+    get(dataIndex, values.asIntBuffer());
+    values.position(values.limit());
+  }
+
+  @Override
+  public void setBits(long dataIndex, ByteBuffer values) {
+    if (values.remaining() % Integer.BYTES != 0) {
+      throw new IllegalArgumentException(
+          "Remaining bytes must be a multiple of Integer.BYTES: " + values.remaining());
+    }
+    // The view swaps bytes according to values' order while this buffer's bulk put moves them
+    set(dataIndex, values.asIntBuffer());
+    values.position(values.limit());
+  }
 }
@@ -36,6 +36,7 @@ import com.lhkbob.imaje.data.large.LargeLongData;
 import com.lhkbob.imaje.data.nio.LongBufferData;
 import com.lhkbob.imaje.util.Arguments;
 
+import java.nio.ByteBuffer;
 import java.nio.LongBuffer;
 
 /**
@@ -307,4 +308,26 @@ public abstract class LongData implements BitData {
   public final void setBits(long index, long value) {
     set(index, value);
   }
+
+  @Override
+  public void getBits(long dataIndex, ByteBuffer values) {
+    if (values.remaining() % Long.BYTES != 0) {
+      throw new IllegalArgumentException(
+          "Remaining bytes must be a multiple of Long.BYTES: " + values.remaining());
+    }
+    // The view swaps bytes according to values' order while this buffer's bulk get moves them
+    get(dataIndex, values.asLongBuffer());
+    values.position(values.limit());
+  }
+
+  @Override
+  public void setBits(long dataIndex, ByteBuffer values) {
+    if (values.remaining() % Long.BYTES != 0) {
+      throw new IllegalArgumentException(
+          "Remaining bytes must be a multiple of Long.BYTES: " + values.remaining());
+    }
+    // The view swaps bytes according to values' order while this buffer's bulk put moves them
+    set(dataIndex, values.asLongBuffer());
+    values.position(values.limit());
+  }
 }
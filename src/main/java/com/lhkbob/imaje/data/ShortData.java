@@ -36,6 +36,7 @@ import com.lhkbob.imaje.data.large.LargeShortData;
 import com.lhkbob.imaje.data.nio.ShortBufferData;
 import com.lhkbob.imaje.util.Arguments;
 
+import java.nio.ByteBuffer;
 import java.nio.ShortBuffer;
 
 /**
@@ -308,4 +309,26 @@ public abstract class ShortData implements BitData {
   public final void setBits(long index, long value) {
     set(index, (short) value);
   }
+
+  @Override
+  public void getBits(long dataIndex, ByteBuffer values) {
+    if (values.remaining() % Short.BYTES != 0) {
+      throw new IllegalArgumentException(
+          "Remaining bytes must be a multiple of Short.BYTES: " + values.remaining());
+    }
+    // The view swaps bytes according to values' order while this buffer's bulk get moves them
+    get(dataIndex, values.asShortBuffer());
+    values.position(values.limit());
+  }
+
+  @Override
+  public void setBits(long dataIndex, ByteBuffer values) {
+    if (values.remaining() % Short.BYTES != 0) {
+      throw new IllegalArgumentException(
+          "Remaining bytes must be a multiple of Short.BYTES: " + values.remaining());
+    }
+    // The view swaps bytes according to values' order while this buffer's bulk put moves them
+    set(dataIndex, values.asShortBuffer());
+    values.position(values.limit());
+  }
 }
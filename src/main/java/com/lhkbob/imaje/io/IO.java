@@ -31,19 +31,54 @@
  */
 package com.lhkbob.imaje.io;
 
+import com.lhkbob.imaje.data.ByteData;
 import com.lhkbob.imaje.data.Data;
+import com.lhkbob.imaje.data.DataBuffer;
+import com.lhkbob.imaje.data.DoubleData;
+import com.lhkbob.imaje.data.FloatData;
+import com.lhkbob.imaje.data.IntData;
+import com.lhkbob.imaje.data.LongData;
+import com.lhkbob.imaje.data.ShortData;
+import com.lhkbob.imaje.data.large.LargeByteData;
+import com.lhkbob.imaje.data.large.LargeDoubleData;
+import com.lhkbob.imaje.data.large.LargeFloatData;
+import com.lhkbob.imaje.data.large.LargeIntData;
+import com.lhkbob.imaje.data.large.LargeLongData;
+import com.lhkbob.imaje.data.large.LargeShortData;
+import com.lhkbob.imaje.data.nio.ByteBufferData;
+import com.lhkbob.imaje.data.nio.DoubleBufferData;
+import com.lhkbob.imaje.data.nio.FloatBufferData;
+import com.lhkbob.imaje.data.nio.IntBufferData;
+import com.lhkbob.imaje.data.nio.LongBufferData;
+import com.lhkbob.imaje.data.nio.ShortBufferData;
+import com.lhkbob.imaje.util.Arguments;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 /**
  *
  */
 public final class IO {
   public static final int DEFAULT_WORKBUFFER_LEN = 4096;
+  /**
+   * The largest number of bytes placed in a single memory mapping by the `map` functions. Longer
+   * regions are split into several mappings of this size that are concatenated with the {@link
+   * com.lhkbob.imaje.data.large} data buffers. It is a power of two so every primitive size
+   * divides it evenly.
+   */
+  public static final long MAX_MAPPING_BYTES = 1L << 30;
+
+  // The mapping size actually used, which tests lower to split small files into several mappings
+  static long maxMappingBytes = MAX_MAPPING_BYTES;
 
   private IO() {}
 
@@ -206,6 +241,261 @@ public final class IO {
     }
   }
 
+  /**
+   * Read `length` bytes starting at the absolute `position` of `in` into `data`, starting at
+   * `offset`. This does not use or disturb any work buffer. When `in` is a {@link FileChannel}, a
+   * positional read is used so that multiple threads can read from the channel concurrently.
+   * Otherwise the channel is locked while it is repositioned and read, so concurrent calls are
+   * still safe but are serialized.
+   *
+   * @param in
+   *     The channel to read from
+   * @param position
+   *     The absolute position within the channel of the first byte to read
+   * @param data
+   *     The array that receives the bytes
+   * @param offset
+   *     The index into `data` of the first byte that is read
+   * @param length
+   *     The number of bytes to read
+   * @return True if all bytes were read, or false if the end of the channel was reached first
+   *
+   * @throws IOException
+   *     if the channel cannot be read
+   */
+  public static boolean readAt(
+      SeekableByteChannel in, long position, byte[] data, int offset, int length) throws
+      IOException {
+    return readAt(in, position, ByteBuffer.wrap(data, offset, length));
+  }
+
+  /**
+   * Read bytes starting at the absolute `position` of `in` into the remaining bytes of `buffer`.
+   * This behaves like {@link #readAt(SeekableByteChannel, long, byte[], int, int)}, except that
+   * the bytes can be read directly into a direct or mapped buffer. The buffer's position is
+   * advanced by the number of bytes read.
+   *
+   * @param in
+   *     The channel to read from
+   * @param position
+   *     The absolute position within the channel of the first byte to read
+   * @param buffer
+   *     The buffer that receives the bytes
+   * @return True if the buffer was filled, or false if the end of the channel was reached first
+   *
+   * @throws IOException
+   *     if the channel cannot be read
+   */
+  public static boolean readAt(SeekableByteChannel in, long position, ByteBuffer buffer) throws
+      IOException {
+    int start = buffer.position();
+    if (in instanceof FileChannel) {
+      FileChannel file = (FileChannel) in;
+      while (buffer.hasRemaining()) {
+        int read = file.read(buffer, position + buffer.position() - start);
+        if (read < 0) {
+          return false;
+        }
+      }
+    } else {
+      synchronized (in) {
+        in.position(position);
+        while (buffer.hasRemaining()) {
+          if (in.read(buffer) < 0) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Memory map `length` bytes of `in` starting at the absolute `position` and wrap them as a
+   * ByteData without copying. The data buffer is read-only: its values are the file's pages as
+   * cached by the operating system, which are loaded on first access and shared with any other
+   * process mapping the same file. Setting values throws a {@link
+   * java.nio.ReadOnlyBufferException}. The channel may be closed once the data is created, but the
+   * file must not be truncated while the data is in use.
+   *
+   * @param in
+   *     The file to map
+   * @param position
+   *     The absolute position of the first mapped byte
+   * @param length
+   *     The number of bytes to map
+   * @return Read-only data backed by the file
+   *
+   * @throws IOException
+   *     if the region extends past the end of the file or the file cannot be mapped
+   * @throws IllegalArgumentException
+   *     if `position` or `length` is negative
+   */
+  public static ByteData mapByteData(FileChannel in, long position, long length) throws
+      IOException {
+    return map(in, position, length, Byte.BYTES, ByteOrder.BIG_ENDIAN, ByteBufferData::new,
+        ByteData[]::new, LargeByteData::new);
+  }
+
+  /**
+   * Memory map `length` short values of `in` starting at the absolute `position` and wrap them as
+   * ShortData without copying. The bytes are interpreted with the given `order`, which is applied
+   * as values are accessed so the file's bytes are never rewritten. See {@link
+   * #mapByteData(FileChannel, long, long)} for the behavior of the mapped data.
+   *
+   * @param in
+   *     The file to map
+   * @param position
+   *     The absolute position of the first mapped byte
+   * @param length
+   *     The number of shorts to map
+   * @param order
+   *     The byte order of the values in the file
+   * @return Read-only data backed by the file
+   *
+   * @throws IOException
+   *     if the region extends past the end of the file or the file cannot be mapped
+   * @throws IllegalArgumentException
+   *     if `position` or `length` is negative
+   */
+  public static ShortData mapShortData(
+      FileChannel in, long position, long length, ByteOrder order) throws IOException {
+    return map(in, position, length, Short.BYTES, order,
+        b -> new ShortBufferData(b.asShortBuffer()), ShortData[]::new, LargeShortData::new);
+  }
+
+  /**
+   * Memory map `length` int values of `in` starting at the absolute `position` and wrap them as
+   * IntData without copying. See {@link #mapShortData(FileChannel, long, long, ByteOrder)}.
+   *
+   * @param in
+   *     The file to map
+   * @param position
+   *     The absolute position of the first mapped byte
+   * @param length
+   *     The number of ints to map
+   * @param order
+   *     The byte order of the values in the file
+   * @return Read-only data backed by the file
+   *
+   * @throws IOException
+   *     if the region extends past the end of the file or the file cannot be mapped
+   * @throws IllegalArgumentException
+   *     if `position` or `length` is negative
+   */
+  public static IntData mapIntData(
+      FileChannel in, long position, long length, ByteOrder order) throws IOException {
+    return map(in, position, length, Integer.BYTES, order,
+        b -> new IntBufferData(b.asIntBuffer()), IntData[]::new, LargeIntData::new);
+  }
+
+  /**
+   * Memory map `length` long values of `in` starting at the absolute `position` and wrap them as
+   * LongData without copying. See {@link #mapShortData(FileChannel, long, long, ByteOrder)}.
+   *
+   * @param in
+   *     The file to map
+   * @param position
+   *     The absolute position of the first mapped byte
+   * @param length
+   *     The number of longs to map
+   * @param order
+   *     The byte order of the values in the file
+   * @return Read-only data backed by the file
+   *
+   * @throws IOException
+   *     if the region extends past the end of the file or the file cannot be mapped
+   * @throws IllegalArgumentException
+   *     if `position` or `length` is negative
+   */
+  public static LongData mapLongData(
+      FileChannel in, long position, long length, ByteOrder order) throws IOException {
+    return map(in, position, length, Long.BYTES, order,
+        b -> new LongBufferData(b.asLongBuffer()), LongData[]::new, LargeLongData::new);
+  }
+
+  /**
+   * Memory map `length` float values of `in` starting at the absolute `position` and wrap them as
+   * FloatData without copying. See {@link #mapShortData(FileChannel, long, long, ByteOrder)}.
+   *
+   * @param in
+   *     The file to map
+   * @param position
+   *     The absolute position of the first mapped byte
+   * @param length
+   *     The number of floats to map
+   * @param order
+   *     The byte order of the values in the file
+   * @return Read-only data backed by the file
+   *
+   * @throws IOException
+   *     if the region extends past the end of the file or the file cannot be mapped
+   * @throws IllegalArgumentException
+   *     if `position` or `length` is negative
+   */
+  public static FloatData mapFloatData(
+      FileChannel in, long position, long length, ByteOrder order) throws IOException {
+    return map(in, position, length, Float.BYTES, order,
+        b -> new FloatBufferData(b.asFloatBuffer()), FloatData[]::new, LargeFloatData::new);
+  }
+
+  /**
+   * Memory map `length` double values of `in` starting at the absolute `position` and wrap them as
+   * DoubleData without copying. See {@link #mapShortData(FileChannel, long, long, ByteOrder)}.
+   *
+   * @param in
+   *     The file to map
+   * @param position
+   *     The absolute position of the first mapped byte
+   * @param length
+   *     The number of doubles to map
+   * @param order
+   *     The byte order of the values in the file
+   * @return Read-only data backed by the file
+   *
+   * @throws IOException
+   *     if the region extends past the end of the file or the file cannot be mapped
+   * @throws IllegalArgumentException
+   *     if `position` or `length` is negative
+   */
+  public static DoubleData mapDoubleData(
+      FileChannel in, long position, long length, ByteOrder order) throws IOException {
+    return map(in, position, length, Double.BYTES, order,
+        b -> new DoubleBufferData(b.asDoubleBuffer()), DoubleData[]::new, LargeDoubleData::new);
+  }
+
+  private static <T extends DataBuffer> T map(
+      FileChannel in, long position, long length, int elementBytes, ByteOrder order,
+      Function<ByteBuffer, T> wrap, IntFunction<T[]> newArray, Function<T[], T> concatenate) throws
+      IOException {
+    Arguments.notNull("in", in);
+    Arguments.notNull("order", order);
+    Arguments.isGreaterThanOrEqualToZero("position", position);
+    Arguments.isGreaterThanOrEqualToZero("length", length);
+
+    long bytes = Math.multiplyExact(length, elementBytes);
+    if (position + bytes > in.size()) {
+      throw new EOFException(
+          "Mapped region ends at " + (position + bytes) + " but file has only " + in.size()
+              + " bytes");
+    }
+
+    long perMapping = maxMappingBytes / elementBytes;
+    if (length <= perMapping) {
+      return wrap.apply(in.map(FileChannel.MapMode.READ_ONLY, position, bytes).order(order));
+    }
+
+    // Split into equally sized mappings (except the last) as required by the large data buffers
+    T[] sources = newArray.apply(Math.toIntExact((length + perMapping - 1) / perMapping));
+    for (int i = 0; i < sources.length; i++) {
+      long start = i * perMapping;
+      long count = Math.min(perMapping, length - start);
+      sources[i] = wrap.apply(in.map(FileChannel.MapMode.READ_ONLY, position + start * elementBytes,
+          count * elementBytes).order(order));
+    }
+    return concatenate.apply(sources);
+  }
+
   public static ByteBuffer readFully(SeekableByteChannel channel) throws IOException {
     int size = Math.toIntExact(channel.size() - channel.position());
     ByteBuffer buffer = Data.getBufferFactory().newByteBuffer(size);
@@ -0,0 +1,319 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io;
+
+import com.lhkbob.imaje.Pixel;
+import com.lhkbob.imaje.Raster;
+import com.lhkbob.imaje.color.Color;
+import com.lhkbob.imaje.layout.ArrayBackedPixel;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.util.Arguments;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * ScanlineImageStream
+ * ===================
+ *
+ * ImageStream that decodes a 2D image one scanline at a time into a single reusable row. Only the
+ * current scanline is held in memory, so statistics or transcoding of arbitrarily large images can
+ * be computed with a constant heap. The stream reads from a channel in file order and can only be
+ * consumed once, either scanline by scanline with {@link #nextScanline()} and {@link
+ * #getScanline()}, or pixel by pixel with {@link #iterator()}.
+ *
+ * Pixels and the scanline raster are only valid until the next scanline is decoded. Pixels report
+ * their coordinates within the full image, but they cannot be modified since changes would be lost
+ * as soon as the next scanline is read.
+ *
+ * Subclasses implement {@link #readScanline()} to decode the next scanline of the file into the
+ * pixel array given to the constructor.
+ *
+ * @author Michael Ludwig
+ */
+public abstract class ScanlineImageStream<T extends Color> implements ImageStream<T> {
+  private final Class<T> colorType;
+  private final PixelArray scanline;
+  private final Raster<T> scanlineRaster;
+  private final int height;
+  private final boolean topToBottom;
+
+  private int scanlinesRead;
+  private int currentY;
+  private boolean iterated;
+
+  /**
+   * Create a new stream for an image of the given color type and height. `scanline` is the
+   * reusable row that {@link #readScanline()} decodes into, and its width is the width of the
+   * image. If `topToBottom` is true, the first scanline in the file is the top row of the image
+   * (the highest `y` in imaJe's coordinate system), otherwise it is the bottom row.
+   *
+   * @param colorType
+   *     The color type of the image
+   * @param scanline
+   *     The single row that holds the current scanline
+   * @param height
+   *     The number of scanlines in the image
+   * @param topToBottom
+   *     True if scanlines are stored from the top of the image down
+   * @throws NullPointerException
+   *     if `colorType` or `scanline` are null
+   * @throws IllegalArgumentException
+   *     if `scanline` is not 1 pixel high or `height` is not positive
+   */
+  protected ScanlineImageStream(
+      Class<T> colorType, PixelArray scanline, int height, boolean topToBottom) {
+    Arguments.notNull("colorType", colorType);
+    Arguments.notNull("scanline", scanline);
+    Arguments.equals("scanline height", 1, scanline.getHeight());
+    Arguments.isPositive("height", height);
+
+    this.colorType = colorType;
+    this.scanline = scanline;
+    this.height = height;
+    this.topToBottom = topToBottom;
+    scanlineRaster = new Raster<>(colorType, scanline);
+    scanlinesRead = 0;
+    currentY = -1;
+    iterated = false;
+  }
+
+  /**
+   * Decode the next scanline in the file into the pixel array provided to the constructor.
+   * This is invoked once for each scanline, in file order.
+   *
+   * @throws IOException
+   *     if the scanline cannot be read or is invalid
+   */
+  protected abstract void readScanline() throws IOException;
+
+  /**
+   * @return The color type of the streamed image
+   */
+  public Class<T> getColorType() {
+    return colorType;
+  }
+
+  /**
+   * @return True if there are scanlines that have not been decoded yet
+   */
+  public boolean hasNextScanline() {
+    return scanlinesRead < height;
+  }
+
+  /**
+   * Decode the next scanline into the raster returned by {@link #getScanline()}, replacing the
+   * previous scanline's pixels.
+   *
+   * @return The `y` coordinate of the decoded scanline in the full image
+   *
+   * @throws IOException
+   *     if the scanline cannot be read or is invalid
+   * @throws NoSuchElementException
+   *     if every scanline has already been decoded
+   */
+  public int nextScanline() throws IOException {
+    if (!hasNextScanline()) {
+      throw new NoSuchElementException("All scanlines have been read");
+    }
+
+    readScanline();
+    currentY = topToBottom ? height - scanlinesRead - 1 : scanlinesRead;
+    scanlinesRead++;
+    return currentY;
+  }
+
+  /**
+   * Get the raster holding the most recently decoded scanline. It is the same instance for every
+   * scanline, is one pixel high, and has the width of the image.
+   *
+   * @return The current scanline
+   */
+  public Raster<T> getScanline() {
+    return scanlineRaster;
+  }
+
+  /**
+   * @return The `y` coordinate in the full image of the current scanline, or -1 if no scanline
+   * has been decoded yet
+   */
+  public int getScanlineY() {
+    return currentY;
+  }
+
+  @Override
+  public int getWidth() {
+    return scanline.getWidth();
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public int getMipmapCount() {
+    return 1;
+  }
+
+  @Override
+  public int getLayerCount() {
+    return 1;
+  }
+
+  /**
+   * Iterate over the pixels of the scanlines that have not been decoded yet. Scanlines are
+   * decoded as the iterator reaches them, and any IOException is rethrown as an {@link
+   * UncheckedIOException}. The same Pixel instance is returned by every call to `next()`.
+   *
+   * @return An iterator over the remaining pixels
+   *
+   * @throws IllegalStateException
+   *     if an iterator was already created for this stream
+   */
+  @Override
+  public Iterator<Pixel<T>> iterator() {
+    if (iterated) {
+      throw new IllegalStateException("ImageStream can only be iterated once");
+    }
+    iterated = true;
+    return new ScanlineIterator();
+  }
+
+  private class ScanlineIterator implements Iterator<Pixel<T>> {
+    private final ScanlinePixel pixel;
+    private int x;
+
+    ScanlineIterator() {
+      pixel = new ScanlinePixel();
+      // Start at the end of a row so that the first call to next() decodes a scanline
+      x = getWidth();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return x < getWidth() || hasNextScanline();
+    }
+
+    @Override
+    public Pixel<T> next() {
+      if (x >= getWidth()) {
+        try {
+          nextScanline();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        x = 0;
+      }
+
+      pixel.row.refreshAt(x, 0);
+      x++;
+      return pixel;
+    }
+  }
+
+  private class ScanlinePixel implements Pixel<T> {
+    private final ArrayBackedPixel<T> row;
+
+    ScanlinePixel() {
+      row = new ArrayBackedPixel<>(colorType, scanline, 0, 0);
+    }
+
+    @Override
+    public T getColor() {
+      return row.getColor();
+    }
+
+    @Override
+    public double getAlpha() {
+      return row.getAlpha();
+    }
+
+    @Override
+    public int getLayerIndex() {
+      return 0;
+    }
+
+    @Override
+    public int getMipmapLevel() {
+      return 0;
+    }
+
+    @Override
+    public int getDimensionality() {
+      return 2;
+    }
+
+    @Override
+    public int getCoordinate(int dim) {
+      if (dim == 0) {
+        return row.getX();
+      } else if (dim == 1) {
+        return currentY;
+      } else {
+        return 0;
+      }
+    }
+
+    @Override
+    public void setColor(T value) {
+      throw new UnsupportedOperationException("Streamed pixels are read-only");
+    }
+
+    @Override
+    public void setColor(T value, double a) {
+      throw new UnsupportedOperationException("Streamed pixels are read-only");
+    }
+
+    @Override
+    public void setAlpha(double a) {
+      throw new UnsupportedOperationException("Streamed pixels are read-only");
+    }
+
+    @Override
+    public void persist() {
+      throw new UnsupportedOperationException("Streamed pixels are read-only");
+    }
+
+    @Override
+    public void persist(double alpha) {
+      throw new UnsupportedOperationException("Streamed pixels are read-only");
+    }
+
+    @Override
+    public void refresh() {
+      row.refresh();
+    }
+  }
+}
@@ -44,7 +44,7 @@ import com.lhkbob.imaje.color.RGB;
 import com.lhkbob.imaje.color.SRGB;
 import com.lhkbob.imaje.color.XYZ;
 import com.lhkbob.imaje.color.transform.Transform;
-import com.lhkbob.imaje.color.transform.Transforms;
+import com.lhkbob.imaje.color.transform.TransformCache;
 import com.lhkbob.imaje.data.BitData;
 import com.lhkbob.imaje.data.ByteData;
 import com.lhkbob.imaje.data.Data;
@@ -63,8 +63,10 @@ import com.lhkbob.imaje.layout.TileInterleaveLayout;
 import com.lhkbob.imaje.layout.InvertedLayout;
 import com.lhkbob.imaje.layout.PackedPixelArray;
 import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.layout.PixelArrays;
 import com.lhkbob.imaje.layout.PixelFormat;
 import com.lhkbob.imaje.layout.PixelFormatBuilder;
+import com.lhkbob.imaje.layout.RootPixelArray;
 import com.lhkbob.imaje.layout.ScanlineLayout;
 import com.lhkbob.imaje.layout.UnpackedPixelArray;
 import com.lhkbob.imaje.util.Functions;
@@ -81,6 +83,7 @@ import java.awt.image.DataBufferInt;
 import java.awt.image.DataBufferShort;
 import java.awt.image.DataBufferUShort;
 import java.awt.image.DirectColorModel;
+import java.awt.image.SampleModel;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 import java.util.ArrayList;
@@ -88,6 +91,8 @@ import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  *
@@ -102,6 +107,27 @@ public final class BufferedImageConverter {
   private static final PixelFormat FORMAT_USHORT_555_RGB = new PixelFormatBuilder()
       .channels(PixelFormat.SKIP_CHANNEL, 0, 1, 2).bits(1, 5, 5, 5).types(PixelFormat.Type.UNORM)
       .build();
+  private static final PixelFormat FORMAT_USHORT_565_RGB = new PixelFormatBuilder()
+      .channels(0, 1, 2).bits(5, 6, 5).types(PixelFormat.Type.UNORM).build();
+  private static final PixelFormat FORMAT_3BYTE_BGR = new PixelFormatBuilder()
+      .channels(2, 1, 0).bits(8).types(PixelFormat.Type.UNORM).build();
+  private static final PixelFormat FORMAT_4BYTE_ABGR = new PixelFormatBuilder()
+      .channels(PixelFormat.ALPHA_CHANNEL, 2, 1, 0).bits(8).types(PixelFormat.Type.UNORM).build();
+  private static final PixelFormat FORMAT_BYTE_GRAY = new PixelFormatBuilder()
+      .channels(0).bits(8).types(PixelFormat.Type.UNORM).build();
+  private static final PixelFormat FORMAT_USHORT_GRAY = new PixelFormatBuilder()
+      .channels(0).bits(16).types(PixelFormat.Type.UNORM).build();
+
+  // The BufferedImage types that have an exact PixelFormat, and that can be created from imaje data
+  // by copying it; the premultiplied types are only converted from
+  private static final int[] STANDARD_TYPES = new int[] {
+      BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+      BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+      BufferedImage.TYPE_USHORT_565_RGB, BufferedImage.TYPE_USHORT_555_RGB,
+      BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY
+  };
+  // Large images are copied in parallel by groups of rows holding about this many pixels
+  private static final int PIXELS_PER_TASK = 1 << 16;
 
   private BufferedImageConverter() {}
 
@@ -110,6 +136,11 @@ public final class BufferedImageConverter {
   }
 
   private static <T extends Color> BufferedImage convertViaSRGB(Raster<T> image) {
+    BufferedImage fast = copyToStandardType(image);
+    if (fast != null) {
+      return fast;
+    }
+
     int type;
     if (Objects.equals(image.getColorType(), Luminance.class)) {
       if (image.getPixelArray().getFormat().getColorChannelBitSize(0) > 8) {
@@ -124,13 +155,17 @@ public final class BufferedImageConverter {
     }
 
     BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), type);
-    Transform<T, SRGB> toSRGB = Transforms.newTransform(image.getColorType(), SRGB.class);
+    Transform<?, ?, ?, ?> toSRGB = TransformCache.getDefault().getPixelTransform(
+        Color.newInstance(image.getColorType()).getColorSpace(),
+        Color.newInstance(SRGB.class).getColorSpace(),
+        PixelArrays.getSourceFormat(image.getPixelArray()), FORMAT_INT_RGB);
+    double[] output = new double[3];
     for (Pixel<T> p : image) {
-      SRGB output = toSRGB.apply(p.getColor());
+      toSRGB.applyUnchecked(p.getColor().getChannels(), output);
       byte a = (byte) Data.UNORM8.toBits(p.getAlpha());
-      byte r = (byte) Data.UNORM8.toBits(Functions.clamp(output.r(), 0.0, 1.0));
-      byte g = (byte) Data.UNORM8.toBits(Functions.clamp(output.g(), 0.0, 1.0));
-      byte b = (byte) Data.UNORM8.toBits(Functions.clamp(output.b(), 0.0, 1.0));
+      byte r = (byte) Data.UNORM8.toBits(Functions.clamp(output[0], 0.0, 1.0));
+      byte g = (byte) Data.UNORM8.toBits(Functions.clamp(output[1], 0.0, 1.0));
+      byte b = (byte) Data.UNORM8.toBits(Functions.clamp(output[2], 0.0, 1.0));
       int rgb = ((0xff & a) << 24) | ((0xff & r) << 16) | ((0xff & g) << 8) | (0xff & b);
 
       // Flip the Y coordinate of the pixel when storing
@@ -182,22 +217,34 @@ public final class BufferedImageConverter {
     ImageBuilder.OfRaster<Luminance> builder = Images.newRaster(Luminance.class)
         .width(image.getWidth()).height(image.getHeight()).newData(factory);
     // Builder is already configured for r(), which is the only option we have really
-    configureBuilderType(builder, image.getSampleModel().getDataType());
-    if (image.getColorModel().hasAlpha()) {
-      builder.withAlpha();
+    PixelFormat standard = getStandardFormat(image.getType());
+    if (standard != null) {
+      builder.format(standard);
+    } else {
+      configureBuilderType(builder, image.getSampleModel().getDataType());
+      if (image.getColorModel().hasAlpha()) {
+        builder.withAlpha();
+      }
     }
 
-    SRGB temp = new SRGB();
-    Transform<SRGB, Luminance> toLuminance = Transforms
-        .newTransform(SRGB.class, Luminance.class);
     Raster<Luminance> copy = builder.build();
+    if (copyFromStandardType(image, copy.getPixelArray())) {
+      // The gray values were copied directly without round-tripping through SRGB
+      return copy;
+    }
+
+    // The packed values are 8-bit sRGB, so decoding them is an exact table lookup
+    SRGB temp = new SRGB();
+    Transform<?, ?, ?, ?> toLuminance = TransformCache.getDefault().getPixelTransform(
+        temp.getColorSpace(), Color.newInstance(Luminance.class).getColorSpace(), FORMAT_INT_RGB,
+        PixelArrays.getSourceFormat(copy.getPixelArray()));
 
     boolean alphaPremult = image.isAlphaPremultiplied() && image.getColorModel().hasAlpha();
     for (Pixel<Luminance> p : copy) {
       // Look up flipped Y coordinate
       int v = image.getRGB(p.getX(), image.getHeight() - p.getY() - 1);
       double a = packedToSRGB(v, alphaPremult, temp);
-      toLuminance.apply(temp, p.getColor());
+      toLuminance.applyUnchecked(temp.getChannels(), p.getColor().getChannels());
       p.persist(a);
     }
 
@@ -208,42 +255,27 @@ public final class BufferedImageConverter {
     ImageBuilder.OfRaster<SRGB> builder = Images.newRaster(SRGB.class)
         .width(image.getWidth()).height(image.getHeight()).newData(factory);
 
-    // Try and match channel arrangement and bit depths based on known types
-    switch (image.getType()) {
-    case BufferedImage.TYPE_3BYTE_BGR:
-      builder.bgr().unorm8();
-      break;
-    case BufferedImage.TYPE_INT_BGR:
-      builder.packedFormat(FORMAT_INT_BGR);
-      break;
-    case BufferedImage.TYPE_4BYTE_ABGR_PRE:
-    case BufferedImage.TYPE_4BYTE_ABGR:
-      builder.abgr().unorm8();
-      break;
-    case BufferedImage.TYPE_INT_ARGB:
-    case BufferedImage.TYPE_INT_ARGB_PRE:
-      builder.packedFormat(FORMAT_INT_ARGB);
-      break;
-    case BufferedImage.TYPE_INT_RGB:
-      builder.packedFormat(FORMAT_INT_RGB);
-      break;
-    case BufferedImage.TYPE_USHORT_555_RGB:
-      builder.packedFormat(FORMAT_USHORT_555_RGB);
-      break;
-    case BufferedImage.TYPE_USHORT_565_RGB:
-      builder.packedR5G6B5();
-      break;
-    default:
+    // Try and match channel arrangement and bit depths based on known types, the standard formats
+    // already include any alpha channel
+    PixelFormat standard = getStandardFormat(image.getType());
+    if (standard != null) {
+      builder.format(standard, isPackedType(image.getType()));
+    } else if (isPaletteType(image.getType())) {
+      // AWT looks up the palette a row at a time, producing packed ARGB values
+      builder.packedFormat(image.getColorModel().hasAlpha() ? FORMAT_INT_ARGB : FORMAT_INT_RGB);
+    } else {
       configureBuilderType(builder, image.getSampleModel().getDataType());
-      break;
+      if (image.getColorModel().hasAlpha()) {
+        builder.withAlpha();
+      }
     }
 
-    if (image.getColorModel().hasAlpha()) {
-      builder.withAlpha();
+    Raster<SRGB> copy = builder.build();
+    if (copyFromStandardType(image, copy.getPixelArray())) {
+      return copy;
     }
 
     boolean alphaPremult = image.isAlphaPremultiplied() && image.getColorModel().hasAlpha();
-    Raster<SRGB> copy = builder.build();
     for (Pixel<SRGB> p : copy) {
       // Look up flipped Y coordinate
       int v = image.getRGB(p.getX(), image.getHeight() - p.getY() - 1);
@@ -254,6 +286,288 @@ public final class BufferedImageConverter {
     return copy;
   }
 
+  static PixelFormat getStandardFormat(int type) {
+    switch (type) {
+    case BufferedImage.TYPE_INT_RGB:
+      return FORMAT_INT_RGB;
+    case BufferedImage.TYPE_INT_ARGB:
+    case BufferedImage.TYPE_INT_ARGB_PRE:
+      return FORMAT_INT_ARGB;
+    case BufferedImage.TYPE_INT_BGR:
+      return FORMAT_INT_BGR;
+    case BufferedImage.TYPE_3BYTE_BGR:
+      return FORMAT_3BYTE_BGR;
+    case BufferedImage.TYPE_4BYTE_ABGR:
+    case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+      return FORMAT_4BYTE_ABGR;
+    case BufferedImage.TYPE_USHORT_565_RGB:
+      return FORMAT_USHORT_565_RGB;
+    case BufferedImage.TYPE_USHORT_555_RGB:
+      return FORMAT_USHORT_555_RGB;
+    case BufferedImage.TYPE_BYTE_GRAY:
+      return FORMAT_BYTE_GRAY;
+    case BufferedImage.TYPE_USHORT_GRAY:
+      return FORMAT_USHORT_GRAY;
+    default:
+      // Custom and palette based types have no fixed format
+      return null;
+    }
+  }
+
+  static boolean isPackedType(int type) {
+    switch (type) {
+    case BufferedImage.TYPE_INT_RGB:
+    case BufferedImage.TYPE_INT_ARGB:
+    case BufferedImage.TYPE_INT_ARGB_PRE:
+    case BufferedImage.TYPE_INT_BGR:
+    case BufferedImage.TYPE_USHORT_565_RGB:
+    case BufferedImage.TYPE_USHORT_555_RGB:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private static boolean isPaletteType(int type) {
+    return type == BufferedImage.TYPE_BYTE_BINARY || type == BufferedImage.TYPE_BYTE_INDEXED;
+  }
+
+  private static BufferedImage copyToStandardType(Raster<?> image) {
+    boolean isGray = Objects.equals(image.getColorType(), Luminance.class);
+    if (!isGray && !Objects.equals(image.getColorType(), SRGB.class)) {
+      return null;
+    }
+    return copyToStandardType(image.getPixelArray(), isGray);
+  }
+
+  static BufferedImage copyToStandardType(PixelArray array, boolean isGray) {
+    for (int type : STANDARD_TYPES) {
+      boolean isGrayType = type == BufferedImage.TYPE_BYTE_GRAY
+          || type == BufferedImage.TYPE_USHORT_GRAY;
+      BitData data = getCopyableData(array, getStandardFormat(type), isPackedType(type));
+      if (isGray != isGrayType || data == null) {
+        continue;
+      }
+
+      RootPixelArray root = (RootPixelArray) array;
+      BufferedImage copy = new BufferedImage(array.getWidth(), array.getHeight(), type);
+      WritableRaster raster = copy.getRaster();
+      java.awt.image.DataBuffer target = raster.getDataBuffer();
+      int length = array.getWidth() * raster.getNumDataElements();
+
+      if (target instanceof DataBufferInt && data instanceof IntData) {
+        int[] dst = ((DataBufferInt) target).getData();
+        IntData src = (IntData) data;
+        forEachRowGroup(array.getWidth(), array.getHeight(), (first, last) -> {
+          for (int y = first; y < last; y++) {
+            src.get(getRowOffset(root, y), dst, getAWTOffset(raster, y), length);
+          }
+        });
+      } else if (target instanceof DataBufferUShort && data instanceof ShortData) {
+        short[] dst = ((DataBufferUShort) target).getData();
+        ShortData src = (ShortData) data;
+        forEachRowGroup(array.getWidth(), array.getHeight(), (first, last) -> {
+          for (int y = first; y < last; y++) {
+            src.get(getRowOffset(root, y), dst, getAWTOffset(raster, y), length);
+          }
+        });
+      } else if (target instanceof DataBufferByte && data instanceof ByteData) {
+        byte[] dst = ((DataBufferByte) target).getData();
+        ByteData src = (ByteData) data;
+        forEachRowGroup(array.getWidth(), array.getHeight(), (first, last) -> {
+          for (int y = first; y < last; y++) {
+            src.get(getRowOffset(root, y), dst, getAWTOffset(raster, y), length);
+          }
+        });
+      } else {
+        // The data type does not match the format, so fall back to a pixel by pixel conversion
+        return null;
+      }
+      return copy;
+    }
+    return null;
+  }
+
+  static boolean copyFromStandardType(BufferedImage image, PixelArray target) {
+    int type = image.getType();
+    BitData data;
+    if (isPaletteType(type)) {
+      data = getCopyableData(target,
+          image.getColorModel().hasAlpha() ? FORMAT_INT_ARGB : FORMAT_INT_RGB, true);
+    } else {
+      data = getCopyableData(target, getStandardFormat(type), isPackedType(type));
+    }
+    if (data == null) {
+      return false;
+    }
+
+    RootPixelArray root = (RootPixelArray) target;
+    WritableRaster raster = image.getRaster();
+    java.awt.image.DataBuffer source = raster.getDataBuffer();
+    int width = image.getWidth();
+    int length = width * raster.getNumDataElements();
+    boolean premultiplied = type == BufferedImage.TYPE_INT_ARGB_PRE
+        || type == BufferedImage.TYPE_4BYTE_ABGR_PRE;
+
+    if (isPaletteType(type) && data instanceof IntData) {
+      // Let the color model expand the palette indices a row at a time
+      IntData dst = (IntData) data;
+      forEachRowGroup(width, image.getHeight(), (first, last) -> {
+        int[] row = new int[width];
+        for (int y = first; y < last; y++) {
+          image.getRGB(0, y, width, 1, row, 0, width);
+          dst.set(getRowOffset(root, y), row, 0, width);
+        }
+      });
+    } else if (source instanceof DataBufferInt && data instanceof IntData) {
+      int[] src = ((DataBufferInt) source).getData();
+      IntData dst = (IntData) data;
+      forEachRowGroup(width, image.getHeight(), (first, last) -> {
+        int[] row = premultiplied ? new int[length] : null;
+        for (int y = first; y < last; y++) {
+          if (premultiplied) {
+            System.arraycopy(src, getAWTOffset(raster, y), row, 0, length);
+            unpremultiplyARGB(row);
+            dst.set(getRowOffset(root, y), row, 0, length);
+          } else {
+            dst.set(getRowOffset(root, y), src, getAWTOffset(raster, y), length);
+          }
+        }
+      });
+    } else if (source instanceof DataBufferUShort && data instanceof ShortData) {
+      short[] src = ((DataBufferUShort) source).getData();
+      ShortData dst = (ShortData) data;
+      forEachRowGroup(width, image.getHeight(), (first, last) -> {
+        for (int y = first; y < last; y++) {
+          dst.set(getRowOffset(root, y), src, getAWTOffset(raster, y), length);
+        }
+      });
+    } else if (source instanceof DataBufferByte && data instanceof ByteData) {
+      byte[] src = ((DataBufferByte) source).getData();
+      ByteData dst = (ByteData) data;
+      forEachRowGroup(width, image.getHeight(), (first, last) -> {
+        byte[] row = premultiplied ? new byte[length] : null;
+        for (int y = first; y < last; y++) {
+          if (premultiplied) {
+            System.arraycopy(src, getAWTOffset(raster, y), row, 0, length);
+            unpremultiplyABGR(row);
+            dst.set(getRowOffset(root, y), row, 0, length);
+          } else {
+            dst.set(getRowOffset(root, y), src, getAWTOffset(raster, y), length);
+          }
+        }
+      });
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  private static BitData getCopyableData(PixelArray array, PixelFormat format, boolean packed) {
+    // Rows can only be copied as-is if the array stores exactly the format with the pixels of each
+    // row in consecutive elements
+    if (format == null || !(array instanceof RootPixelArray)) {
+      return null;
+    }
+    RootPixelArray root = (RootPixelArray) array;
+    if (!format.equals(root.getFormat()) || (root instanceof PackedPixelArray) != packed
+        || !root.getLayout().isGPUCompatible()) {
+      return null;
+    }
+
+    DataBuffer data = root.getData(0);
+    if (data instanceof NumericData) {
+      return ((NumericData<?>) data).asBitData();
+    } else {
+      return (BitData) data;
+    }
+  }
+
+  private static long getRowOffset(RootPixelArray array, int awtRow) {
+    // BufferedImage rows go from top to bottom, so flip the Y coordinate
+    return array.getLayout().getBandOffset(0, array.getHeight() - awtRow - 1, 0);
+  }
+
+  private static int getAWTOffset(WritableRaster raster, int row) {
+    // Account for sub-images that share a larger data buffer
+    SampleModel model = raster.getSampleModel();
+    int x = raster.getMinX() - raster.getSampleModelTranslateX();
+    int y = raster.getMinY() + row - raster.getSampleModelTranslateY();
+    int offset;
+    if (model instanceof SinglePixelPackedSampleModel) {
+      offset = ((SinglePixelPackedSampleModel) model).getOffset(x, y);
+    } else {
+      // getOffset() includes the first band's offset, but rows are copied from the pixel's start
+      ComponentSampleModel component = (ComponentSampleModel) model;
+      offset = y * component.getScanlineStride() + x * component.getPixelStride();
+    }
+    return raster.getDataBuffer().getOffset() + offset;
+  }
+
+  private static void unpremultiplyARGB(int[] row) {
+    for (int i = 0; i < row.length; i++) {
+      int a = row[i] >>> 24;
+      if (a != 0xff) {
+        row[i] = (a << 24) | (unpremultiply(row[i] >> 16, a) << 16)
+            | (unpremultiply(row[i] >> 8, a) << 8) | unpremultiply(row[i], a);
+      }
+    }
+  }
+
+  private static void unpremultiplyABGR(byte[] row) {
+    for (int i = 0; i < row.length; i += 4) {
+      int a = 0xff & row[i];
+      if (a != 0xff) {
+        for (int c = i + 1; c < i + 4; c++) {
+          row[c] = (byte) unpremultiply(row[c], a);
+        }
+      }
+    }
+  }
+
+  private static int unpremultiply(int value, int alpha) {
+    // Round to the nearest unpremultiplied value, and clamp since AWT does not enforce that the
+    // premultiplied values are less than alpha
+    if (alpha == 0) {
+      return 0;
+    }
+    return Math.min(0xff, ((0xff & value) * 0xff + alpha / 2) / alpha);
+  }
+
+  private static void forEachRowGroup(int width, int height, RowGroupTask task) {
+    int rowsPerTask = Math.max(1, PIXELS_PER_TASK / width);
+    if (rowsPerTask >= height) {
+      task.run(0, height);
+      return;
+    }
+
+    // Each task copies a disjoint group of rows
+    List<CompletableFuture<Void>> tasks = new ArrayList<>();
+    for (int y = 0; y < height; y += rowsPerTask) {
+      int first = y;
+      int last = Math.min(height, y + rowsPerTask);
+      tasks.add(CompletableFuture.runAsync(() -> task.run(first, last)));
+    }
+
+    try {
+      // allOf() completes only after every task has finished, even when one of them fails
+      CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  @FunctionalInterface
+  private interface RowGroupTask {
+    // Process the BufferedImage rows from first, inclusive, to last, exclusive
+    void run(int first, int last);
+  }
+
   public static Raster<?> convert(BufferedImage image) {
     return convert(image, Data.getDefaultDataFactory());
   }
@@ -32,7 +32,6 @@
 package com.lhkbob.imaje.io.dds;
 
 import com.lhkbob.imaje.data.Bytes;
-import com.lhkbob.imaje.data.Data;
 import com.lhkbob.imaje.io.IO;
 import com.lhkbob.imaje.io.InvalidImageException;
 import com.lhkbob.imaje.util.Arguments;
@@ -40,6 +39,7 @@ import com.lhkbob.imaje.util.Arguments;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * // Stores a DDS header (equivalent for DX9 and DX10, DX10 may have non-null DX10Header, too)
@@ -177,7 +177,7 @@ public class DDSHeader {
   }
 
   public boolean isCapabilitiesValid() {
-    return isFlagSet(getFlags(), DDSD_CAPS);
+    return isFlagSet(DDSD_CAPS, getFlags());
   }
 
   public boolean isComplex() {
@@ -189,19 +189,19 @@ public class DDSHeader {
   }
 
   public boolean isDepthValid() {
-    return isFlagSet(getFlags(), DDSD_DEPTH);
+    return isFlagSet(DDSD_DEPTH, getFlags());
   }
 
   public boolean isHeightValid() {
-    return isFlagSet(getFlags(), DDSD_HEIGHT);
+    return isFlagSet(DDSD_HEIGHT, getFlags());
   }
 
   public boolean isLinearSizeValid() {
-    return isFlagSet(getFlags(), DDSD_LINEARSIZE);
+    return isFlagSet(DDSD_LINEARSIZE, getFlags());
   }
 
   public boolean isMipmapCountValid() {
-    return isFlagSet(getFlags(), DDSD_MIPMAPCOUNT);
+    return isFlagSet(DDSD_MIPMAPCOUNT, getFlags());
   }
 
   public boolean isMipmapped() {
@@ -209,11 +209,11 @@ public class DDSHeader {
   }
 
   public boolean isPitchValid() {
-    return isFlagSet(getFlags(), DDSD_PITCH);
+    return isFlagSet(DDSD_PITCH, getFlags());
   }
 
   public boolean isPixelFormatValid() {
-    return isFlagSet(getFlags(), DDSD_PIXELFORMAT);
+    return isFlagSet(DDSD_PIXELFORMAT, getFlags());
   }
 
   public boolean isTexture() {
@@ -225,7 +225,7 @@ public class DDSHeader {
   }
 
   public boolean isWidthValid() {
-    return isFlagSet(getFlags(), DDSD_WIDTH);
+    return isFlagSet(DDSD_WIDTH, getFlags());
   }
 
   public void setCapabilitiesBitField(int field, int bits) {
@@ -367,7 +367,8 @@ public class DDSHeader {
     // Magic number is 4 bytes, header is 124 bytes, and DX10 header is 20 bytes = 148 maximum
     // just to read the header. However, the rest of the data will be mapped into memory and
     // copied directly so there is no need to use a conventional work buffer that is quite large
-    ByteBuffer work = Data.getBufferFactory().newByteBuffer(HEADER_LENGTH + DX10Header.HEADER_LENGTH + 4);
+    ByteBuffer work = IO.createWorkBufferForReading(
+        HEADER_LENGTH + DX10Header.HEADER_LENGTH + 4);
 
     DDSHeader h = new DDSHeader();
 
@@ -407,11 +408,50 @@ public class DDSHeader {
     } else {
       h.headerDX10 = null;
     }
+    // The work buffer may have read ahead into the image data, so move the channel back to the end
+    // of the header where the data starts
+    in.position(in.position() - work.remaining());
 
     h.validate();
     return h;
   }
 
+  public void write(WritableByteChannel out, ByteBuffer work) throws IOException {
+    // The work buffer must hold the magic number, the header, and the DX10 header
+    Bytes.intToBytesLE(magic, work);
+    Bytes.intToBytesLE(size, work);
+    Bytes.intToBytesLE(flags, work);
+    Bytes.intToBytesLE(height, work);
+    Bytes.intToBytesLE(width, work);
+    Bytes.intToBytesLE(linearSize, work);
+    Bytes.intToBytesLE(depth, work);
+    Bytes.intToBytesLE(mipmapCount, work);
+    for (int i = 0; i < reserved1.length; i++) {
+      Bytes.intToBytesLE(reserved1[i], work);
+    }
+
+    pixelFormat.write(work);
+
+    for (int i = 0; i < caps.length; i++) {
+      Bytes.intToBytesLE(caps[i], work);
+    }
+    Bytes.intToBytesLE(reserved2, work);
+
+    if (headerDX10 != null) {
+      headerDX10.write(work);
+    }
+    IO.write(work, out);
+  }
+
+  public static DDSHeader newHeader() {
+    DDSHeader h = new DDSHeader();
+    h.magic = FOURCC_DDS;
+    h.size = HEADER_LENGTH;
+    h.pixelFormat = new DDSPixelFormat();
+    h.pixelFormat.setSize(DDSPixelFormat.FORMAT_LENGTH);
+    return h;
+  }
+
   // check whether or not flag is set in the flags bit field
   static boolean isFlagSet(int flag, int flags) {
     return (flags & flag) == flag;
@@ -464,5 +504,5 @@ public class DDSHeader {
   // Magic number for the file
   private static final int FOURCC_DDS = makeFourCC("DDS ");
   // Special FOURCC code that designates a DX10 header is after the regular header
-  private static final int FOURCC_DX10 = makeFourCC("DX10");
+  static final int FOURCC_DX10 = makeFourCC("DX10");
 }
@@ -192,4 +192,15 @@ public class DDSPixelFormat {
     pixelFormat.aBitMask = Bytes.bytesToIntLE(work);
     return pixelFormat;
   }
+
+  public void write(ByteBuffer work) {
+    Bytes.intToBytesLE(size, work);
+    Bytes.intToBytesLE(flags, work);
+    Bytes.intToBytesLE(fourCC, work);
+    Bytes.intToBytesLE(rgbBitCount, work);
+    Bytes.intToBytesLE(rBitMask, work);
+    Bytes.intToBytesLE(gBitMask, work);
+    Bytes.intToBytesLE(bBitMask, work);
+    Bytes.intToBytesLE(aBitMask, work);
+  }
 }
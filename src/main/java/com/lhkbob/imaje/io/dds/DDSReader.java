@@ -34,26 +34,47 @@ package com.lhkbob.imaje.io.dds;
 import com.lhkbob.imaje.Image;
 import com.lhkbob.imaje.ImageBuilder;
 import com.lhkbob.imaje.Images;
+import com.lhkbob.imaje.Mipmap;
+import com.lhkbob.imaje.MipmapArray;
+import com.lhkbob.imaje.MipmapVolume;
+import com.lhkbob.imaje.Raster;
+import com.lhkbob.imaje.RasterArray;
+import com.lhkbob.imaje.Volume;
+import com.lhkbob.imaje.color.Color;
+import com.lhkbob.imaje.data.BitData;
 import com.lhkbob.imaje.data.ByteData;
 import com.lhkbob.imaje.data.Data;
 import com.lhkbob.imaje.data.DataBuffer;
 import com.lhkbob.imaje.data.DoubleData;
 import com.lhkbob.imaje.data.FloatData;
-import com.lhkbob.imaje.data.IntData;
-import com.lhkbob.imaje.data.LongData;
-import com.lhkbob.imaje.data.ShortData;
+import com.lhkbob.imaje.io.IO;
 import com.lhkbob.imaje.io.ImageFileReader;
 import com.lhkbob.imaje.io.InvalidImageException;
 import com.lhkbob.imaje.io.UnsupportedImageFormatException;
+import com.lhkbob.imaje.layout.PixelArray;
 import com.lhkbob.imaje.layout.PixelFormat;
+import com.lhkbob.imaje.layout.TileCache;
+import com.lhkbob.imaje.layout.TiledPixelArray;
+import com.lhkbob.imaje.layout.compressed.BC1Array;
+import com.lhkbob.imaje.layout.compressed.BC1Layout;
+import com.lhkbob.imaje.layout.compressed.BC2Array;
+import com.lhkbob.imaje.layout.compressed.BC2Layout;
+import com.lhkbob.imaje.layout.compressed.BC3Array;
+import com.lhkbob.imaje.layout.compressed.BC3Layout;
+import com.lhkbob.imaje.layout.compressed.BC4Array;
+import com.lhkbob.imaje.layout.compressed.BC4Layout;
+import com.lhkbob.imaje.layout.compressed.BC5Array;
+import com.lhkbob.imaje.layout.compressed.BC5Layout;
+import com.lhkbob.imaje.layout.compressed.BCArray;
 import com.lhkbob.imaje.util.Arguments;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -61,16 +82,36 @@ import java.nio.channels.SeekableByteChannel;
  */
 public class DDSReader implements ImageFileReader {
   private final Data.Factory dataFactory;
+  private final boolean memoryMapped;
 
   public DDSReader() {
     this(null);
   }
 
   public DDSReader(@Arguments.Nullable Data.Factory factory) {
+    this(factory, false);
+  }
+
+  /**
+   * Create a reader that allocates image data with `factory`, or the default factory if it is
+   * null. When `memoryMapped` is true and the reader is given a {@link FileChannel}, the pixel data
+   * of each 2D image is not copied. Instead it is mapped from the file and wrapped directly as data
+   * buffers, so opening even very large textures and arrays only costs the header parse, and the
+   * file's pages are shared by every process that maps it. Such images are read-only and setting
+   * their pixels throws a {@link java.nio.ReadOnlyBufferException}. Other channels are read with
+   * `factory` as usual.
+   *
+   * @param factory
+   *     The factory that allocates copied image data
+   * @param memoryMapped
+   *     True if file data is mapped instead of copied
+   */
+  public DDSReader(@Arguments.Nullable Data.Factory factory, boolean memoryMapped) {
     if (factory == null) {
       factory = Data.getDefaultDataFactory();
     }
     dataFactory = factory;
+    this.memoryMapped = memoryMapped;
   }
 
   @Override
@@ -78,6 +119,10 @@ public class DDSReader implements ImageFileReader {
     // Validate and interpret the header
     DDSHeader header = DDSHeader.readHeader(in);
     TextureDescription desc = TextureDescription.createFromHeader(header);
+    if (desc.isCompressed()) {
+      // Block compressed data has no pixel format for the builder, its blocks are decoded as-is
+      return readCompressedImage(in, desc);
+    }
 
     // Configure an image builder based on the texture target
     ImageBuilder<?, ?, ?> b;
@@ -125,143 +170,340 @@ public class DDSReader implements ImageFileReader {
   }
 
 
-  private long getTotalImageDataPixels(TextureDescription desc) {
-    // The descriptions redundant dimensions (possible depth or height) will be set to 1 prior to
-    // this, so there is no need to create a 1, 2, or 3 element array; the math is the same
-    int[] dimensions = new int[] { desc.getWidth(), desc.getHeight(), desc.getDepth() };
-    long pixels = 0;
-    if (desc.isMipmapped()) {
-      int mipmapCount = Images.getMaxMipmaps(dimensions);
-      for (int i = 0; i < mipmapCount; i++) {
-        pixels += Images.getUncompressedImageSize(Images.getMipmapDimensions(dimensions, i));
+  /**
+   * Read the header of a DDS file and locate each of its subresources without reading any pixel
+   * data. Each {@link DDSSubresource} is one mipmap level of one layer or cube face, in the order
+   * they are stored in the file, and records the absolute byte range holding that level. Because
+   * the bytes are already in the order a GPU expects, they can be mapped with {@link
+   * DDSSubresource#map(java.nio.channels.FileChannel)} or read straight into upload staging memory
+   * with {@link DDSSubresource#read(SeekableByteChannel, ByteBuffer)}, skipping the pixel arrays
+   * that {@link #read(SeekableByteChannel)} would build. Block compressed subresources span whole
+   * 4x4 blocks, so their lengths are rounded up to the block grid. The channel's position is left
+   * just past the header.
+   *
+   * @param in
+   *     The channel to read from, positioned at the start of the file
+   * @return The subresources of the texture, in file order
+   *
+   * @throws IOException
+   *     if the channel cannot be read, does not contain a valid DDS file, or is too short to hold
+   *     every subresource
+   */
+  public static List<DDSSubresource> readSubresources(SeekableByteChannel in) throws IOException {
+    DDSHeader header = DDSHeader.readHeader(in);
+    TextureDescription desc = TextureDescription.createFromHeader(header);
+    List<DDSSubresource> subresources = desc.getSubresources(in.position());
+    checkSubresources(in, subresources);
+    return subresources;
+  }
+
+  /**
+   * Open a 1D or 2D DDS texture without reading its pixel data. The returned Raster or Mipmap is
+   * backed by {@link TiledPixelArray TiledPixelArrays} that each hold one mipmap level as a single
+   * tile. A level is read from the file when it is first accessed, and is then kept in `cache`, so
+   * only the levels that are used occupy memory. Block compressed levels are cached as their
+   * compressed bytes and decoded on access. The channel must remain open, and must not be
+   * modified, for as long as the image is used.
+   *
+   * @param in
+   *     The file channel to read from, positioned at the start of the file
+   * @param cache
+   *     The cache that holds loaded levels
+   * @return An image that reads its levels on demand
+   *
+   * @throws IOException
+   *     if the channel cannot be read or does not contain a valid DDS file
+   * @throws UnsupportedImageFormatException
+   *     if the texture is not a 1D or 2D texture
+   * @throws NullPointerException
+   *     if `cache` is null
+   */
+  public Image<?> readLazy(SeekableByteChannel in, TileCache cache) throws IOException {
+    Arguments.notNull("cache", cache);
+    DDSHeader header = DDSHeader.readHeader(in);
+    TextureDescription desc = TextureDescription.createFromHeader(header);
+    if (desc.getTextureType() != TextureType.TEXTURE_1D
+        && desc.getTextureType() != TextureType.TEXTURE_2D) {
+      throw new UnsupportedImageFormatException(
+          "Only 1D and 2D textures can be read lazily, not " + desc.getTextureType());
+    }
+
+    List<DDSSubresource> subresources = desc.getSubresources(in.position());
+    checkSubresources(in, subresources);
+    // The estimated memory of a loaded level, block compressed levels stay compressed and use at
+    // most a byte per pixel
+    long bytesPerPixel = desc.isCompressed() ? 1 : desc.getImageByteCount(1, 1, 1);
+
+    List<PixelArray> levels = new ArrayList<>(subresources.size());
+    PixelArray first = null;
+    for (DDSSubresource s : subresources) {
+      TiledPixelArray.TileLoader loader;
+      if (desc.isCompressed()) {
+        loader = (tileX, tileY) -> createBlockArray(desc.getCompressedFormat(), s.getWidth(),
+            s.getHeight(), read2DLayer(in, s.getOffset(), s.getWidth(), s.getHeight(), desc));
+      } else {
+        loader = (tileX, tileY) -> Images.newRaster(desc.getColorType()).width(s.getWidth())
+            .height(s.getHeight()).format(desc.getPixelFormat(), desc.isPackedFormat())
+            .existingData(read2DLayer(in, s.getOffset(), s.getWidth(), s.getHeight(), desc))
+            .build().getPixelArray();
+      }
+      if (first == null) {
+        // Load the base level to learn the channels of the pixel format
+        first = loader.load(0, 0);
       }
+
+      levels.add(new TiledPixelArray(s.getWidth(), s.getHeight(), s.getWidth(), s.getHeight(),
+          false, first.getColorChannelCount(), first.hasAlphaChannel(), bytesPerPixel, loader,
+          cache));
+    }
+
+    return createLazyImage(desc.getColorType(), levels);
+  }
+
+  private static <T extends Color> Image<T> createLazyImage(
+      Class<T> color, List<PixelArray> levels) {
+    if (levels.size() > 1) {
+      return new Mipmap<>(color, levels);
     } else {
-      pixels = Images.getUncompressedImageSize(dimensions);
+      return new Raster<>(color, levels.get(0));
     }
+  }
 
-    // Multiply by image Count since there are that many duplicates of that image stack
-    return pixels * desc.getImageCount();
+  private Image<?> readCompressedImage(SeekableByteChannel in, TextureDescription desc)
+      throws IOException {
+    List<DDSSubresource> subresources = desc.getSubresources(in.position());
+    checkSubresources(in, subresources);
+
+    // Collect the levels of each layer, or for volumes the depth slices of each level
+    List<List<PixelArray>> images = new ArrayList<>();
+    for (DDSSubresource s : subresources) {
+      if (desc.getTextureType() == TextureType.TEXTURE_3D) {
+        long sliceBytes = s.getLength() / s.getDepth();
+        List<PixelArray> slices = new ArrayList<>(s.getDepth());
+        for (int z = 0; z < s.getDepth(); z++) {
+          slices.add(createBlockArray(desc.getCompressedFormat(), s.getWidth(), s.getHeight(),
+              read2DLayer(in, s.getOffset() + z * sliceBytes, s.getWidth(), s.getHeight(), desc)));
+        }
+        images.add(slices);
+      } else {
+        if (s.getMipmapLevel() == 0) {
+          images.add(new ArrayList<>());
+        }
+        images.get(s.getLayer()).add(createBlockArray(desc.getCompressedFormat(), s.getWidth(),
+            s.getHeight(), read2DLayer(in, s.getOffset(), s.getWidth(), s.getHeight(), desc)));
+      }
+    }
+    return createCompressedImage(desc.getColorType(), desc, images);
   }
 
-  private void readImageData(
-      SeekableByteChannel in, TextureDescription desc, ImageBuilder<?, ?, ?> builder) throws
-      IOException {
-    long pixels = getTotalImageDataPixels(desc);
-    // Regardless of whether or not the format is packed, the total bit size is the same and correct
-    long bytes = pixels * (desc.getPixelFormat().getTotalBitSize() / Byte.SIZE);
+  private static <T extends Color> Image<T> createCompressedImage(
+      Class<T> color, TextureDescription desc, List<List<PixelArray>> images) {
+    switch (desc.getTextureType()) {
+    case TEXTURE_1D:
+    case TEXTURE_2D:
+      if (desc.isMipmapped()) {
+        return new Mipmap<>(color, images.get(0));
+      } else {
+        return new Raster<>(color, images.get(0).get(0));
+      }
+    case TEXTURE_3D:
+      if (desc.isMipmapped()) {
+        return new MipmapVolume<>(color, images);
+      } else {
+        return new Volume<>(color, images.get(0));
+      }
+    default:
+      // Arrays and cube maps
+      if (desc.isMipmapped()) {
+        return new MipmapArray<>(color, images);
+      } else {
+        List<PixelArray> layers = new ArrayList<>(images.size());
+        for (List<PixelArray> layer : images) {
+          layers.add(layer.get(0));
+        }
+        return new RasterArray<>(color, layers);
+      }
+    }
+  }
 
-    if (in.size() - in.position() < bytes) {
-      throw new InvalidImageException(
-          "Not enough bytes remaining in file to fully specify image data, expected " + bytes
-              + " but only has " + (in.size() - in.position()));
+  private static BCArray createBlockArray(
+      DXGIFormat format, int width, int height, DataBuffer blocks) throws
+      UnsupportedImageFormatException {
+    // The first row of blocks in the file is the first row of the image, like every other format
+    // this reader supports, so the layouts are not top to bottom
+    ByteData data = (ByteData) blocks;
+    switch (format) {
+    case BC1_UNORM:
+    case BC1_UNORM_SRGB:
+      // Direct3D always decodes the punch-through alpha of BC1 blocks, so expose it as well
+      return new BC1Array(new BC1Layout(width, height, false), data, 0, true);
+    case BC2_UNORM:
+    case BC2_UNORM_SRGB:
+      return new BC2Array(new BC2Layout(width, height, false), data, 0);
+    case BC3_UNORM:
+    case BC3_UNORM_SRGB:
+      return new BC3Array(new BC3Layout(width, height, false), data, 0);
+    case BC4_UNORM:
+    case BC4_SNORM:
+      return new BC4Array(new BC4Layout(width, height, false), data, 0,
+          format == DXGIFormat.BC4_SNORM);
+    case BC5_UNORM:
+    case BC5_SNORM:
+      return new BC5Array(new BC5Layout(width, height, false), data, 0,
+          format == DXGIFormat.BC5_SNORM);
+    default:
+      throw new UnsupportedImageFormatException("Unsupported block compressed format: " + format);
     }
+  }
 
-    // Map the file for efficient copying into the final data buffer
-    MappedByteBuffer mappedData = ((FileChannel) in)
-        .map(FileChannel.MapMode.READ_ONLY, in.position(), bytes);
-    // Mark it as little endian since DDS files are all LE, which will then automatically swap
-    // the bytes around as necessary
-    mappedData.order(ByteOrder.LITTLE_ENDIAN);
+  private void readImageData(
+      SeekableByteChannel in, TextureDescription desc, ImageBuilder<?, ?, ?> builder) throws
+      IOException {
+    List<DDSSubresource> subresources = desc.getSubresources(in.position());
+    checkSubresources(in, subresources);
 
     // Because each pixel array uses its own data buffer, and they don't get offsets, we loop
     // over array, mipmap, and then depth and set each buffer into the builder as appropriate.
-    for (int i = 0; i < desc.getImageCount(); i++) {
-      if (desc.isMipmapped()) {
-        int mipmapCount = Images.getMaxMipmaps(desc.getWidth(), desc.getHeight(), desc.getDepth());
-        for (int j = 0; j < mipmapCount; j++) {
-          int mipWidth = Images.getMipmapDimension(desc.getWidth(), j);
-          int mipHeight = Images.getMipmapDimension(desc.getHeight(), j);
-
-          if (desc.getTextureType() == TextureType.TEXTURE_3D) {
-            // Each depth slice has to be extracted as well, and since 3D arrays are not supported,
-            // assume i == 0 and ignore it, using depth for the layer sent to the builder.
-            int mipDepth = Images.getMipmapDimension(desc.getDepth(), j);
-            for (int z = 0; z < mipDepth; z++) {
-              builder.existingDataFor(z, j, read2DLayer(mipWidth, mipHeight, desc, mappedData));
-            }
+    // Each layer is read from its own region of the file, so no single mapping has to cover all
+    // layers of a large array.
+    for (DDSSubresource s : subresources) {
+      if (desc.getTextureType() == TextureType.TEXTURE_3D) {
+        // Each depth slice has to be extracted as well, and since 3D arrays are not supported,
+        // assume the layer is 0 and ignore it, using depth for the layer sent to the builder.
+        long sliceBytes = s.getLength() / s.getDepth();
+        for (int z = 0; z < s.getDepth(); z++) {
+          DataBuffer slice = read2DLayer(in, s.getOffset() + z * sliceBytes, s.getWidth(),
+              s.getHeight(), desc);
+          if (desc.isMipmapped()) {
+            builder.existingDataFor(z, s.getMipmapLevel(), slice);
           } else {
-            // 2D slice
-            builder.existingDataFor(i, j, read2DLayer(mipWidth, mipHeight, desc, mappedData));
+            builder.existingDataForLayer(z, slice);
           }
         }
       } else {
-        if (desc.getTextureType() == TextureType.TEXTURE_3D) {
-          // Extract each depth layer as well
-          for (int z = 0; z < desc.getDepth(); z++) {
-            builder.existingDataForLayer(z,
-                read2DLayer(desc.getWidth(), desc.getHeight(), desc, mappedData));
-          }
+        DataBuffer layer = read2DLayer(in, s.getOffset(), s.getWidth(), s.getHeight(), desc);
+        if (desc.isMipmapped()) {
+          builder.existingDataFor(s.getLayer(), s.getMipmapLevel(), layer);
         } else {
-          builder.existingDataForLayer(i,
-              read2DLayer(desc.getWidth(), desc.getHeight(), desc, mappedData));
+          builder.existingDataForLayer(s.getLayer(), layer);
         }
       }
     }
   }
 
+  private static void checkSubresources(SeekableByteChannel in, List<DDSSubresource> subresources)
+      throws IOException {
+    DDSSubresource last = subresources.get(subresources.size() - 1);
+    long bytes = last.getOffset() + last.getLength() - subresources.get(0).getOffset();
+    if (in.size() - subresources.get(0).getOffset() < bytes) {
+      throw new InvalidImageException(
+          "Not enough bytes remaining in file to fully specify image data, expected " + bytes
+              + " but only has " + (in.size() - subresources.get(0).getOffset()));
+    }
+  }
+
   private DataBuffer read2DLayer(
-      int width, int height, TextureDescription desc, MappedByteBuffer fileData) throws
-      InvalidImageException, UnsupportedImageFormatException {
-    int bytesForLayer = width * height * desc.getPixelFormat().getTotalBitSize() / Byte.SIZE;
-    if (fileData.remaining() < bytesForLayer) {
+      SeekableByteChannel in, long position, int width, int height, TextureDescription desc) throws
+      IOException {
+    long bytesForLayer = desc.getImageByteCount(width, height, 1);
+    if (in.size() - position < bytesForLayer) {
       throw new InvalidImageException("Insufficient data in file to read remaining image data");
     }
 
-    // Get an independent slice of the file data from current position for layer's required bytes
-    int layerEnd = fileData.position() + bytesForLayer;
-    fileData.limit(layerEnd);
-    ByteBuffer layerData = fileData.slice();
-    // Then advance the file data's position to the end of this slice
-    fileData.limit(fileData.capacity()).position(layerEnd);
-
     int bitSize;
-    if (desc.isPackedFormat()) {
+    boolean floatingPoint = false;
+    if (desc.isCompressed()) {
+      // Block compressed layers are kept as their raw bytes
+      bitSize = Byte.SIZE;
+    } else if (desc.isPackedFormat()) {
       bitSize = desc.getPixelFormat().getTotalBitSize();
     } else {
       // Assumes every color channel has the same number of bits
       bitSize = desc.getPixelFormat().getColorChannelBitSize(0);
-      if (desc.getPixelFormat().getColorChannelType(0) == PixelFormat.Type.SFLOAT) {
-        // Possibly use native float or double support
-        if (bitSize == 32) {
-          // FloatData and mapped as a FloatBuffer
-          FloatData data = dataFactory.newFloatData(bytesForLayer / Float.BYTES);
-          data.setValues(0, layerData.asFloatBuffer());
-          return data;
-        } else if (bitSize == 64) {
-          // DoubleData and mapped as a DoubleBuffer
-          DoubleData data = dataFactory.newDoubleData(bytesForLayer / Double.BYTES);
-          data.setValues(0, layerData.asDoubleBuffer());
-          return data;
-        }
-        // Otherwise fall through and just use the bit representation
-      }
+      // Possibly use native float or double support, otherwise just use the bit representation
+      floatingPoint = desc.getPixelFormat().getColorChannelType(0) == PixelFormat.Type.SFLOAT
+          && (bitSize == 32 || bitSize == 64);
     }
 
-    switch (bitSize) {
-    case 64: {
-      // LongData and mapped as a LongBuffer
-      LongData data = dataFactory.newLongData(bytesForLayer / Long.BYTES);
-      data.set(0, layerData.asLongBuffer());
-      return data;
+    if (memoryMapped && in instanceof FileChannel) {
+      return map2DLayer((FileChannel) in, position, bytesForLayer, bitSize, floatingPoint);
     }
-    case 32: {
-      // IntData and mapped as a IntBuffer
-      IntData data = dataFactory.newIntData(bytesForLayer / Integer.BYTES);
-      data.set(0, layerData.asIntBuffer());
-      return data;
+
+    // Get the layer's bytes, mapping the file when possible for efficient copying into the final
+    // data buffer. Mark it as little endian since DDS files are all LE, which will then
+    // automatically swap the bytes around as necessary.
+    ByteBuffer layerData;
+    if (in instanceof FileChannel) {
+      layerData = ((FileChannel) in)
+          .map(FileChannel.MapMode.READ_ONLY, position, bytesForLayer);
+    } else {
+      byte[] bytes = new byte[Math.toIntExact(bytesForLayer)];
+      if (!IO.readAt(in, position, bytes, 0, bytes.length)) {
+        throw new InvalidImageException("Insufficient data in file to read remaining image data");
+      }
+      layerData = ByteBuffer.wrap(bytes);
     }
-    case 16: {
-      // ShortData and mapped as a ShortBuffer
-      ShortData data = dataFactory.newShortData(bytesForLayer / Short.BYTES);
-      data.set(0, layerData.asShortBuffer());
-      return data;
+    layerData.order(ByteOrder.LITTLE_ENDIAN);
+
+    if (floatingPoint) {
+      if (bitSize == 32) {
+        // FloatData and mapped as a FloatBuffer
+        FloatData data = dataFactory.newFloatData(layerData.remaining() / Float.BYTES);
+        data.setValues(0, layerData.asFloatBuffer());
+        return data;
+      } else {
+        // DoubleData and mapped as a DoubleBuffer
+        DoubleData data = dataFactory.newDoubleData(layerData.remaining() / Double.BYTES);
+        data.setValues(0, layerData.asDoubleBuffer());
+        return data;
+      }
     }
-    case 8: {
-      // ByteData and mapped as a ByteBuffer
-      ByteData data = dataFactory.newByteData(bytesForLayer);
-      data.set(0, layerData);
-      return data;
+
+    // Allocate the bit data for the element size and copy the file's bytes in bulk, the buffer's
+    // little endian order is applied as they are transferred
+    BitData data;
+    switch (bitSize) {
+    case 64:
+      data = dataFactory.newLongData(layerData.remaining() / Long.BYTES);
+      break;
+    case 32:
+      data = dataFactory.newIntData(layerData.remaining() / Integer.BYTES);
+      break;
+    case 16:
+      data = dataFactory.newShortData(layerData.remaining() / Short.BYTES);
+      break;
+    case 8:
+      data = dataFactory.newByteData(layerData.remaining());
+      break;
+    default:
+      throw new UnsupportedImageFormatException("Unsupported bit size for data: " + bitSize);
+    }
+    data.setBits(0, layerData);
+    return data;
+  }
+
+  private static DataBuffer map2DLayer(
+      FileChannel in, long position, long bytesForLayer, int bitSize, boolean floatingPoint) throws
+      IOException {
+    // The mapped buffers are wrapped as-is, the little endian order is applied as values are read
+    if (floatingPoint) {
+      if (bitSize == 32) {
+        return IO.mapFloatData(in, position, bytesForLayer / Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+      } else {
+        return IO.mapDoubleData(in, position, bytesForLayer / Double.BYTES,
+            ByteOrder.LITTLE_ENDIAN);
+      }
     }
+
+    switch (bitSize) {
+    case 64:
+      return IO.mapLongData(in, position, bytesForLayer / Long.BYTES, ByteOrder.LITTLE_ENDIAN);
+    case 32:
+      return IO.mapIntData(in, position, bytesForLayer / Integer.BYTES, ByteOrder.LITTLE_ENDIAN);
+    case 16:
+      return IO.mapShortData(in, position, bytesForLayer / Short.BYTES, ByteOrder.LITTLE_ENDIAN);
+    case 8:
+      return IO.mapByteData(in, position, bytesForLayer);
     default:
       throw new UnsupportedImageFormatException("Unsupported bit size for data: " + bitSize);
     }
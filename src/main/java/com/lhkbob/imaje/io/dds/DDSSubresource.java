@@ -0,0 +1,221 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.dds;
+
+import com.lhkbob.imaje.io.IO;
+import com.lhkbob.imaje.io.InvalidImageException;
+import com.lhkbob.imaje.util.Arguments;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * DDSSubresource
+ * ==============
+ *
+ * The location within a DDS file of one subresource of a texture: a single mipmap level of a
+ * single layer, or cube face, of the texture. For volume textures a subresource holds every depth
+ * slice of its mipmap level, which are stored one after the other. The bytes of a subresource are
+ * contiguous and already in the order a GPU expects for the texture's DXGI format, so they can be
+ * copied as-is into upload staging memory without creating any pixel arrays.
+ *
+ * Subresources are created by {@link DDSReader#readSubresources(SeekableByteChannel)}. The bytes
+ * can then be mapped with {@link #map(FileChannel)} or read into an existing buffer with {@link
+ * #read(SeekableByteChannel, ByteBuffer)}.
+ *
+ * @author Michael Ludwig
+ */
+public class DDSSubresource {
+  private final int layer;
+  private final int mipmapLevel;
+  private final int width;
+  private final int height;
+  private final int depth;
+  private final long offset;
+  private final long length;
+
+  /**
+   * Create a new subresource description.
+   *
+   * @param layer
+   *     The array layer, or cube face, of the subresource
+   * @param mipmapLevel
+   *     The mipmap level of the subresource
+   * @param width
+   *     The width of the mipmap level
+   * @param height
+   *     The height of the mipmap level
+   * @param depth
+   *     The depth of the mipmap level, which is 1 for non-volume textures
+   * @param offset
+   *     The absolute position within the file of the first byte of the subresource
+   * @param length
+   *     The number of bytes in the subresource
+   * @throws IllegalArgumentException
+   *     if any of the values are negative, or if the dimensions are not positive
+   */
+  public DDSSubresource(
+      int layer, int mipmapLevel, int width, int height, int depth, long offset, long length) {
+    Arguments.isGreaterThanOrEqualToZero("layer", layer);
+    Arguments.isGreaterThanOrEqualToZero("mipmapLevel", mipmapLevel);
+    Arguments.isPositive("width", width);
+    Arguments.isPositive("height", height);
+    Arguments.isPositive("depth", depth);
+    Arguments.isGreaterThanOrEqualToZero("offset", offset);
+    Arguments.isGreaterThanOrEqualToZero("length", length);
+
+    this.layer = layer;
+    this.mipmapLevel = mipmapLevel;
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * @return The array layer, or cube face, of the subresource
+   */
+  public int getLayer() {
+    return layer;
+  }
+
+  /**
+   * @return The mipmap level of the subresource
+   */
+  public int getMipmapLevel() {
+    return mipmapLevel;
+  }
+
+  /**
+   * @return The width of the subresource in pixels
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * @return The height of the subresource in pixels
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * @return The number of depth slices in the subresource, which is 1 unless it is a volume
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * @return The absolute position within the file of the first byte of the subresource
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * @return The number of bytes in the subresource
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * Memory map the bytes of this subresource from `in` without copying them. The returned buffer
+   * is read-only, little endian (the byte order of all DDS files), and holds exactly the
+   * subresource's bytes. The channel may be closed once the buffer is mapped, but the file must not
+   * be truncated while the buffer is in use.
+   *
+   * @param in
+   *     The DDS file this subresource was read from
+   * @return A read-only buffer mapping the subresource
+   *
+   * @throws IOException
+   *     if the file cannot be mapped
+   * @throws InvalidImageException
+   *     if the file ends before the subresource does
+   * @throws UnsupportedOperationException
+   *     if the subresource is larger than a single buffer can hold
+   */
+  public ByteBuffer map(FileChannel in) throws IOException {
+    if (length > Integer.MAX_VALUE) {
+      throw new UnsupportedOperationException(
+          "Subresource is too large to map as one buffer: " + length + " bytes");
+    }
+    if (in.size() < offset + length) {
+      throw new InvalidImageException("Insufficient data in file to map subresource");
+    }
+    return in.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Read the bytes of this subresource from `in` into `dst`, starting at the buffer's position,
+   * which is then advanced by the length of the subresource. This does not depend on or change the
+   * position of `in`, so subresources of the same file can be read concurrently into staging
+   * memory.
+   *
+   * @param in
+   *     The DDS file this subresource was read from
+   * @param dst
+   *     The buffer that receives the subresource's bytes
+   * @throws IOException
+   *     if the channel cannot be read
+   * @throws InvalidImageException
+   *     if the file ends before the subresource does
+   * @throws BufferOverflowException
+   *     if `dst` has fewer remaining bytes than the length of the subresource
+   */
+  public void read(SeekableByteChannel in, ByteBuffer dst) throws IOException {
+    if (dst.remaining() < length) {
+      throw new BufferOverflowException();
+    }
+    ByteBuffer target = dst.duplicate();
+    target.limit(target.position() + (int) length);
+    if (!IO.readAt(in, offset, target)) {
+      throw new InvalidImageException("Insufficient data in file to read subresource");
+    }
+    dst.position(target.position());
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "DDSSubresource(layer: %d, level: %d, %d x %d x %d, offset: %d, length: %d)", layer,
+        mipmapLevel, width, height, depth, offset, length);
+  }
+}
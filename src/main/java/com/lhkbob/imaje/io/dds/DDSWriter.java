@@ -0,0 +1,426 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.dds;
+
+import com.lhkbob.imaje.Image;
+import com.lhkbob.imaje.Images;
+import com.lhkbob.imaje.Mipmap;
+import com.lhkbob.imaje.MipmapArray;
+import com.lhkbob.imaje.MipmapVolume;
+import com.lhkbob.imaje.Raster;
+import com.lhkbob.imaje.RasterArray;
+import com.lhkbob.imaje.Volume;
+import com.lhkbob.imaje.color.Color;
+import com.lhkbob.imaje.data.BitData;
+import com.lhkbob.imaje.data.ByteData;
+import com.lhkbob.imaje.data.DataBuffer;
+import com.lhkbob.imaje.data.NumericData;
+import com.lhkbob.imaje.io.IO;
+import com.lhkbob.imaje.io.ImageFileWriter;
+import com.lhkbob.imaje.io.UnsupportedImageFormatException;
+import com.lhkbob.imaje.layout.PackedPixelArray;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.layout.PixelArrays;
+import com.lhkbob.imaje.layout.PixelFormat;
+import com.lhkbob.imaje.layout.RootPixelArray;
+import com.lhkbob.imaje.layout.compressed.BC1Array;
+import com.lhkbob.imaje.layout.compressed.BC2Array;
+import com.lhkbob.imaje.layout.compressed.BC3Array;
+import com.lhkbob.imaje.layout.compressed.BC4Array;
+import com.lhkbob.imaje.layout.compressed.BC5Array;
+import com.lhkbob.imaje.layout.compressed.BCArray;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DDSWriter
+ * =========
+ *
+ * Writes images to DDS files with a DX10 header, so that every texture type supported by {@link
+ * DDSReader} can be described. Rasters and mipmaps are written as 2D textures, raster and mipmap
+ * arrays as 2D texture arrays, and volumes as 3D textures. A writer created for cube maps instead
+ * writes raster and mipmap arrays as cube maps, or cube map arrays, where each consecutive group of
+ * six layers holds the +X, -X, +Y, -Y, +Z, and -Z faces. This is the same arrangement that
+ * DDSReader produces when it reads a cube map.
+ *
+ * The DXGI format is chosen from the pixel arrays of the image:
+ *
+ * * Block compressed arrays from {@link com.lhkbob.imaje.layout.compressed} are written with the
+ *   matching BC format, copying their blocks as they are. Like every other array, the first row
+ *   of the file is the bottom row of the image, so their layouts must not be top to bottom.
+ * * Arrays whose pixel format, packing, and color type match a DXGI format are written in that
+ *   format. When their layout is GPU compatible, the backing data is streamed directly to the file
+ *   without converting any pixels.
+ * * Any other array is converted, a block of rows at a time, into the DXGI format for the color
+ *   type that has the same channels, preferring 32-bit floating point channels.
+ *
+ * Mipmapped images must have complete mipmap chains, since that is all DDSReader accepts.
+ *
+ * @author Michael Ludwig
+ */
+public class DDSWriter implements ImageFileWriter {
+  // Converted pixel arrays are written in blocks of rows with about this many pixels
+  private static final int PIXELS_PER_CONVERSION = 1 << 16;
+
+  private final boolean cubeMap;
+
+  /**
+   * Create a writer that writes raster and mipmap arrays as 2D texture arrays.
+   */
+  public DDSWriter() {
+    this(false);
+  }
+
+  /**
+   * Create a writer that writes raster and mipmap arrays as cube maps if `cubeMap` is true, or as
+   * 2D texture arrays otherwise. Images that are not arrays are unaffected.
+   *
+   * @param cubeMap
+   *     True if arrays are written as cube maps
+   */
+  public DDSWriter(boolean cubeMap) {
+    this.cubeMap = cubeMap;
+  }
+
+  /**
+   * @return True if arrays are written as cube maps
+   */
+  public boolean isCubeMapWriter() {
+    return cubeMap;
+  }
+
+  @Override
+  public void write(Image<?> image, SeekableByteChannel out) throws IOException {
+    // Gather the 2D images of the texture in the order they are stored in the file; every mipmap
+    // level of the first layer followed by the next layer, and for volumes every depth slice of a
+    // level before the next level.
+    List<PixelArray> images = new ArrayList<>();
+    TextureType type;
+    int layers = 1;
+    int depth = 1;
+    boolean mipmapped = false;
+    if (image instanceof Raster) {
+      type = TextureType.TEXTURE_2D;
+      images.add(((Raster<?>) image).getPixelArray());
+    } else if (image instanceof Mipmap) {
+      type = TextureType.TEXTURE_2D;
+      mipmapped = true;
+      images.addAll(((Mipmap<?>) image).getPixelArrays());
+    } else if (image instanceof RasterArray) {
+      type = cubeMap ? TextureType.TEXTURE_CUBE : TextureType.TEXTURE_2D_ARRAY;
+      layers = image.getLayerCount();
+      images.addAll(((RasterArray<?>) image).getPixelArrays());
+    } else if (image instanceof MipmapArray) {
+      type = cubeMap ? TextureType.TEXTURE_CUBE : TextureType.TEXTURE_2D_ARRAY;
+      layers = image.getLayerCount();
+      mipmapped = true;
+      for (int i = 0; i < layers; i++) {
+        images.addAll(((MipmapArray<?>) image).getPixelArraysForLayer(i));
+      }
+    } else if (image instanceof Volume) {
+      type = TextureType.TEXTURE_3D;
+      depth = image.getDimension(2);
+      images.addAll(((Volume<?>) image).getPixelArrays());
+    } else if (image instanceof MipmapVolume) {
+      type = TextureType.TEXTURE_3D;
+      depth = image.getDimension(2);
+      mipmapped = true;
+      for (int i = 0; i < image.getMipmapCount(); i++) {
+        images.addAll(((MipmapVolume<?>) image).getPixelArraysForMipmap(i));
+      }
+    } else {
+      throw new UnsupportedImageFormatException(
+          "Unsupported image type for DDS: " + image.getClass());
+    }
+
+    PixelArray base = images.get(0);
+    int width = base.getWidth();
+    int height = base.getHeight();
+    int mipmapCount = mipmapped ? image.getMipmapCount() : 1;
+    if (mipmapped && mipmapCount != Images.getMaxMipmaps(width, height, depth)) {
+      throw new UnsupportedImageFormatException(
+          "DDS mipmaps must be complete, expected " + Images.getMaxMipmaps(width, height, depth)
+              + " levels but image has " + mipmapCount);
+    }
+    if (type == TextureType.TEXTURE_CUBE) {
+      if (layers % 6 != 0) {
+        throw new UnsupportedImageFormatException(
+            "Cube maps require a multiple of 6 layers, not " + layers);
+      }
+      if (width != height) {
+        throw new UnsupportedImageFormatException("Cube map faces must be square");
+      }
+      if (layers > 6) {
+        type = TextureType.TEXTURE_CUBE_ARRAY;
+      }
+    }
+
+    DXGIFormat format = chooseFormat(image.getColorType(), base);
+    if (!format.isSupported()) {
+      // Validate every level before anything is written, since their blocks are copied as-is
+      checkCompressedImages(image.getColorType(), format, images);
+    }
+    writeHeader(out, format, type, width, height, depth, layers, mipmapCount);
+
+    ByteBuffer work = IO.createWorkBufferForWriting();
+    for (PixelArray level : images) {
+      if (format.isSupported()) {
+        writeUncompressed(image.getColorType(), format, level, out, work);
+      } else {
+        writeCompressed(level, out, work);
+      }
+    }
+  }
+
+  private static DXGIFormat chooseFormat(Class<? extends Color> colorType, PixelArray base)
+      throws UnsupportedImageFormatException {
+    if (base instanceof BCArray) {
+      // The DXGI formats for block compression have no pixel format, so they are not "supported"
+      // by DXGIFormat and are identified by the array type instead
+      if (base instanceof BC1Array) {
+        return chooseEncoding(colorType, DXGIFormat.BC1_UNORM, DXGIFormat.BC1_UNORM_SRGB);
+      } else if (base instanceof BC2Array) {
+        return chooseEncoding(colorType, DXGIFormat.BC2_UNORM, DXGIFormat.BC2_UNORM_SRGB);
+      } else if (base instanceof BC3Array) {
+        return chooseEncoding(colorType, DXGIFormat.BC3_UNORM, DXGIFormat.BC3_UNORM_SRGB);
+      } else if (base instanceof BC4Array) {
+        return ((BC4Array) base).isSigned() ? DXGIFormat.BC4_SNORM : DXGIFormat.BC4_UNORM;
+      } else if (base instanceof BC5Array) {
+        return ((BC5Array) base).isSigned() ? DXGIFormat.BC5_SNORM : DXGIFormat.BC5_UNORM;
+      }
+      throw new UnsupportedImageFormatException("Unsupported compressed array: " + base.getClass());
+    }
+
+    if (base instanceof RootPixelArray) {
+      RootPixelArray root = (RootPixelArray) base;
+      boolean packed = root instanceof PackedPixelArray;
+      for (DXGIFormat f : DXGIFormat.values()) {
+        if (f.isSupported() && colorType.equals(f.getColorType()) && f.isPacked() == packed
+            && root.getFormat().equals(f.getFormat())) {
+          return f;
+        }
+      }
+    }
+
+    // Fall back to a format with the same channels, preferring 32-bit floats
+    DXGIFormat match = null;
+    for (DXGIFormat f : DXGIFormat.values()) {
+      if (!f.isSupported() || !colorType.equals(f.getColorType())
+          || f.getFormat().getColorChannelCount() != base.getColorChannelCount()
+          || f.getFormat().hasAlphaChannel() != base.hasAlphaChannel()) {
+        continue;
+      }
+      if (match == null || (!f.isPacked() && isFloat32(f.getFormat()) && !isFloat32(
+          match.getFormat()))) {
+        match = f;
+      }
+    }
+    if (match == null) {
+      throw new UnsupportedImageFormatException(
+          "No DXGI format can store " + colorType.getSimpleName() + " with "
+              + base.getColorChannelCount() + " channels" + (base.hasAlphaChannel() ? " and alpha"
+              : ""));
+    }
+    return match;
+  }
+
+  private static DXGIFormat chooseEncoding(
+      Class<? extends Color> colorType, DXGIFormat linear, DXGIFormat srgb) {
+    // The sRGB variant is only chosen for the color type that DXGIFormat reads it as
+    return srgb.getColorType().equals(colorType) ? srgb : linear;
+  }
+
+  private static boolean isFloat32(PixelFormat format) {
+    return format.getColorChannelType(0) == PixelFormat.Type.SFLOAT
+        && format.getColorChannelBitSize(0) == 32;
+  }
+
+  private static void writeHeader(
+      SeekableByteChannel out, DXGIFormat format, TextureType type, int width, int height,
+      int depth, int layers, int mipmapCount) throws IOException {
+    DDSHeader header = DDSHeader.newHeader();
+    header.setCapabilitiesValid(true);
+    header.setWidthValid(true);
+    header.setHeightValid(true);
+    header.setPixelFormatValid(true);
+    header.setWidth(width);
+    header.setHeight(height);
+    header.setTexture(true);
+
+    if (format.isSupported()) {
+      header.setPitchValid(true);
+      header.setLinearSize(
+          (int) (((long) width * format.getFormat().getBitSize() + 7) / Byte.SIZE));
+    } else {
+      header.setLinearSizeValid(true);
+      header.setLinearSize((int) getCompressedByteCount(format, width, height));
+    }
+
+    if (mipmapCount > 1) {
+      header.setMipmapCountValid(true);
+      header.setMipmapCount(mipmapCount);
+      header.setMipmapped(true);
+      header.setComplex(true);
+    }
+
+    DX10Header dx10 = new DX10Header();
+    dx10.setDXGIFormat(format);
+    dx10.setArraySize(layers);
+    switch (type) {
+    case TEXTURE_3D:
+      header.setDepthValid(true);
+      header.setDepth(depth);
+      header.setVolume(true);
+      header.setComplex(true);
+      dx10.setResourceDimension(DX10Header.D3D10ResourceDimension.TEXTURE3D);
+      break;
+    case TEXTURE_CUBE:
+    case TEXTURE_CUBE_ARRAY:
+      header.setCubeMap(true);
+      header.setHasAllCubeFaces(true);
+      header.setComplex(true);
+      dx10.setCubeMap(true);
+      // The DX10 array size counts cubes instead of faces
+      dx10.setArraySize(layers / 6);
+      dx10.setResourceDimension(DX10Header.D3D10ResourceDimension.TEXTURE2D);
+      break;
+    default:
+      dx10.setResourceDimension(DX10Header.D3D10ResourceDimension.TEXTURE2D);
+      break;
+    }
+
+    header.getPixelFormat().setFourCCValid(true);
+    header.getPixelFormat().setFourCC(DDSHeader.FOURCC_DX10);
+    header.setDX10Header(dx10);
+
+    ByteBuffer work = IO.createWOrkBufferForWriting(
+        DDSHeader.HEADER_LENGTH + DX10Header.HEADER_LENGTH + 4);
+    header.write(out, work);
+  }
+
+  private static long getCompressedByteCount(DXGIFormat format, int width, int height) {
+    return (long) ((width + 3) / 4) * ((height + 3) / 4) * format.getBlockByteSize();
+  }
+
+  private static void checkCompressedImages(
+      Class<? extends Color> colorType, DXGIFormat format, List<PixelArray> images)
+      throws UnsupportedImageFormatException {
+    for (PixelArray level : images) {
+      if (!(level instanceof BCArray) || chooseFormat(colorType, level) != format) {
+        throw new UnsupportedImageFormatException(
+            "Every image of a compressed texture must use the same compression");
+      }
+      // Flipping the block rows would not be enough, since the rows within each block and the
+      // padding of partial blocks would also be upside down
+      if (((BCArray) level).getLayout().isTopToBottom()) {
+        throw new UnsupportedImageFormatException(
+            "DDS files store the bottom row of blocks first, compressed arrays must not be top to "
+                + "bottom");
+      }
+    }
+  }
+
+  private static void writeCompressed(
+      PixelArray level, SeekableByteChannel out, ByteBuffer work) throws IOException {
+    // The blocks were validated to already be in their file representation
+    BCArray blocks = (BCArray) level;
+    ByteData data = blocks.getData();
+    long offset = blocks.getDataOffset();
+    long remaining = blocks.getLayout().getRequiredByteCount();
+    while (remaining > 0) {
+      work.limit((int) Math.min(work.capacity(), remaining));
+      data.get(offset, work);
+      offset += work.limit();
+      remaining -= work.limit();
+      IO.write(work, out);
+    }
+  }
+
+  private static void writeUncompressed(
+      Class<? extends Color> colorType, DXGIFormat format, PixelArray level,
+      SeekableByteChannel out, ByteBuffer work) throws IOException {
+    if (level instanceof RootPixelArray) {
+      RootPixelArray root = (RootPixelArray) level;
+      if (root.getLayout().isGPUCompatible() && root.getFormat().equals(format.getFormat())
+          && (root instanceof PackedPixelArray) == format.isPacked()) {
+        // The backing data is already arranged as DDS stores it
+        writeBits(getBitData(root.getData(0)), 0, root.getData(0).getLength(), out, work);
+        return;
+      }
+    }
+
+    // Convert blocks of rows into a GPU compatible raster of the format, then stream its data
+    int width = level.getWidth();
+    int rows = Math.max(1, Math.min(level.getHeight(), PIXELS_PER_CONVERSION / width));
+    RootPixelArray converted = null;
+    for (int y = 0; y < level.getHeight(); y += rows) {
+      int blockRows = Math.min(rows, level.getHeight() - y);
+      if (converted == null || converted.getHeight() != blockRows) {
+        converted = (RootPixelArray) Images.newRaster(colorType).width(width).height(blockRows)
+            .format(format.getFormat(), format.isPacked()).build().getPixelArray();
+      }
+      PixelArrays.copy(level, 0, y, converted, 0, 0, width, blockRows);
+      writeBits(getBitData(converted.getData(0)), 0, converted.getData(0).getLength(), out,
+          work);
+    }
+  }
+
+  private static BitData getBitData(DataBuffer data) {
+    if (data instanceof NumericData) {
+      return ((NumericData<?>) data).asBitData();
+    } else {
+      return (BitData) data;
+    }
+  }
+
+  private static void writeBits(
+      BitData data, long offset, long length, SeekableByteChannel out, ByteBuffer work) throws
+      IOException {
+    // DDS files are little endian, which the bulk transfer applies to each element
+    int elementBytes = data.getBitSize() / Byte.SIZE;
+    int elementsPerWrite = work.capacity() / elementBytes;
+    work.order(ByteOrder.LITTLE_ENDIAN);
+    while (length > 0) {
+      int count = (int) Math.min(elementsPerWrite, length);
+      work.limit(count * elementBytes);
+      data.getBits(offset, work);
+      offset += count;
+      length -= count;
+      IO.write(work, out);
+    }
+  }
+}
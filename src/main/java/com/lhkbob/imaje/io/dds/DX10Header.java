@@ -135,7 +135,7 @@ public class DX10Header {
 
     DX10Header headerDX10 = new DX10Header();
     int dxgi = Bytes.bytesToIntLE(work);
-    if (dxgi < 0 || dxgi >= DXGIFormat.values().length) {
+    if (dxgi >= 0 && dxgi < DXGIFormat.values().length) {
       headerDX10.dxgiFormat = DXGIFormat.values()[dxgi];
     } else {
       headerDX10.dxgiFormat = DXGIFormat.UNKNOWN;
@@ -149,4 +149,12 @@ public class DX10Header {
 
     return headerDX10;
   }
+
+  public void write(ByteBuffer work) {
+    Bytes.intToBytesLE(dxgiFormat.ordinal(), work);
+    Bytes.intToBytesLE(resourceDimension.ordinal(), work);
+    Bytes.intToBytesLE(miscFlag, work);
+    Bytes.intToBytesLE(arraySize, work);
+    Bytes.intToBytesLE(reserved, work);
+  }
 }
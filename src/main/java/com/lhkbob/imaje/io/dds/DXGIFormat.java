@@ -112,8 +112,9 @@ public enum DXGIFormat {
   BC2_UNORM_SRGB(SRGB.class, GPUFormat.BC2_SRGB_BLOCK), BC3_TYPELESS(null),
   BC3_UNORM(RGB.Linear.class, GPUFormat.BC3_UNORM_BLOCK),
   BC3_UNORM_SRGB(SRGB.class, GPUFormat.BC3_SRGB_BLOCK), BC4_TYPELESS(null),
-  BC4_UNORM(Luminance.class, GPUFormat.BC4_UNORM_BLOCK), BC4_SNORM(null), BC5_TYPELESS(null),
-  BC5_UNORM(Generic.C2.class, GPUFormat.BC5_UNORM_BLOCK), BC5_SNORM(null),
+  BC4_UNORM(Luminance.class, GPUFormat.BC4_UNORM_BLOCK), BC4_SNORM(Luminance.class),
+  BC5_TYPELESS(null), BC5_UNORM(Generic.C2.class, GPUFormat.BC5_UNORM_BLOCK),
+  BC5_SNORM(Generic.C2.class),
   B5G6R5_UNORM(RGB.Linear.class, GPUFormat.B5G6R5_UNORM_PACK16),
   B5G5R5A1_UNORM(RGB.Linear.class, GPUFormat.B5G5R5A1_UNORM_PACK16),
   B8G8R8A8_UNORM(RGB.Linear.class, GPUFormat.B8G8R8A8_UNORM), B8G8R8X8_UNORM(
@@ -145,7 +146,9 @@ public enum DXGIFormat {
   }
 
   DXGIFormat(Class<? extends Color> color, GPUFormat format) {
-    this(color, format.getPixelFormat(), format.isPacked());
+    // Several formats have a known color type but no matching GPUFormat
+    this(color, format == null ? null : format.getPixelFormat(),
+        format != null && format.isPacked());
   }
 
   DXGIFormat(Class<? extends Color> color, PixelFormat format, boolean packed) {
@@ -169,4 +172,35 @@ public enum DXGIFormat {
   public boolean isSupported() {
     return color != null && format != null;
   }
+
+  /**
+   * @return True if this is one of the BC1 through BC5 formats, which have no pixel format and are
+   *     instead stored as 4x4 blocks of compressed pixels
+   */
+  public boolean isBlockCompressed() {
+    return getBlockByteSize() > 0;
+  }
+
+  /**
+   * @return The number of bytes that encode each 4x4 block of pixels, which is 8 for BC1 and BC4,
+   *     16 for BC2, BC3 and BC5, or 0 if this is not a supported block compressed format
+   */
+  public int getBlockByteSize() {
+    switch (this) {
+    case BC1_UNORM:
+    case BC1_UNORM_SRGB:
+    case BC4_UNORM:
+    case BC4_SNORM:
+      return 8;
+    case BC2_UNORM:
+    case BC2_UNORM_SRGB:
+    case BC3_UNORM:
+    case BC3_UNORM_SRGB:
+    case BC5_UNORM:
+    case BC5_SNORM:
+      return 16;
+    default:
+      return 0;
+    }
+  }
 }
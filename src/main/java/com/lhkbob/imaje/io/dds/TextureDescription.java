@@ -43,8 +43,10 @@ import com.lhkbob.imaje.layout.PackedPixelArray;
 import com.lhkbob.imaje.layout.PixelFormat;
 import com.lhkbob.imaje.layout.UnpackedPixelArray;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.lhkbob.imaje.io.dds.DDSHeader.makeFourCC;
@@ -91,6 +93,7 @@ public class TextureDescription {
   private PixelFormat format;
   private Class<? extends Color> colorType;
   private boolean packed;
+  private DXGIFormat compressedFormat; // Null unless the texture is block compressed
 
   public int getWidth() {
     return width;
@@ -164,6 +167,82 @@ public class TextureDescription {
     this.colorType = colorType;
   }
 
+  /**
+   * @return The block compressed format of the texture, or null if its pixels are described by
+   *     {@link #getPixelFormat()} instead
+   */
+  public DXGIFormat getCompressedFormat() {
+    return compressedFormat;
+  }
+
+  public void setCompressedFormat(DXGIFormat compressedFormat) {
+    this.compressedFormat = compressedFormat;
+  }
+
+  /**
+   * @return True if the texture is stored as 4x4 blocks of compressed pixels
+   */
+  public boolean isCompressed() {
+    return compressedFormat != null;
+  }
+
+  /**
+   * Compute the number of bytes that store an image of the given dimensions in the texture's
+   * format. Block compressed images are padded to a whole number of 4x4 blocks in each depth slice.
+   *
+   * @param width
+   *     The width of the image
+   * @param height
+   *     The height of the image
+   * @param depth
+   *     The number of depth slices of the image
+   * @return The byte size of the image within the file
+   */
+  public long getImageByteCount(int width, int height, int depth) {
+    if (compressedFormat != null) {
+      long blocks = (long) ((width + 3) / 4) * ((height + 3) / 4);
+      return blocks * depth * compressedFormat.getBlockByteSize();
+    }
+    // Regardless of whether or not the format is packed, the total bit size is the same and correct
+    return (long) width * height * depth * (format.getBitSize() / Byte.SIZE);
+  }
+
+  /**
+   * @return The number of mipmap levels stored for each layer, which is 1 if not mipmapped
+   */
+  public int getMipmapCount() {
+    return mipmapped ? Images.getMaxMipmaps(width, height, depth) : 1;
+  }
+
+  /**
+   * Compute the location of every subresource of the described texture within a DDS file, given
+   * the position of the first byte of image data (which immediately follows the header). The
+   * subresources are ordered as they are stored: every mipmap level of the first layer, then every
+   * level of the next layer, and so on. Volume textures have a single layer and each of their
+   * subresources holds every depth slice of a level.
+   *
+   * @param dataOffset
+   *     The absolute position within the file of the start of the image data
+   * @return The subresources of the texture, in file order
+   */
+  public List<DDSSubresource> getSubresources(long dataOffset) {
+    int mipmapCount = getMipmapCount();
+
+    List<DDSSubresource> subresources = new ArrayList<>(imageCount * mipmapCount);
+    long offset = dataOffset;
+    for (int i = 0; i < imageCount; i++) {
+      for (int j = 0; j < mipmapCount; j++) {
+        int mipWidth = Images.getMipmapDimension(width, j);
+        int mipHeight = Images.getMipmapDimension(height, j);
+        int mipDepth = Images.getMipmapDimension(depth, j);
+        long length = getImageByteCount(mipWidth, mipHeight, mipDepth);
+        subresources.add(new DDSSubresource(i, j, mipWidth, mipHeight, mipDepth, offset, length));
+        offset += length;
+      }
+    }
+    return Collections.unmodifiableList(subresources);
+  }
+
   public static TextureDescription createFromHeader(DDSHeader header) throws InvalidImageException,
       UnsupportedImageFormatException {
     TextureDescription desc = new TextureDescription();
@@ -344,7 +423,14 @@ public class TextureDescription {
     }
 
     if (dxgiFormat != null) {
-      if (!dxgiFormat.isSupported()) {
+      if (dxgiFormat.isBlockCompressed()) {
+        // Block compressed formats have no pixel format, their blocks are decoded by the reader
+        colorType = dxgiFormat.getColorType();
+        compressedFormat = dxgiFormat;
+        format = null;
+        packed = false;
+        return;
+      } else if (!dxgiFormat.isSupported()) {
         throw new UnsupportedImageFormatException("Unsupported DXGI pixel format: " + dxgiFormat);
       } else {
         colorType = dxgiFormat.getColorType();
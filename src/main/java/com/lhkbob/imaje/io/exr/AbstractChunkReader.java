@@ -35,14 +35,8 @@ import com.lhkbob.imaje.Image;
 import com.lhkbob.imaje.Mipmap;
 import com.lhkbob.imaje.Raster;
 import com.lhkbob.imaje.color.Color;
-import com.lhkbob.imaje.data.BitData;
-import com.lhkbob.imaje.data.ByteData;
-import com.lhkbob.imaje.data.Bytes;
 import com.lhkbob.imaje.data.Data;
-import com.lhkbob.imaje.data.IntData;
-import com.lhkbob.imaje.data.LongData;
 import com.lhkbob.imaje.data.NumericData;
-import com.lhkbob.imaje.data.ShortData;
 import com.lhkbob.imaje.data.types.CustomBinaryData;
 import com.lhkbob.imaje.io.IO;
 import com.lhkbob.imaje.io.InvalidImageException;
@@ -54,8 +48,10 @@ import com.lhkbob.imaje.layout.UnpackedPixelArray;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
@@ -73,9 +69,6 @@ public abstract class AbstractChunkReader implements ChunkReader {
   // If not actually mipmapped then the list will be a single element
   private List<NumericData<?>> mipmapData;
 
-  private byte[] work1;
-  private byte[] work2;
-
   protected AbstractChunkReader(Data.Factory dataFactory, ChannelMapping mapping) {
     header = mapping.getHeader();
     this.mapping = mapping;
@@ -83,7 +76,7 @@ public abstract class AbstractChunkReader implements ChunkReader {
   }
 
   public static EnumSet<Compression> getSupportedCompressions() {
-    return EnumSet.of(Compression.NONE, Compression.ZIP, Compression.ZIPS);
+    return EnumSet.allOf(Compression.class);
   }
 
   @Override
@@ -98,10 +91,6 @@ public abstract class AbstractChunkReader implements ChunkReader {
 
   @Override
   public void initialize() {
-    int workLen = getMaxUncompressedDataSize();
-    work1 = new byte[workLen];
-    work2 = new byte[workLen];
-
     mipmapData = createBackingData();
   }
 
@@ -151,117 +140,211 @@ public abstract class AbstractChunkReader implements ChunkReader {
     return new Raster<>(color, new UnpackedPixelArray(format, layout, data));
   }
 
+  protected byte[] readChunkHeader(
+      SeekableByteChannel in, long position, int length, ChunkWorkspace workspace) throws
+      IOException {
+    byte[] chunkHeader = workspace.getHeader();
+    if (!IO.readAt(in, position, chunkHeader, 0, length)) {
+      throw new InvalidImageException("Unable to read chunk header");
+    }
+    return chunkHeader;
+  }
+
   protected void readChunk(
       int dataSize, Box2Int chunkWindow, NumericData<?> image, DataLayout layout,
-      SeekableByteChannel in, ByteBuffer work) throws IOException {
-    if (!IO.fill(work1, dataSize, in, work)) {
-      throw new InvalidImageException("Unable to fully read tile chunk");
-    }
+      SeekableByteChannel in, long position, ChunkWorkspace workspace) throws IOException {
+    int uncompressedSize = header.getBytesPerPixel() * chunkWindow.width() * chunkWindow.height();
+    byte[] uncompressed = decodeChunk(header, dataSize, chunkWindow, in, position, workspace);
 
     // The data will be  copied into the image data array at the offset for the first channel of the
     // layout for the top left corner of the data window.
     long offset = layout.getBandOffset(chunkWindow.getMinX(), chunkWindow.getMinY(), 0) * header
         .getBytesPerPixel();
+    copyUncompressedData(uncompressed, 0, uncompressedSize, image, offset);
+  }
 
+  /**
+   * Read the `dataSize` bytes of a chunk's data starting at `position` and decompress them
+   * according to `header`. The returned array holds the chunk's pixels as they are stored in an
+   * uncompressed OpenEXR file: for each line of `chunkWindow`, the little endian values of each
+   * channel in turn. The array is owned by `workspace` and may be longer than the uncompressed
+   * chunk.
+   */
+  static byte[] decodeChunk(
+      OpenEXRHeader header, int dataSize, Box2Int chunkWindow, SeekableByteChannel in,
+      long position, ChunkWorkspace workspace) throws IOException {
     int uncompressedSize = header.getBytesPerPixel() * chunkWindow.width() * chunkWindow.height();
 
+    // The compressed array is also the destination of the final reordering pass of ZIP so it
+    // must be able to hold the uncompressed chunk as well.
+    byte[] compressed = workspace.getCompressed(Math.max(dataSize, uncompressedSize));
+    if (!IO.readAt(in, position, compressed, 0, dataSize)) {
+      throw new InvalidImageException("Unable to fully read chunk");
+    }
+
     Compression lineCompression = header.getCompression();
     if (dataSize >= uncompressedSize) {
       // The compression didn't succeed for this line block, so uncompressed data is stored
       lineCompression = Compression.NONE;
     }
 
+    int width = chunkWindow.width();
+    int height = chunkWindow.height();
+    byte[] uncompressed;
     switch (lineCompression) {
     case NONE:
-      // The work1 data array holds the data uncompressed so it can be used directly
-      copyUncompressedData(work1, uncompressedSize, image, offset);
+      // The compressed data array holds the data uncompressed so it can be used directly
+      uncompressed = compressed;
       break;
     case ZIP:
-    case ZIPS:
+    case ZIPS: {
       // These both use the ZIP compression algorithm, they just differ in line block height,
       // which has already been encoded into the data window's height and thus uncompressedSize
-      byte[] uncompressed = unzipBlock(work1, work2, uncompressedSize);
-      copyUncompressedData(uncompressed, uncompressedSize, image, offset);
+      byte[] temp = workspace.getUncompressed(uncompressedSize);
+      inflate(workspace.getInflater(), compressed, dataSize, temp, uncompressedSize);
+      uncompressed = reconstructBytes(temp, compressed, uncompressedSize);
       break;
-    case PIZ:
-    case RLE:
-      // FIXME I have intentions to implement RLE and PIZ
+    }
+    case RLE: {
+      // Same predictor and byte reordering as ZIP, but with a simple run length encoding
+      byte[] temp = workspace.getUncompressed(uncompressedSize);
+      decodeRunLengths(compressed, dataSize, temp, uncompressedSize);
+      uncompressed = reconstructBytes(temp, compressed, uncompressedSize);
+      break;
+    }
     case PXR24:
+      // The compressed data is fully inflated into the temporary array before the output is
+      // written, so the compressed array can be reused for the output
+      Pxr24Decompressor.decompress(workspace.getInflater(), compressed, dataSize,
+          workspace.getUncompressed(uncompressedSize), compressed, header.getChannels(), width,
+          height);
+      uncompressed = compressed;
+      break;
+    case PIZ:
+      uncompressed = workspace.getUncompressed(uncompressedSize);
+      workspace.getPizDecompressor().decompress(
+          compressed, dataSize, uncompressed, header.getChannels(), width, height);
+      break;
     case B44:
     case B44A:
+      uncompressed = workspace.getUncompressed(uncompressedSize);
+      workspace.getB44Decompressor().decompress(
+          compressed, dataSize, uncompressed, header.getChannels(), width, height);
+      break;
+    default:
       throw new UnsupportedImageFormatException(
           "Compression mode is not supported: " + header.getCompression());
     }
+
+    return uncompressed;
   }
 
-  private void copyUncompressedData(
-      byte[] data, int dataLength, NumericData<?> image, long offset) {
-    BitData bits = image.asBitData();
-    // Copy byte data manually into data source, accounting for little endian order of OpenEXR files
-    if (bits instanceof ByteData) {
-      ByteData d = (ByteData) bits;
-      d.set(offset, data, 0, dataLength);
-    } else if (bits instanceof ShortData) {
-      ShortData d = (ShortData) bits;
-      for (int i = 0; i < dataLength; i += 2) {
-        short v = Bytes.bytesToShortLE(data, i);
-        d.set(offset + i / 2, v);
-      }
-    } else if (bits instanceof IntData) {
-      IntData d = (IntData) bits;
-      for (int i = 0; i < dataLength; i += 4) {
-        int v = Bytes.bytesToIntLE(data, i);
-        d.set(offset + i / 4, v);
-      }
-    } else if (bits instanceof LongData) {
-      LongData d = (LongData) bits;
-      for (int i = 0; i < dataLength; i += 8) {
-        long v = Bytes.bytesToLongLE(data, i);
-        d.set(offset + i / 8, v);
-      }
-    } else {
-      // Should not happen
-      throw new UnsupportedOperationException("Unexpected bit data type: " + bits);
-    }
+  // Copies dataLength bytes starting at dataOffset into image, starting at the element offset.
+  // The bytes are little endian values of the image's bit data type.
+  static void copyUncompressedData(
+      byte[] data, int dataOffset, int dataLength, NumericData<?> image, long offset) {
+    // Bulk copy into the data source, the buffer's order accounts for the little endian values of
+    // OpenEXR files
+    image.asBitData().setBits(
+        offset, ByteBuffer.wrap(data, dataOffset, dataLength).order(ByteOrder.LITTLE_ENDIAN));
   }
 
-  private byte[] unzipBlock(byte[] compressed, byte[] temp, int uncompressedLength) {
-    Inflater decompressor = new Inflater();
-    decompressor.setInput(compressed);
+  static void inflate(
+      Inflater decompressor, byte[] compressed, int compressedLength, byte[] out,
+      int uncompressedLength) throws InvalidImageException {
+    decompressor.setInput(compressed, 0, compressedLength);
     int read = 0;
     while (read < uncompressedLength) {
       try {
-        read += decompressor.inflate(temp, read, uncompressedLength - read);
+        int inflated = decompressor.inflate(out, read, uncompressedLength - read);
+        if (inflated == 0 && (decompressor.finished() || decompressor.needsInput())) {
+          throw new InvalidImageException("ZIP compressed chunk is truncated");
+        }
+        read += inflated;
       } catch (DataFormatException e) {
-        throw new IllegalStateException("Expected ZIP formatted scanline block", e);
+        throw new InvalidImageException("Expected ZIP formatted chunk", e);
       }
     }
-    decompressor.end();
+  }
 
-    // predictor (FIXME I don't know what this means, but it's from ImfZip.cpp
+  // Copies the 16-bit values of each channel's planes, stored consecutively per channel, into out
+  // as little endian bytes in OpenEXR's scanline order: for each line, each channel's values.
+  static void interleaveLines(
+      char[] planes, byte[] out, List<Channel> channels, int width, int height) {
+    int write = 0;
+    for (int y = 0; y < height; y++) {
+      int start = 0;
+      for (Channel c : channels) {
+        int valuesPerPixel = c.getFormat().getByteCount() / 2;
+        int lineLength = width * valuesPerPixel;
+        int read = start + y * lineLength;
+        for (int i = 0; i < lineLength; i++) {
+          char v = planes[read + i];
+          out[write++] = (byte) v;
+          out[write++] = (byte) (v >> 8);
+        }
+        start += lineLength * height;
+      }
+    }
+  }
+
+  private static void decodeRunLengths(
+      byte[] compressed, int compressedLength, byte[] out, int uncompressedLength) throws
+      InvalidImageException {
+    int read = 0;
+    int write = 0;
+    while (read < compressedLength) {
+      int count = compressed[read++];
+      if (count < 0) {
+        // A run of -count literal bytes
+        count = -count;
+        if (read + count > compressedLength || write + count > uncompressedLength) {
+          throw new InvalidImageException("RLE compressed chunk has invalid literal run");
+        }
+        System.arraycopy(compressed, read, out, write, count);
+        read += count;
+        write += count;
+      } else {
+        // The next byte repeated count + 1 times
+        count++;
+        if (read >= compressedLength || write + count > uncompressedLength) {
+          throw new InvalidImageException("RLE compressed chunk has invalid repeated run");
+        }
+        Arrays.fill(out, write, write + count, compressed[read++]);
+        write += count;
+      }
+    }
+
+    if (write != uncompressedLength) {
+      throw new InvalidImageException("RLE compressed chunk is truncated");
+    }
+  }
+
+  private static byte[] reconstructBytes(byte[] temp, byte[] out, int uncompressedLength) {
+    // Undo the predictor, each byte was stored as the difference from the previous byte
     for (int i = 1; i < uncompressedLength; i++) {
       int d = (0xff & temp[i - 1]) + (0xff & temp[i]) - 128;
       temp[i] = (byte) d;
     }
 
-    // reorder the pixel data
+    // Reorder the pixel data, the first half holds the even bytes and the second half the odd
     int i1 = 0;
     int i2 = (uncompressedLength + 1) / 2;
     int i = 0;
     while (true) {
       if (i < uncompressedLength) {
-        compressed[i++] = temp[i1++];
+        out[i++] = temp[i1++];
       } else {
         break;
       }
       if (i < uncompressedLength) {
-        compressed[i++] = temp[i2++];
+        out[i++] = temp[i2++];
       } else {
         break;
       }
     }
 
-    return compressed;
+    return out;
   }
 
   protected NumericData<?> createData(long numPixels) {
@@ -283,7 +366,5 @@ public abstract class AbstractChunkReader implements ChunkReader {
     }
   }
 
-  protected abstract int getMaxUncompressedDataSize();
-
   protected abstract List<NumericData<?>> createBackingData();
 }
@@ -0,0 +1,256 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import com.lhkbob.imaje.data.Data;
+import com.lhkbob.imaje.io.InvalidImageException;
+
+import java.util.List;
+
+/**
+ * B44Decompressor
+ * ===============
+ *
+ * Decompressor for OpenEXR's B44 and B44A compression. HALF channels are split into 4x4 blocks
+ * that are stored in 14 bytes as a 16-bit anchor value and 15 6-bit scaled differences. B44A
+ * additionally stores blocks with a single value in 3 bytes. Both variants are decoded the same
+ * way. Channels of other types are stored uncompressed. Channels flagged as perceptually linear
+ * were encoded in a logarithmic space and are converted back with a lookup table.
+ *
+ * The decompressor keeps its channel planes between chunks so decoding a chunk does not allocate
+ * once the planes have grown to the chunk size. It is not thread safe and should be owned by a
+ * single {@link ChunkWorkspace}.
+ *
+ * @author Michael Ludwig
+ */
+final class B44Decompressor {
+  // Packed blocks store their shift in the top 6 bits of the third byte and never shift by more
+  // than 12, so any larger value marks a flat block (writers use 0xfc, but readers accept all)
+  private static final int FLAT_BLOCK_THRESHOLD = 13 << 2;
+
+  private final char[] block;
+  private char[] planes;
+
+  B44Decompressor() {
+    block = new char[16];
+    planes = new char[0];
+  }
+
+  /**
+   * Decompress the B44 or B44A chunk stored in the first `inLength` bytes of `in` into `out`,
+   * which receives the chunk's uncompressed data in OpenEXR's scanline order for a chunk of the
+   * given dimensions.
+   *
+   * @param in
+   *     The compressed chunk
+   * @param inLength
+   *     The number of compressed bytes
+   * @param out
+   *     The array receiving the uncompressed chunk
+   * @param channels
+   *     The channels stored in each scanline of the chunk
+   * @param width
+   *     The width of the chunk in pixels
+   * @param height
+   *     The height of the chunk in pixels
+   * @throws InvalidImageException
+   *     if the compressed data is malformed
+   */
+  void decompress(
+      byte[] in, int inLength, byte[] out, List<Channel> channels, int width, int height) throws
+      InvalidImageException {
+    int planeLength = 0;
+    for (Channel c : channels) {
+      planeLength += width * height * (c.getFormat().getByteCount() / 2);
+    }
+    if (planes.length < planeLength) {
+      planes = new char[planeLength];
+    }
+
+    int position = 0;
+    int start = 0;
+    for (Channel c : channels) {
+      int valuesPerPixel = c.getFormat().getByteCount() / 2;
+      int channelLength = width * height * valuesPerPixel;
+
+      if (c.getFormat() != ChannelFormat.HALF) {
+        // Stored uncompressed as little endian 16-bit values
+        if (position + 2 * channelLength > inLength) {
+          throw new InvalidImageException("B44 chunk is too short for uncompressed channel");
+        }
+        for (int i = 0; i < channelLength; i++) {
+          planes[start + i] = (char) ((in[position] & 0xff) | ((in[position + 1] & 0xff) << 8));
+          position += 2;
+        }
+      } else {
+        char[] exp = c.isLinear() ? ExpTable.TABLE : null;
+        for (int y = 0; y < height; y += 4) {
+          int rows = Math.min(4, height - y);
+          for (int x = 0; x < width; x += 4) {
+            if (position + 3 > inLength) {
+              throw new InvalidImageException("B44 chunk is too short for block");
+            }
+            if ((in[position + 2] & 0xff) >= FLAT_BLOCK_THRESHOLD) {
+              unpack3(in, position);
+              position += 3;
+            } else {
+              if (position + 14 > inLength) {
+                throw new InvalidImageException("B44 chunk is too short for block");
+              }
+              unpack14(in, position);
+              position += 14;
+            }
+
+            if (exp != null) {
+              for (int i = 0; i < 16; i++) {
+                block[i] = exp[block[i]];
+              }
+            }
+
+            // Copy the block into the plane, clipping at the right and bottom edges
+            int columns = Math.min(4, width - x);
+            for (int r = 0; r < rows; r++) {
+              System.arraycopy(block, 4 * r, planes, start + (y + r) * width + x, columns);
+            }
+          }
+        }
+      }
+
+      start += channelLength;
+    }
+
+    AbstractChunkReader.interleaveLines(planes, out, channels, width, height);
+  }
+
+  private void unpack14(byte[] in, int offset) {
+    int b0 = in[offset] & 0xff;
+    int b1 = in[offset + 1] & 0xff;
+    int b2 = in[offset + 2] & 0xff;
+    int b3 = in[offset + 3] & 0xff;
+    int b4 = in[offset + 4] & 0xff;
+    int b5 = in[offset + 5] & 0xff;
+    int b6 = in[offset + 6] & 0xff;
+    int b7 = in[offset + 7] & 0xff;
+    int b8 = in[offset + 8] & 0xff;
+    int b9 = in[offset + 9] & 0xff;
+    int b10 = in[offset + 10] & 0xff;
+    int b11 = in[offset + 11] & 0xff;
+    int b12 = in[offset + 12] & 0xff;
+    int b13 = in[offset + 13] & 0xff;
+
+    int shift = b2 >> 2;
+    int bias = 0x20 << shift;
+
+    // The first column is stored as differences down from the anchor, the rest of each row as
+    // differences from the value to its left
+    int s0 = (b0 << 8) | b1;
+    int s4 = s0 + ((((b2 << 4) | (b3 >> 4)) & 0x3f) << shift) - bias;
+    int s8 = s4 + ((((b3 << 2) | (b4 >> 6)) & 0x3f) << shift) - bias;
+    int s12 = s8 + ((b4 & 0x3f) << shift) - bias;
+
+    int s1 = s0 + ((b5 >> 2) << shift) - bias;
+    int s5 = s4 + ((((b5 << 4) | (b6 >> 4)) & 0x3f) << shift) - bias;
+    int s9 = s8 + ((((b6 << 2) | (b7 >> 6)) & 0x3f) << shift) - bias;
+    int s13 = s12 + ((b7 & 0x3f) << shift) - bias;
+
+    int s2 = s1 + ((b8 >> 2) << shift) - bias;
+    int s6 = s5 + ((((b8 << 4) | (b9 >> 4)) & 0x3f) << shift) - bias;
+    int s10 = s9 + ((((b9 << 2) | (b10 >> 6)) & 0x3f) << shift) - bias;
+    int s14 = s13 + ((b10 & 0x3f) << shift) - bias;
+
+    int s3 = s2 + ((b11 >> 2) << shift) - bias;
+    int s7 = s6 + ((((b11 << 4) | (b12 >> 4)) & 0x3f) << shift) - bias;
+    int s11 = s10 + ((((b12 << 2) | (b13 >> 6)) & 0x3f) << shift) - bias;
+    int s15 = s14 + ((b13 & 0x3f) << shift) - bias;
+
+    block[0] = toHalf(s0);
+    block[1] = toHalf(s1);
+    block[2] = toHalf(s2);
+    block[3] = toHalf(s3);
+    block[4] = toHalf(s4);
+    block[5] = toHalf(s5);
+    block[6] = toHalf(s6);
+    block[7] = toHalf(s7);
+    block[8] = toHalf(s8);
+    block[9] = toHalf(s9);
+    block[10] = toHalf(s10);
+    block[11] = toHalf(s11);
+    block[12] = toHalf(s12);
+    block[13] = toHalf(s13);
+    block[14] = toHalf(s14);
+    block[15] = toHalf(s15);
+  }
+
+  private void unpack3(byte[] in, int offset) {
+    int s0 = ((in[offset] & 0xff) << 8) | (in[offset + 1] & 0xff);
+    char value = toHalf(s0);
+    for (int i = 0; i < 16; i++) {
+      block[i] = value;
+    }
+  }
+
+  // Undo the ordered-magnitude mapping the encoder applies to make half bits comparable
+  private static char toHalf(int s) {
+    s &= 0xffff;
+    if ((s & 0x8000) != 0) {
+      return (char) (s & 0x7fff);
+    } else {
+      return (char) ~s;
+    }
+  }
+
+  // Holder so that the table is only computed when a perceptually linear channel is decoded
+  private static class ExpTable {
+    private static final char[] TABLE = createTable();
+
+    private static char[] createTable() {
+      double halfMax = Data.SFLOAT16.getMaxValue();
+      double logHalfMax = 8.0 * Math.log(halfMax);
+      long halfMaxBits = Data.SFLOAT16.toBits(halfMax);
+
+      char[] table = new char[1 << 16];
+      for (int i = 0; i < table.length; i++) {
+        float h = (float) Data.SFLOAT16.toNumericValue(i);
+        long bits;
+        if (Float.isNaN(h) || Float.isInfinite(h)) {
+          bits = 0;
+        } else if (h >= logHalfMax) {
+          bits = halfMaxBits;
+        } else {
+          bits = Data.SFLOAT16.toBits((float) Math.exp(h / 8.0f));
+        }
+        table[i] = (char) bits;
+      }
+      return table;
+    }
+  }
+}
@@ -96,6 +96,13 @@ public class Box2Int {
     return box;
   }
 
+  public void write(ByteBuffer work) {
+    Bytes.intToBytesLE(minX, work);
+    Bytes.intToBytesLE(minY, work);
+    Bytes.intToBytesLE(maxX, work);
+    Bytes.intToBytesLE(maxY, work);
+  }
+
   @Override
   public String toString() {
     return String
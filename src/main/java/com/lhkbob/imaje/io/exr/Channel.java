@@ -38,6 +38,7 @@ import com.lhkbob.imaje.io.InvalidImageException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 
 /**
  *
@@ -114,4 +115,18 @@ public class Channel {
 
     return new Channel(name, ChannelFormat.values()[pf], linear, xs, ys);
   }
+
+  // The number of bytes written by write(), including the null terminator of the name
+  public int getEncodedSize() {
+    return name.length() + 17;
+  }
+
+  public void write(ByteBuffer work) {
+    work.put(name.getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+    Bytes.intToBytesLE(type.ordinal(), work);
+    // pLinear followed by 3 reserved bytes
+    Bytes.intToBytesLE(linear ? 1 : 0, work);
+    Bytes.intToBytesLE(xSampling, work);
+    Bytes.intToBytesLE(ySampling, work);
+  }
 }
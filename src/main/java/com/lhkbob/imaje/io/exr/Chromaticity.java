@@ -113,4 +113,15 @@ public class Chromaticity {
 
     return new Chromaticity(redX, redY, greenX, greenY, blueX, blueY, whiteX, whiteY);
   }
+
+  public void write(ByteBuffer work) {
+    Bytes.floatToBytesLE(redX, work);
+    Bytes.floatToBytesLE(redY, work);
+    Bytes.floatToBytesLE(greenX, work);
+    Bytes.floatToBytesLE(greenY, work);
+    Bytes.floatToBytesLE(blueX, work);
+    Bytes.floatToBytesLE(blueY, work);
+    Bytes.floatToBytesLE(whiteX, work);
+    Bytes.floatToBytesLE(whiteY, work);
+  }
 }
@@ -49,7 +49,11 @@ public interface ChunkReader {
   // Image instances should be Raster or Mipmap only
   List<? extends Image<?>> getImages();
 
-  void readNextChunk(SeekableByteChannel in, ByteBuffer work) throws IOException;
+  // Reads the chunk starting at the absolute position in the channel (after any multipart part
+  // number) and decodes it into the reader's image data. This may be called concurrently for
+  // different chunks so long as each thread uses its own workspace.
+  void readChunk(SeekableByteChannel in, long position, ChunkWorkspace workspace) throws
+      IOException;
 
   OffsetTable readOffsetTable(SeekableByteChannel in, ByteBuffer work) throws IOException;
 
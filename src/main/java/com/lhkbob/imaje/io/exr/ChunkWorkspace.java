@@ -0,0 +1,115 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import java.util.zip.Inflater;
+
+/**
+ * ChunkWorkspace
+ * ==============
+ *
+ * Scratch state used by a {@link ChunkReader} to read and decompress a single chunk. A workspace
+ * holds the byte arrays for the compressed and decompressed chunk data, a reusable {@link
+ * Inflater}, and the tables of the PIZ and B44 decompressors, growing the arrays as larger chunks
+ * are encountered. A workspace is not thread safe, but chunk readers are, so each thread decoding
+ * chunks concurrently should own its own workspace. The workspace should be closed once decoding
+ * is complete to release the native inflater state.
+ *
+ * @author Michael Ludwig
+ */
+public final class ChunkWorkspace implements AutoCloseable {
+  private final byte[] header;
+  private byte[] compressed;
+  private byte[] uncompressed;
+  private Inflater inflater;
+  private PizDecompressor piz;
+  private B44Decompressor b44;
+
+  public ChunkWorkspace() {
+    // Large enough for the tile chunk header, which is the largest (dx, dy, lx, ly, data size)
+    header = new byte[20];
+    compressed = new byte[0];
+    uncompressed = new byte[0];
+    inflater = null;
+    piz = null;
+    b44 = null;
+  }
+
+  byte[] getHeader() {
+    return header;
+  }
+
+  byte[] getCompressed(int length) {
+    if (compressed.length < length) {
+      compressed = new byte[length];
+    }
+    return compressed;
+  }
+
+  byte[] getUncompressed(int length) {
+    if (uncompressed.length < length) {
+      uncompressed = new byte[length];
+    }
+    return uncompressed;
+  }
+
+  Inflater getInflater() {
+    if (inflater == null) {
+      inflater = new Inflater();
+    } else {
+      inflater.reset();
+    }
+    return inflater;
+  }
+
+  PizDecompressor getPizDecompressor() {
+    if (piz == null) {
+      piz = new PizDecompressor();
+    }
+    return piz;
+  }
+
+  B44Decompressor getB44Decompressor() {
+    if (b44 == null) {
+      b44 = new B44Decompressor();
+    }
+    return b44;
+  }
+
+  @Override
+  public void close() {
+    if (inflater != null) {
+      inflater.end();
+      inflater = null;
+    }
+  }
+}
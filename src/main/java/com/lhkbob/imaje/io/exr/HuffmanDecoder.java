@@ -0,0 +1,342 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import com.lhkbob.imaje.data.Bytes;
+import com.lhkbob.imaje.io.InvalidImageException;
+
+import java.util.Arrays;
+
+/**
+ * HuffmanDecoder
+ * ==============
+ *
+ * Decoder for the canonical Huffman coding of 16-bit symbols used by OpenEXR's PIZ compression.
+ * The encoded stream starts with a 20 byte header (minimum and maximum symbol, table length, and
+ * bit count of the encoded data), followed by the packed code length table and then the encoded
+ * bits. The maximum symbol doubles as a run-length code that repeats the previous symbol.
+ *
+ * Decoding is table driven: codes of up to 14 bits are resolved with a single lookup into the
+ * primary table, while longer codes share a primary entry that lists the candidate symbols. All
+ * tables are allocated once per decoder and reset for each chunk, so a decoder is not thread safe
+ * and should be owned by a single {@link ChunkWorkspace}.
+ *
+ * @author Michael Ludwig
+ */
+final class HuffmanDecoder {
+  private static final int ENCODING_BITS = 16;
+  private static final int ENCODING_SIZE = (1 << ENCODING_BITS) + 1;
+  private static final int DECODING_BITS = 14;
+  private static final int DECODING_SIZE = 1 << DECODING_BITS;
+  private static final int DECODING_MASK = DECODING_SIZE - 1;
+
+  private static final int MAX_CODE_LENGTH = 58;
+  private static final int SHORT_ZEROCODE_RUN = 59;
+  private static final int LONG_ZEROCODE_RUN = 63;
+  private static final int SHORTEST_LONG_RUN = 2 + LONG_ZEROCODE_RUN - SHORT_ZEROCODE_RUN;
+
+  // Per symbol: code length in the low 6 bits and the canonical code in the remaining bits
+  private final long[] codes;
+  private final long[] lengthCounts;
+
+  // Primary decoding table, a non-zero length means a short code whose symbol is in decodedSymbol.
+  // Otherwise the entry is the prefix of longCount long codes stored in longSymbols at longStart.
+  private final int[] decodedLength;
+  private final int[] decodedSymbol;
+  private final int[] longStart;
+  private final int[] longCount;
+  private final int[] longSymbols;
+
+  // Bit reading state for the current chunk
+  private long bits;
+  private int bitCount;
+  private int position;
+  private int outPosition;
+
+  HuffmanDecoder() {
+    codes = new long[ENCODING_SIZE];
+    lengthCounts = new long[MAX_CODE_LENGTH + 1];
+    decodedLength = new int[DECODING_SIZE];
+    decodedSymbol = new int[DECODING_SIZE];
+    longStart = new int[DECODING_SIZE];
+    longCount = new int[DECODING_SIZE];
+    longSymbols = new int[ENCODING_SIZE];
+  }
+
+  /**
+   * Decode the Huffman encoded bytes in `in`, from `offset` to `offset + length`, into exactly
+   * `outLength` 16-bit symbols stored in `out`.
+   *
+   * @param in
+   *     The encoded data, starting with the 20 byte header
+   * @param offset
+   *     The index of the first encoded byte
+   * @param length
+   *     The number of encoded bytes
+   * @param out
+   *     The array receiving decoded symbols
+   * @param outLength
+   *     The exact number of symbols that must be decoded
+   * @throws InvalidImageException
+   *     if the encoded data is malformed or does not decode to `outLength` symbols
+   */
+  void decode(byte[] in, int offset, int length, char[] out, int outLength) throws
+      InvalidImageException {
+    if (length == 0) {
+      if (outLength != 0) {
+        throw new InvalidImageException("Huffman data is empty but symbols were expected");
+      }
+      return;
+    }
+    if (length < 20) {
+      throw new InvalidImageException("Huffman data is too short for its header");
+    }
+
+    int minSymbol = Bytes.bytesToIntLE(in, offset);
+    int maxSymbol = Bytes.bytesToIntLE(in, offset + 4);
+    // Bytes 8 through 11 hold the table length, which is implied by the code lengths
+    int bitLength = Bytes.bytesToIntLE(in, offset + 12);
+    if (minSymbol < 0 || minSymbol >= ENCODING_SIZE || maxSymbol < 0
+        || maxSymbol >= ENCODING_SIZE) {
+      throw new InvalidImageException("Invalid Huffman symbol range");
+    }
+
+    int end = offset + length;
+    position = offset + 20;
+    unpackCodeTable(in, end, minSymbol, maxSymbol);
+
+    if (bitLength < 0 || bitLength > 8L * (end - position)) {
+      throw new InvalidImageException("Huffman bit length exceeds available data");
+    }
+
+    buildDecodingTable(minSymbol, maxSymbol);
+    decodeSymbols(in, end, position + (bitLength + 7) / 8, bitLength, maxSymbol, out, outLength);
+  }
+
+  private void unpackCodeTable(byte[] in, int end, int minSymbol, int maxSymbol) throws
+      InvalidImageException {
+    Arrays.fill(codes, 0L);
+    bits = 0;
+    bitCount = 0;
+
+    for (int symbol = minSymbol; symbol <= maxSymbol; symbol++) {
+      int codeLength = readBits(in, end, 6);
+      codes[symbol] = codeLength;
+
+      int zeroRun = 0;
+      if (codeLength == LONG_ZEROCODE_RUN) {
+        zeroRun = readBits(in, end, 8) + SHORTEST_LONG_RUN;
+      } else if (codeLength >= SHORT_ZEROCODE_RUN) {
+        zeroRun = codeLength - SHORT_ZEROCODE_RUN + 2;
+      }
+
+      if (zeroRun > 0) {
+        if (symbol + zeroRun > maxSymbol + 1) {
+          throw new InvalidImageException("Huffman code table is too long");
+        }
+        Arrays.fill(codes, symbol, symbol + zeroRun, 0L);
+        symbol += zeroRun - 1;
+      }
+    }
+
+    // Assign canonical codes: longer codes get smaller values
+    Arrays.fill(lengthCounts, 0L);
+    for (long code : codes) {
+      lengthCounts[(int) code]++;
+    }
+    long code = 0;
+    for (int i = MAX_CODE_LENGTH; i > 0; i--) {
+      long next = (code + lengthCounts[i]) >> 1;
+      lengthCounts[i] = code;
+      code = next;
+    }
+    for (int i = 0; i < ENCODING_SIZE; i++) {
+      int codeLength = (int) codes[i];
+      if (codeLength > 0) {
+        codes[i] = codeLength | (lengthCounts[codeLength]++ << 6);
+      }
+    }
+  }
+
+  private void buildDecodingTable(int minSymbol, int maxSymbol) throws InvalidImageException {
+    Arrays.fill(decodedLength, 0);
+    Arrays.fill(longCount, 0);
+
+    // First pass fills the short codes and counts the long codes sharing each primary entry
+    for (int symbol = minSymbol; symbol <= maxSymbol; symbol++) {
+      long code = codes[symbol] >>> 6;
+      int codeLength = (int) (codes[symbol] & 63);
+      if ((code >> codeLength) != 0) {
+        throw new InvalidImageException("Invalid Huffman table entry");
+      }
+
+      if (codeLength > DECODING_BITS) {
+        int entry = (int) (code >> (codeLength - DECODING_BITS));
+        if (decodedLength[entry] != 0) {
+          throw new InvalidImageException("Invalid Huffman table entry");
+        }
+        longCount[entry]++;
+      } else if (codeLength > 0) {
+        int entry = (int) (code << (DECODING_BITS - codeLength));
+        int entryEnd = entry + (1 << (DECODING_BITS - codeLength));
+        for (int i = entry; i < entryEnd; i++) {
+          if (decodedLength[i] != 0 || longCount[i] != 0) {
+            throw new InvalidImageException("Invalid Huffman table entry");
+          }
+          decodedLength[i] = codeLength;
+          decodedSymbol[i] = symbol;
+        }
+      }
+    }
+
+    // Second pass lays out the long code candidates contiguously, in increasing symbol order
+    int start = 0;
+    for (int i = 0; i < DECODING_SIZE; i++) {
+      longStart[i] = start;
+      start += longCount[i];
+      longCount[i] = 0;
+    }
+    for (int symbol = minSymbol; symbol <= maxSymbol; symbol++) {
+      int codeLength = (int) (codes[symbol] & 63);
+      if (codeLength > DECODING_BITS) {
+        int entry = (int) ((codes[symbol] >>> 6) >> (codeLength - DECODING_BITS));
+        longSymbols[longStart[entry] + longCount[entry]++] = symbol;
+      }
+    }
+  }
+
+  private void decodeSymbols(
+      byte[] in, int end, int bitsEnd, int bitLength, int runLengthSymbol, char[] out,
+      int outLength) throws InvalidImageException {
+    bits = 0;
+    bitCount = 0;
+    outPosition = 0;
+
+    while (position < bitsEnd) {
+      readByte(in, end);
+
+      while (bitCount >= DECODING_BITS) {
+        int entry = (int) ((bits >> (bitCount - DECODING_BITS)) & DECODING_MASK);
+        int codeLength = decodedLength[entry];
+        if (codeLength != 0) {
+          bitCount -= codeLength;
+          emit(in, end, decodedSymbol[entry], runLengthSymbol, out, outLength);
+        } else {
+          int candidates = longCount[entry];
+          if (candidates == 0) {
+            throw new InvalidImageException("Invalid Huffman code");
+          }
+
+          int first = longStart[entry];
+          int j = 0;
+          for (; j < candidates; j++) {
+            int symbol = longSymbols[first + j];
+            int symbolLength = (int) (codes[symbol] & 63);
+            while (bitCount < symbolLength && position < bitsEnd) {
+              readByte(in, end);
+            }
+            if (bitCount >= symbolLength) {
+              long mask = (1L << symbolLength) - 1;
+              if ((codes[symbol] >>> 6) == ((bits >> (bitCount - symbolLength)) & mask)) {
+                bitCount -= symbolLength;
+                emit(in, end, symbol, runLengthSymbol, out, outLength);
+                break;
+              }
+            }
+          }
+          if (j == candidates) {
+            throw new InvalidImageException("Invalid Huffman code");
+          }
+        }
+      }
+    }
+
+    // Decode the remaining short codes, discarding the padding bits of the final byte
+    int padding = (8 - bitLength) & 7;
+    bits >>= padding;
+    bitCount -= padding;
+    while (bitCount > 0) {
+      int entry = (int) ((bits << (DECODING_BITS - bitCount)) & DECODING_MASK);
+      int codeLength = decodedLength[entry];
+      if (codeLength == 0) {
+        throw new InvalidImageException("Invalid Huffman code");
+      }
+      bitCount -= codeLength;
+      emit(in, end, decodedSymbol[entry], runLengthSymbol, out, outLength);
+    }
+
+    if (outPosition != outLength) {
+      throw new InvalidImageException("Huffman data decoded to too few symbols");
+    }
+  }
+
+  private void emit(
+      byte[] in, int end, int symbol, int runLengthSymbol, char[] out, int outLength) throws
+      InvalidImageException {
+    if (symbol == runLengthSymbol) {
+      // Repeat the previous symbol by the count stored in the next 8 bits
+      if (bitCount < 8) {
+        readByte(in, end);
+      }
+      bitCount -= 8;
+      int run = (int) (bits >> bitCount) & 0xff;
+      if (outPosition + run > outLength) {
+        throw new InvalidImageException("Huffman data decoded to too many symbols");
+      } else if (outPosition == 0) {
+        throw new InvalidImageException("Huffman run-length code has no previous symbol");
+      }
+      char previous = out[outPosition - 1];
+      Arrays.fill(out, outPosition, outPosition + run, previous);
+      outPosition += run;
+    } else if (outPosition < outLength) {
+      out[outPosition++] = (char) symbol;
+    } else {
+      throw new InvalidImageException("Huffman data decoded to too many symbols");
+    }
+  }
+
+  private void readByte(byte[] in, int end) throws InvalidImageException {
+    if (position >= end) {
+      throw new InvalidImageException("Unexpected end of Huffman data");
+    }
+    bits = (bits << 8) | (in[position++] & 0xff);
+    bitCount += 8;
+  }
+
+  private int readBits(byte[] in, int end, int count) throws InvalidImageException {
+    while (bitCount < count) {
+      readByte(in, end);
+    }
+    bitCount -= count;
+    return (int) ((bits >> bitCount) & ((1L << count) - 1));
+  }
+}
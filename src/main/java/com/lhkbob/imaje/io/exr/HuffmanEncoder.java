@@ -0,0 +1,343 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import com.lhkbob.imaje.data.Bytes;
+
+import java.util.Arrays;
+
+/**
+ * HuffmanEncoder
+ * ==============
+ *
+ * Encoder for the canonical Huffman coding of 16-bit symbols used by OpenEXR's PIZ compression,
+ * producing the format read by {@link HuffmanDecoder}. A pseudo-symbol one larger than the largest
+ * symbol present is added to the code and is used to encode runs of up to 255 repetitions of the
+ * previous symbol when that is shorter than repeating its code.
+ *
+ * Encoding happens in two steps: {@link #prepare(char[], int)} builds the code for the symbols and
+ * reports the exact encoded length, and {@link #write(char[], int, byte[], int)} writes the
+ * encoded data. All tables are allocated once per encoder so it is not thread safe.
+ *
+ * @author Michael Ludwig
+ */
+final class HuffmanEncoder {
+  private static final int ENCODING_SIZE = (1 << 16) + 1;
+
+  private static final int MAX_CODE_LENGTH = 58;
+  private static final int SHORT_ZEROCODE_RUN = 59;
+  private static final int LONG_ZEROCODE_RUN = 63;
+  private static final int SHORTEST_LONG_RUN = 2 + LONG_ZEROCODE_RUN - SHORT_ZEROCODE_RUN;
+  private static final int LONGEST_LONG_RUN = 255 + SHORTEST_LONG_RUN;
+
+  private final long[] frequencies;
+  // Per symbol: code length in the low 6 bits and the canonical code in the remaining bits
+  private final long[] codes;
+  private final long[] lengthCounts;
+  // Min-heap of symbols ordered by frequency, and the linked lists of symbols merged into a node
+  private final int[] heap;
+  private final int[] links;
+  // The packed code length table, with room for 6 bits per symbol
+  private final byte[] table;
+
+  private int minSymbol;
+  private int runLengthSymbol;
+  private int tableLength;
+  private long bitLength;
+
+  // Bit writing state
+  private long bits;
+  private int bitCount;
+  private int position;
+
+  HuffmanEncoder() {
+    frequencies = new long[ENCODING_SIZE];
+    codes = new long[ENCODING_SIZE];
+    lengthCounts = new long[MAX_CODE_LENGTH + 1];
+    heap = new int[ENCODING_SIZE];
+    links = new int[ENCODING_SIZE];
+    table = new byte[(ENCODING_SIZE * 6 + 7) / 8];
+  }
+
+  /**
+   * Build the Huffman code for the first `rawLength` symbols in `raw`.
+   *
+   * @param raw
+   *     The symbols to encode
+   * @param rawLength
+   *     The number of symbols to encode
+   * @return The exact number of bytes that {@link #write(char[], int, byte[], int)} will produce
+   */
+  int prepare(char[] raw, int rawLength) {
+    if (rawLength == 0) {
+      tableLength = 0;
+      bitLength = 0;
+      return 0;
+    }
+
+    Arrays.fill(frequencies, 0L);
+    for (int i = 0; i < rawLength; i++) {
+      frequencies[raw[i]]++;
+    }
+
+    buildCodeLengths();
+    assignCanonicalCodes();
+    packCodeTable();
+    bitLength = encodeSymbols(raw, rawLength, null, 0);
+    return 20 + tableLength + (int) ((bitLength + 7) / 8);
+  }
+
+  /**
+   * Write the symbols previously given to {@link #prepare(char[], int)} into `out`, starting at
+   * `offset`. `out` must have room for the length returned by `prepare()`.
+   *
+   * @param raw
+   *     The symbols to encode, which must be the same as provided to `prepare()`
+   * @param rawLength
+   *     The number of symbols to encode
+   * @param out
+   *     The array receiving the encoded data
+   * @param offset
+   *     The index of the first encoded byte
+   */
+  void write(char[] raw, int rawLength, byte[] out, int offset) {
+    if (rawLength == 0) {
+      return;
+    }
+
+    Bytes.intToBytesLE(minSymbol, out, offset);
+    Bytes.intToBytesLE(runLengthSymbol, out, offset + 4);
+    Bytes.intToBytesLE(tableLength, out, offset + 8);
+    Bytes.intToBytesLE((int) bitLength, out, offset + 12);
+    // Reserved for future extensions
+    Bytes.intToBytesLE(0, out, offset + 16);
+    System.arraycopy(table, 0, out, offset + 20, tableLength);
+    encodeSymbols(raw, rawLength, out, offset + 20 + tableLength);
+  }
+
+  private void buildCodeLengths() {
+    minSymbol = 0;
+    while (frequencies[minSymbol] == 0) {
+      minSymbol++;
+    }
+    int maxSymbol = ENCODING_SIZE - 2;
+    while (frequencies[maxSymbol] == 0) {
+      maxSymbol--;
+    }
+
+    // The pseudo-symbol for run-length encoding follows the largest symbol
+    runLengthSymbol = maxSymbol + 1;
+    frequencies[runLengthSymbol] = 1;
+
+    Arrays.fill(codes, 0L);
+    int heapSize = 0;
+    for (int i = minSymbol; i <= runLengthSymbol; i++) {
+      links[i] = i;
+      if (frequencies[i] != 0) {
+        heap[heapSize++] = i;
+      }
+    }
+    for (int i = heapSize / 2 - 1; i >= 0; i--) {
+      siftDown(i, heapSize);
+    }
+
+    // Repeatedly merge the two least frequent nodes, every symbol in the merged nodes' lists
+    // becomes one level deeper in the tree
+    while (heapSize > 1) {
+      int low = heap[0];
+      heap[0] = heap[--heapSize];
+      siftDown(0, heapSize);
+
+      int high = heap[0];
+      frequencies[high] += frequencies[low];
+      siftDown(0, heapSize);
+
+      for (int j = high; ; j = links[j]) {
+        codes[j]++;
+        if (links[j] == j) {
+          // Append the low node's list to the end of the high node's list
+          links[j] = low;
+          break;
+        }
+      }
+      for (int j = low; ; j = links[j]) {
+        codes[j]++;
+        if (links[j] == j) {
+          break;
+        }
+      }
+    }
+  }
+
+  private void siftDown(int index, int heapSize) {
+    int symbol = heap[index];
+    long frequency = frequencies[symbol];
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && frequencies[heap[child + 1]] < frequencies[heap[child]]) {
+        child++;
+      }
+      if (frequencies[heap[child]] >= frequency) {
+        break;
+      }
+      heap[index] = heap[child];
+      index = child;
+    }
+    heap[index] = symbol;
+  }
+
+  private void assignCanonicalCodes() {
+    // Matches the assignment in HuffmanDecoder: longer codes get smaller values
+    Arrays.fill(lengthCounts, 0L);
+    for (long length : codes) {
+      lengthCounts[(int) length]++;
+    }
+    long code = 0;
+    for (int i = MAX_CODE_LENGTH; i > 0; i--) {
+      long next = (code + lengthCounts[i]) >> 1;
+      lengthCounts[i] = code;
+      code = next;
+    }
+    for (int i = 0; i < ENCODING_SIZE; i++) {
+      int length = (int) codes[i];
+      if (length > 0) {
+        codes[i] = length | (lengthCounts[length]++ << 6);
+      }
+    }
+  }
+
+  private void packCodeTable() {
+    bits = 0;
+    bitCount = 0;
+    position = 0;
+
+    for (int symbol = minSymbol; symbol <= runLengthSymbol; symbol++) {
+      int length = (int) (codes[symbol] & 63);
+      if (length == 0) {
+        int zeroRun = 1;
+        while (symbol < runLengthSymbol && zeroRun < LONGEST_LONG_RUN
+            && (codes[symbol + 1] & 63) == 0) {
+          symbol++;
+          zeroRun++;
+        }
+
+        if (zeroRun >= SHORTEST_LONG_RUN) {
+          writeBits(table, LONG_ZEROCODE_RUN, 6);
+          writeBits(table, zeroRun - SHORTEST_LONG_RUN, 8);
+          continue;
+        } else if (zeroRun >= 2) {
+          writeBits(table, SHORT_ZEROCODE_RUN + zeroRun - 2, 6);
+          continue;
+        }
+      }
+      writeBits(table, length, 6);
+    }
+
+    flushBits(table);
+    tableLength = position;
+  }
+
+  // Returns the number of bits encoded, if out is null then bits are only counted
+  private long encodeSymbols(char[] raw, int rawLength, byte[] out, int offset) {
+    bits = 0;
+    bitCount = 0;
+    position = offset;
+    long total = 0;
+
+    int symbol = raw[0];
+    int run = 0;
+    for (int i = 1; i < rawLength; i++) {
+      if (symbol == raw[i] && run < 255) {
+        run++;
+      } else {
+        total += sendCode(out, symbol, run);
+        run = 0;
+      }
+      symbol = raw[i];
+    }
+    total += sendCode(out, symbol, run);
+
+    if (out != null) {
+      flushBits(out);
+    }
+    return total;
+  }
+
+  // Outputs a symbol followed by run repetitions of the symbol, either explicitly or with the
+  // run-length pseudo-symbol, whichever is shorter
+  private long sendCode(byte[] out, int symbol, int run) {
+    long code = codes[symbol];
+    int length = (int) (code & 63);
+    long runCode = codes[runLengthSymbol];
+    int runLength = (int) (runCode & 63);
+
+    if (length + runLength + 8 < (long) length * run) {
+      if (out != null) {
+        writeBits(out, code >>> 6, length);
+        writeBits(out, runCode >>> 6, runLength);
+        writeBits(out, run, 8);
+      }
+      return length + runLength + 8;
+    } else {
+      if (out != null) {
+        for (int i = 0; i <= run; i++) {
+          writeBits(out, code >>> 6, length);
+        }
+      }
+      return (long) length * (run + 1);
+    }
+  }
+
+  private void writeBits(byte[] out, long value, int count) {
+    // Codes can be longer than the bits that fit in the buffer, so write them a byte at a time
+    while (count > 8) {
+      count -= 8;
+      writeBits(out, value >>> count, 8);
+    }
+    bits = (bits << count) | (value & ((1L << count) - 1));
+    bitCount += count;
+    while (bitCount >= 8) {
+      bitCount -= 8;
+      out[position++] = (byte) (bits >> bitCount);
+    }
+  }
+
+  private void flushBits(byte[] out) {
+    if (bitCount > 0) {
+      out[position++] = (byte) (bits << (8 - bitCount));
+      bitCount = 0;
+    }
+  }
+}
@@ -37,5 +37,16 @@ package com.lhkbob.imaje.io.exr;
 public interface OffsetTable {
   int getTotalOffsets();
 
+  /**
+   * Get the file offset of the chunk at `index`, where chunks are ordered as they are stored in the
+   * offset table and `index` ranges from `0` to `getTotalOffsets() - 1`. This allows every chunk
+   * to be located without knowing the coordinate scheme of the specific table type.
+   *
+   * @param index
+   *     The index of the chunk within the table
+   * @return The offset of the chunk, from the start of the file
+   */
+  long getChunkOffset(int index);
+
   long getOffset(int... chunkCoords);
 }
@@ -31,6 +31,8 @@
  */
 package com.lhkbob.imaje.io.exr;
 
+import com.lhkbob.imaje.data.Bytes;
+import com.lhkbob.imaje.io.IO;
 import com.lhkbob.imaje.io.InvalidImageException;
 import com.lhkbob.imaje.layout.DataLayout;
 import com.lhkbob.imaje.layout.TileInterleaveLayout;
@@ -40,6 +42,7 @@ import com.lhkbob.imaje.util.Arguments;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -352,6 +355,67 @@ public class OpenEXRHeader {
     return h;
   }
 
+  /**
+   * Write the header's attributes to `out`, followed by the null byte that terminates the header.
+   * Only the attributes of single-part scanline and tiled images are written; the name, type,
+   * version and chunk count attributes of multipart and deep images and any unprocessed attributes
+   * are not.
+   *
+   * @param out
+   *     The channel to write to
+   * @param work
+   *     The work buffer, which must be prepared for writing and have room for the largest
+   *     attribute
+   * @throws IOException
+   *     if the channel cannot be written to
+   */
+  public void write(SeekableByteChannel out, ByteBuffer work) throws IOException {
+    int channelListSize = 1;
+    for (Channel c : channels) {
+      channelListSize += c.getEncodedSize();
+    }
+    writeAttributeHeader("channels", "chlist", channelListSize, work);
+    for (Channel c : channels) {
+      c.write(work);
+    }
+    work.put((byte) 0);
+    IO.write(work, out);
+
+    writeAttributeHeader("compression", "compression", 1, work);
+    work.put((byte) compression.ordinal());
+    writeAttributeHeader("dataWindow", "box2i", 16, work);
+    dataWindow.write(work);
+    writeAttributeHeader("displayWindow", "box2i", 16, work);
+    displayWindow.write(work);
+    writeAttributeHeader("lineOrder", "lineOrder", 1, work);
+    work.put((byte) lineOrder.ordinal());
+    writeAttributeHeader("pixelAspectRatio", "float", 4, work);
+    Bytes.floatToBytesLE(pixelAspectRatio, work);
+    writeAttributeHeader("screenWindowCenter", "v2f", 8, work);
+    screenWindowCenter.write(work);
+    writeAttributeHeader("screenWindowWidth", "float", 4, work);
+    Bytes.floatToBytesLE(screenWindowWidth, work);
+
+    if (tiles != null) {
+      writeAttributeHeader("tiles", "tiledesc", 9, work);
+      tiles.write(work);
+    }
+    if (chromaticity != null) {
+      writeAttributeHeader("chromaticities", "chromaticities", 32, work);
+      chromaticity.write(work);
+    }
+
+    // End of header
+    work.put((byte) 0);
+    IO.write(work, out);
+  }
+
+  private static void writeAttributeHeader(String name, String type, int size, ByteBuffer work) {
+    work.put(name.getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+    work.put(type.getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+    Bytes.intToBytesLE(size, work);
+  }
+
   private void validate(ImageFormat format) throws InvalidImageException {
     if (format == ImageFormat.TILE && tiles == null) {
       throw new InvalidImageException("Single-part tile image requires a tile description");
@@ -44,10 +44,15 @@ import com.lhkbob.imaje.io.IO;
 import com.lhkbob.imaje.io.ImageFileReader;
 import com.lhkbob.imaje.io.InvalidImageException;
 import com.lhkbob.imaje.io.UnsupportedImageFormatException;
+import com.lhkbob.imaje.layout.ImageWindow;
 import com.lhkbob.imaje.layout.PixelArray;
 import com.lhkbob.imaje.layout.SubImagePixelArray;
+import com.lhkbob.imaje.layout.TileCache;
+import com.lhkbob.imaje.layout.TiledPixelArray;
+import com.lhkbob.imaje.util.Arguments;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
 import java.util.ArrayList;
@@ -59,6 +64,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import static com.lhkbob.imaje.io.exr.TypeReader.readAll;
@@ -72,21 +83,52 @@ public class OpenEXRReader implements ImageFileReader {
   private static final int WORK_BUFFER_LEN = 2048;
 
   private final Data.Factory dataFactory;
+  private final Executor executor;
+  private final int workerCount;
 
   public OpenEXRReader() {
     this(null);
   }
 
   public OpenEXRReader(Data.Factory dataFactory) {
+    this(dataFactory, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+  }
+
+  /**
+   * Create a reader that decodes chunks concurrently. Up to `workerCount` tasks are submitted to
+   * `executor`, each of which reads chunks with positional reads on the channel and decompresses
+   * them with its own inflater and scratch buffers, writing directly into the image's data. If
+   * `executor` is null or `workerCount` is 1, all chunks are decoded on the calling thread.
+   *
+   * Positional reads are only concurrent when the channel given to {@link
+   * #read(SeekableByteChannel)} is a {@link java.nio.channels.FileChannel}; other channels are
+   * locked for each read, although decompression still proceeds in parallel.
+   *
+   * @param dataFactory
+   *     The factory used to allocate image data, or null to use the default factory
+   * @param executor
+   *     The executor that decodes chunks, or null to decode on the calling thread
+   * @param workerCount
+   *     The maximum number of concurrent decoding tasks
+   * @throws IllegalArgumentException
+   *     if `workerCount` is less than 1
+   */
+  public OpenEXRReader(
+      Data.Factory dataFactory, @Arguments.Nullable Executor executor, int workerCount) {
+    Arguments.isPositive("workerCount", workerCount);
     if (dataFactory == null) {
       dataFactory = Data.getDefaultDataFactory();
     }
     this.dataFactory = dataFactory;
+    this.executor = executor;
+    this.workerCount = workerCount;
   }
 
   @Override
   public Image<?> read(SeekableByteChannel in) throws IOException {
     ByteBuffer work = Data.getBufferFactory().newByteBuffer(WORK_BUFFER_LEN);
+    // Chunk offsets are relative to the start of the file
+    long fileStart = in.position();
 
     ImageFormat format = readPreHeader(in, work);
     List<OpenEXRHeader> headers = readHeaders(format, in, work);
@@ -94,7 +136,7 @@ public class OpenEXRReader implements ImageFileReader {
 
     Map<OpenEXRHeader, OffsetTable> offsets = readOffsetTables(headers, readers, in, work);
     Map<OpenEXRHeader, List<? extends Image<?>>> chunks = readAllChunks(
-        format, headers, readers, offsets, in, work);
+        format, headers, readers, offsets, in, fileStart);
 
     // At least for the time being, this reader won't remember header specific images
     List<Image<?>> allChunks = new ArrayList<>();
@@ -104,6 +146,264 @@ public class OpenEXRReader implements ImageFileReader {
     return consolidateChunks(allChunks, mainHeader.getDisplayWindow());
   }
 
+  /**
+   * Read a rectangular region of a single level of a single-part scanline or tiled OpenEXR image,
+   * decoding only the chunks that intersect the region. The region is given in imaJe's pixel
+   * coordinates, with the origin at the lower left corner of the level's data window, and must be
+   * contained within the level. The returned image is a raster the size of the region.
+   *
+   * For tiled images with mipmap levels, `level` selects the mipmap. For ripmapped images it
+   * selects the level along the diagonal, clamped to the last level of the shorter dimension in
+   * the same manner as {@link #read(SeekableByteChannel)}. Scanline images and tiled images with a
+   * single level only have level 0.
+   *
+   * @param in
+   *     The channel to read from, positioned at the start of the file
+   * @param region
+   *     The region of the level to decode
+   * @param level
+   *     The level to decode
+   * @param channels
+   *     The full names of the OpenEXR channels to decode, or null to decode all channels
+   * @return The decoded region
+   * @throws IOException
+   *     if the channel cannot be read or does not contain a valid OpenEXR image
+   * @throws UnsupportedImageFormatException
+   *     if the image is a multipart or deep image, or if the selected channels do not share a
+   *     channel format
+   * @throws IllegalArgumentException
+   *     if `level` does not exist, if `region` is empty or not contained in the level, or if no
+   *     channels are selected or a channel name is not part of the image
+   */
+  public Image<?> readRegion(
+      SeekableByteChannel in, ImageWindow region, int level,
+      @Arguments.Nullable Set<String> channels) throws IOException {
+    Arguments.notNull("region", region);
+    Arguments.isGreaterThanOrEqualToZero("level", level);
+    if (region.getWidth() <= 0 || region.getHeight() <= 0) {
+      throw new IllegalArgumentException("Region cannot be empty: " + region);
+    }
+
+    ByteBuffer work = Data.getBufferFactory().newByteBuffer(WORK_BUFFER_LEN);
+    long fileStart = in.position();
+    OpenEXRHeader header = readSinglePartHeader(in, work);
+
+    // Determine the level coordinates and their pixel dimensions
+    int levelCount = getLevelCount(header);
+    if (level >= levelCount) {
+      throw new IllegalArgumentException(
+          "Level " + level + " does not exist, image has " + levelCount + " levels");
+    }
+    int[] levelCoords = getLevelCoordinates(header, level);
+    Box2Int levelWindow = getLevelWindow(header, levelCoords);
+    if (!region.isContainedInImage(levelWindow.width(), levelWindow.height())) {
+      throw new IllegalArgumentException(
+          "Region " + region + " is not contained in level of size " + levelWindow.width() + "x"
+              + levelWindow.height());
+    }
+
+    // Flip the region into OpenEXR's coordinates, where y increases downwards
+    Box2Int exrRegion = new Box2Int(levelWindow.getMinX() + region.getX(),
+        levelWindow.getMaxY() - region.getY() - region.getHeight() + 1,
+        levelWindow.getMinX() + region.getX() + region.getWidth() - 1,
+        levelWindow.getMaxY() - region.getY());
+
+    List<Channel> selected = selectChannels(header, channels);
+    OffsetTable table = readOffsetTable(header, in, work);
+    return readRegion(header, table, selected, levelCoords, exrRegion, in, fileStart);
+  }
+
+  /**
+   * Open a single-part scanline or tiled OpenEXR image without decoding any of its pixel data.
+   * The returned Raster or Mipmap is backed by {@link TiledPixelArray TiledPixelArrays} that
+   * decode the image's tiles, or blocks of scanlines, from `in` when they are first accessed and
+   * keep them in `cache`. Each level of a tiled image uses the file's tiles, while scanline images
+   * are divided into blocks of the lines that are compressed together.
+   *
+   * The channel must remain open, and must not be modified, for as long as the image is used.
+   * Tiles requested concurrently are read with positional reads if `in` is a {@link
+   * java.nio.channels.FileChannel}; any other channel is locked for each read.
+   * Only the first tile is decoded by this method, to determine the image's color type. As with
+   * {@link #read(SeekableByteChannel)}, the image is limited to the display window and a ripmapped
+   * image is read as a mipmap along its diagonal levels.
+   *
+   * @param in
+   *     The channel to read from, positioned at the start of the file
+   * @param cache
+   *     The cache that holds decoded tiles
+   * @return An image that decodes its pixels on demand
+   *
+   * @throws IOException
+   *     if the channel cannot be read or does not contain a valid OpenEXR image
+   * @throws UnsupportedImageFormatException
+   *     if the image is a multipart or deep image, or if its channels do not share a channel format
+   * @throws NullPointerException
+   *     if `cache` is null
+   */
+  public Image<?> readLazy(SeekableByteChannel in, TileCache cache) throws IOException {
+    Arguments.notNull("cache", cache);
+
+    ByteBuffer work = Data.getBufferFactory().newByteBuffer(WORK_BUFFER_LEN);
+    long fileStart = in.position();
+    OpenEXRHeader header = readSinglePartHeader(in, work);
+    List<Channel> channels = selectChannels(header, null);
+    OffsetTable table = readOffsetTable(header, in, work);
+
+    TileDescription tiles = header.getTileDescription();
+    int tileWidth = tiles == null ? header.getDataWindow().width() : tiles.getWidth();
+    int tileHeight = tiles == null ? header.getCompression().getLinesInBuffer() : tiles.getHeight();
+
+    // Decode the first tile to find out the color type and channels the image is read with
+    Image<?> first = readRegion(header, table, channels, getLevelCoordinates(header, 0),
+        getTileRegion(getLevelWindow(header, getLevelCoordinates(header, 0)), tileWidth,
+            tileHeight, 0, 0), in, fileStart);
+    PixelArray firstTile = ((Raster<?>) first).getPixelArray();
+
+    int levelCount = getLevelCount(header);
+    List<PixelArray> levels = new ArrayList<>(levelCount);
+    for (int i = 0; i < levelCount; i++) {
+      int[] levelCoords = getLevelCoordinates(header, i);
+      Box2Int levelWindow = getLevelWindow(header, levelCoords);
+
+      // OpenEXR's chunks start at the top of the image, so the tile grid does too
+      levels.add(new TiledPixelArray(levelWindow.width(), levelWindow.height(), tileWidth,
+          tileHeight, true, firstTile.getColorChannelCount(), firstTile.hasAlphaChannel(),
+          header.getBytesPerPixel(), new LazyTileLoader(header, table, channels, levelCoords,
+          levelWindow, tileWidth, tileHeight, in, fileStart), cache));
+    }
+
+    return makeLazyImage(first.getColorType(), levels, tiles != null
+        && tiles.getLevelMode() != LevelMode.ONE_LEVEL, header.getDisplayWindow());
+  }
+
+  private <T extends Color> Image<T> makeLazyImage(
+      Class<T> color, List<PixelArray> levels, boolean mipmapped, Box2Int displayWindow) {
+    Image<T> image = mipmapped ? new Mipmap<>(color, levels) : new Raster<>(color, levels.get(0));
+    return makeFinalImage(color, Collections.singletonList(image), displayWindow);
+  }
+
+  private Image<?> readRegion(
+      OpenEXRHeader header, OffsetTable table, List<Channel> channels, int[] levelCoords,
+      Box2Int exrRegion, SeekableByteChannel in, long fileStart) throws IOException {
+    Box2Int regionWindow = new Box2Int(0, 0, exrRegion.width() - 1, exrRegion.height() - 1);
+    OpenEXRHeader regionHeader = createRegionHeader(
+        header, channels, exrRegion.width(), exrRegion.height());
+    RegionChunkReader reader = new RegionChunkReader(dataFactory,
+        new ChannelMapping(regionHeader), header, levelCoords[0], levelCoords[1], exrRegion);
+    reader.initialize();
+
+    long[] chunkPositions = reader.getChunkOffsets(table);
+    for (int i = 0; i < chunkPositions.length; i++) {
+      chunkPositions[i] += fileStart;
+    }
+    readChunks(Collections.singletonList(reader), new int[chunkPositions.length], chunkPositions,
+        false, in);
+
+    return consolidateChunks(new ArrayList<>(reader.getImages()), regionWindow);
+  }
+
+  // The region is described by its own scanline header that only has the selected channels
+  private static OpenEXRHeader createRegionHeader(
+      OpenEXRHeader header, List<Channel> channels, int width, int height) {
+    Box2Int regionWindow = new Box2Int(0, 0, width - 1, height - 1);
+    return new OpenEXRHeader(channels, Compression.NONE, regionWindow, regionWindow,
+        LineOrder.INCREASING_Y, header.getPixelAspectRatio(), header.getScreenWindowCenter(),
+        header.getScreenWindowWidth(), null, null, header.getName(), null, null, null,
+        header.getChromaticity(), PartFormat.SCANLINE, Collections.emptyMap());
+  }
+
+  private OpenEXRHeader readSinglePartHeader(SeekableByteChannel in, ByteBuffer work) throws
+      IOException {
+    ImageFormat format = readPreHeader(in, work);
+    if (format != ImageFormat.SCANLINE && format != ImageFormat.TILE) {
+      throw new UnsupportedImageFormatException(
+          "Only single-part images can be read partially, not " + format);
+    }
+    return readHeaders(format, in, work).get(0);
+  }
+
+  private static OffsetTable readOffsetTable(
+      OpenEXRHeader header, SeekableByteChannel in, ByteBuffer work) throws IOException {
+    if (header.getTileDescription() == null) {
+      return ScanLineOffsetTable.read(header, in, work);
+    } else {
+      return TileOffsetTable.read(header, in, work);
+    }
+  }
+
+  private static List<Channel> selectChannels(
+      OpenEXRHeader header, @Arguments.Nullable Set<String> channels) throws
+      UnsupportedImageFormatException {
+    List<Channel> selected = new ArrayList<>();
+    for (Channel c : header.getChannels()) {
+      if (channels == null || channels.contains(c.getFullName())) {
+        selected.add(c);
+      }
+    }
+    if (channels != null && selected.size() != channels.size()) {
+      Set<String> missing = new HashSet<>(channels);
+      for (Channel c : selected) {
+        missing.remove(c.getFullName());
+      }
+      throw new IllegalArgumentException("Channels are not part of the image: " + missing);
+    }
+    if (selected.isEmpty()) {
+      throw new IllegalArgumentException("At least one channel must be selected");
+    }
+    for (Channel c : selected) {
+      // The decoded data is allocated with a single type
+      if (c.getFormat() != selected.get(0).getFormat()) {
+        throw new UnsupportedImageFormatException(
+            "Selected channels must have the same format: " + c.getFullName());
+      }
+    }
+    return selected;
+  }
+
+  // The number of levels read from the image, ripmaps only providing their diagonal levels
+  private static int getLevelCount(OpenEXRHeader header) {
+    TileDescription tiles = header.getTileDescription();
+    if (tiles == null || tiles.getLevelMode() == LevelMode.ONE_LEVEL) {
+      return 1;
+    }
+
+    int numX = tiles.getLevelCountX(header.getDataWindow());
+    int numY = tiles.getLevelCountY(header.getDataWindow());
+    return tiles.getLevelMode() == LevelMode.MIPMAP_LEVELS ? numX : Math.max(numX, numY);
+  }
+
+  // The (lx, ly) coordinates of the level, clamping ripmap levels the same as TileChunkReader
+  private static int[] getLevelCoordinates(OpenEXRHeader header, int level) {
+    TileDescription tiles = header.getTileDescription();
+    if (tiles == null || tiles.getLevelMode() == LevelMode.ONE_LEVEL) {
+      return new int[] { 0, 0 };
+    } else if (tiles.getLevelMode() == LevelMode.MIPMAP_LEVELS) {
+      return new int[] { level, level };
+    } else {
+      int numX = tiles.getLevelCountX(header.getDataWindow());
+      int numY = tiles.getLevelCountY(header.getDataWindow());
+      return new int[] { Math.min(numX - 1, level), Math.min(numY - 1, level) };
+    }
+  }
+
+  private static Box2Int getLevelWindow(OpenEXRHeader header, int[] levelCoords) {
+    TileDescription tiles = header.getTileDescription();
+    if (tiles == null) {
+      return header.getDataWindow();
+    } else {
+      return tiles.getLevelDataWindow(header.getDataWindow(), levelCoords[0], levelCoords[1]);
+    }
+  }
+
+  // The window of the tile within the level, in OpenEXR's coordinates
+  private static Box2Int getTileRegion(
+      Box2Int levelWindow, int tileWidth, int tileHeight, int tileX, int tileY) {
+    int minX = levelWindow.getMinX() + tileX * tileWidth;
+    int minY = levelWindow.getMinY() + tileY * tileHeight;
+    return new Box2Int(minX, minY, Math.min(minX + tileWidth - 1, levelWindow.getMaxX()),
+        Math.min(minY + tileHeight - 1, levelWindow.getMaxY()));
+  }
+
   private void filterChunks(List<Image<?>> allChunks, Function<Image<?>, Boolean> filter) {
     int trueImageCount = 0;
     for (Image<?> img : allChunks) {
@@ -435,7 +735,7 @@ public class OpenEXRReader implements ImageFileReader {
 
   private Map<OpenEXRHeader, List<? extends Image<?>>> readAllChunks(
       ImageFormat format, List<OpenEXRHeader> headers, Map<OpenEXRHeader, ChunkReader> readers,
-      Map<OpenEXRHeader, OffsetTable> tables, SeekableByteChannel in, ByteBuffer work) throws
+      Map<OpenEXRHeader, OffsetTable> tables, SeekableByteChannel in, long fileStart) throws
       IOException {
     // For multipart images, the chunks have an additional header/part number that comes
     // before the regularly formatted chunk data.
@@ -448,26 +748,26 @@ public class OpenEXRReader implements ImageFileReader {
       blocks += t.getTotalOffsets();
     }
 
-    // Read chunks blocks, copying them into the appropriate data locations for each data source
-    if (multiPart) {
-      for (int i = 0; i < blocks; i++) {
-        // Must read part number first to get appropriate header
-        if (!IO.read(in, work, 4)) {
-          throw new InvalidImageException("Unable to read part number for multipart image");
-        }
-        int part = Bytes.bytesToIntLE(work);
-
-        OpenEXRHeader h = headers.get(part);
-        readers.get(h).readNextChunk(in, work);
-      }
-    } else {
-      // Not a multipart image so there is only one header
-      OpenEXRHeader h = headers.get(0);
-      for (int i = 0; i < blocks; i++) {
-        readers.get(h).readNextChunk(in, work);
+    // Flatten every header's offset table into a single list of chunk locations so that they can
+    // be claimed in any order by the workers.
+    int[] chunkParts = new int[blocks];
+    long[] chunkPositions = new long[blocks];
+    int block = 0;
+    for (int part = 0; part < headers.size(); part++) {
+      OffsetTable t = tables.get(headers.get(part));
+      for (int i = 0; i < t.getTotalOffsets(); i++) {
+        chunkParts[block] = part;
+        chunkPositions[block] = fileStart + t.getChunkOffset(i);
+        block++;
       }
     }
 
+    List<ChunkReader> chunkReaders = new ArrayList<>(headers.size());
+    for (OpenEXRHeader h : headers) {
+      chunkReaders.add(readers.get(h));
+    }
+    readChunks(chunkReaders, chunkParts, chunkPositions, multiPart, in);
+
     // Extract final images from the chunk readers
     Map<OpenEXRHeader, List<? extends Image<?>>> images = new HashMap<>();
     for (OpenEXRHeader h : headers) {
@@ -475,4 +775,146 @@ public class OpenEXRReader implements ImageFileReader {
     }
     return images;
   }
+
+  // Decodes the tiles of one level of a lazily read image. The header, offset table, and selected
+  // channels are parsed once by readLazy(). The region headers and channel mappings only depend on
+  // the size of a tile, so they are shared by every tile of that size (at most four per level).
+  private class LazyTileLoader implements TiledPixelArray.TileLoader {
+    private final OpenEXRHeader header;
+    private final OffsetTable table;
+    private final List<Channel> channels;
+    private final int[] levelCoords;
+    private final Box2Int levelWindow;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final SeekableByteChannel in;
+    private final long fileStart;
+
+    private final Map<Long, ChannelMapping> mappings;
+
+    LazyTileLoader(
+        OpenEXRHeader header, OffsetTable table, List<Channel> channels, int[] levelCoords,
+        Box2Int levelWindow, int tileWidth, int tileHeight, SeekableByteChannel in,
+        long fileStart) {
+      this.header = header;
+      this.table = table;
+      this.channels = channels;
+      this.levelCoords = levelCoords;
+      this.levelWindow = levelWindow;
+      this.tileWidth = tileWidth;
+      this.tileHeight = tileHeight;
+      this.in = in;
+      this.fileStart = fileStart;
+      mappings = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public PixelArray load(int tileX, int tileY) throws IOException {
+      Box2Int tileRegion = getTileRegion(levelWindow, tileWidth, tileHeight, tileX, tileY);
+      RegionChunkReader reader = new RegionChunkReader(dataFactory,
+          getMapping(tileRegion.width(), tileRegion.height()), header, levelCoords[0],
+          levelCoords[1], tileRegion);
+      reader.initialize();
+
+      long[] chunkPositions = reader.getChunkOffsets(table);
+      for (int i = 0; i < chunkPositions.length; i++) {
+        chunkPositions[i] += fileStart;
+      }
+      readChunks(Collections.singletonList(reader), new int[chunkPositions.length],
+          chunkPositions, false, in);
+
+      List<? extends Image<?>> images = reader.getImages();
+      Image<?> tile;
+      if (images.size() == 1) {
+        // The common case, where there is nothing to consolidate
+        tile = images.get(0);
+      } else {
+        Box2Int regionWindow = new Box2Int(0, 0, tileRegion.width() - 1, tileRegion.height() - 1);
+        tile = consolidateChunks(new ArrayList<>(images), regionWindow);
+      }
+      return ((Raster<?>) tile).getPixelArray();
+    }
+
+    private ChannelMapping getMapping(int width, int height) throws
+        UnsupportedImageFormatException {
+      long size = ((long) width << 32) | height;
+      ChannelMapping mapping = mappings.get(size);
+      if (mapping == null) {
+        // Racing threads create equivalent mappings, so either can be kept
+        mapping = new ChannelMapping(createRegionHeader(header, channels, width, height));
+        mappings.putIfAbsent(size, mapping);
+      }
+      return mapping;
+    }
+  }
+
+  // Decodes the chunks at the absolute positions, using the reader of the part each chunk belongs
+  // to, across up to workerCount tasks.
+  private void readChunks(
+      List<ChunkReader> readers, int[] chunkParts, long[] chunkPositions, boolean multiPart,
+      SeekableByteChannel in) throws IOException {
+    // Read chunks blocks, copying them into the appropriate data locations for each data source.
+    // Each chunk covers a disjoint region of its image so workers never write to the same data.
+    AtomicInteger nextChunk = new AtomicInteger(0);
+    Runnable worker = () -> {
+      try (ChunkWorkspace workspace = new ChunkWorkspace()) {
+        int chunk;
+        while ((chunk = nextChunk.getAndIncrement()) < chunkPositions.length) {
+          ChunkReader reader = readers.get(chunkParts[chunk]);
+          long position = chunkPositions[chunk];
+          if (multiPart) {
+            // Validate the part number that precedes the chunk against the offset table's header
+            byte[] partNumber = workspace.getHeader();
+            if (!IO.readAt(in, position, partNumber, 0, 4)) {
+              throw new InvalidImageException("Unable to read part number for multipart image");
+            }
+            if (Bytes.bytesToIntLE(partNumber, 0) != chunkParts[chunk]) {
+              throw new InvalidImageException(
+                  "Chunk part number does not match offset table for "
+                      + reader.getHeader().getName());
+            }
+            position += 4;
+          }
+
+          reader.readChunk(in, position, workspace);
+        }
+      } catch (IOException e) {
+        // Stop the remaining workers from claiming more chunks
+        nextChunk.set(chunkPositions.length);
+        throw new UncheckedIOException(e);
+      } catch (RuntimeException e) {
+        nextChunk.set(chunkPositions.length);
+        throw e;
+      }
+    };
+
+    int workers = Math.min(workerCount, chunkPositions.length);
+    if (executor == null || workers <= 1) {
+      try {
+        worker.run();
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    } else {
+      CompletableFuture<?>[] tasks = new CompletableFuture<?>[workers];
+      for (int i = 0; i < workers; i++) {
+        tasks[i] = CompletableFuture.runAsync(worker, executor);
+      }
+
+      try {
+        CompletableFuture.allOf(tasks).join();
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof UncheckedIOException) {
+          throw ((UncheckedIOException) cause).getCause();
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        } else {
+          throw new IOException("Unable to decode OpenEXR chunks", cause);
+        }
+      }
+    }
+  }
 }
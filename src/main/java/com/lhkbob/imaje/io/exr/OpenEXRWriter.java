@@ -0,0 +1,622 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import com.lhkbob.imaje.Image;
+import com.lhkbob.imaje.Mipmap;
+import com.lhkbob.imaje.Raster;
+import com.lhkbob.imaje.color.Alpha;
+import com.lhkbob.imaje.color.Depth;
+import com.lhkbob.imaje.color.Luminance;
+import com.lhkbob.imaje.color.Normal;
+import com.lhkbob.imaje.color.RGB;
+import com.lhkbob.imaje.color.XYZ;
+import com.lhkbob.imaje.data.Bytes;
+import com.lhkbob.imaje.data.Data;
+import com.lhkbob.imaje.io.IO;
+import com.lhkbob.imaje.io.ImageFileWriter;
+import com.lhkbob.imaje.io.InvalidImageException;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.util.Arguments;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+
+/**
+ * OpenEXRWriter
+ * =============
+ *
+ * Image file writer for single-part OpenEXR images. A {@link Raster} is written as a scanline
+ * image, or as a tiled image if a tile size is configured. A {@link Mipmap} is always written as a
+ * tiled image with `MIPMAP_LEVELS` and `ROUND_DOWN` rounding, so it must have a complete mipmap
+ * chain. Color channel values and alpha are written without any conversion using the configured
+ * {@link ChannelFormat}; channels are named after the image's color type (e.g. `R`, `G`, `B` and
+ * `A` for RGB images).
+ *
+ * Chunks are compressed concurrently by the configured executor. Compressed chunks are written to
+ * the channel in increasing order as they complete, and the chunk offset table, which precedes
+ * the chunk data, is filled in once all chunks have been written.
+ *
+ * @author Michael Ludwig
+ */
+public class OpenEXRWriter implements ImageFileWriter {
+  /**
+   * The tile size used when writing mipmaps and no tile size was configured.
+   */
+  public static final int DEFAULT_TILE_SIZE = 64;
+
+  private static final int MAGIC_NUMBER = 20000630;
+  private static final int VERSION = 2;
+  private static final int TILE_BIT = 1 << 9;
+
+  private static final Set<Compression> SUPPORTED_COMPRESSIONS = EnumSet
+      .of(Compression.NONE, Compression.ZIPS, Compression.ZIP, Compression.PIZ);
+
+  // Chromaticities that identify the R, G and B channels as CIE XYZ values
+  private static final Chromaticity CIE_XYZ = new Chromaticity(
+      1f, 0f, 0f, 1f, 0f, 0f, 1f / 3f, 1f / 3f);
+
+  private final Compression compression;
+  private final ChannelFormat format;
+  private final int tileSize;
+  private final Executor executor;
+  private final int workerCount;
+
+  public OpenEXRWriter() {
+    this(Compression.ZIP, ChannelFormat.HALF);
+  }
+
+  public OpenEXRWriter(Compression compression, ChannelFormat format) {
+    this(compression, format, 0, ForkJoinPool.commonPool(),
+        ForkJoinPool.getCommonPoolParallelism());
+  }
+
+  /**
+   * Create a writer that compresses chunks concurrently. Up to `workerCount` chunks are
+   * compressed at once by tasks submitted to `executor`, each with its own deflater and scratch
+   * buffers. If `executor` is null or `workerCount` is 1, all chunks are compressed on the calling
+   * thread.
+   *
+   * If `tileSize` is 0, rasters are written as scanline images and mipmaps are written with tiles
+   * of {@link #DEFAULT_TILE_SIZE}. Otherwise all images are written with square tiles of the given
+   * size.
+   *
+   * @param compression
+   *     The compression applied to each chunk, one of `NONE`, `ZIPS`, `ZIP` or `PIZ`
+   * @param format
+   *     The format every channel is written with
+   * @param tileSize
+   *     The tile width and height, or 0 to select it automatically
+   * @param executor
+   *     The executor that compresses chunks, or null to compress on the calling thread
+   * @param workerCount
+   *     The maximum number of concurrent compression tasks
+   * @throws IllegalArgumentException
+   *     if `compression` is not supported, if `tileSize` is negative or if `workerCount` is less
+   *     than 1
+   * @throws NullPointerException
+   *     if `compression` or `format` are null
+   */
+  public OpenEXRWriter(
+      Compression compression, ChannelFormat format, int tileSize,
+      @Arguments.Nullable Executor executor, int workerCount) {
+    Arguments.notNull("compression", compression);
+    Arguments.notNull("format", format);
+    Arguments.isGreaterThanOrEqualToZero("tileSize", tileSize);
+    Arguments.isPositive("workerCount", workerCount);
+    if (!SUPPORTED_COMPRESSIONS.contains(compression)) {
+      throw new IllegalArgumentException("Unsupported compression for writing: " + compression);
+    }
+
+    this.compression = compression;
+    this.format = format;
+    this.tileSize = tileSize;
+    this.executor = executor;
+    this.workerCount = workerCount;
+  }
+
+  public Compression getCompression() {
+    return compression;
+  }
+
+  public ChannelFormat getChannelFormat() {
+    return format;
+  }
+
+  @Override
+  public void write(Image<?> image, SeekableByteChannel out) throws IOException {
+    List<PixelArray> levels;
+    if (image instanceof Raster) {
+      levels = Collections.singletonList(((Raster<?>) image).getPixelArray());
+    } else if (image instanceof Mipmap) {
+      levels = ((Mipmap<?>) image).getPixelArrays();
+    } else {
+      throw new InvalidImageException("Only Raster and Mipmap images are supported");
+    }
+
+    PixelArray base = levels.get(0);
+    Box2Int dataWindow = new Box2Int(0, 0, base.getWidth() - 1, base.getHeight() - 1);
+
+    TileDescription tiles = null;
+    if (tileSize > 0 || image instanceof Mipmap) {
+      int size = tileSize > 0 ? tileSize : DEFAULT_TILE_SIZE;
+      tiles = new TileDescription(size, size,
+          image instanceof Mipmap ? LevelMode.MIPMAP_LEVELS : LevelMode.ONE_LEVEL,
+          RoundingMode.ROUND_DOWN);
+      validateLevels(levels, tiles, dataWindow);
+    }
+
+    // Determine the source of each channel, stored in the EXR's required name order
+    List<ChannelSource> sources = getChannelSources(image.getColorType(), base);
+    List<Channel> channels = new ArrayList<>(sources.size());
+    for (ChannelSource s : sources) {
+      channels.add(new Channel(s.name, format, false, 1, 1));
+    }
+
+    Chromaticity chromaticity = XYZ.class.isAssignableFrom(image.getColorType()) ? CIE_XYZ : null;
+    OpenEXRHeader header = new OpenEXRHeader(channels, compression, dataWindow, dataWindow,
+        LineOrder.INCREASING_Y, 1f, new V2F(0f, 0f), 1f, tiles, null, null, null, null, null,
+        chromaticity, tiles == null ? PartFormat.SCANLINE : PartFormat.TILE,
+        Collections.emptyMap());
+    List<ChunkRegion> chunks = getChunkRegions(header, levels);
+
+    // Chunk offsets are relative to the start of the file
+    long fileStart = out.position();
+    int channelListSize = 1;
+    for (Channel c : channels) {
+      channelListSize += c.getEncodedSize();
+    }
+    ByteBuffer work = IO.createWOrkBufferForWriting(
+        Math.max(IO.DEFAULT_WORKBUFFER_LEN, channelListSize + 64));
+
+    Bytes.intToBytesLE(MAGIC_NUMBER, work);
+    Bytes.intToBytesLE(VERSION | (tiles != null ? TILE_BIT : 0), work);
+    header.write(out, work);
+
+    // Reserve space for the offset table, which is filled in after the chunks have been written
+    long offsetTableStart = out.position();
+    for (int i = 0; i < chunks.size(); i++) {
+      if (work.remaining() < 8) {
+        IO.write(work, out);
+      }
+      Bytes.longToBytesLE(0L, work);
+    }
+    IO.write(work, out);
+
+    long[] offsets = writeAllChunks(header, sources, levels, chunks, out, fileStart, work);
+    long fileEnd = out.position();
+
+    out.position(offsetTableStart);
+    for (long offset : offsets) {
+      if (work.remaining() < 8) {
+        IO.write(work, out);
+      }
+      Bytes.longToBytesLE(offset, work);
+    }
+    IO.write(work, out);
+    out.position(fileEnd);
+  }
+
+  private long[] writeAllChunks(
+      OpenEXRHeader header, List<ChannelSource> sources, List<PixelArray> levels,
+      List<ChunkRegion> chunks, SeekableByteChannel out, long fileStart, ByteBuffer work)
+      throws IOException {
+    int n = chunks.size();
+    long[] offsets = new long[n];
+
+    // Chunks are compressed within a sliding window so that they can be written in order while
+    // the following chunks are still being compressed. Each slot of the window reuses one encoder.
+    int window = Math.min(n, executor == null ? 1 : 2 * workerCount);
+    ChunkEncoder[] encoders = new ChunkEncoder[window];
+    List<CompletableFuture<ChunkEncoder>> pending = new ArrayList<>(window);
+    for (int i = 0; i < window; i++) {
+      encoders[i] = new ChunkEncoder(header, sources);
+      pending.add(null);
+    }
+
+    try {
+      for (int i = 0; i < window; i++) {
+        pending.set(i, encode(encoders[i], levels, chunks.get(i)));
+      }
+
+      for (int i = 0; i < n; i++) {
+        int slot = i % window;
+        ChunkEncoder encoder = join(pending.get(slot));
+        pending.set(slot, null);
+
+        offsets[i] = out.position() - fileStart;
+        ChunkRegion chunk = chunks.get(i);
+        if (header.getTileDescription() != null) {
+          Bytes.intToBytesLE(chunk.tileX, work);
+          Bytes.intToBytesLE(chunk.tileY, work);
+          Bytes.intToBytesLE(chunk.level, work);
+          Bytes.intToBytesLE(chunk.level, work);
+        } else {
+          Bytes.intToBytesLE(chunk.y, work);
+        }
+        Bytes.intToBytesLE(encoder.getEncodedLength(), work);
+        IO.write(work, out);
+        ByteBuffer data = ByteBuffer.wrap(encoder.getEncoded(), 0, encoder.getEncodedLength());
+        while (data.hasRemaining()) {
+          out.write(data);
+        }
+
+        if (i + window < n) {
+          pending.set(slot, encode(encoder, levels, chunks.get(i + window)));
+        }
+      }
+    } finally {
+      // Make sure no task is still using an encoder before releasing their deflaters
+      for (CompletableFuture<ChunkEncoder> task : pending) {
+        if (task != null) {
+          try {
+            task.join();
+          } catch (CompletionException e) {
+            // Ignore, since the original failure is already propagating
+          }
+        }
+      }
+      for (ChunkEncoder e : encoders) {
+        e.close();
+      }
+    }
+    return offsets;
+  }
+
+  private CompletableFuture<ChunkEncoder> encode(
+      ChunkEncoder encoder, List<PixelArray> levels, ChunkRegion chunk) {
+    PixelArray level = levels.get(chunk.level);
+    if (executor == null) {
+      encoder.encode(level, chunk);
+      return CompletableFuture.completedFuture(encoder);
+    } else {
+      return CompletableFuture.supplyAsync(() -> {
+        encoder.encode(level, chunk);
+        return encoder;
+      }, executor);
+    }
+  }
+
+  private static ChunkEncoder join(CompletableFuture<ChunkEncoder> task) {
+    try {
+      return task.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private static void validateLevels(
+      List<PixelArray> levels, TileDescription tiles, Box2Int dataWindow)
+      throws InvalidImageException {
+    int levelCount = tiles.getLevelMode() == LevelMode.ONE_LEVEL ? 1
+        : tiles.getLevelCountX(dataWindow);
+    if (levels.size() != levelCount) {
+      throw new InvalidImageException(
+          "OpenEXR mipmaps require a complete chain of " + levelCount + " levels, not "
+              + levels.size());
+    }
+
+    for (int i = 0; i < levelCount; i++) {
+      Box2Int expected = tiles.getLevelDataWindow(dataWindow, i, i);
+      PixelArray level = levels.get(i);
+      if (level.getWidth() != expected.width() || level.getHeight() != expected.height()) {
+        throw new InvalidImageException(
+            "Mipmap level " + i + " must be " + expected.width() + "x" + expected.height()
+                + ", not " + level.getWidth() + "x" + level.getHeight());
+      }
+    }
+  }
+
+  private static List<ChannelSource> getChannelSources(Class<?> colorType, PixelArray base) {
+    int colorChannels = base.getColorChannelCount();
+    String[] names;
+    if ((RGB.class.isAssignableFrom(colorType) || XYZ.class.isAssignableFrom(colorType))
+        && colorChannels == 3) {
+      names = new String[] { "R", "G", "B" };
+    } else if (Luminance.class.isAssignableFrom(colorType) && colorChannels == 1) {
+      names = new String[] { "Y" };
+    } else if (Depth.class.isAssignableFrom(colorType) && colorChannels == 1) {
+      names = new String[] { "Z" };
+    } else if (Normal.class.isAssignableFrom(colorType) && colorChannels == 3) {
+      names = new String[] { "X", "Y", "Z" };
+    } else if (Alpha.class.isAssignableFrom(colorType) && colorChannels == 1) {
+      names = new String[] { "A" };
+    } else {
+      names = new String[colorChannels];
+      for (int i = 0; i < colorChannels; i++) {
+        names[i] = "C" + i;
+      }
+    }
+
+    List<ChannelSource> sources = new ArrayList<>();
+    for (int i = 0; i < names.length; i++) {
+      sources.add(new ChannelSource(names[i], i));
+    }
+    if (base.hasAlphaChannel() && !Alpha.class.isAssignableFrom(colorType)) {
+      sources.add(new ChannelSource("A", ChannelSource.ALPHA));
+    }
+
+    // OpenEXR stores channels sorted by name
+    sources.sort(Comparator.comparing(s -> s.name));
+    return sources;
+  }
+
+  private static List<ChunkRegion> getChunkRegions(
+      OpenEXRHeader header, List<PixelArray> levels) {
+    Box2Int dataWindow = header.getDataWindow();
+    TileDescription tiles = header.getTileDescription();
+
+    List<ChunkRegion> chunks = new ArrayList<>();
+    if (tiles == null) {
+      int lines = header.getCompression().getLinesInBuffer();
+      for (int y = 0; y < dataWindow.height(); y += lines) {
+        chunks.add(new ChunkRegion(0, 0, 0, 0, y, dataWindow.width(),
+            Math.min(lines, dataWindow.height() - y)));
+      }
+    } else {
+      int[][] tileCounts = tiles.getTileCounts(dataWindow);
+      for (int l = 0; l < levels.size(); l++) {
+        for (int dy = 0; dy < tileCounts[1][l]; dy++) {
+          for (int dx = 0; dx < tileCounts[0][l]; dx++) {
+            Box2Int tile = tiles.getTileDataWindow(dataWindow, dx, dy, l, l);
+            chunks.add(new ChunkRegion(l, dx, dy, tile.getMinX() - dataWindow.getMinX(),
+                tile.getMinY() - dataWindow.getMinY(), tile.width(), tile.height()));
+          }
+        }
+      }
+    }
+    return chunks;
+  }
+
+  private static class ChannelSource {
+    static final int ALPHA = -1;
+
+    final String name;
+    // Index of the color channel within a pixel, or ALPHA
+    final int index;
+
+    ChannelSource(String name, int index) {
+      this.name = name;
+      this.index = index;
+    }
+  }
+
+  private static class ChunkRegion {
+    final int level;
+    final int tileX;
+    final int tileY;
+    // Pixel region of the chunk within its level, with y increasing downwards as in OpenEXR
+    final int x;
+    final int y;
+    final int width;
+    final int height;
+
+    ChunkRegion(int level, int tileX, int tileY, int x, int y, int width, int height) {
+      this.level = level;
+      this.tileX = tileX;
+      this.tileY = tileY;
+      this.x = x;
+      this.y = y;
+      this.width = width;
+      this.height = height;
+    }
+  }
+
+  /**
+   * Per-task state for converting a chunk's pixels to OpenEXR's layout and compressing them.
+   * Encoders are not thread safe, but each is only used by a single task at a time.
+   */
+  private static class ChunkEncoder implements AutoCloseable {
+    private final List<ChannelSource> sources;
+    private final ChannelFormat format;
+    private final Compression compression;
+    private final int bytesPerPixel;
+
+    private byte[] uncompressed;
+    private byte[] temp;
+    private byte[] compressed;
+    private double[] values;
+    private double[] alphas;
+
+    private Deflater deflater;
+    private PizCompressor piz;
+    private List<Channel> channels;
+
+    private byte[] encoded;
+    private int encodedLength;
+
+    ChunkEncoder(OpenEXRHeader header, List<ChannelSource> sources) {
+      this.sources = sources;
+      format = header.getChannels().get(0).getFormat();
+      compression = header.getCompression();
+      bytesPerPixel = header.getBytesPerPixel();
+      channels = header.getChannels();
+
+      uncompressed = new byte[0];
+      temp = new byte[0];
+      compressed = new byte[0];
+      values = new double[0];
+      alphas = new double[0];
+    }
+
+    byte[] getEncoded() {
+      return encoded;
+    }
+
+    int getEncodedLength() {
+      return encodedLength;
+    }
+
+    void encode(PixelArray level, ChunkRegion chunk) {
+      int length = fillUncompressed(level, chunk);
+
+      encoded = uncompressed;
+      encodedLength = length;
+      switch (compression) {
+      case ZIPS:
+      case ZIP:
+        int zipLength = deflate(length);
+        if (zipLength < length) {
+          encoded = compressed;
+          encodedLength = zipLength;
+        }
+        break;
+      case PIZ:
+        if (piz == null) {
+          piz = new PizCompressor();
+        }
+        int pizLength = piz.compress(uncompressed, channels, chunk.width, chunk.height);
+        if (pizLength < length) {
+          encoded = piz.getCompressed();
+          encodedLength = pizLength;
+        }
+        break;
+      default:
+        // Stored as is
+        break;
+      }
+    }
+
+    private int fillUncompressed(PixelArray level, ChunkRegion chunk) {
+      int width = chunk.width;
+      int colorChannels = level.getColorChannelCount();
+      int length = width * chunk.height * bytesPerPixel;
+      if (uncompressed.length < length) {
+        uncompressed = new byte[length];
+      }
+      if (values.length < width * colorChannels) {
+        values = new double[width * colorChannels];
+        alphas = new double[width];
+      }
+
+      int offset = 0;
+      for (int row = 0; row < chunk.height; row++) {
+        // OpenEXR stores the top line first while the pixel array's origin is the bottom left
+        int y = level.getHeight() - 1 - (chunk.y + row);
+        level.getRow(y, chunk.x, width, values, level.hasAlphaChannel() ? alphas : null);
+
+        for (ChannelSource s : sources) {
+          for (int x = 0; x < width; x++) {
+            double v = s.index == ChannelSource.ALPHA ? alphas[x]
+                : values[x * colorChannels + s.index];
+            offset = writeValue(v, offset);
+          }
+        }
+      }
+      return length;
+    }
+
+    private int writeValue(double value, int offset) {
+      switch (format) {
+      case HALF:
+        Bytes.shortToBytesLE((short) Data.SFLOAT16.toBits(value), uncompressed, offset);
+        return offset + 2;
+      case FLOAT:
+        Bytes.floatToBytesLE((float) value, uncompressed, offset);
+        return offset + 4;
+      case UINT:
+        long bits = Math.max(0L, Math.min(0xffffffffL, Math.round(value)));
+        Bytes.intToBytesLE((int) bits, uncompressed, offset);
+        return offset + 4;
+      default:
+        throw new UnsupportedOperationException("Unsupported channel format: " + format);
+      }
+    }
+
+    private int deflate(int length) {
+      if (temp.length < length) {
+        temp = new byte[length];
+        compressed = new byte[length];
+      }
+
+      // Split the bytes into two halves, taking every other byte, which groups the high and low
+      // bytes of each value together
+      int t1 = 0;
+      int t2 = (length + 1) / 2;
+      for (int i = 0; i < length; i += 2) {
+        temp[t1++] = uncompressed[i];
+        if (i + 1 < length) {
+          temp[t2++] = uncompressed[i + 1];
+        }
+      }
+
+      // Replace bytes with their difference from the previous byte
+      int prev = temp[0] & 0xff;
+      for (int i = 1; i < length; i++) {
+        int v = temp[i] & 0xff;
+        temp[i] = (byte) (v - prev + 384);
+        prev = v;
+      }
+
+      if (deflater == null) {
+        deflater = new Deflater();
+      } else {
+        deflater.reset();
+      }
+      deflater.setInput(temp, 0, length);
+      deflater.finish();
+
+      // There is no point in compressing beyond the uncompressed length, since that data will be
+      // stored as is
+      int compressedLength = 0;
+      while (!deflater.finished() && compressedLength < length) {
+        compressedLength += deflater.deflate(
+            compressed, compressedLength, length - compressedLength);
+      }
+      return deflater.finished() ? compressedLength : length;
+    }
+
+    @Override
+    public void close() {
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import com.lhkbob.imaje.data.Bytes;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * PizCompressor
+ * =============
+ *
+ * Compressor for OpenEXR's PIZ compression, the inverse of {@link PizDecompressor}. The chunk's
+ * 16-bit values are compacted through a lookup table built from the set of values that occur,
+ * transformed with a 2D Haar wavelet per channel plane, and then Huffman encoded.
+ *
+ * The compressor keeps its bitmap, lookup table, Huffman tables and channel planes between
+ * chunks. It is not thread safe and should be owned by a single writing thread.
+ *
+ * @author Michael Ludwig
+ */
+final class PizCompressor {
+  private static final int USHORT_RANGE = 1 << 16;
+  private static final int BITMAP_SIZE = USHORT_RANGE >> 3;
+
+  private final byte[] bitmap;
+  private final char[] lut;
+  private final HuffmanEncoder huffman;
+  private char[] planes;
+  private byte[] out;
+
+  PizCompressor() {
+    bitmap = new byte[BITMAP_SIZE];
+    lut = new char[USHORT_RANGE];
+    huffman = new HuffmanEncoder();
+    planes = new char[0];
+    out = new byte[0];
+  }
+
+  /**
+   * Compress the uncompressed chunk stored in the first `inLength` bytes of `in`, laid out in
+   * OpenEXR's scanline order for a chunk of the given dimensions. The compressed data is available
+   * from {@link #getCompressed()} until the next chunk is compressed.
+   *
+   * @param in
+   *     The uncompressed chunk
+   * @param channels
+   *     The channels stored in each scanline of the chunk
+   * @param width
+   *     The width of the chunk in pixels
+   * @param height
+   *     The height of the chunk in pixels
+   * @return The number of compressed bytes
+   */
+  int compress(byte[] in, List<Channel> channels, int width, int height) {
+    int planeLength = 0;
+    for (Channel c : channels) {
+      planeLength += width * height * (c.getFormat().getByteCount() / 2);
+    }
+    if (planes.length < planeLength) {
+      planes = new char[planeLength];
+    }
+    separateLines(in, channels, width, height);
+
+    // Bitmap of the values used by the chunk, zero is implied
+    Arrays.fill(bitmap, (byte) 0);
+    for (int i = 0; i < planeLength; i++) {
+      int v = planes[i];
+      bitmap[v >> 3] |= (1 << (v & 7));
+    }
+    bitmap[0] &= ~1;
+
+    int minNonZero = BITMAP_SIZE - 1;
+    int maxNonZero = 0;
+    for (int i = 0; i < BITMAP_SIZE; i++) {
+      if (bitmap[i] != 0) {
+        minNonZero = Math.min(minNonZero, i);
+        maxNonZero = i;
+      }
+    }
+
+    int maxValue = forwardLutFromBitmap();
+    for (int i = 0; i < planeLength; i++) {
+      planes[i] = lut[planes[i]];
+    }
+
+    int start = 0;
+    for (Channel c : channels) {
+      int valuesPerPixel = c.getFormat().getByteCount() / 2;
+      for (int j = 0; j < valuesPerPixel; j++) {
+        wav2Encode(
+            planes, start + j, width, valuesPerPixel, height, width * valuesPerPixel, maxValue);
+      }
+      start += width * height * valuesPerPixel;
+    }
+
+    int bitmapLength = minNonZero <= maxNonZero ? maxNonZero - minNonZero + 1 : 0;
+    int huffmanLength = huffman.prepare(planes, planeLength);
+    int length = 4 + bitmapLength + 4 + huffmanLength;
+    if (out.length < length) {
+      out = new byte[length];
+    }
+
+    Bytes.shortToBytesLE((short) minNonZero, out, 0);
+    Bytes.shortToBytesLE((short) maxNonZero, out, 2);
+    System.arraycopy(bitmap, minNonZero, out, 4, bitmapLength);
+    Bytes.intToBytesLE(huffmanLength, out, 4 + bitmapLength);
+    huffman.write(planes, planeLength, out, 8 + bitmapLength);
+    return length;
+  }
+
+  /**
+   * @return The array holding the most recently compressed chunk, starting at index 0
+   */
+  byte[] getCompressed() {
+    return out;
+  }
+
+  private void separateLines(byte[] in, List<Channel> channels, int width, int height) {
+    // Inverse of AbstractChunkReader.interleaveLines()
+    int read = 0;
+    for (int y = 0; y < height; y++) {
+      int start = 0;
+      for (Channel c : channels) {
+        int valuesPerPixel = c.getFormat().getByteCount() / 2;
+        int lineLength = width * valuesPerPixel;
+        int write = start + y * lineLength;
+        for (int i = 0; i < lineLength; i++) {
+          planes[write + i] = (char) ((in[read] & 0xff) | ((in[read + 1] & 0xff) << 8));
+          read += 2;
+        }
+        start += lineLength * height;
+      }
+    }
+  }
+
+  private int forwardLutFromBitmap() {
+    int k = 0;
+    for (int i = 0; i < USHORT_RANGE; i++) {
+      if (i == 0 || (bitmap[i >> 3] & (1 << (i & 7))) != 0) {
+        lut[i] = (char) k++;
+      } else {
+        lut[i] = 0;
+      }
+    }
+    return k - 1;
+  }
+
+  private static void wav2Encode(
+      char[] data, int offset, int nx, int ox, int ny, int oy, int maxValue) {
+    // 14-bit encoding is exact when the values fit, otherwise use modular 16-bit arithmetic
+    boolean w14 = maxValue < (1 << 14);
+    int n = Math.min(nx, ny);
+    int p = 1;
+    int p2 = 2;
+
+    // Hierarchical loop on the smaller dimension
+    while (p2 <= n) {
+      int py = offset;
+      int ey = offset + oy * (ny - p2);
+      int oy1 = oy * p;
+      int oy2 = oy * p2;
+      int ox1 = ox * p;
+      int ox2 = ox * p2;
+
+      for (; py <= ey; py += oy2) {
+        int px = py;
+        int ex = py + ox * (nx - p2);
+        for (; px <= ex; px += ox2) {
+          int p01 = px + ox1;
+          int p10 = px + oy1;
+          int p11 = p10 + ox1;
+
+          // 2D wavelet encoding
+          int e0 = encode(w14, data[px], data[p01]);
+          int e1 = encode(w14, data[p10], data[p11]);
+          int e2 = encode(w14, e0 & 0xffff, e1 & 0xffff);
+          int e3 = encode(w14, e0 >>> 16, e1 >>> 16);
+          data[px] = (char) e2;
+          data[p10] = (char) (e2 >>> 16);
+          data[p01] = (char) e3;
+          data[p11] = (char) (e3 >>> 16);
+        }
+
+        // Encode the odd column
+        if ((nx & p) != 0) {
+          int p10 = px + oy1;
+          int e = encode(w14, data[px], data[p10]);
+          data[px] = (char) e;
+          data[p10] = (char) (e >>> 16);
+        }
+      }
+
+      // Encode the odd line
+      if ((ny & p) != 0) {
+        int px = py;
+        int ex = py + ox * (nx - p2);
+        for (; px <= ex; px += ox2) {
+          int p01 = px + ox1;
+          int e = encode(w14, data[px], data[p01]);
+          data[px] = (char) e;
+          data[p01] = (char) (e >>> 16);
+        }
+      }
+
+      p = p2;
+      p2 <<= 1;
+    }
+  }
+
+  // Returns the low (average) value in the lower 16 bits and the high (difference) value in the
+  // upper 16 bits
+  private static int encode(boolean w14, int a, int b) {
+    int l, h;
+    if (w14) {
+      int as = (short) a;
+      int bs = (short) b;
+      l = (as + bs) >> 1;
+      h = as - bs;
+    } else {
+      int ao = (a + 0x8000) & 0xffff;
+      l = (ao + b) >> 1;
+      h = ao - b;
+      if (h < 0) {
+        l = (l + 0x8000) & 0xffff;
+      }
+    }
+    return (l & 0xffff) | (h << 16);
+  }
+}
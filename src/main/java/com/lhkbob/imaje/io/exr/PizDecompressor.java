@@ -0,0 +1,248 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import com.lhkbob.imaje.data.Bytes;
+import com.lhkbob.imaje.io.InvalidImageException;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * PizDecompressor
+ * ===============
+ *
+ * Decompressor for OpenEXR's PIZ compression. A PIZ chunk stores a bitmap of the 16-bit values
+ * that occur in the chunk, which defines a lookup table that compacts the value range, followed by
+ * Huffman encoded data. Once Huffman decoded, each channel is reconstructed by inverting a 2D Haar
+ * wavelet transform over its 16-bit planes, after which the lookup table restores the original
+ * values.
+ *
+ * The decompressor keeps its bitmap, lookup table, Huffman tables and channel planes between
+ * chunks so decoding a chunk does not allocate once the planes have grown to the chunk size. It
+ * is not thread safe and should be owned by a single {@link ChunkWorkspace}.
+ *
+ * @author Michael Ludwig
+ */
+final class PizDecompressor {
+  private static final int USHORT_RANGE = 1 << 16;
+  private static final int BITMAP_SIZE = USHORT_RANGE >> 3;
+
+  private final byte[] bitmap;
+  private final char[] lut;
+  private final HuffmanDecoder huffman;
+  private char[] planes;
+
+  PizDecompressor() {
+    bitmap = new byte[BITMAP_SIZE];
+    lut = new char[USHORT_RANGE];
+    huffman = new HuffmanDecoder();
+    planes = new char[0];
+  }
+
+  /**
+   * Decompress the PIZ chunk stored in the first `inLength` bytes of `in` into `out`, which
+   * receives the chunk's uncompressed data in OpenEXR's scanline order for a chunk of the given
+   * dimensions.
+   *
+   * @param in
+   *     The compressed chunk
+   * @param inLength
+   *     The number of compressed bytes
+   * @param out
+   *     The array receiving the uncompressed chunk
+   * @param channels
+   *     The channels stored in each scanline of the chunk
+   * @param width
+   *     The width of the chunk in pixels
+   * @param height
+   *     The height of the chunk in pixels
+   * @throws InvalidImageException
+   *     if the compressed data is malformed
+   */
+  void decompress(
+      byte[] in, int inLength, byte[] out, List<Channel> channels, int width, int height) throws
+      InvalidImageException {
+    // Each channel is stored as planes of 16-bit values, with 2 values per pixel for 32-bit types
+    int planeLength = 0;
+    for (Channel c : channels) {
+      planeLength += width * height * (c.getFormat().getByteCount() / 2);
+    }
+    if (planes.length < planeLength) {
+      planes = new char[planeLength];
+    }
+
+    // Bitmap of the values used by the chunk
+    if (inLength < 4) {
+      throw new InvalidImageException("PIZ chunk is too short for its bitmap range");
+    }
+    int minNonZero = Bytes.bytesToShortLE(in, 0) & 0xffff;
+    int maxNonZero = Bytes.bytesToShortLE(in, 2) & 0xffff;
+    if (maxNonZero >= BITMAP_SIZE) {
+      throw new InvalidImageException("PIZ bitmap range is invalid: " + maxNonZero);
+    }
+    int position = 4;
+    Arrays.fill(bitmap, (byte) 0);
+    if (minNonZero <= maxNonZero) {
+      int bitmapLength = maxNonZero - minNonZero + 1;
+      if (position + bitmapLength > inLength) {
+        throw new InvalidImageException("PIZ chunk is too short for its bitmap");
+      }
+      System.arraycopy(in, position, bitmap, minNonZero, bitmapLength);
+      position += bitmapLength;
+    }
+    int maxValue = reverseLutFromBitmap();
+
+    // Huffman encoded wavelet coefficients
+    if (position + 4 > inLength) {
+      throw new InvalidImageException("PIZ chunk is too short for its Huffman data length");
+    }
+    int huffmanLength = Bytes.bytesToIntLE(in, position);
+    position += 4;
+    if (huffmanLength < 0 || position + huffmanLength > inLength) {
+      throw new InvalidImageException("PIZ chunk is too short for its Huffman data");
+    }
+    huffman.decode(in, position, huffmanLength, planes, planeLength);
+
+    // Invert the wavelet transform for every 16-bit plane of each channel
+    int start = 0;
+    for (Channel c : channels) {
+      int valuesPerPixel = c.getFormat().getByteCount() / 2;
+      for (int j = 0; j < valuesPerPixel; j++) {
+        wav2Decode(
+            planes, start + j, width, valuesPerPixel, height, width * valuesPerPixel, maxValue);
+      }
+      start += width * height * valuesPerPixel;
+    }
+
+    // Expand the compacted values back to the original 16-bit values
+    for (int i = 0; i < planeLength; i++) {
+      planes[i] = lut[planes[i]];
+    }
+
+    AbstractChunkReader.interleaveLines(planes, out, channels, width, height);
+  }
+
+  private int reverseLutFromBitmap() {
+    int k = 0;
+    for (int i = 0; i < USHORT_RANGE; i++) {
+      if (i == 0 || (bitmap[i >> 3] & (1 << (i & 7))) != 0) {
+        lut[k++] = (char) i;
+      }
+    }
+    int maxValue = k - 1;
+    Arrays.fill(lut, k, USHORT_RANGE, (char) 0);
+    return maxValue;
+  }
+
+  private static void wav2Decode(
+      char[] data, int offset, int nx, int ox, int ny, int oy, int maxValue) {
+    // 14-bit decoding is exact when the values fit, otherwise use modular 16-bit arithmetic
+    boolean w14 = maxValue < (1 << 14);
+    int n = Math.min(nx, ny);
+    int p = 1;
+    while (p <= n) {
+      p <<= 1;
+    }
+    p >>= 1;
+    int p2 = p;
+    p >>= 1;
+
+    // Hierarchical loop on the smaller dimension
+    while (p >= 1) {
+      int py = offset;
+      int ey = offset + oy * (ny - p2);
+      int oy1 = oy * p;
+      int oy2 = oy * p2;
+      int ox1 = ox * p;
+      int ox2 = ox * p2;
+
+      for (; py <= ey; py += oy2) {
+        int px = py;
+        int ex = py + ox * (nx - p2);
+        for (; px <= ex; px += ox2) {
+          int p01 = px + ox1;
+          int p10 = px + oy1;
+          int p11 = p10 + ox1;
+
+          // 2D wavelet decoding
+          int d0 = decode(w14, data[px], data[p10]);
+          int d1 = decode(w14, data[p01], data[p11]);
+          int d2 = decode(w14, d0 & 0xffff, d1 & 0xffff);
+          int d3 = decode(w14, d0 >>> 16, d1 >>> 16);
+          data[px] = (char) d2;
+          data[p01] = (char) (d2 >>> 16);
+          data[p10] = (char) d3;
+          data[p11] = (char) (d3 >>> 16);
+        }
+
+        // Decode the odd column
+        if ((nx & p) != 0) {
+          int p10 = px + oy1;
+          int d = decode(w14, data[px], data[p10]);
+          data[px] = (char) d;
+          data[p10] = (char) (d >>> 16);
+        }
+      }
+
+      // Decode the odd line
+      if ((ny & p) != 0) {
+        int px = py;
+        int ex = py + ox * (nx - p2);
+        for (; px <= ex; px += ox2) {
+          int p01 = px + ox1;
+          int d = decode(w14, data[px], data[p01]);
+          data[px] = (char) d;
+          data[p01] = (char) (d >>> 16);
+        }
+      }
+
+      p2 = p;
+      p >>= 1;
+    }
+  }
+
+  // Returns the decoded low value in the lower 16 bits and the high value in the upper 16 bits
+  private static int decode(boolean w14, int l, int h) {
+    int a, b;
+    if (w14) {
+      int ls = (short) l;
+      int hs = (short) h;
+      a = ls + (hs & 1) + (hs >> 1);
+      b = a - hs;
+    } else {
+      b = (l - (h >> 1)) & 0xffff;
+      a = (h + b - 0x8000) & 0xffff;
+    }
+    return (a & 0xffff) | (b << 16);
+  }
+}
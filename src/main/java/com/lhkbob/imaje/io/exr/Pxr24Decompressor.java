@@ -0,0 +1,137 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import com.lhkbob.imaje.data.Bytes;
+import com.lhkbob.imaje.io.InvalidImageException;
+
+import java.util.List;
+import java.util.zip.Inflater;
+
+/**
+ * Pxr24Decompressor
+ * =================
+ *
+ * Decompressor for OpenEXR's PXR24 compression. FLOAT channels are rounded to 24 bits before
+ * compression, while HALF and UINT channels are stored losslessly. For each scanline and channel,
+ * the values are delta encoded across the line and split into byte planes, most significant byte
+ * first, before the whole chunk is compressed with zlib.
+ *
+ * @author Michael Ludwig
+ */
+final class Pxr24Decompressor {
+  private Pxr24Decompressor() {}
+
+  /**
+   * Decompress the PXR24 chunk stored in the first `inLength` bytes of `in` into `out`, which
+   * receives the chunk's uncompressed data in OpenEXR's scanline order for a chunk of the given
+   * dimensions. `temp` must be at least as long as the uncompressed chunk.
+   *
+   * @param inflater
+   *     The inflater used to decompress the byte planes, which must be ready for new input
+   * @param in
+   *     The compressed chunk
+   * @param inLength
+   *     The number of compressed bytes
+   * @param temp
+   *     Scratch array that receives the inflated byte planes
+   * @param out
+   *     The array receiving the uncompressed chunk
+   * @param channels
+   *     The channels stored in each scanline of the chunk
+   * @param width
+   *     The width of the chunk in pixels
+   * @param height
+   *     The height of the chunk in pixels
+   * @throws InvalidImageException
+   *     if the compressed data is malformed
+   */
+  static void decompress(
+      Inflater inflater, byte[] in, int inLength, byte[] temp, byte[] out,
+      List<Channel> channels, int width, int height) throws InvalidImageException {
+    int planeLength = 0;
+    for (Channel c : channels) {
+      // FLOAT is truncated to 3 bytes
+      int bytes = c.getFormat() == ChannelFormat.FLOAT ? 3 : c.getFormat().getByteCount();
+      planeLength += width * height * bytes;
+    }
+    AbstractChunkReader.inflate(inflater, in, inLength, temp, planeLength);
+
+    int read = 0;
+    int write = 0;
+    for (int y = 0; y < height; y++) {
+      for (Channel c : channels) {
+        int pixel = 0;
+        switch (c.getFormat()) {
+        case UINT: {
+          int p0 = read;
+          int p1 = p0 + width;
+          int p2 = p1 + width;
+          int p3 = p2 + width;
+          read = p3 + width;
+          for (int x = 0; x < width; x++) {
+            pixel += ((temp[p0 + x] & 0xff) << 24) | ((temp[p1 + x] & 0xff) << 16) | (
+                (temp[p2 + x] & 0xff) << 8) | (temp[p3 + x] & 0xff);
+            Bytes.intToBytesLE(pixel, out, write);
+            write += 4;
+          }
+          break;
+        }
+        case HALF: {
+          int p0 = read;
+          int p1 = p0 + width;
+          read = p1 + width;
+          for (int x = 0; x < width; x++) {
+            pixel += ((temp[p0 + x] & 0xff) << 8) | (temp[p1 + x] & 0xff);
+            Bytes.shortToBytesLE((short) pixel, out, write);
+            write += 2;
+          }
+          break;
+        }
+        case FLOAT: {
+          int p0 = read;
+          int p1 = p0 + width;
+          int p2 = p1 + width;
+          read = p2 + width;
+          for (int x = 0; x < width; x++) {
+            pixel += ((temp[p0 + x] & 0xff) << 24) | ((temp[p1 + x] & 0xff) << 16) | (
+                (temp[p2 + x] & 0xff) << 8);
+            Bytes.intToBytesLE(pixel, out, write);
+            write += 4;
+          }
+          break;
+        }
+        }
+      }
+    }
+  }
+}
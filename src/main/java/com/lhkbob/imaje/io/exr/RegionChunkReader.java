@@ -0,0 +1,229 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import com.lhkbob.imaje.data.Bytes;
+import com.lhkbob.imaje.data.Data;
+import com.lhkbob.imaje.data.NumericData;
+import com.lhkbob.imaje.io.InvalidImageException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RegionChunkReader
+ * =================
+ *
+ * Chunk reader that decodes a rectangular region of a single level of a scanline or tiled part,
+ * keeping only a subset of its channels. The reader's own header describes the region as a
+ * scanline image containing just the selected channels, so the images it produces are sized to
+ * the region. Only the chunks that intersect the region need to be read, which are reported by
+ * {@link #getChunkOffsets(OffsetTable)}; any other chunk passed to {@link
+ * #readChunk(SeekableByteChannel, long, ChunkWorkspace)} is ignored.
+ *
+ * @author Michael Ludwig
+ */
+public class RegionChunkReader extends AbstractChunkReader {
+  private final OpenEXRHeader source;
+  private final int lx;
+  private final int ly;
+  private final Box2Int region;
+
+  // For each channel of the region, its index in the source header's channel list and the byte
+  // offset of its values within a line of a chunk, per pixel of chunk width
+  private final int[] sourceChannels;
+  private final int[] sourceChannelOffsets;
+  private final int valueSize;
+
+  /**
+   * Create a reader for the `region` of level `(lx, ly)` of the `source` part. `mapping` must be
+   * for a header whose data window is the size of the region and whose channels are the selected
+   * channels of `source`, in the same order.
+   *
+   * @param dataFactory
+   *     The factory used to allocate the region's data
+   * @param mapping
+   *     The channel mapping of the region's header
+   * @param source
+   *     The header of the part being read
+   * @param lx
+   *     The x level that is read
+   * @param ly
+   *     The y level that is read
+   * @param region
+   *     The region of the level that is read, in OpenEXR pixel coordinates
+   * @throws InvalidImageException
+   *     if the region's channels are not present in the source header
+   */
+  public RegionChunkReader(
+      Data.Factory dataFactory, ChannelMapping mapping, OpenEXRHeader source, int lx, int ly,
+      Box2Int region) throws InvalidImageException {
+    super(dataFactory, mapping);
+    this.source = source;
+    this.lx = lx;
+    this.ly = ly;
+    this.region = region;
+
+    List<Channel> channels = mapping.getHeader().getChannels();
+    List<Channel> sourceList = source.getChannels();
+    sourceChannels = new int[channels.size()];
+    sourceChannelOffsets = new int[channels.size()];
+    for (int i = 0; i < channels.size(); i++) {
+      sourceChannels[i] = sourceList.indexOf(channels.get(i));
+      if (sourceChannels[i] < 0) {
+        throw new InvalidImageException(
+            "Channel is not part of the source image: " + channels.get(i).getFullName());
+      }
+
+      int offset = 0;
+      for (int j = 0; j < sourceChannels[i]; j++) {
+        offset += sourceList.get(j).getFormat().getByteCount();
+      }
+      sourceChannelOffsets[i] = offset;
+    }
+    valueSize = channels.get(0).getFormat().getByteCount();
+  }
+
+  /**
+   * Get the offsets, from the start of the file, of every chunk in `table` that intersects the
+   * region. The table must have been read for the source header.
+   *
+   * @param table
+   *     The offset table of the source part
+   * @return The offsets of the chunks that must be read
+   */
+  public long[] getChunkOffsets(OffsetTable table) {
+    Box2Int dataWindow = source.getDataWindow();
+    TileDescription tiles = source.getTileDescription();
+    if (tiles == null) {
+      int lines = source.getCompression().getLinesInBuffer();
+      int first = (region.getMinY() - dataWindow.getMinY()) / lines;
+      int last = (region.getMaxY() - dataWindow.getMinY()) / lines;
+
+      long[] offsets = new long[last - first + 1];
+      for (int i = first; i <= last; i++) {
+        offsets[i - first] = table.getOffset(i);
+      }
+      return offsets;
+    } else {
+      int firstX = (region.getMinX() - dataWindow.getMinX()) / tiles.getWidth();
+      int lastX = (region.getMaxX() - dataWindow.getMinX()) / tiles.getWidth();
+      int firstY = (region.getMinY() - dataWindow.getMinY()) / tiles.getHeight();
+      int lastY = (region.getMaxY() - dataWindow.getMinY()) / tiles.getHeight();
+
+      int columns = lastX - firstX + 1;
+      long[] offsets = new long[columns * (lastY - firstY + 1)];
+      for (int dy = firstY; dy <= lastY; dy++) {
+        for (int dx = firstX; dx <= lastX; dx++) {
+          offsets[(dy - firstY) * columns + dx - firstX] = table.getOffset(dx, dy, lx, ly);
+        }
+      }
+      return offsets;
+    }
+  }
+
+  @Override
+  public void readChunk(SeekableByteChannel in, long position, ChunkWorkspace workspace) throws
+      IOException {
+    Box2Int chunkWindow;
+    int dataSize;
+    if (source.getTileDescription() == null) {
+      byte[] chunkHeader = readChunkHeader(in, position, 8, workspace);
+      int chunkY = Bytes.bytesToIntLE(chunkHeader, 0);
+      dataSize = Bytes.bytesToIntLE(chunkHeader, 4);
+      position += 8;
+
+      Box2Int dataWindow = source.getDataWindow();
+      int maxY = Math.min(
+          chunkY + source.getCompression().getLinesInBuffer() - 1, dataWindow.getMaxY());
+      chunkWindow = new Box2Int(dataWindow.getMinX(), chunkY, dataWindow.getMaxX(), maxY);
+    } else {
+      byte[] chunkHeader = readChunkHeader(in, position, 20, workspace);
+      int dx = Bytes.bytesToIntLE(chunkHeader, 0);
+      int dy = Bytes.bytesToIntLE(chunkHeader, 4);
+      if (Bytes.bytesToIntLE(chunkHeader, 8) != lx || Bytes.bytesToIntLE(chunkHeader, 12) != ly) {
+        // Not part of the level being read
+        return;
+      }
+      dataSize = Bytes.bytesToIntLE(chunkHeader, 16);
+      position += 20;
+
+      chunkWindow = source.getTileDescription()
+          .getTileDataWindow(source.getDataWindow(), dx, dy, lx, ly);
+    }
+
+    int minX = Math.max(region.getMinX(), chunkWindow.getMinX());
+    int maxX = Math.min(region.getMaxX(), chunkWindow.getMaxX());
+    int minY = Math.max(region.getMinY(), chunkWindow.getMinY());
+    int maxY = Math.min(region.getMaxY(), chunkWindow.getMaxY());
+    if (minX > maxX || minY > maxY) {
+      return;
+    }
+
+    byte[] uncompressed = decodeChunk(source, dataSize, chunkWindow, in, position, workspace);
+
+    // Both the chunk and the region's data store each line as the values of each channel in turn,
+    // so the intersection is copied as one span per line and channel.
+    NumericData<?> data = getDataForLevel(0);
+    int chunkWidth = chunkWindow.width();
+    int chunkLineSize = chunkWidth * source.getBytesPerPixel();
+    int regionWidth = region.width();
+    int spanSize = (maxX - minX + 1) * valueSize;
+    for (int y = minY; y <= maxY; y++) {
+      int lineStart = (y - chunkWindow.getMinY()) * chunkLineSize;
+      long regionLine = (long) (y - region.getMinY()) * sourceChannels.length;
+      for (int c = 0; c < sourceChannels.length; c++) {
+        int chunkOffset = lineStart + chunkWidth * sourceChannelOffsets[c]
+            + (minX - chunkWindow.getMinX()) * valueSize;
+        long regionOffset = (regionLine + c) * regionWidth + minX - region.getMinX();
+        copyUncompressedData(uncompressed, chunkOffset, spanSize, data, regionOffset);
+      }
+    }
+  }
+
+  @Override
+  public OffsetTable readOffsetTable(SeekableByteChannel in, ByteBuffer work) throws IOException {
+    if (source.getTileDescription() == null) {
+      return ScanLineOffsetTable.read(source, in, work);
+    } else {
+      return TileOffsetTable.read(source, in, work);
+    }
+  }
+
+  @Override
+  protected List<NumericData<?>> createBackingData() {
+    return Collections.singletonList(createData((long) region.width() * region.height()));
+  }
+}
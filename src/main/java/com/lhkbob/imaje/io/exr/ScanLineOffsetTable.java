@@ -68,6 +68,11 @@ public class ScanLineOffsetTable implements OffsetTable {
     return offsets.length;
   }
 
+  @Override
+  public long getChunkOffset(int index) {
+    return offsets[index];
+  }
+
   @Override
   public long getOffset(int... chunkCoords) {
     Arguments.equals("chunkCoords.length", 1, chunkCoords.length);
@@ -35,8 +35,6 @@ import com.lhkbob.imaje.Images;
 import com.lhkbob.imaje.data.Bytes;
 import com.lhkbob.imaje.data.Data;
 import com.lhkbob.imaje.data.NumericData;
-import com.lhkbob.imaje.io.IO;
-import com.lhkbob.imaje.io.InvalidImageException;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -54,12 +52,12 @@ public class ScanlineChunkReader extends AbstractChunkReader {
   }
 
   @Override
-  public void readNextChunk(SeekableByteChannel in, ByteBuffer work) throws IOException {
-    if (!IO.read(in, work, 8)) {
-      throw new InvalidImageException("Unable to read chunk Y and date size");
-    }
-    int chunkY = Bytes.bytesToIntLE(work);
-    int dataSize = Bytes.bytesToIntLE(work);
+  public void readChunk(SeekableByteChannel in, long position, ChunkWorkspace workspace) throws
+      IOException {
+    // Chunk Y and data size
+    byte[] chunkHeader = readChunkHeader(in, position, 8, workspace);
+    int chunkY = Bytes.bytesToIntLE(chunkHeader, 0);
+    int dataSize = Bytes.bytesToIntLE(chunkHeader, 4);
 
     // Calculate the data window that is going to be read in
     Box2Int imageWindow = getHeader().getDataWindow();
@@ -71,7 +69,8 @@ public class ScanlineChunkReader extends AbstractChunkReader {
         chunkY + linesInChunk - 1);
 
     readChunk(
-        dataSize, dataWindow, getDataForLevel(0), getHeader().getLayoutForMipmap(0), in, work);
+        dataSize, dataWindow, getDataForLevel(0), getHeader().getLayoutForMipmap(0), in,
+        position + 8, workspace);
   }
 
   @Override
@@ -79,16 +78,6 @@ public class ScanlineChunkReader extends AbstractChunkReader {
     return ScanLineOffsetTable.read(getHeader(), in, work);
   }
 
-  @Override
-  protected int getMaxUncompressedDataSize() {
-    // The chunk block holds rows of data where compression determines the line height
-    // and is the full width of the image
-    int chunkWidth = getHeader().getDataWindow().width();
-    int chunkHeight = getHeader().getCompression().getLinesInBuffer();
-
-    return chunkWidth * chunkHeight * getHeader().getBytesPerPixel();
-  }
-
   @Override
   protected List<NumericData<?>> createBackingData() {
     // Only one level to create
@@ -34,8 +34,6 @@ package com.lhkbob.imaje.io.exr;
 import com.lhkbob.imaje.data.Bytes;
 import com.lhkbob.imaje.data.Data;
 import com.lhkbob.imaje.data.NumericData;
-import com.lhkbob.imaje.io.IO;
-import com.lhkbob.imaje.io.InvalidImageException;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -54,21 +52,15 @@ public class TileChunkReader extends AbstractChunkReader {
   }
 
   @Override
-  public void readNextChunk(SeekableByteChannel in, ByteBuffer work) throws IOException {
-    // Read tile coordinates (4 integers)
-    if (!IO.read(in, work, 16)) {
-      throw new InvalidImageException("Unable to read part tile coordinates");
-    }
-    int dx = Bytes.bytesToIntLE(work);
-    int dy = Bytes.bytesToIntLE(work);
-    int lx = Bytes.bytesToIntLE(work);
-    int ly = Bytes.bytesToIntLE(work);
-
-    // Read in data size of the chunk
-    if (!IO.read(in, work, 4)) {
-      throw new InvalidImageException("Unable to read tile part data size");
-    }
-    int dataSize = Bytes.bytesToIntLE(work);
+  public void readChunk(SeekableByteChannel in, long position, ChunkWorkspace workspace) throws
+      IOException {
+    // Read tile coordinates (4 integers) and the data size of the chunk
+    byte[] chunkHeader = readChunkHeader(in, position, 20, workspace);
+    int dx = Bytes.bytesToIntLE(chunkHeader, 0);
+    int dy = Bytes.bytesToIntLE(chunkHeader, 4);
+    int lx = Bytes.bytesToIntLE(chunkHeader, 8);
+    int ly = Bytes.bytesToIntLE(chunkHeader, 12);
+    int dataSize = Bytes.bytesToIntLE(chunkHeader, 16);
 
     Box2Int dataWindow = getHeader().getDataWindow();
     TileDescription tiles = getHeader().getTileDescription();
@@ -100,9 +92,6 @@ public class TileChunkReader extends AbstractChunkReader {
     // For RIPMAP chunks, its possible for non diagonal chunks to be provided in the file but there
     // is no in-memory storage allocated for those so they should just be skipped over.
     if (level < 0) {
-      if (!IO.skip(in, work, dataSize)) {
-        throw new InvalidImageException("Unable to fully skip non-diagonal RIPMAP chunk");
-      }
       return;
     }
 
@@ -110,7 +99,7 @@ public class TileChunkReader extends AbstractChunkReader {
     Box2Int chunkWindow = tiles.getTileDataWindow(dataWindow, dx, dy, lx, ly);
     readChunk(
         dataSize, chunkWindow, getDataForLevel(level), getHeader().getLayoutForMipmap(level), in,
-        work);
+        position + 20, workspace);
   }
 
   @Override
@@ -118,13 +107,6 @@ public class TileChunkReader extends AbstractChunkReader {
     return TileOffsetTable.read(getHeader(), in, work);
   }
 
-  @Override
-  protected int getMaxUncompressedDataSize() {
-    // The chunk block that is read holds an entire tile
-    return getHeader().getTileDescription().getWidth() * getHeader().getTileDescription()
-        .getHeight() * getHeader().getBytesPerPixel();
-  }
-
   @Override
   protected List<NumericData<?>> createBackingData() {
     Box2Int dataWindow = getHeader().getDataWindow();
@@ -94,6 +94,12 @@ public class TileDescription {
     return new TileDescription(xSize, ySize, levelMode, roundingMode);
   }
 
+  public void write(ByteBuffer work) {
+    Bytes.intToBytesLE(xSize, work);
+    Bytes.intToBytesLE(ySize, work);
+    work.put((byte) (levelMode.ordinal() + 16 * roundingMode.ordinal()));
+  }
+
   private int getLevelSize(int min, int max, int l) {
     double distance = max - min + 1;
     int scale = 1 << l;
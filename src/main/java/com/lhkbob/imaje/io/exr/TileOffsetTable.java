@@ -50,6 +50,8 @@ public class TileOffsetTable implements OffsetTable {
   private final int levelYStride;
   private final int levelXStride;
   private final long[][][] offsets; // 3-dimensional (lx * ly, dy, dx)
+  // the same offsets flattened in table order
+  private final long[] chunkOffsets;
 
   public TileOffsetTable(OpenEXRHeader header, long[][][] offsets) {
     this.offsets = offsets;
@@ -76,6 +78,20 @@ public class TileOffsetTable implements OffsetTable {
       total += getTotalLevelOffsets(offsetForLevel);
     }
     totalTiles = total;
+
+    chunkOffsets = new long[total];
+    int index = 0;
+    for (long[][] offsetForLevel : offsets) {
+      for (long[] offsetForRow : offsetForLevel) {
+        System.arraycopy(offsetForRow, 0, chunkOffsets, index, offsetForRow.length);
+        index += offsetForRow.length;
+      }
+    }
+  }
+
+  @Override
+  public long getChunkOffset(int index) {
+    return chunkOffsets[index];
   }
 
   @Override
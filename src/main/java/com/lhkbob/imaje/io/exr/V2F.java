@@ -68,6 +68,11 @@ public class V2F {
     return new V2F(x, y);
   }
 
+  public void write(ByteBuffer work) {
+    Bytes.floatToBytesLE(x, work);
+    Bytes.floatToBytesLE(y, work);
+  }
+
   @Override
   public String toString() {
     return String.format("V2F(%.5f, %.5f)", x, y);
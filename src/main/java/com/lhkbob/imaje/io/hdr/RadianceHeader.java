@@ -37,6 +37,7 @@ import com.lhkbob.imaje.io.InvalidImageException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -204,7 +205,7 @@ public class RadianceHeader {
     RadianceHeader h = new RadianceHeader(vars);
 
     // Parse resVar and decode its parts into explicit variables of h
-    Matcher m = RESOLUTION_PATTERN.matcher(vars.get("RESOLUTION"));
+    Matcher m = RESOLUTION_PATTERN.matcher(resVar);
     m.matches(); // This is known to be true since that's how processVariables() terminates
     h.height = Integer.parseInt(m.group(2));
     h.topToBottom = Objects.equals("-", m.group(1));
@@ -226,22 +227,30 @@ public class RadianceHeader {
       header.append(v.getKey()).append('=').append(v.getValue()).append('\n');
     }
 
-    // Now format the resolution string
+    // An empty line ends the variables, then format the resolution string
+    header.append('\n');
     if (topToBottom)
       header.append('-');
     else
       header.append('+');
-    header.append(' ').append(height);
+    header.append("Y ").append(height).append(' ');
 
     if (leftToRight)
       header.append('+');
     else
       header.append('-');
-    header.append(' ').append(width).append('\n');
-
-    // Write header bytes as ASCII
-    work.put(header.toString().getBytes("ASCII")).flip();
-    IO.write(work, out);
+    header.append("X ").append(width).append('\n');
+
+    // Write header bytes as ASCII through the work buffer, which may be smaller than the header.
+    // IO.write() flips the buffer before writing and clears it afterwards.
+    byte[] bytes = header.toString().getBytes(StandardCharsets.US_ASCII);
+    int offset = 0;
+    while (offset < bytes.length) {
+      int length = Math.min(work.remaining(), bytes.length - offset);
+      work.put(bytes, offset, length);
+      offset += length;
+      IO.write(work, out);
+    }
   }
 
   private static void checkMagicNumber(SeekableByteChannel in, ByteBuffer work) throws IOException {
@@ -42,6 +42,7 @@ import com.lhkbob.imaje.data.types.CustomBinaryData;
 import com.lhkbob.imaje.io.IO;
 import com.lhkbob.imaje.io.ImageFileReader;
 import com.lhkbob.imaje.io.InvalidImageException;
+import com.lhkbob.imaje.io.ScanlineImageStream;
 import com.lhkbob.imaje.layout.DataLayout;
 import com.lhkbob.imaje.layout.PixelFormat;
 import com.lhkbob.imaje.layout.PixelFormatBuilder;
@@ -78,18 +79,58 @@ public class RadianceReader implements ImageFileReader {
     ByteBuffer work = IO.createWorkBufferForReading();
 
     RadianceHeader h = RadianceHeader.read(in, work);
+    Class<? extends Color> colorType = getColorType(h);
+    double[] channelCorrection = getChannelCorrection(h);
 
+    // Use a sfloat16 data source, since the file has less precision than that but the loaded image
+    // will be directly GPU compatible.
+    UnpackedPixelArray pixelArray = createPixelArray(dataFactory, h.getWidth(), h.getHeight());
+    // Read the remainder of the file into the pixel array
+    readImage(pixelArray, channelCorrection, h.isTopToBottom(), h.isLeftToRight(), in, work);
+
+    return new Raster(colorType, pixelArray);
+  }
+
+  /**
+   * Open a stream over the scanlines of a Radiance image. Each scanline is run-length decoded as
+   * the stream reaches it into a single reusable row of `sfloat16` RGB or XYZ values, so the
+   * memory used is independent of the image's height.
+   *
+   * @param in
+   *     The channel to read from, positioned at the start of the file
+   * @return A stream over the image's scanlines, which must be consumed while `in` is open
+   *
+   * @throws IOException
+   *     if the header cannot be read or is invalid
+   */
+  @Override
+  public ScanlineImageStream<?> stream(SeekableByteChannel in) throws IOException {
+    ByteBuffer work = IO.createWorkBufferForReading();
+
+    RadianceHeader h = RadianceHeader.read(in, work);
+    return createStream(getColorType(h), h, in, work);
+  }
+
+  private <T extends Color> ScanlineImageStream<T> createStream(
+      Class<T> colorType, RadianceHeader h, SeekableByteChannel in, ByteBuffer work) {
+    return new RadianceScanlineStream<>(colorType, createPixelArray(dataFactory, h.getWidth(), 1),
+        h.getHeight(), getChannelCorrection(h), h.isTopToBottom(), h.isLeftToRight(), in, work);
+  }
+
+  private static Class<? extends Color> getColorType(RadianceHeader h) throws
+      InvalidImageException {
     // Determine imaJe color type based on format variable
-    Class<? extends Color> colorType;
     if (h.isFormatRGB()) {
-      colorType = RGB.Linear.class;
+      return RGB.Linear.class;
     } else if (h.isFormatXYZ()) {
-      colorType = XYZ.class;
+      return XYZ.class;
     } else {
       // Unknown and illegal format specification
       throw new InvalidImageException("Unsupported FORMAT: " + h.getFormat());
     }
+  }
 
+  private static double[] getChannelCorrection(RadianceHeader h) {
     // Lookup any applied exposure value that must be undone to get back to the
     // original pixel values.
     double exposure = h.getExposure();
@@ -107,20 +148,18 @@ public class RadianceReader implements ImageFileReader {
     // Ignore other known variables like VIEW, SOFTWARE, PIXASPECT, and PRIMARIES
     // FIXME if primaries is provided, should use a color matrix to transform into the default
     // chromaticities assumed for XYZ and RGB.Linear
+    return channelCorrection;
+  }
 
-    // Use a sfloat16 data source, since the file has less precision than that but the loaded image
-    // will be directly GPU compatible.
+  private static UnpackedPixelArray createPixelArray(
+      Data.Factory dataFactory, int width, int height) {
     NumericData<?> data = new CustomBinaryData<>(
-        Data.SFLOAT16, dataFactory.newShortData(h.getWidth() * h.getHeight() * 3));
+        Data.SFLOAT16, dataFactory.newShortData(width * height * 3));
     PixelFormat format = new PixelFormatBuilder().channels(0, 1, 2).types(PixelFormat.Type.SFLOAT)
         .bits(16).build();
-    DataLayout layout = new ScanlineLayout(h.getWidth(), h.getHeight(), 3);
+    DataLayout layout = new ScanlineLayout(width, height, 3);
 
-    UnpackedPixelArray pixelArray = new UnpackedPixelArray(format, layout, data);
-    // Read the remainder of the file into the pixel array
-    readImage(pixelArray, channelCorrection, h.isTopToBottom(), h.isLeftToRight(), in, work);
-
-    return new Raster(colorType, pixelArray);
+    return new UnpackedPixelArray(format, layout, data);
   }
 
   private void readImage(
@@ -140,27 +179,34 @@ public class RadianceReader implements ImageFileReader {
       // Calculate Y coordinate for imaJe's coordinate system based on resolution specification in
       // file
       int imgY = topToBottom ? (height - y - 1) : y;
+      decodeScanLine(scan, channelCorrection, leftToRight, image.getData(0), imgY * width, rgb);
+    }
+  }
 
-      // Now convert the interleaved RGBE byte values into floating point RGB values
-      for (int x = 0; x < width; x++) {
-        int offset = 4 * x;
-        CONVERSION.toNumericValues(Bytes.bytesToIntBE(scan, offset), rgb);
+  static void decodeScanLine(
+      byte[] scan, double[] channelCorrection, boolean leftToRight, NumericData<?> data,
+      long pixelOffset, double[] rgb) {
+    int width = scan.length / 4;
 
-        // Apply channel corrections to undo modifications to the written pixel values
-        for (int i = 0; i < 3; i++) {
-          rgb[i] /= channelCorrection[i];
-        }
+    // Now convert the interleaved RGBE byte values into floating point RGB values
+    for (int x = 0; x < width; x++) {
+      int offset = 4 * x;
+      CONVERSION.toNumericValues(Bytes.bytesToIntBE(scan, offset), rgb);
 
-        // Calculate X coordinate for imaJe's coordinate system based on resolution specification
-        int imgX = leftToRight ? x : (width - x - 1);
-
-        // Push numeric RGB values into the pixel array data
-        image.getData().setValues(3 * (imgY * width + imgX), rgb);
+      // Apply channel corrections to undo modifications to the written pixel values
+      for (int i = 0; i < 3; i++) {
+        rgb[i] /= channelCorrection[i];
       }
+
+      // Calculate X coordinate for imaJe's coordinate system based on resolution specification
+      int imgX = leftToRight ? x : (width - x - 1);
+
+      // Push numeric RGB values into the pixel array data
+      data.setValues(3 * (pixelOffset + imgX), rgb);
     }
   }
 
-  private void readRLEScanLine(
+  private static void readRLEScanLine(
       int imgWidth, SeekableByteChannel in, ByteBuffer work, byte[] scanlineBuffer) throws
       IOException {
     // Scanline is adaptively RLE'ed in separate channels: R, G, B, and then E. So expand
@@ -207,7 +253,7 @@ public class RadianceReader implements ImageFileReader {
     }
   }
 
-  private void readScanLine(
+  static void readScanLine(
       int imgWidth, SeekableByteChannel in, ByteBuffer work, byte[] scanlineBuffer) throws
       IOException {
     // Special case for small or extra large images that can't use RLE, which doesn't require
@@ -245,7 +291,7 @@ public class RadianceReader implements ImageFileReader {
     readSimpleScanLine(imgWidth, in, work, scanlineBuffer);
   }
 
-  private void readSimpleScanLine(
+  private static void readSimpleScanLine(
       int imgWidth, SeekableByteChannel in, ByteBuffer work, byte[] scanlineBuffer) throws
       IOException {
     // The scanline is either a sequence of interleaved 4 RGBE bytes or postfixed specified
@@ -0,0 +1,82 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.hdr;
+
+import com.lhkbob.imaje.color.Color;
+import com.lhkbob.imaje.io.ScanlineImageStream;
+import com.lhkbob.imaje.layout.UnpackedPixelArray;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * RadianceScanlineStream
+ * ======================
+ *
+ * Scanline stream over a Radiance image that unpacks one RGBE scanline at a time into a reusable
+ * byte row and converts it into the stream's single row of floating point pixels.
+ *
+ * @author Michael Ludwig
+ */
+class RadianceScanlineStream<T extends Color> extends ScanlineImageStream<T> {
+  private final UnpackedPixelArray scanline;
+  private final double[] channelCorrection;
+  private final boolean leftToRight;
+  private final SeekableByteChannel in;
+  private final ByteBuffer work;
+
+  private final byte[] scan;
+  private final double[] rgb;
+
+  RadianceScanlineStream(
+      Class<T> colorType, UnpackedPixelArray scanline, int height, double[] channelCorrection,
+      boolean topToBottom, boolean leftToRight, SeekableByteChannel in, ByteBuffer work) {
+    super(colorType, scanline, height, topToBottom);
+    this.scanline = scanline;
+    this.channelCorrection = channelCorrection;
+    this.leftToRight = leftToRight;
+    this.in = in;
+    this.work = work;
+
+    // While the row is just 3 channels, the byte data is R, G, B, E
+    scan = new byte[scanline.getWidth() * 4];
+    rgb = new double[3];
+  }
+
+  @Override
+  protected void readScanline() throws IOException {
+    RadianceReader.readScanLine(scanline.getWidth(), in, work, scan);
+    RadianceReader.decodeScanLine(
+        scan, channelCorrection, leftToRight, scanline.getData(0), 0, rgb);
+  }
+}
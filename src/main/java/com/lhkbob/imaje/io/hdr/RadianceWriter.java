@@ -34,17 +34,27 @@ package com.lhkbob.imaje.io.hdr;
 import com.lhkbob.imaje.Image;
 import com.lhkbob.imaje.Raster;
 import com.lhkbob.imaje.color.Color;
-import com.lhkbob.imaje.color.RGB;
+import com.lhkbob.imaje.color.ColorSpace;
+import com.lhkbob.imaje.color.space.rgb.Linear;
 import com.lhkbob.imaje.color.transform.Transform;
-import com.lhkbob.imaje.color.transform.Transforms;
+import com.lhkbob.imaje.color.transform.TransformCache;
 import com.lhkbob.imaje.data.Bytes;
 import com.lhkbob.imaje.io.IO;
 import com.lhkbob.imaje.io.ImageFileWriter;
 import com.lhkbob.imaje.io.InvalidImageException;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.layout.PixelArrays;
+import com.lhkbob.imaje.util.Arguments;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.lhkbob.imaje.io.hdr.RadianceFormat.CONVERSION;
 
@@ -52,17 +62,77 @@ import static com.lhkbob.imaje.io.hdr.RadianceFormat.CONVERSION;
  *
  */
 public class RadianceWriter implements ImageFileWriter {
+  // Runs shorter than this are cheaper to store as literal bytes
+  private static final int MIN_RUN = 4;
+  // Longest run and longest literal block a single RLE packet can hold
+  private static final int MAX_RUN = 127;
+  private static final int MAX_LITERAL = 128;
+
+  private final Executor executor;
+  private final int workerCount;
+
+  public RadianceWriter() {
+    this(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+  }
+
+  /**
+   * Create a writer that encodes scanlines concurrently. Up to `workerCount` scanlines are
+   * converted to RGBE and run-length encoded at once by tasks submitted to `executor`, each into
+   * its own row buffer, and the encoded rows are written to the channel in order. If `executor` is
+   * null or `workerCount` is 1, all scanlines are encoded on the calling thread.
+   *
+   * @param executor
+   *     The executor that encodes scanlines, or null to encode on the calling thread
+   * @param workerCount
+   *     The maximum number of concurrent encoding tasks
+   * @throws IllegalArgumentException
+   *     if `workerCount` is less than 1
+   */
+  public RadianceWriter(@Arguments.Nullable Executor executor, int workerCount) {
+    Arguments.isPositive("workerCount", workerCount);
+    this.executor = executor;
+    this.workerCount = workerCount;
+  }
+
+  /**
+   * Write `image` assuming its colors are linear sRGB, which is how {@link RadianceReader} reads
+   * RGBE pixels.
+   *
+   * @see #write(Image, ColorSpace, SeekableByteChannel)
+   */
   @Override
   public void write(Image<?> image, SeekableByteChannel out) throws IOException {
+    write(image, Linear.SPACE_SRGB, out);
+  }
+
+  /**
+   * Write `image` as an RGBE Radiance file, converting its colors from `space` to linear sRGB.
+   *
+   * @param image
+   *     The image to write, which must be a Raster
+   * @param space
+   *     The color space of the image's colors
+   * @param out
+   *     The channel to write to
+   * @throws IOException
+   *     if the image can't be written
+   * @throws IllegalArgumentException
+   *     if `space` does not match the image's channel count
+   */
+  public void write(Image<?> image, ColorSpace<?, ?> space, SeekableByteChannel out)
+      throws IOException {
+    Arguments.notNull("space", space);
     if (!(image instanceof Raster)) {
       throw new InvalidImageException("Only 2D Raster images are supported");
     }
+    Arguments.equals("channel count", space.getChannelCount(),
+        ((Raster<?>) image).getPixelArray().getColorChannelCount());
 
-    writeRaster((Raster<?>) image, out);
+    writeRaster((Raster<?>) image, space, out);
   }
 
-  private <T extends Color> void writeRaster(Raster<T> image, SeekableByteChannel out) throws
-      IOException {
+  private <T extends Color> void writeRaster(
+      Raster<T> image, ColorSpace<?, ?> space, SeekableByteChannel out) throws IOException {
     ByteBuffer work = IO.createWorkBufferForWriting();
 
     RadianceHeader h = new RadianceHeader();
@@ -75,31 +145,210 @@ public class RadianceWriter implements ImageFileWriter {
     // FIXME we could try and include color correction and/or primaries if we know that T is
     // a particular type of RGB space, etc.
 
+    // Scanlines are written from the top of the image down, left to right
+    h.setWidth(image.getWidth());
+    h.setHeight(image.getHeight());
+    h.setTopToBottom(true);
+    h.setLeftToRight(true);
+
     h.write(out, work);
 
-    T color = Color.newInstance(image.getColorType());
-    Transform<T, RGB.Linear> toLinear = Transforms.newTransform(image.getColorType(), RGB.Linear.class);
-    // FIXME implement some RLE encoding for images of appropriate size
-    for (int y = image.getHeight() - 1; y >= 0; y--) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        image.get(x, y, color); // Ignore alpha since Radiance can't store that
+    // RGBE is not a normalized integer format, so only the source data's curves are tabulated
+    Transform<?, ?, ?, ?> toLinear = TransformCache.getDefault().getPixelTransform(space,
+        Linear.SPACE_SRGB, PixelArrays.getSourceFormat(image.getPixelArray()), null);
+
+    // Scanlines are encoded within a sliding window so that they can be written in order while the
+    // following scanlines are still being encoded. Each slot of the window reuses one encoder.
+    int n = image.getHeight();
+    int window = Math.min(n, executor == null ? 1 : 2 * workerCount);
+    List<ScanlineEncoder<T>> encoders = new ArrayList<>(window);
+    List<CompletableFuture<ScanlineEncoder<T>>> pending = new ArrayList<>(window);
+    for (int i = 0; i < window; i++) {
+      encoders.add(new ScanlineEncoder<>(image, toLinear));
+      pending.add(null);
+    }
+
+    try {
+      for (int i = 0; i < window; i++) {
+        pending.set(i, encode(encoders.get(i), getScanlineY(image, i)));
+      }
+
+      for (int i = 0; i < n; i++) {
+        int slot = i % window;
+        ScanlineEncoder<T> encoder = join(pending.get(slot));
+        pending.set(slot, null);
+
+        ByteBuffer data = ByteBuffer.wrap(encoder.encoded, 0, encoder.encodedLength);
+        while (data.hasRemaining()) {
+          out.write(data);
+        }
+
+        if (i + window < n) {
+          pending.set(slot, encode(encoder, getScanlineY(image, i + window)));
+        }
+      }
+    } finally {
+      // Make sure no task is still reading the image once this returns
+      for (CompletableFuture<ScanlineEncoder<T>> task : pending) {
+        if (task != null) {
+          try {
+            task.join();
+          } catch (CompletionException e) {
+            // Ignore, since the original failure is already propagating
+          }
+        }
+      }
+    }
+  }
+
+  private static int getScanlineY(Raster<?> image, int scanline) {
+    // The first scanline in the file is the top of the image, which is the highest y in imaJe
+    return image.getHeight() - scanline - 1;
+  }
+
+  private <T extends Color> CompletableFuture<ScanlineEncoder<T>> encode(
+      ScanlineEncoder<T> encoder, int y) {
+    if (executor == null) {
+      encoder.encode(y);
+      return CompletableFuture.completedFuture(encoder);
+    } else {
+      return CompletableFuture.supplyAsync(() -> {
+        encoder.encode(y);
+        return encoder;
+      }, executor);
+    }
+  }
+
+  private static <T> T join(CompletableFuture<T> task) {
+    try {
+      return task.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * ScanlineEncoder
+   * ===============
+   *
+   * Converts one scanline of an image to RGBE bytes and run-length encodes them into a reusable
+   * row buffer. Each scanline is fetched and converted to linear RGB with one batched call, and
+   * every row array is reused so encoding does not allocate.
+   */
+  private static class ScanlineEncoder<T extends Color> {
+    private final PixelArray data;
+    private final int width;
+    private final Transform<?, ?, ?, ?> toLinear;
+
+    private final double[] colors;
+    private final double[] linear;
+    private final double[] pixel;
+
+    private final byte[] rgbe;
+    private final byte[] encoded;
+    private int encodedLength;
+
+    ScanlineEncoder(Raster<T> image, Transform<?, ?, ?, ?> toLinear) {
+      data = image.getPixelArray();
+      width = image.getWidth();
+      this.toLinear = toLinear;
+
+      colors = new double[width * toLinear.getInputSpace().getChannelCount()];
+      linear = new double[width * 3];
+      pixel = new double[3];
+
+      rgbe = new byte[4 * width];
+      // Worst case for each channel is literal packets of MAX_LITERAL bytes plus a count byte each,
+      // after the 4 byte scanline marker
+      encoded = new byte[4 + 4 * (width + width / MAX_LITERAL + 1)];
+    }
 
-        // Convert to linear RGB
-        RGB.Linear toWrite = toLinear.apply(color);
+    void encode(int y) {
+      // Ignore alpha since Radiance can't store that
+      data.getRow(y, 0, width, colors, null);
+      toLinear.applyUnchecked(colors, 0, linear, 0, width);
+      for (int x = 0; x < width; x++) {
+        System.arraycopy(linear, 3 * x, pixel, 0, 3);
+        Bytes.intToBytesBE((int) CONVERSION.toBits(pixel), rgbe, 4 * x);
+      }
+
+      if (width < 8 || width > 0x7fff) {
+        // Small or extra large scanlines can't be run-length encoded
+        System.arraycopy(rgbe, 0, encoded, 0, rgbe.length);
+        encodedLength = rgbe.length;
+        return;
+      }
 
-        // Encode RGB as 4 bytes
-        Bytes.intToBytesBE((int) CONVERSION.toBits(toWrite.getChannels()), work);
+      // New-style scanline marker with the width, followed by each channel encoded separately
+      encoded[0] = 2;
+      encoded[1] = 2;
+      encoded[2] = (byte) (width >> 8);
+      encoded[3] = (byte) width;
+      encodedLength = 4;
+      for (int i = 0; i < 4; i++) {
+        encodeChannel(i);
+      }
+    }
+
+    private void encodeChannel(int channel) {
+      int x = 0;
+      while (x < width) {
+        // Find the start of the next run that is long enough to be worth encoding
+        int runStart = x;
+        int runLength = 0;
+        while (runStart < width) {
+          runLength = 1;
+          while (runLength < MAX_RUN && runStart + runLength < width
+              && get(runStart + runLength, channel) == get(runStart, channel)) {
+            runLength++;
+          }
+          if (runLength >= MIN_RUN) {
+            break;
+          }
+          runStart += runLength;
+        }
 
-        // Push pixel data to channel if we've reached the end
-        if (work.remaining() < 4) {
-          IO.write(work, out);
+        // A short run of 2 or 3 equal bytes directly before the long run is still cheaper as a run
+        if (runStart - x > 1 && runStart - x < MIN_RUN) {
+          int end = x + 1;
+          while (get(end, channel) == get(x, channel)) {
+            if (++end == runStart) {
+              put((byte) (128 + runStart - x));
+              put(get(x, channel));
+              x = runStart;
+              break;
+            }
+          }
+        }
+
+        // Literal bytes before the run
+        while (x < runStart) {
+          int count = Math.min(MAX_LITERAL, runStart - x);
+          put((byte) count);
+          for (int j = 0; j < count; j++) {
+            put(get(x++, channel));
+          }
+        }
+
+        if (runLength >= MIN_RUN) {
+          put((byte) (128 + runLength));
+          put(get(runStart, channel));
+          x += runLength;
         }
       }
     }
 
-    // Flush out any last row of pixel data
-    if (work.hasRemaining()) {
-      IO.write(work, out);
+    private byte get(int x, int channel) {
+      return rgbe[4 * x + channel];
+    }
+
+    private void put(byte value) {
+      encoded[encodedLength++] = value;
     }
   }
 }
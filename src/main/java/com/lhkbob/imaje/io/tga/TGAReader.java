@@ -34,7 +34,7 @@ package com.lhkbob.imaje.io.tga;
 import com.lhkbob.imaje.ImageBuilder;
 import com.lhkbob.imaje.Images;
 import com.lhkbob.imaje.Raster;
-import com.lhkbob.imaje.color.SRGB;
+import com.lhkbob.imaje.color.RGB;
 import com.lhkbob.imaje.data.ByteData;
 import com.lhkbob.imaje.data.Bytes;
 import com.lhkbob.imaje.data.Data;
@@ -42,33 +42,64 @@ import com.lhkbob.imaje.data.ShortData;
 import com.lhkbob.imaje.io.IO;
 import com.lhkbob.imaje.io.ImageFileReader;
 import com.lhkbob.imaje.io.InvalidImageException;
+import com.lhkbob.imaje.io.ScanlineImageStream;
 import com.lhkbob.imaje.io.UnsupportedImageFormatException;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.layout.TileCache;
+import com.lhkbob.imaje.layout.TiledPixelArray;
 import com.lhkbob.imaje.util.Arguments;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 
 /**
  *
  */
 public class TGAReader implements ImageFileReader {
+  /**
+   * The number of scanlines in each tile of a raster opened with {@link
+   * #readLazy(SeekableByteChannel, TileCache)}.
+   */
+  public static final int DEFAULT_LAZY_ROWS = 64;
+
   private final Data.Factory dataFactory;
+  private final boolean memoryMapped;
 
   public TGAReader() {
     this(null);
   }
 
   public TGAReader(@Arguments.Nullable Data.Factory factory) {
+    this(factory, false);
+  }
+
+  /**
+   * Create a reader that allocates image data with `factory`, or the default factory if it is
+   * null. When `memoryMapped` is true and the reader is given a {@link FileChannel}, the pixels of
+   * uncompressed true color images are not copied. They are mapped from the file and wrapped
+   * directly, so the image is read-only and setting its pixels throws a {@link
+   * java.nio.ReadOnlyBufferException}. Compressed and color mapped images, and other channels, are
+   * still decoded into data allocated by `factory`.
+   *
+   * @param factory
+   *     The factory that allocates decoded image data
+   * @param memoryMapped
+   *     True if uncompressed file data is mapped instead of copied
+   */
+  public TGAReader(@Arguments.Nullable Data.Factory factory, boolean memoryMapped) {
     if (factory == null) {
       dataFactory = Data.getDefaultDataFactory();
     } else {
       dataFactory = factory;
     }
+    this.memoryMapped = memoryMapped;
   }
 
   @Override
-  public Raster<SRGB> read(SeekableByteChannel in) throws IOException {
+  public Raster<RGB> read(SeekableByteChannel in) throws IOException {
     ByteBuffer work = IO.createWorkBufferForReading();
 
     TGAHeader h = TGAHeader.read(in, work);
@@ -101,6 +132,10 @@ public class TGAReader implements ImageFileReader {
           return readMultiByteColorMap(h, colorMap, in, work);
         }
       }
+    } else if (memoryMapped && in instanceof FileChannel
+        && !h.getImageType().isRunLengthEncoded()) {
+      // Wrap the pixels in the file without copying them
+      return readMappedTrueColor(h, (FileChannel) in, work);
     } else {
       // No color mapping
       if (h.getPixelDepth() == 16) {
@@ -121,6 +156,150 @@ public class TGAReader implements ImageFileReader {
     }
   }
 
+  /**
+   * Open a stream over the scanlines of a TGA image. Every supported image type can be streamed,
+   * including run-length encoded and color mapped images. Scanlines are decoded as the stream
+   * reaches them into a single reusable row, so the memory used is independent of the image's
+   * height.
+   *
+   * @param in
+   *     The channel to read from, positioned at the start of the file
+   * @return A stream over the image's scanlines, which must be consumed while `in` is open
+   *
+   * @throws IOException
+   *     if the header cannot be read or is invalid
+   * @throws UnsupportedImageFormatException
+   *     if the image type is not supported
+   */
+  @Override
+  public ScanlineImageStream<RGB> stream(SeekableByteChannel in) throws IOException {
+    ByteBuffer work = IO.createWorkBufferForReading();
+
+    TGAHeader h = TGAHeader.read(in, work);
+    checkHeaderSupported(h);
+
+    ColorMap colorMap = null;
+    if (h.hasColorMap()) {
+      // Always read the color map so that it is skipped over for unmapped images
+      colorMap = ColorMap.read(h, in, work);
+    }
+    if (h.getImageType().requiresColorMap()) {
+      if (colorMap == null) {
+        throw new InvalidImageException("Required color map was not provided");
+      }
+    } else {
+      colorMap = null;
+    }
+
+    int elementByteSize = colorMap != null ? colorMap.getElementByteSize()
+        : h.getPixelDepth() / 8;
+    if (elementByteSize == 2) {
+      // 16-bit packed 1555 ARGB
+      ShortData rowData = dataFactory.newShortData(h.getWidth());
+      return new TGAScanlineStream<>(RGB.class, h, colorMap,
+          build16BitImage(h, 1, rowData).getPixelArray(), rowData, in, work);
+    } else {
+      // 24 or 32 bit BGRA
+      ByteData rowData = dataFactory.newByteData(h.getWidth() * elementByteSize);
+      return new TGAScanlineStream<>(RGB.class, h, colorMap,
+          buildMultiByteImage(h, 1, elementByteSize, rowData).getPixelArray(), rowData, in, work);
+    }
+  }
+
+  /**
+   * Open an uncompressed, true color TGA image without reading its pixel data. The returned raster
+   * is backed by a {@link TiledPixelArray} whose tiles are bands of {@link #DEFAULT_LAZY_ROWS} full
+   * scanlines, which are read from `in` when they are first accessed and kept in `cache`. The
+   * channel must remain open, and must not be modified, for as long as the raster is used.
+   *
+   * @param in
+   *     The channel to read from, positioned at the start of the file
+   * @param cache
+   *     The cache that holds loaded scanlines
+   * @return A raster that reads its pixels on demand
+   *
+   * @throws IOException
+   *     if the channel cannot be read or does not contain a valid TGA image
+   * @throws UnsupportedImageFormatException
+   *     if the image is run-length encoded or color mapped
+   */
+  public Raster<RGB> readLazy(SeekableByteChannel in, TileCache cache) throws IOException {
+    return readLazy(in, cache, DEFAULT_LAZY_ROWS);
+  }
+
+  /**
+   * Open an uncompressed, true color TGA image without reading its pixel data, as in {@link
+   * #readLazy(SeekableByteChannel, TileCache)} but with tiles of `rowsPerTile` scanlines.
+   *
+   * @param in
+   *     The channel to read from, positioned at the start of the file
+   * @param cache
+   *     The cache that holds loaded scanlines
+   * @param rowsPerTile
+   *     The number of scanlines read together as a tile
+   * @return A raster that reads its pixels on demand
+   *
+   * @throws IOException
+   *     if the channel cannot be read or does not contain a valid TGA image
+   * @throws UnsupportedImageFormatException
+   *     if the image is run-length encoded or color mapped
+   * @throws IllegalArgumentException
+   *     if `rowsPerTile` is less than 1
+   */
+  public Raster<RGB> readLazy(SeekableByteChannel in, TileCache cache, int rowsPerTile) throws
+      IOException {
+    Arguments.notNull("cache", cache);
+    Arguments.isPositive("rowsPerTile", rowsPerTile);
+    ByteBuffer work = IO.createWorkBufferForReading();
+
+    TGAHeader h = TGAHeader.read(in, work);
+    checkHeaderSupported(h);
+    if (h.getImageType().requiresColorMap() || h.getImageType().isRunLengthEncoded()) {
+      throw new UnsupportedImageFormatException(
+          "Only uncompressed true color images can be read lazily");
+    }
+    if (h.hasColorMap()) {
+      // Skip over the unused color map
+      ColorMap.read(h, in, work);
+    }
+
+    // The work buffer may have read past the header, so the pixel data starts at what remains
+    long dataStart = in.position() - work.remaining();
+    int bytesPerPixel = h.getPixelDepth() / 8;
+    long rowSize = (long) h.getWidth() * bytesPerPixel;
+
+    // Scanlines are stored in file order, so bands of them start at the top of the image if the
+    // image is stored top to bottom
+    TiledPixelArray.TileLoader loader = (tileX, tileY) -> {
+      int rows = Math.min(rowsPerTile, h.getHeight() - tileY * rowsPerTile);
+      if (memoryMapped && in instanceof FileChannel) {
+        return readMappedTrueColor(h, rows, (FileChannel) in,
+            dataStart + tileY * rowsPerTile * rowSize).getPixelArray();
+      }
+
+      byte[] bytes = new byte[Math.toIntExact(rows * rowSize)];
+      if (!IO.readAt(in, dataStart + tileY * rowsPerTile * rowSize, bytes, 0, bytes.length)) {
+        throw new InvalidImageException("Unexpected EOF while reading scanlines");
+      }
+
+      if (bytesPerPixel == 2) {
+        ShortData imageData = dataFactory.newShortData(bytes.length / 2);
+        imageData.setBits(0, ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN));
+        return build16BitImage(h, rows, imageData).getPixelArray();
+      } else {
+        ByteData imageData = dataFactory.newByteData(bytes.length);
+        imageData.set(0, bytes, 0, bytes.length);
+        return buildMultiByteImage(h, rows, bytesPerPixel, imageData).getPixelArray();
+      }
+    };
+
+    // Load the first band to learn the channels of the pixel format
+    PixelArray first = loader.load(0, 0);
+    return new Raster<>(RGB.class, new TiledPixelArray(h.getWidth(), h.getHeight(), h.getWidth(),
+        rowsPerTile, h.isTopToBottom(), first.getColorChannelCount(), first.hasAlphaChannel(),
+        bytesPerPixel, loader, cache));
+  }
+
   private void checkHeaderSupported(TGAHeader h) throws UnsupportedImageFormatException {
     if (h.getImageType().isBlackAndWhite()) {
       throw new UnsupportedImageFormatException("Cannot load black and white image data");
@@ -137,9 +316,13 @@ public class TGAReader implements ImageFileReader {
     }
   }
 
-  private Raster<SRGB> build16BitImage(TGAHeader h, ShortData imageData) {
-    ImageBuilder.OfRaster<SRGB> b = Images.newRaster(SRGB.class).width(h.getWidth())
-        .height(h.getHeight()).packedA1R5G5B5().existingData(imageData);
+  private Raster<RGB> build16BitImage(TGAHeader h, ShortData imageData) {
+    return build16BitImage(h, h.getHeight(), imageData);
+  }
+
+  private Raster<RGB> build16BitImage(TGAHeader h, int height, ShortData imageData) {
+    ImageBuilder.OfRaster<RGB> b = Images.newRaster(RGB.class).width(h.getWidth())
+        .height(height).packedA1R5G5B5().existingData(imageData);
     if (h.isTopToBottom()) {
       b.pixelsTopToBottom();
     }
@@ -150,9 +333,14 @@ public class TGAReader implements ImageFileReader {
     return b.build();
   }
 
-  private Raster<SRGB> buildMultiByteImage(TGAHeader h, int numChannels, ByteData imageData) {
-    ImageBuilder.OfRaster<SRGB> b = Images.newRaster(SRGB.class).width(h.getWidth())
-        .height(h.getHeight()).unorm8().existingData(imageData);
+  private Raster<RGB> buildMultiByteImage(TGAHeader h, int numChannels, ByteData imageData) {
+    return buildMultiByteImage(h, h.getHeight(), numChannels, imageData);
+  }
+
+  private Raster<RGB> buildMultiByteImage(
+      TGAHeader h, int height, int numChannels, ByteData imageData) {
+    ImageBuilder.OfRaster<RGB> b = Images.newRaster(RGB.class).width(h.getWidth())
+        .height(height).unorm8().existingData(imageData);
     if (numChannels == 4) {
       b.bgra();
     } else {
@@ -169,23 +357,21 @@ public class TGAReader implements ImageFileReader {
   }
 
 
-  private Raster<SRGB> read16BitTrueColor(
+  private Raster<RGB> read16BitTrueColor(
       TGAHeader h, SeekableByteChannel in, ByteBuffer work) throws IOException {
     ShortData imageData = dataFactory.newShortData(h.getWidth() * h.getHeight());
 
-    // Read all bytes and convert to LE short values before storing into the image data
+    // Read all bytes and bulk copy them as LE short values into the image data
     long offset = 0;
     while (offset < imageData.getLength() && IO.read(in, work, 2)) {
-      while (offset < imageData.getLength() && work.remaining() > 2) {
-        imageData.set(offset, Bytes.bytesToShortLE(work));
-        offset++;
-      }
+      int count = Math.toIntExact(Math.min(work.remaining() / 2, imageData.getLength() - offset));
+      offset += setShortsLE(imageData, offset, work, count);
     }
 
     return build16BitImage(h, imageData);
   }
 
-  private Raster<SRGB> read16BitTrueColorRLE(
+  private Raster<RGB> read16BitTrueColorRLE(
       TGAHeader h, SeekableByteChannel in, ByteBuffer work) throws IOException {
     ShortData imageData = dataFactory.newShortData(h.getWidth() * h.getHeight());
 
@@ -210,17 +396,14 @@ public class TGAReader implements ImageFileReader {
       } else {
         // Read 2 * N bytes to get raw contents
         IO.read(in, work, 2 * len);
-        for (int i = 0; i < len; i++) {
-          imageData.set(offset, Bytes.bytesToShortLE(work));
-          offset++;
-        }
+        offset += setShortsLE(imageData, offset, work, len);
       }
     }
 
     return build16BitImage(h, imageData);
   }
 
-  private Raster<SRGB> readMultiByteTrueColor(
+  private Raster<RGB> readMultiByteTrueColor(
       TGAHeader h, SeekableByteChannel in, ByteBuffer work) throws IOException {
     int numChannels = h.getPixelDepth() / 8;
     ByteData imageData = dataFactory.newByteData(h.getWidth() * h.getHeight() * numChannels);
@@ -242,7 +425,31 @@ public class TGAReader implements ImageFileReader {
     return buildMultiByteImage(h, numChannels, imageData);
   }
 
-  private Raster<SRGB> readMultiByteTrueColorRLE(
+  private Raster<RGB> readMappedTrueColor(TGAHeader h, FileChannel in, ByteBuffer work) throws
+      IOException {
+    // The work buffer may have read past the header, so the pixel data starts at what remains
+    return readMappedTrueColor(h, h.getHeight(), in, in.position() - work.remaining());
+  }
+
+  private Raster<RGB> readMappedTrueColor(
+      TGAHeader h, int height, FileChannel in, long dataStart) throws IOException {
+    int numChannels = h.getPixelDepth() / 8;
+    long pixels = (long) h.getWidth() * height;
+    if (in.size() - dataStart < pixels * numChannels) {
+      throw new InvalidImageException("Unexpected EOF while reading scanlines");
+    }
+
+    if (numChannels == 2) {
+      // The packed 1555 values are little endian shorts
+      return build16BitImage(h, height,
+          IO.mapShortData(in, dataStart, pixels, ByteOrder.LITTLE_ENDIAN));
+    } else {
+      return buildMultiByteImage(h, height, numChannels,
+          IO.mapByteData(in, dataStart, pixels * numChannels));
+    }
+  }
+
+  private Raster<RGB> readMultiByteTrueColorRLE(
       TGAHeader h, SeekableByteChannel in, ByteBuffer work) throws IOException {
     int numChannels = h.getPixelDepth() / 8;
     ByteData imageData = dataFactory.newByteData(h.getWidth() * h.getHeight() * numChannels);
@@ -280,7 +487,7 @@ public class TGAReader implements ImageFileReader {
     return buildMultiByteImage(h, numChannels, imageData);
   }
 
-  private Raster<SRGB> read16BitColorMap(
+  private Raster<RGB> read16BitColorMap(
       TGAHeader h, ColorMap colorMap, SeekableByteChannel in, ByteBuffer work) throws IOException {
     ShortData imageData = dataFactory.newShortData(h.getWidth() * h.getHeight());
 
@@ -307,7 +514,7 @@ public class TGAReader implements ImageFileReader {
     return build16BitImage(h, imageData);
   }
 
-  private Raster<SRGB> read16BitColorMapRLE(
+  private Raster<RGB> read16BitColorMapRLE(
       TGAHeader h, ColorMap colorMap, SeekableByteChannel in, ByteBuffer work) throws IOException {
     ShortData imageData = dataFactory.newShortData(h.getWidth() * h.getHeight());
 
@@ -357,7 +564,7 @@ public class TGAReader implements ImageFileReader {
     return build16BitImage(h, imageData);
   }
 
-  private Raster<SRGB> readMultiByteColorMap(
+  private Raster<RGB> readMultiByteColorMap(
       TGAHeader h, ColorMap colorMap, SeekableByteChannel in, ByteBuffer work) throws IOException {
     ByteData imageData = dataFactory
         .newByteData(h.getWidth() * h.getHeight() * colorMap.getElementByteSize());
@@ -385,7 +592,7 @@ public class TGAReader implements ImageFileReader {
     return buildMultiByteImage(h, colorMap.getElementByteSize(), imageData);
   }
 
-  private Raster<SRGB> readMultiByteColorMapRLE(
+  private Raster<RGB> readMultiByteColorMapRLE(
       TGAHeader h, ColorMap colorMap, SeekableByteChannel in, ByteBuffer work) throws IOException {
     ByteData imageData = dataFactory
         .newByteData(h.getWidth() * h.getHeight() * colorMap.getElementByteSize());
@@ -433,12 +640,22 @@ public class TGAReader implements ImageFileReader {
     return buildMultiByteImage(h, colorMap.getElementByteSize(), imageData);
   }
 
-  private static int getPacketLength(byte p) {
-    return 0x7f & p;
+  // Copies count little endian shorts from work into imageData and advances work past them
+  private static int setShortsLE(ShortData imageData, long offset, ByteBuffer work, int count) {
+    ByteBuffer values = work.slice().order(ByteOrder.LITTLE_ENDIAN);
+    values.limit(2 * count);
+    imageData.setBits(offset, values);
+    work.position(work.position() + 2 * count);
+    return count;
+  }
+
+  static int getPacketLength(byte p) {
+    // The low 7 bits store one less than the number of pixels in the packet
+    return (0x7f & p) + 1;
   }
 
 
-  private static boolean isRLEPacket(byte p) {
+  static boolean isRLEPacket(byte p) {
     return (0x80 & p) > 0;
   }
 }
@@ -0,0 +1,142 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.tga;
+
+import com.lhkbob.imaje.color.Color;
+import com.lhkbob.imaje.data.BitData;
+import com.lhkbob.imaje.io.IO;
+import com.lhkbob.imaje.io.InvalidImageException;
+import com.lhkbob.imaje.io.ScanlineImageStream;
+import com.lhkbob.imaje.layout.PixelArray;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * TGAScanlineStream
+ * =================
+ *
+ * Scanline stream over a TGA image. Each scanline's pixel bytes, after run-length decoding and
+ * color map lookup as required by the image type, are gathered into a reusable byte row and then
+ * copied into the stream's single row of pixel data. Run-length packets may cross scanlines so
+ * the current packet is carried over from one scanline to the next.
+ *
+ * @author Michael Ludwig
+ */
+class TGAScanlineStream<T extends Color> extends ScanlineImageStream<T> {
+  private final BitData rowData;
+  private final ColorMap colorMap;
+  private final boolean runLengthEncoded;
+  private final int elementByteSize;
+  private final int indexByteSize;
+  private final SeekableByteChannel in;
+  private final ByteBuffer work;
+
+  private final byte[] row;
+  private final ByteBuffer rowBuffer;
+
+  // Run-length packet state that persists across scanlines
+  private int packetRemaining;
+  private boolean packetRepeats;
+  private final byte[] repeatedPixel;
+
+  TGAScanlineStream(
+      Class<T> colorType, TGAHeader h, ColorMap colorMap, PixelArray scanline, BitData rowData,
+      SeekableByteChannel in, ByteBuffer work) {
+    super(colorType, scanline, h.getHeight(), h.isTopToBottom());
+    this.rowData = rowData;
+    this.colorMap = colorMap;
+    this.in = in;
+    this.work = work;
+    runLengthEncoded = h.getImageType().isRunLengthEncoded();
+
+    if (colorMap != null) {
+      elementByteSize = colorMap.getElementByteSize();
+      indexByteSize = h.getPixelDepth() / 8;
+    } else {
+      elementByteSize = h.getPixelDepth() / 8;
+      indexByteSize = elementByteSize;
+    }
+
+    row = new byte[scanline.getWidth() * elementByteSize];
+    // 16-bit pixels are little endian shorts, wider pixels are copied as bytes so order is moot
+    rowBuffer = ByteBuffer.wrap(row).order(ByteOrder.LITTLE_ENDIAN);
+    repeatedPixel = new byte[elementByteSize];
+    packetRemaining = 0;
+  }
+
+  @Override
+  protected void readScanline() throws IOException {
+    for (int offset = 0; offset < row.length; offset += elementByteSize) {
+      if (runLengthEncoded) {
+        if (packetRemaining == 0) {
+          if (!IO.read(in, work)) {
+            throw new InvalidImageException("Unexpected EOF while reading run-length packet");
+          }
+          byte p = work.get();
+          packetRemaining = TGAReader.getPacketLength(p);
+          packetRepeats = TGAReader.isRLEPacket(p);
+          if (packetRepeats) {
+            readPixel(repeatedPixel, 0);
+          }
+        }
+
+        if (packetRepeats) {
+          System.arraycopy(repeatedPixel, 0, row, offset, elementByteSize);
+        } else {
+          readPixel(row, offset);
+        }
+        packetRemaining--;
+      } else {
+        readPixel(row, offset);
+      }
+    }
+
+    rowBuffer.clear();
+    rowData.setBits(0, rowBuffer);
+  }
+
+  private void readPixel(byte[] dst, int offset) throws IOException {
+    if (!IO.read(in, work, indexByteSize)) {
+      throw new InvalidImageException("Unexpected EOF while reading scanline");
+    }
+
+    if (colorMap != null) {
+      int index = colorMap.getNextDataIndex(work);
+      System.arraycopy(colorMap.getColorMapData(), index, dst, offset, elementByteSize);
+    } else {
+      work.get(dst, offset, elementByteSize);
+    }
+  }
+}
@@ -34,13 +34,21 @@ package com.lhkbob.imaje.io.tga;
 import com.lhkbob.imaje.Image;
 import com.lhkbob.imaje.Raster;
 import com.lhkbob.imaje.color.Color;
-import com.lhkbob.imaje.color.SRGB;
+import com.lhkbob.imaje.color.ColorSpace;
+import com.lhkbob.imaje.color.space.rgb.SRGB;
 import com.lhkbob.imaje.color.transform.Transform;
-import com.lhkbob.imaje.color.transform.Transforms;
+import com.lhkbob.imaje.color.transform.TransformCache;
+import com.lhkbob.imaje.data.ByteData;
 import com.lhkbob.imaje.data.Data;
 import com.lhkbob.imaje.io.IO;
 import com.lhkbob.imaje.io.ImageFileWriter;
 import com.lhkbob.imaje.io.UnsupportedImageFormatException;
+import com.lhkbob.imaje.layout.PixelArrays;
+import com.lhkbob.imaje.layout.PixelFormat;
+import com.lhkbob.imaje.layout.PixelFormatBuilder;
+import com.lhkbob.imaje.layout.ScanlineLayout;
+import com.lhkbob.imaje.layout.UnpackedPixelArray;
+import com.lhkbob.imaje.util.Arguments;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -50,11 +58,66 @@ import java.nio.channels.SeekableByteChannel;
  *
  */
 public class TGAWriter implements ImageFileWriter {
+  // Longest run or literal block of pixels that a single packet can hold
+  private static final int MAX_PACKET_LENGTH = 128;
+  // The format of the sRGB values written to the file, used to tabulate the conversion to sRGB
+  private static final PixelFormat FILE_FORMAT = new PixelFormatBuilder()
+      .channels(2, 1, 0).bits(8).types(PixelFormat.Type.UNORM).build();
+
+  private final boolean runLengthEncoded;
+
+  public TGAWriter() {
+    this(true);
+  }
+
+  /**
+   * Create a writer that writes true color images, either run-length encoded or uncompressed.
+   * Scanlines are encoded one at a time and run-length packets never cross scanlines.
+   *
+   * @param runLengthEncoded
+   *     True if pixels are written in run-length packets
+   */
+  public TGAWriter(boolean runLengthEncoded) {
+    this.runLengthEncoded = runLengthEncoded;
+  }
+
+  public boolean isRunLengthEncoded() {
+    return runLengthEncoded;
+  }
+
+  /**
+   * Write `image` assuming its colors are sRGB, which is how {@link TGAReader} reads true color
+   * pixels.
+   *
+   * @see #write(Image, ColorSpace, SeekableByteChannel)
+   */
   @Override
   public void write(Image<?> image, SeekableByteChannel out) throws IOException {
+    write(image, SRGB.SPACE, out);
+  }
+
+  /**
+   * Write `image` as a true color TGA file, converting its colors from `space` to sRGB.
+   *
+   * @param image
+   *     The image to write, which must be a Raster
+   * @param space
+   *     The color space of the image's colors
+   * @param out
+   *     The channel to write to
+   * @throws IOException
+   *     if the image can't be written
+   * @throws IllegalArgumentException
+   *     if `space` does not match the image's channel count
+   */
+  public void write(Image<?> image, ColorSpace<?, ?> space, SeekableByteChannel out)
+      throws IOException {
+    Arguments.notNull("space", space);
     if (!(image instanceof Raster)) {
       throw new UnsupportedImageFormatException("Can only write 2D Rasters");
     }
+    Arguments.equals("channel count", space.getChannelCount(),
+        ((Raster<?>) image).getPixelArray().getColorChannelCount());
 
     ByteBuffer work = IO.createWorkBufferForWriting();
 
@@ -64,39 +127,141 @@ public class TGAWriter implements ImageFileWriter {
 
     // There is no color map to write, so now append all pixel data in
     // top-down left-to-right order, while converting to SRGB
-    writePixels(raster, out, work);
+    writePixels(raster, space, out);
   }
 
   private <T extends Color> void writePixels(
-      Raster<T> image, SeekableByteChannel out, ByteBuffer work) throws IOException {
-    Transform<T, SRGB> toSRGB = Transforms.newTransform(image.getColorType(), SRGB.class);
+      Raster<T> image, ColorSpace<?, ?> space, SeekableByteChannel out) throws IOException {
+    int width = image.getWidth();
+    int bytesPerPixel = image.hasAlphaChannel() ? 4 : 3;
+
+    // Each scanline is gathered into row as BGR(A) bytes and then written, either directly or
+    // after packing it into run-length packets
+    byte[] row = new byte[width * bytesPerPixel];
+    byte[] packets = runLengthEncoded ? new byte[row.length + width / MAX_PACKET_LENGTH + 1]
+        : null;
+
+    ByteData direct = getBGRData(image, space, bytesPerPixel);
+    Transform<?, ?, ?, ?> toSRGB = null;
+    double[] colors = null;
+    double[] srgb = null;
+    double[] alphas = null;
+    if (direct == null) {
+      toSRGB = TransformCache.getDefault().getPixelTransform(space, SRGB.SPACE,
+          PixelArrays.getSourceFormat(image.getPixelArray()), FILE_FORMAT);
+      colors = new double[width * space.getChannelCount()];
+      srgb = new double[width * 3];
+      alphas = bytesPerPixel == 4 ? new double[width] : null;
+    }
 
     // A top-down left-to-right pixel loop
-    T color = Color.newInstance(image.getColorType());
     for (int y = image.getHeight() - 1; y >= 0; y--) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        double alpha = image.get(x, y, color);
-        SRGB srgb = toSRGB.apply(color);
-
-        // Always write 3 bytes for BGR
-        work.put((byte) Data.UNORM8.toBits(srgb.b()));
-        work.put((byte) Data.UNORM8.toBits(srgb.g()));
-        work.put((byte) Data.UNORM8.toBits(srgb.r()));
-        if (image.hasAlphaChannel()) {
-          // Write 4th byte for alpha
-          work.put((byte) Data.UNORM8.toBits(alpha));
+      if (direct != null) {
+        // The pixels are stored exactly as TGA expects them, so no conversion is needed
+        long rowStart = ((UnpackedPixelArray) image.getPixelArray()).getLayout()
+            .getBandOffset(0, y, 0);
+        direct.get(rowStart, row, 0, row.length);
+      } else {
+        // Convert the whole scanline to sRGB with a single batched transform
+        image.getPixelArray().getRow(y, 0, width, colors, alphas);
+        toSRGB.applyUnchecked(colors, 0, srgb, 0, width);
+        for (int x = 0; x < width; x++) {
+          // Always write 3 bytes for BGR
+          int offset = x * bytesPerPixel;
+          row[offset] = (byte) Data.UNORM8.toBits(srgb[3 * x + 2]);
+          row[offset + 1] = (byte) Data.UNORM8.toBits(srgb[3 * x + 1]);
+          row[offset + 2] = (byte) Data.UNORM8.toBits(srgb[3 * x]);
+          if (alphas != null) {
+            // Write 4th byte for alpha
+            row[offset + 3] = (byte) Data.UNORM8.toBits(alphas[x]);
+          }
         }
+      }
+
+      if (runLengthEncoded) {
+        writeFully(packets, encodeRow(row, bytesPerPixel, packets), out);
+      } else {
+        writeFully(row, row.length, out);
+      }
+    }
+  }
 
-        // Push work buffer to the channel if needed
-        if ((image.hasAlphaChannel() && work.remaining() < 4) || work.remaining() < 3) {
-          IO.write(work, out);
+  private static ByteData getBGRData(Raster<?> image, ColorSpace<?, ?> space, int bytesPerPixel) {
+    // Only sRGB unorm8 values stored as exactly B, G, R and optionally A in scanline order can be
+    // copied without conversion
+    if (!SRGB.SPACE.equals(space) || !(image.getPixelArray() instanceof UnpackedPixelArray)) {
+      return null;
+    }
+    UnpackedPixelArray array = (UnpackedPixelArray) image.getPixelArray();
+    PixelFormat format = array.getFormat();
+    if (!(array.getLayout() instanceof ScanlineLayout)
+        || format.getDataFieldCount() != bytesPerPixel
+        || !(array.getData(0).asBitData() instanceof ByteData)) {
+      return null;
+    }
+
+    for (int i = 0; i < bytesPerPixel; i++) {
+      if (format.getDataFieldType(i) != PixelFormat.Type.UNORM
+          || format.getDataFieldBitSize(i) != 8) {
+        return null;
+      }
+    }
+    if (format.getColorChannelDataField(0) != 2 || format.getColorChannelDataField(1) != 1
+        || format.getColorChannelDataField(2) != 0) {
+      return null;
+    }
+    if (bytesPerPixel == 4 && format.getAlphaChannelDataField() != 3) {
+      return null;
+    }
+
+    return (ByteData) array.getData(0).asBitData();
+  }
+
+  private static int encodeRow(byte[] row, int bytesPerPixel, byte[] packets) {
+    int width = row.length / bytesPerPixel;
+    int length = 0;
+    int x = 0;
+    while (x < width) {
+      int run = 1;
+      while (run < MAX_PACKET_LENGTH && x + run < width
+          && isSamePixel(row, x, x + run, bytesPerPixel)) {
+        run++;
+      }
+
+      if (run > 1) {
+        // Run-length packet with a single pixel value
+        packets[length++] = (byte) (0x80 | (run - 1));
+        System.arraycopy(row, x * bytesPerPixel, packets, length, bytesPerPixel);
+        length += bytesPerPixel;
+      } else {
+        // Raw packet that extends until the next run begins
+        while (run < MAX_PACKET_LENGTH && x + run < width && (x + run + 1 >= width
+            || !isSamePixel(row, x + run, x + run + 1, bytesPerPixel))) {
+          run++;
         }
+        packets[length++] = (byte) (run - 1);
+        System.arraycopy(row, x * bytesPerPixel, packets, length, run * bytesPerPixel);
+        length += run * bytesPerPixel;
+      }
+      x += run;
+    }
+    return length;
+  }
+
+  private static boolean isSamePixel(byte[] row, int x1, int x2, int bytesPerPixel) {
+    for (int i = 0; i < bytesPerPixel; i++) {
+      if (row[x1 * bytesPerPixel + i] != row[x2 * bytesPerPixel + i]) {
+        return false;
       }
     }
+    return true;
+  }
 
-    if (work.position() > 0) {
-      // Finish dumping last data filled in buffer
-      IO.write(work, out);
+  private static void writeFully(byte[] data, int length, SeekableByteChannel out) throws
+      IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
     }
   }
 
@@ -104,9 +269,9 @@ public class TGAWriter implements ImageFileWriter {
     TGAHeader h = new TGAHeader();
     h.setID("");
 
-    // Make it a true-color image with no compression or color mapping
+    // Make it a true-color image with no color mapping
     h.setHasColorMap(false);
-    h.setImageType(ImageType.TRUECOLOR);
+    h.setImageType(runLengthEncoded ? ImageType.RL_TRUECOLOR : ImageType.TRUECOLOR);
 
     // Since there's no color map, these can be set to 0
     h.setColorMapFirstEntry(0);
@@ -4,6 +4,7 @@ import com.lhkbob.imaje.data.DataBuffer;
 import com.lhkbob.imaje.data.NumericData;
 import com.lhkbob.imaje.util.Arguments;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Spliterator;
 
@@ -110,6 +111,60 @@ public class MultiBufferArray extends RootPixelArray {
     }
   }
 
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = format.getColorChannelCount();
+    double[] scratch = new double[width];
+    // Every band shares the same offset, so each segment is read one buffer at a time
+    layout.iterateWindow(x, y, width, height, (cx, cy, stride, length, bandOffsets) -> {
+      int pixel = (cy - y) * width + (cx - x);
+      for (int c = 0; c < channelCount; c++) {
+        readBand(data[format.getColorChannelDataField(c)], bandOffsets[0], stride, length, scratch,
+            channelValues, pixel * channelCount + c, channelCount);
+      }
+      if (alphas != null) {
+        if (format.hasAlphaChannel()) {
+          readBand(data[format.getAlphaChannelDataField()], bandOffsets[0], stride, length,
+              scratch, alphas, pixel, 1);
+        } else {
+          Arrays.fill(alphas, pixel, pixel + length, 1.0);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = format.getColorChannelCount();
+    float[] scratch = new float[width];
+    // Every band shares the same offset, so each segment is read one buffer at a time
+    layout.iterateWindow(x, y, width, height, (cx, cy, stride, length, bandOffsets) -> {
+      int pixel = (cy - y) * width + (cx - x);
+      for (int c = 0; c < channelCount; c++) {
+        readBand(data[format.getColorChannelDataField(c)], bandOffsets[0], stride, length, scratch,
+            channelValues, pixel * channelCount + c, channelCount);
+      }
+      if (alphas != null) {
+        if (format.hasAlphaChannel()) {
+          readBand(data[format.getAlphaChannelDataField()], bandOffsets[0], stride, length,
+              scratch, alphas, pixel, 1);
+        } else {
+          Arrays.fill(alphas, pixel, pixel + length, 1f);
+        }
+      }
+    });
+  }
+
   @Override
   public void set(int x, int y, double[] channelValues, double a) {
     long offset = layout.getBandOffset(x, y, 0);
@@ -141,6 +196,50 @@ public class MultiBufferArray extends RootPixelArray {
     data[format.getAlphaChannelDataField()].setValue(layout.getBandOffset(x, y, 0), alpha);
   }
 
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = format.getColorChannelCount();
+    double[] scratch = new double[width];
+    layout.iterateWindow(x, y, width, height, (cx, cy, stride, length, bandOffsets) -> {
+      int pixel = (cy - y) * width + (cx - x);
+      for (int c = 0; c < channelCount; c++) {
+        writeBand(data[format.getColorChannelDataField(c)], bandOffsets[0], stride, length, scratch,
+            channelValues, pixel * channelCount + c, channelCount);
+      }
+      if (alphas != null && format.hasAlphaChannel()) {
+        writeBand(data[format.getAlphaChannelDataField()], bandOffsets[0], stride, length, scratch,
+            alphas, pixel, 1);
+      }
+    });
+  }
+
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = format.getColorChannelCount();
+    float[] scratch = new float[width];
+    layout.iterateWindow(x, y, width, height, (cx, cy, stride, length, bandOffsets) -> {
+      int pixel = (cy - y) * width + (cx - x);
+      for (int c = 0; c < channelCount; c++) {
+        writeBand(data[format.getColorChannelDataField(c)], bandOffsets[0], stride, length, scratch,
+            channelValues, pixel * channelCount + c, channelCount);
+      }
+      if (alphas != null && format.hasAlphaChannel()) {
+        writeBand(data[format.getAlphaChannelDataField()], bandOffsets[0], stride, length, scratch,
+            alphas, pixel, 1);
+      }
+    });
+  }
+
   @Override
   public boolean isReadOnly() {
     return false;
@@ -161,6 +260,66 @@ public class MultiBufferArray extends RootPixelArray {
     return format;
   }
 
+  private static void readBand(
+      NumericData<?> band, long offset, int stride, int length, double[] scratch, double[] values,
+      int valueOffset, int valueStride) {
+    if (stride == 1) {
+      band.getValues(offset, scratch, 0, length);
+      for (int p = 0; p < length; p++) {
+        values[valueOffset + p * valueStride] = scratch[p];
+      }
+    } else {
+      for (int p = 0; p < length; p++) {
+        values[valueOffset + p * valueStride] = band.getValue(offset + p * stride);
+      }
+    }
+  }
+
+  private static void writeBand(
+      NumericData<?> band, long offset, int stride, int length, double[] scratch, double[] values,
+      int valueOffset, int valueStride) {
+    if (stride == 1) {
+      for (int p = 0; p < length; p++) {
+        scratch[p] = values[valueOffset + p * valueStride];
+      }
+      band.setValues(offset, scratch, 0, length);
+    } else {
+      for (int p = 0; p < length; p++) {
+        band.setValue(offset + p * stride, values[valueOffset + p * valueStride]);
+      }
+    }
+  }
+
+  private static void readBand(
+      NumericData<?> band, long offset, int stride, int length, float[] scratch, float[] values,
+      int valueOffset, int valueStride) {
+    if (stride == 1) {
+      band.getValues(offset, scratch, 0, length);
+      for (int p = 0; p < length; p++) {
+        values[valueOffset + p * valueStride] = scratch[p];
+      }
+    } else {
+      for (int p = 0; p < length; p++) {
+        values[valueOffset + p * valueStride] = (float) band.getValue(offset + p * stride);
+      }
+    }
+  }
+
+  private static void writeBand(
+      NumericData<?> band, long offset, int stride, int length, float[] scratch, float[] values,
+      int valueOffset, int valueStride) {
+    if (stride == 1) {
+      for (int p = 0; p < length; p++) {
+        scratch[p] = values[valueOffset + p * valueStride];
+      }
+      band.setValues(offset, scratch, 0, length);
+    } else {
+      for (int p = 0; p < length; p++) {
+        band.setValue(offset + p * stride, values[valueOffset + p * valueStride]);
+      }
+    }
+  }
+
   private static class MultiBufferLayout implements DataLayout {
     private final DataLayout layout;
     private final int bufferCount;
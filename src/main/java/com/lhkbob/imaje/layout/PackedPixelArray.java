@@ -92,7 +92,10 @@ public class PackedPixelArray extends RootPixelArray {
     // Count from the back so we can track total shift from right to left
     int shift = 0;
     for (int i = fields.length - 1; i >= 0; i--) {
-      fields[i] = getRepresentation(format.getDataFieldType(i), format.getDataFieldBitSize(i));
+      // Skipped fields have no type and are never converted, but still take up their bits
+      if (!format.isDataFieldSkipped(i)) {
+        fields[i] = getRepresentation(format.getDataFieldType(i), format.getDataFieldBitSize(i));
+      }
       fieldMasks[i] = Functions.maskLong(format.getDataFieldBitSize(i));
       fieldShifts[i] = shift;
       shift += format.getDataFieldBitSize(i);
@@ -148,6 +151,60 @@ public class PackedPixelArray extends RootPixelArray {
     }
   }
 
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = format.getColorChannelCount();
+    layout.iterateWindow(x, y, width, height, (cx, cy, stride, length, bandOffsets) -> {
+      int pixel = (cy - y) * width + (cx - x);
+      long offset = bandOffsets[0];
+      for (int p = 0; p < length; p++) {
+        long bits = data.getBits(offset);
+        int channelOffset = (pixel + p) * channelCount;
+        for (int c = 0; c < channelCount; c++) {
+          channelValues[channelOffset + c] =
+              bitFieldToDouble(bits, format.getColorChannelDataField(c));
+        }
+        if (alphas != null) {
+          alphas[pixel + p] = format.hasAlphaChannel() ? bitFieldToDouble(bits,
+              format.getAlphaChannelDataField()) : 1.0;
+        }
+        offset += stride;
+      }
+    });
+  }
+
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = format.getColorChannelCount();
+    layout.iterateWindow(x, y, width, height, (cx, cy, stride, length, bandOffsets) -> {
+      int pixel = (cy - y) * width + (cx - x);
+      long offset = bandOffsets[0];
+      for (int p = 0; p < length; p++) {
+        long bits = data.getBits(offset);
+        int channelOffset = (pixel + p) * channelCount;
+        for (int c = 0; c < channelCount; c++) {
+          channelValues[channelOffset + c] =
+              (float) bitFieldToDouble(bits, format.getColorChannelDataField(c));
+        }
+        if (alphas != null) {
+          alphas[pixel + p] = format.hasAlphaChannel() ? (float) bitFieldToDouble(bits,
+              format.getAlphaChannelDataField()) : 1f;
+        }
+        offset += stride;
+      }
+    });
+  }
+
   @Override
   public BitData getData(int band) {
     Arguments.equals("band", 0, band);
@@ -197,6 +254,68 @@ public class PackedPixelArray extends RootPixelArray {
     } // else ignore set request
   }
 
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = format.getColorChannelCount();
+    int alphaField = format.getAlphaChannelDataField();
+    // When alphas aren't provided, the existing alpha bit field is kept as-is
+    long preservedMask = (alphas == null && format.hasAlphaChannel()
+        ? fieldMasks[alphaField] << fieldShifts[alphaField] : 0L);
+    layout.iterateWindow(x, y, width, height, (cx, cy, stride, length, bandOffsets) -> {
+      int pixel = (cy - y) * width + (cx - x);
+      long offset = bandOffsets[0];
+      for (int p = 0; p < length; p++) {
+        long bits = preservedMask != 0L ? data.getBits(offset) & preservedMask : 0L;
+        int channelOffset = (pixel + p) * channelCount;
+        for (int c = 0; c < channelCount; c++) {
+          bits |= doubleToBitField(channelValues[channelOffset + c],
+              format.getColorChannelDataField(c));
+        }
+        if (alphas != null && format.hasAlphaChannel()) {
+          bits |= doubleToBitField(alphas[pixel + p], alphaField);
+        }
+        data.setBits(offset, bits);
+        offset += stride;
+      }
+    });
+  }
+
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = format.getColorChannelCount();
+    int alphaField = format.getAlphaChannelDataField();
+    // When alphas aren't provided, the existing alpha bit field is kept as-is
+    long preservedMask = (alphas == null && format.hasAlphaChannel()
+        ? fieldMasks[alphaField] << fieldShifts[alphaField] : 0L);
+    layout.iterateWindow(x, y, width, height, (cx, cy, stride, length, bandOffsets) -> {
+      int pixel = (cy - y) * width + (cx - x);
+      long offset = bandOffsets[0];
+      for (int p = 0; p < length; p++) {
+        long bits = preservedMask != 0L ? data.getBits(offset) & preservedMask : 0L;
+        int channelOffset = (pixel + p) * channelCount;
+        for (int c = 0; c < channelCount; c++) {
+          bits |= doubleToBitField(channelValues[channelOffset + c],
+              format.getColorChannelDataField(c));
+        }
+        if (alphas != null && format.hasAlphaChannel()) {
+          bits |= doubleToBitField(alphas[pixel + p], alphaField);
+        }
+        data.setBits(offset, bits);
+        offset += stride;
+      }
+    });
+  }
+
   private double bitFieldToDouble(long bits, int field) {
     // First shift everything over so the LSB of the field is at bit 0
     bits >>= fieldShifts[field];
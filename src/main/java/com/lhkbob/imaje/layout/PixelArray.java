@@ -31,6 +31,8 @@
  */
 package com.lhkbob.imaje.layout;
 
+import com.lhkbob.imaje.util.Arguments;
+
 /**
  * PixelArray
  * ==========
@@ -275,6 +277,285 @@ public interface PixelArray {
    */
   void setAlpha(int x, int y, double alpha);
 
+  /**
+   * Fetch the color channel values and alpha values for the `width` pixels in row `y`, starting at
+   * `x` and proceeding to the right. This is equivalent to {@link #getWindow(int, int, int, int,
+   * double[], double[])} with a window height of 1.
+   *
+   * @param y
+   *     The y coordinate of the row to access
+   * @param x
+   *     The x coordinate of the first pixel in the row segment
+   * @param width
+   *     The number of pixels in the row segment
+   * @param channelValues
+   *     The array to store the interleaved color channel values of each pixel
+   * @param alphas
+   *     The array to store the alpha value of each pixel, or null if alpha is not needed
+   * @throws IndexOutOfBoundsException
+   *     if the row segment is not contained in the array, or if the value arrays are too small
+   * @see #getWindow(int, int, int, int, double[], double[])
+   */
+  default void getRow(
+      int y, int x, int width, double[] channelValues, @Arguments.Nullable double[] alphas) {
+    getWindow(x, y, width, 1, channelValues, alphas);
+  }
+
+  /**
+   * Fetch the color channel values and alpha values for the `width` pixels in row `y`, starting at
+   * `x` and proceeding to the right. This is the `float` equivalent of {@link #getRow(int, int,
+   * int, double[], double[])}.
+   *
+   * @param y
+   *     The y coordinate of the row to access
+   * @param x
+   *     The x coordinate of the first pixel in the row segment
+   * @param width
+   *     The number of pixels in the row segment
+   * @param channelValues
+   *     The array to store the interleaved color channel values of each pixel
+   * @param alphas
+   *     The array to store the alpha value of each pixel, or null if alpha is not needed
+   * @throws IndexOutOfBoundsException
+   *     if the row segment is not contained in the array, or if the value arrays are too small
+   * @see #getWindow(int, int, int, int, float[], float[])
+   */
+  default void getRow(
+      int y, int x, int width, float[] channelValues, @Arguments.Nullable float[] alphas) {
+    getWindow(x, y, width, 1, channelValues, alphas);
+  }
+
+  /**
+   * Update the color channel values and alpha values for the `width` pixels in row `y`, starting at
+   * `x` and proceeding to the right. This is equivalent to {@link #setWindow(int, int, int, int,
+   * double[], double[])} with a window height of 1.
+   *
+   * @param y
+   *     The y coordinate of the row to modify
+   * @param x
+   *     The x coordinate of the first pixel in the row segment
+   * @param width
+   *     The number of pixels in the row segment
+   * @param channelValues
+   *     The interleaved color channel values of each pixel
+   * @param alphas
+   *     The alpha value of each pixel, or null to preserve the existing alpha values
+   * @throws IndexOutOfBoundsException
+   *     if the row segment is not contained in the array, or if the value arrays are too small
+   * @see #setWindow(int, int, int, int, double[], double[])
+   */
+  default void setRow(
+      int y, int x, int width, double[] channelValues, @Arguments.Nullable double[] alphas) {
+    setWindow(x, y, width, 1, channelValues, alphas);
+  }
+
+  /**
+   * Update the color channel values and alpha values for the `width` pixels in row `y`, starting at
+   * `x` and proceeding to the right. This is the `float` equivalent of {@link #setRow(int, int,
+   * int, double[], double[])}.
+   *
+   * @param y
+   *     The y coordinate of the row to modify
+   * @param x
+   *     The x coordinate of the first pixel in the row segment
+   * @param width
+   *     The number of pixels in the row segment
+   * @param channelValues
+   *     The interleaved color channel values of each pixel
+   * @param alphas
+   *     The alpha value of each pixel, or null to preserve the existing alpha values
+   * @throws IndexOutOfBoundsException
+   *     if the row segment is not contained in the array, or if the value arrays are too small
+   * @see #setWindow(int, int, int, int, float[], float[])
+   */
+  default void setRow(
+      int y, int x, int width, float[] channelValues, @Arguments.Nullable float[] alphas) {
+    setWindow(x, y, width, 1, channelValues, alphas);
+  }
+
+  /**
+   * Fetch the color channel values and alpha values of every pixel in the `width X height` window
+   * with its lower left corner at `(x, y)`. Pixels are stored in row-major order, from left to
+   * right and bottom to top, so the pixel at `(x + i, y + j)` is stored at pixel index `j * width +
+   * i`. Color channel values are interleaved, so the first channel of a pixel is stored at `pixel
+   * index * getColorChannelCount()` within `channelValues`, in the same logical order used by
+   * {@link #get(int, int, double[])}. If `alphas` is not null, the alpha of each pixel is stored at
+   * its pixel index within `alphas`.
+   *
+   * Unlike {@link DataLayout#iterateWindow(int, int, int, int, DataLayout.BlockVisitor)}, the
+   * window must be completely contained within the array. `channelValues` must have a length of at
+   * least `width * height * getColorChannelCount()` and `alphas`, if not null, must have a length
+   * of at least `width * height`.
+   *
+   * The default implementation accesses the window pixel by pixel. Implementations should override
+   * this when they can resolve the data locations of entire row segments at once, which is
+   * significantly more efficient when processing large images.
+   *
+   * @param x
+   *     The x coordinate of the lower left corner of the window
+   * @param y
+   *     The y coordinate of the lower left corner of the window
+   * @param width
+   *     The width of the window
+   * @param height
+   *     The height of the window
+   * @param channelValues
+   *     The array to store the interleaved color channel values of each pixel
+   * @param alphas
+   *     The array to store the alpha value of each pixel, or null if alpha is not needed
+   * @throws IndexOutOfBoundsException
+   *     if the window is not contained in the array, or if the value arrays are too small
+   */
+  default void getWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = getColorChannelCount();
+    double[] pixel = new double[channelCount];
+    long[] bandOffsets = new long[getBandCount()];
+    for (int j = 0; j < height; j++) {
+      for (int i = 0; i < width; i++) {
+        int index = j * width + i;
+        double a = get(x + i, y + j, pixel, bandOffsets);
+        System.arraycopy(pixel, 0, channelValues, index * channelCount, channelCount);
+        if (alphas != null) {
+          alphas[index] = a;
+        }
+      }
+    }
+  }
+
+  /**
+   * Fetch the color channel values and alpha values of every pixel in the `width X height` window
+   * with its lower left corner at `(x, y)`. This is the `float` equivalent of {@link
+   * #getWindow(int, int, int, int, double[], double[])} and uses the same arrangement of values.
+   *
+   * @param x
+   *     The x coordinate of the lower left corner of the window
+   * @param y
+   *     The y coordinate of the lower left corner of the window
+   * @param width
+   *     The width of the window
+   * @param height
+   *     The height of the window
+   * @param channelValues
+   *     The array to store the interleaved color channel values of each pixel
+   * @param alphas
+   *     The array to store the alpha value of each pixel, or null if alpha is not needed
+   * @throws IndexOutOfBoundsException
+   *     if the window is not contained in the array, or if the value arrays are too small
+   */
+  default void getWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = getColorChannelCount();
+    double[] pixel = new double[channelCount];
+    long[] bandOffsets = new long[getBandCount()];
+    for (int j = 0; j < height; j++) {
+      for (int i = 0; i < width; i++) {
+        int index = j * width + i;
+        double a = get(x + i, y + j, pixel, bandOffsets);
+        for (int c = 0; c < channelCount; c++) {
+          channelValues[index * channelCount + c] = (float) pixel[c];
+        }
+        if (alphas != null) {
+          alphas[index] = (float) a;
+        }
+      }
+    }
+  }
+
+  /**
+   * Update the color channel values and alpha values of every pixel in the `width X height` window
+   * with its lower left corner at `(x, y)`. The values are read from `channelValues` and `alphas`
+   * using the same arrangement described in {@link #getWindow(int, int, int, int, double[],
+   * double[])}. If `alphas` is null then the alpha values of the pixels within the window are not
+   * modified. If {@link #hasAlphaChannel()} returns false then `alphas` is ignored.
+   *
+   * The default implementation modifies the window pixel by pixel. Implementations should override
+   * this when they can resolve the data locations of entire row segments at once, which is
+   * significantly more efficient when processing large images.
+   *
+   * @param x
+   *     The x coordinate of the lower left corner of the window
+   * @param y
+   *     The y coordinate of the lower left corner of the window
+   * @param width
+   *     The width of the window
+   * @param height
+   *     The height of the window
+   * @param channelValues
+   *     The interleaved color channel values of each pixel
+   * @param alphas
+   *     The alpha value of each pixel, or null to preserve the existing alpha values
+   * @throws IndexOutOfBoundsException
+   *     if the window is not contained in the array, or if the value arrays are too small
+   */
+  default void setWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = getColorChannelCount();
+    double[] pixel = new double[channelCount];
+    long[] bandOffsets = new long[getBandCount()];
+    for (int j = 0; j < height; j++) {
+      for (int i = 0; i < width; i++) {
+        int index = j * width + i;
+        System.arraycopy(channelValues, index * channelCount, pixel, 0, channelCount);
+        double a = (alphas != null ? alphas[index] : getAlpha(x + i, y + j));
+        set(x + i, y + j, pixel, a, bandOffsets);
+      }
+    }
+  }
+
+  /**
+   * Update the color channel values and alpha values of every pixel in the `width X height` window
+   * with its lower left corner at `(x, y)`. This is the `float` equivalent of {@link
+   * #setWindow(int, int, int, int, double[], double[])} and uses the same arrangement of values.
+   *
+   * @param x
+   *     The x coordinate of the lower left corner of the window
+   * @param y
+   *     The y coordinate of the lower left corner of the window
+   * @param width
+   *     The width of the window
+   * @param height
+   *     The height of the window
+   * @param channelValues
+   *     The interleaved color channel values of each pixel
+   * @param alphas
+   *     The alpha value of each pixel, or null to preserve the existing alpha values
+   * @throws IndexOutOfBoundsException
+   *     if the window is not contained in the array, or if the value arrays are too small
+   */
+  default void setWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = getColorChannelCount();
+    double[] pixel = new double[channelCount];
+    long[] bandOffsets = new long[getBandCount()];
+    for (int j = 0; j < height; j++) {
+      for (int i = 0; i < width; i++) {
+        int index = j * width + i;
+        for (int c = 0; c < channelCount; c++) {
+          pixel[c] = channelValues[index * channelCount + c];
+        }
+        double a = (alphas != null ? alphas[index] : getAlpha(x + i, y + j));
+        set(x + i, y + j, pixel, a, bandOffsets);
+      }
+    }
+  }
+
   /**
    * Get whether or not this PixelArray is read-only. If an array is read-only, then all methods
    * that modify the state of a pixel will be silently ignored. It may technically be possible to
@@ -290,7 +571,8 @@ public interface PixelArray {
    * Get the parent PixelArray of this array. The parent array is the source of data that this array
    * delegates to or dynamically modifies. A null parent implies that the pixel array is a root
    * array and defines its own pixel data. Only PixelArray implementations that also implement
-   * {@link RootPixelArray} can return null. All others must return the non-null array that they are
+   * {@link RootPixelArray}, or that load their pixels from elsewhere such as {@link
+   * TiledPixelArray}, can return null. All others must return the non-null array that they are
    * composed with.
    *
    * @return This array's parent array that it's composed with
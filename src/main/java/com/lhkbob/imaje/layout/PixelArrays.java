@@ -43,6 +43,24 @@ public final class PixelArrays {
     return (RootPixelArray) array;
   }
 
+  /**
+   * Get the format of the data that provides the color values of `array`. Sub-images, read-only
+   * and reoriented arrays only change which pixels are accessed, so the format of their parent is
+   * reported. Null is returned when the values come from an array that transforms them, or from
+   * an array that does not have a single format.
+   *
+   * @param array
+   *     The array to inspect
+   * @return The format of the data backing `array`, or null if it cannot be determined
+   */
+  public static PixelFormat getSourceFormat(PixelArray array) {
+    while (array instanceof SubImagePixelArray || array instanceof ReadOnlyArray
+        || array instanceof ReorientedArray) {
+      array = array.getParent();
+    }
+    return (array instanceof RootPixelArray ? ((RootPixelArray) array).getFormat() : null);
+  }
+
   public static PixelArray createSubImageForRaster(PixelArray parent, int x, int y, int w, int h) {
     return new SubImagePixelArray(parent, x, y, w, h);
   }
@@ -194,6 +212,76 @@ public final class PixelArrays {
     }
   }
 
+  /**
+   * Validate the arguments passed to the bulk window accessors of PixelArray, such as {@link
+   * PixelArray#getWindow(int, int, int, int, double[], double[])}. The window must be completely
+   * contained in `array`. The channel value array must hold `width * height` pixels of color
+   * channels, and the alpha array (if present) must hold `width * height` values. A negative
+   * `alphaLength` signals that there is no alpha array.
+   *
+   * @param array
+   *     The pixel array being accessed
+   * @param x
+   *     The x coordinate of the window
+   * @param y
+   *     The y coordinate of the window
+   * @param width
+   *     The width of the window
+   * @param height
+   *     The height of the window
+   * @param channelLength
+   *     The length of the color channel value array
+   * @param alphaLength
+   *     The length of the alpha value array, or a negative value if there is no alpha array
+   * @throws IndexOutOfBoundsException
+   *     if the window or array lengths are invalid
+   */
+  public static void checkWindow(
+      PixelArray array, int x, int y, int width, int height, int channelLength, int alphaLength) {
+    Arguments.checkArrayRange("window width", array.getWidth(), x, width);
+    Arguments.checkArrayRange("window height", array.getHeight(), y, height);
+
+    long pixelCount = (long) width * height;
+    Arguments.checkArrayRange("channel values", channelLength, 0,
+        pixelCount * array.getColorChannelCount());
+    if (alphaLength >= 0) {
+      Arguments.checkArrayRange("alpha values", alphaLength, 0, pixelCount);
+    }
+  }
+
+  /**
+   * Determine if the row segment reported to a {@link DataLayout.BlockVisitor} stores every band
+   * of its pixels in one contiguous run of primitives, i.e. pixels are interleaved without gaps
+   * between them. If so, the start of the run (the smallest band offset) is returned. Otherwise
+   * `-1` is returned and the bands must be accessed separately.
+   */
+  static long getInterleavedRunStart(long[] bandOffsets, int stride) {
+    if (stride > bandOffsets.length) {
+      // There are primitives between pixels that don't belong to any band
+      return -1;
+    }
+
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (long offset : bandOffsets) {
+      min = Math.min(offset, min);
+      max = Math.max(offset, max);
+    }
+    return max - min < stride ? min : -1;
+  }
+
+  /**
+   * Get the number of primitives spanned by an interleaved run of `length` pixels, where `runStart`
+   * was computed by {@link #getInterleavedRunStart(long[], int)}.
+   */
+  static int getInterleavedRunLength(long[] bandOffsets, int stride, int length, long runStart) {
+    long max = runStart;
+    for (long offset : bandOffsets) {
+      max = Math.max(offset, max);
+    }
+    return (length - 1) * stride + (int) (max - runStart) + 1;
+  }
+
   public static void copy(
       PixelArray src, int sx, int sy, PixelArray dst, int dx, int dy, int width, int height) {
     // Validate target dimensions
@@ -244,6 +332,14 @@ public final class PixelArrays {
     List<PixelArray> srcStack = getHierarchy(src);
     List<PixelArray> dstStack = getHierarchy(dst);
 
+    // Arrays that are not backed by a root array, such as TiledPixelArray, have no data to copy
+    // in bulk
+    if (!(srcStack.get(srcStack.size() - 1) instanceof RootPixelArray) || !(dstStack
+        .get(dstStack.size() - 1) instanceof RootPixelArray)) {
+      copyPixelByPixel(src, sx, sy, dst, dx, dy, width, height);
+      return;
+    }
+
     // Check the root compatibility first since it can reject optimization in constant time
     RootPixelArray srcRoot = (RootPixelArray) srcStack.get(srcStack.size() - 1);
     RootPixelArray dstRoot = (RootPixelArray) dstStack.get(dstStack.size() - 1);
@@ -383,15 +479,13 @@ public final class PixelArrays {
 
   private static void copyPixelByPixel(
       PixelArray src, int sx, int sy, PixelArray dst, int dx, int dy, int width, int height) {
-    double[] color = new double[src.getColorChannelCount()];
-    long[] srcIndices = new long[src.getBandCount()];
-    long[] dstIndices = new long[src.getBandCount()];
+    // Stream the window a row at a time so each array can use its bulk row accessors
+    double[] color = new double[width * src.getColorChannelCount()];
+    double[] alpha = new double[width];
 
     for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        double alpha = src.get(sx + x, sy + y, color, srcIndices);
-        dst.set(dx + x, dy + y, color, alpha, dstIndices);
-      }
+      src.getRow(sy + y, sx, width, color, alpha);
+      dst.setRow(dy + y, dx, width, color, alpha);
     }
   }
 }
@@ -57,6 +57,34 @@ public class ReadOnlyArray implements PixelArray {
     // Do nothing
   }
 
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    parent.getWindow(x, y, width, height, channelValues, alphas);
+  }
+
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    parent.getWindow(x, y, width, height, channelValues, alphas);
+  }
+
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    // Do nothing
+  }
+
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    // Do nothing
+  }
+
   @Override
   public boolean isReadOnly() {
     return true;
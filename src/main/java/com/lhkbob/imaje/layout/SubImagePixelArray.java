@@ -197,6 +197,46 @@ public class SubImagePixelArray implements PixelArray {
     parent.setAlpha(offsetX + x, offsetY + y, alpha);
   }
 
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    // The parent cannot detect windows that escape the sub image
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+    parent.getWindow(offsetX + x, offsetY + y, width, height, channelValues, alphas);
+  }
+
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    // The parent cannot detect windows that escape the sub image
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+    parent.getWindow(offsetX + x, offsetY + y, width, height, channelValues, alphas);
+  }
+
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    // The parent cannot detect windows that escape the sub image
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+    parent.setWindow(offsetX + x, offsetY + y, width, height, channelValues, alphas);
+  }
+
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    // The parent cannot detect windows that escape the sub image
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+    parent.setWindow(offsetX + x, offsetY + y, width, height, channelValues, alphas);
+  }
+
   @Override
   public boolean isReadOnly() {
     return parent.isReadOnly();
@@ -0,0 +1,244 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.layout;
+
+import com.lhkbob.imaje.util.LRUCache;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * TileCache
+ * =========
+ *
+ * A thread-safe, bounded cache of the decoded tiles of {@link TiledPixelArray TiledPixelArrays}.
+ * The cache is bounded by the estimated number of bytes held by its tiles rather than the number of
+ * tiles, so a single cache can be shared by arrays with differently sized tiles. When adding a tile
+ * exceeds the budget, the least recently used tiles are evicted until the cache fits again. The
+ * most recently added tile is always kept, even if it alone exceeds the budget.
+ *
+ * Tiles are keyed by weak references to their arrays, so caching a tile does not keep its array,
+ * or the file it reads from, reachable. The tiles of arrays that have been garbage collected are
+ * removed from the cache the next time a tile is requested.
+ *
+ * Hit, miss, and eviction counts are tracked so the effectiveness of the cache can be monitored.
+ *
+ * @author Michael Ludwig
+ */
+public final class TileCache {
+  /**
+   * The byte budget of the cache returned by {@link #getDefault()}.
+   */
+  public static final long DEFAULT_MAXIMUM_BYTES = 256L * 1024L * 1024L;
+
+  private static final TileCache DEFAULT = new TileCache(DEFAULT_MAXIMUM_BYTES);
+
+  private final LRUCache<Key, Entry> tiles;
+  private final ReferenceQueue<TiledPixelArray> collectedArrays;
+
+  /**
+   * Create a new, empty cache that holds tiles up to an estimated total of `maximumBytes`.
+   *
+   * @param maximumBytes
+   *     The maximum number of bytes of cached tiles
+   * @throws IllegalArgumentException
+   *     if `maximumBytes` is less than 1
+   */
+  public TileCache(long maximumBytes) {
+    tiles = new LRUCache<>(maximumBytes, e -> e.bytes);
+    collectedArrays = new ReferenceQueue<>();
+  }
+
+  /**
+   * @return A shared cache with a byte budget of {@link #DEFAULT_MAXIMUM_BYTES}
+   */
+  public static TileCache getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Get the tile of `array` at `tileIndex`, loading it with the array's loader if it is not
+   * cached. The loader may be invoked concurrently by multiple threads requesting the same missing
+   * tile, in which case the first tile added to the cache is returned to all of them.
+   *
+   * @param array
+   *     The array the tile belongs to
+   * @param tileX
+   *     The column of the tile
+   * @param tileY
+   *     The row of the tile
+   * @return The cached or newly loaded tile
+   *
+   * @throws IOException
+   *     if the tile must be loaded and the loader fails
+   */
+  PixelArray getTile(TiledPixelArray array, int tileX, int tileY) throws IOException {
+    removeCollectedArrays();
+    return tiles.get(new Key(array, tileX, tileY, collectedArrays), () -> new Entry(
+        array.loadTile(tileX, tileY), array.getTileByteSize(tileX, tileY))).tile;
+  }
+
+  /**
+   * Remove every tile of `array` from the cache. This does not count as an eviction.
+   *
+   * @param array
+   *     The array whose tiles are removed
+   */
+  public void invalidate(TiledPixelArray array) {
+    tiles.removeIf((key, tile) -> key.array.get() == array);
+  }
+
+  /**
+   * Remove every tile from the cache. The hit, miss, and eviction counts are not reset.
+   */
+  public void clear() {
+    tiles.clear();
+  }
+
+  /**
+   * @return The number of tiles currently cached
+   */
+  public int size() {
+    return tiles.size();
+  }
+
+  /**
+   * @return The estimated number of bytes held by the currently cached tiles
+   */
+  public long getCurrentBytes() {
+    return tiles.getCurrentWeight();
+  }
+
+  /**
+   * @return The maximum number of bytes of tiles the cache will hold
+   */
+  public long getMaximumBytes() {
+    return tiles.getMaximumWeight();
+  }
+
+  /**
+   * @return The number of requests that were answered by a cached tile
+   */
+  public long getHitCount() {
+    return tiles.getHitCount();
+  }
+
+  /**
+   * @return The number of requests that had to load a tile
+   */
+  public long getMissCount() {
+    return tiles.getMissCount();
+  }
+
+  /**
+   * @return The number of tiles removed to keep the cache within its byte budget
+   */
+  public long getEvictionCount() {
+    return tiles.getEvictionCount();
+  }
+
+  /**
+   * @return The fraction of requests answered by a cached tile, or `0` if there have been no
+   * requests
+   */
+  public double getHitRate() {
+    return tiles.getHitRate();
+  }
+
+  private void removeCollectedArrays() {
+    if (collectedArrays.poll() != null) {
+      // Drain the queue and then remove every tile whose array is gone in a single pass
+      while (collectedArrays.poll() != null) {
+        // Keep polling
+      }
+      tiles.removeIf((key, tile) -> key.array.get() == null);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("TileCache (bytes: %d/%d, tiles: %d, hits: %d, misses: %d, evictions: %d)",
+        getCurrentBytes(), getMaximumBytes(), size(), getHitCount(), getMissCount(),
+        getEvictionCount());
+  }
+
+  private static class Entry {
+    private final PixelArray tile;
+    private final long bytes;
+
+    Entry(PixelArray tile, long bytes) {
+      this.tile = tile;
+      this.bytes = bytes;
+    }
+  }
+
+  private static class Key {
+    private final WeakReference<TiledPixelArray> array;
+    private final int arrayHash;
+    private final int tileX;
+    private final int tileY;
+
+    Key(
+        TiledPixelArray array, int tileX, int tileY,
+        ReferenceQueue<? super TiledPixelArray> queue) {
+      this.array = new WeakReference<>(array, queue);
+      // Remember the identity hash so the key can still be found after the array is collected
+      arrayHash = System.identityHashCode(array);
+      this.tileX = tileX;
+      this.tileY = tileY;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key k = (Key) o;
+      // Arrays are compared by identity since each represents its own source of tiles
+      TiledPixelArray a = array.get();
+      return a != null && k.array.get() == a && k.tileX == tileX && k.tileY == tileY;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = 17;
+      result = 31 * result + arrayHash;
+      result = 31 * result + tileX;
+      result = 31 * result + tileY;
+      return result;
+    }
+  }
+}
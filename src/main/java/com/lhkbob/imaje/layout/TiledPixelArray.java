@@ -0,0 +1,457 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.layout;
+
+import com.lhkbob.imaje.util.Arguments;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * TiledPixelArray
+ * ===============
+ *
+ * A read-only PixelArray whose pixels are divided into a grid of tiles that are loaded on first
+ * access, such as from an image file that remains open. Loaded tiles are kept in a {@link
+ * TileCache}, which bounds the memory used by all arrays sharing it, so images far larger than the
+ * heap can be accessed as long as the working set of tiles fits in the cache. Tiles that are
+ * evicted are loaded again when they are next accessed.
+ *
+ * Tiles have the configured tile width and height except along the right edge of the array and
+ * along the edge opposite to the tile grid's origin, where they are clipped to the array. The grid
+ * starts at the lower left corner of the array, or at the upper left corner if the array was
+ * created with `topToBottom` set to true. The latter matches file formats that store the top of the
+ * image first, so that each tile corresponds to a block of the file. Tile `(0, 0)` is always the
+ * tile at the grid's origin.
+ *
+ * Because there is no single data source to describe, a TiledPixelArray has no parent even though
+ * it is not a {@link RootPixelArray}. Setting pixel values is silently ignored, in the same manner
+ * as {@link ReadOnlyArray}. Failures to load a tile are reported as an {@link
+ * UncheckedIOException} from the pixel accessor that required the tile.
+ *
+ * @author Michael Ludwig
+ */
+public class TiledPixelArray implements PixelArray {
+  /**
+   * TileLoader
+   * ==========
+   *
+   * Loads the pixels of a single tile of a TiledPixelArray. The returned array must have the
+   * dimensions of the tile's window, as reported by {@link #getTileWindow(int, int)}, and the same
+   * color channel count and alpha state as the tiled array. Its pixel `(0, 0)` is the lower left
+   * pixel of the tile's window. Loaders may be invoked concurrently for different tiles.
+   *
+   * @author Michael Ludwig
+   */
+  @FunctionalInterface
+  public interface TileLoader {
+    /**
+     * Load the tile at column `tileX` and row `tileY` of the tile grid.
+     *
+     * @param tileX
+     *     The column of the tile
+     * @param tileY
+     *     The row of the tile, counted from the grid's origin
+     * @return The pixels of the tile
+     *
+     * @throws IOException
+     *     if the tile could not be loaded
+     */
+    PixelArray load(int tileX, int tileY) throws IOException;
+  }
+
+  private final int width;
+  private final int height;
+  private final int tileWidth;
+  private final int tileHeight;
+  private final boolean topToBottom;
+
+  private final int colorChannelCount;
+  private final boolean hasAlpha;
+  private final long bytesPerPixel;
+
+  private final TileLoader loader;
+  private final TileCache cache;
+
+  /**
+   * Create a new TiledPixelArray. `bytesPerPixel` is the estimated memory used by each pixel of a
+   * loaded tile, which determines how much of the cache's budget each tile consumes.
+   *
+   * @param width
+   *     The width of the array
+   * @param height
+   *     The height of the array
+   * @param tileWidth
+   *     The width of each tile
+   * @param tileHeight
+   *     The height of each tile
+   * @param topToBottom
+   *     True if the tile grid starts at the top of the array instead of the bottom
+   * @param colorChannelCount
+   *     The color channel count of the array
+   * @param hasAlpha
+   *     Whether or not the array has an alpha channel
+   * @param bytesPerPixel
+   *     The estimated bytes used by each pixel of a loaded tile
+   * @param loader
+   *     The loader that creates the tiles
+   * @param cache
+   *     The cache that holds loaded tiles
+   * @throws IllegalArgumentException
+   *     if any dimension, the color channel count, or `bytesPerPixel` are less than 1
+   * @throws NullPointerException
+   *     if `loader` or `cache` are null
+   */
+  public TiledPixelArray(
+      int width, int height, int tileWidth, int tileHeight, boolean topToBottom,
+      int colorChannelCount, boolean hasAlpha, long bytesPerPixel, TileLoader loader,
+      TileCache cache) {
+    Arguments.isPositive("width", width);
+    Arguments.isPositive("height", height);
+    Arguments.isPositive("tileWidth", tileWidth);
+    Arguments.isPositive("tileHeight", tileHeight);
+    Arguments.isPositive("colorChannelCount", colorChannelCount);
+    Arguments.isPositive("bytesPerPixel", bytesPerPixel);
+    Arguments.notNull("loader", loader);
+    Arguments.notNull("cache", cache);
+
+    this.width = width;
+    this.height = height;
+    this.tileWidth = tileWidth;
+    this.tileHeight = tileHeight;
+    this.topToBottom = topToBottom;
+    this.colorChannelCount = colorChannelCount;
+    this.hasAlpha = hasAlpha;
+    this.bytesPerPixel = bytesPerPixel;
+    this.loader = loader;
+    this.cache = cache;
+  }
+
+  /**
+   * @return The width of tiles that are not clipped by the edge of the array
+   */
+  public int getTileWidth() {
+    return tileWidth;
+  }
+
+  /**
+   * @return The height of tiles that are not clipped by the edge of the array
+   */
+  public int getTileHeight() {
+    return tileHeight;
+  }
+
+  /**
+   * @return The number of columns in the tile grid
+   */
+  public int getTileColumnCount() {
+    return (width + tileWidth - 1) / tileWidth;
+  }
+
+  /**
+   * @return The number of rows in the tile grid
+   */
+  public int getTileRowCount() {
+    return (height + tileHeight - 1) / tileHeight;
+  }
+
+  /**
+   * @return True if the tile grid starts at the top of the array
+   */
+  public boolean isTopToBottom() {
+    return topToBottom;
+  }
+
+  /**
+   * @return The cache that holds this array's loaded tiles
+   */
+  public TileCache getTileCache() {
+    return cache;
+  }
+
+  /**
+   * Get the window of this array's pixels covered by the tile at `(tileX, tileY)`, clipped to the
+   * array's dimensions.
+   *
+   * @param tileX
+   *     The column of the tile
+   * @param tileY
+   *     The row of the tile, counted from the grid's origin
+   * @return The tile's window
+   *
+   * @throws IndexOutOfBoundsException
+   *     if the tile is outside of the grid
+   */
+  public ImageWindow getTileWindow(int tileX, int tileY) {
+    Arguments.checkIndex("tileX", getTileColumnCount(), tileX);
+    Arguments.checkIndex("tileY", getTileRowCount(), tileY);
+    return new ImageWindow(getTileMinX(tileX), getTileMinY(tileY), getTileWidth(tileX),
+        getTileHeight(tileY));
+  }
+
+  PixelArray loadTile(int tileX, int tileY) throws IOException {
+    PixelArray tile = loader.load(tileX, tileY);
+    if (tile.getWidth() != getTileWidth(tileX) || tile.getHeight() != getTileHeight(tileY)
+        || tile.getColorChannelCount() != colorChannelCount || tile.hasAlphaChannel() != hasAlpha) {
+      throw new IllegalStateException(
+          "Loaded tile (" + tileX + ", " + tileY + ") does not match the tiled array");
+    }
+    return tile;
+  }
+
+  long getTileByteSize(int tileX, int tileY) {
+    return bytesPerPixel * getTileWidth(tileX) * getTileHeight(tileY);
+  }
+
+  private int getTileMinX(int tileX) {
+    return tileX * tileWidth;
+  }
+
+  private int getTileMinY(int tileY) {
+    if (topToBottom) {
+      return Math.max(0, height - (tileY + 1) * tileHeight);
+    } else {
+      return tileY * tileHeight;
+    }
+  }
+
+  private int getTileWidth(int tileX) {
+    return Math.min(tileWidth, width - tileX * tileWidth);
+  }
+
+  private int getTileHeight(int tileY) {
+    return Math.min(tileHeight, height - tileY * tileHeight);
+  }
+
+  private int getTileX(int x) {
+    return x / tileWidth;
+  }
+
+  private int getTileY(int y) {
+    return (topToBottom ? height - 1 - y : y) / tileHeight;
+  }
+
+  private PixelArray getTile(int tileX, int tileY) {
+    try {
+      return cache.getTile(this, tileX, tileY);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to load tile (" + tileX + ", " + tileY + ")", e);
+    }
+  }
+
+  private void checkCoordinate(int x, int y) {
+    Arguments.checkIndex("x", width, x);
+    Arguments.checkIndex("y", height, y);
+  }
+
+  @Override
+  public double get(int x, int y, double[] channelValues) {
+    checkCoordinate(x, y);
+    int tileX = getTileX(x);
+    int tileY = getTileY(y);
+    return getTile(tileX, tileY)
+        .get(x - getTileMinX(tileX), y - getTileMinY(tileY), channelValues);
+  }
+
+  @Override
+  public double get(int x, int y, double[] channelValues, long[] bandOffsets) {
+    // Tiles may use their own band layouts, so the offsets cannot be shared with them
+    return get(x, y, channelValues);
+  }
+
+  @Override
+  public double getAlpha(int x, int y) {
+    checkCoordinate(x, y);
+    int tileX = getTileX(x);
+    int tileY = getTileY(y);
+    return getTile(tileX, tileY).getAlpha(x - getTileMinX(tileX), y - getTileMinY(tileY));
+  }
+
+  @Override
+  public void set(int x, int y, double[] channelValues, double a) {
+    // Do nothing
+  }
+
+  @Override
+  public void set(int x, int y, double[] channelValues, double a, long[] bandOffsets) {
+    // Do nothing
+  }
+
+  @Override
+  public void setAlpha(int x, int y, double alpha) {
+    // Do nothing
+  }
+
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    // Fetch the part of the window within each tile a row at a time, then copy it into place
+    double[] rowValues = new double[Math.min(width, tileWidth) * colorChannelCount];
+    double[] rowAlphas = alphas == null ? null : new double[Math.min(width, tileWidth)];
+    for (int ty = getTileY(y); ty >= 0 && ty < getTileRowCount(); ty += topToBottom ? -1 : 1) {
+      int tileMinY = getTileMinY(ty);
+      int minY = Math.max(y, tileMinY);
+      int maxY = Math.min(y + height, tileMinY + getTileHeight(ty));
+      if (minY >= maxY) {
+        break;
+      }
+
+      for (int tx = getTileX(x); tx * tileWidth < x + width; tx++) {
+        int tileMinX = getTileMinX(tx);
+        int minX = Math.max(x, tileMinX);
+        int spanWidth = Math.min(x + width, tileMinX + getTileWidth(tx)) - minX;
+
+        PixelArray tile = getTile(tx, ty);
+        for (int row = minY; row < maxY; row++) {
+          tile.getRow(row - tileMinY, minX - tileMinX, spanWidth, rowValues, rowAlphas);
+
+          int index = (row - y) * width + minX - x;
+          System.arraycopy(rowValues, 0, channelValues, index * colorChannelCount,
+              spanWidth * colorChannelCount);
+          if (alphas != null) {
+            System.arraycopy(rowAlphas, 0, alphas, index, spanWidth);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    float[] rowValues = new float[Math.min(width, tileWidth) * colorChannelCount];
+    float[] rowAlphas = alphas == null ? null : new float[Math.min(width, tileWidth)];
+    for (int ty = getTileY(y); ty >= 0 && ty < getTileRowCount(); ty += topToBottom ? -1 : 1) {
+      int tileMinY = getTileMinY(ty);
+      int minY = Math.max(y, tileMinY);
+      int maxY = Math.min(y + height, tileMinY + getTileHeight(ty));
+      if (minY >= maxY) {
+        break;
+      }
+
+      for (int tx = getTileX(x); tx * tileWidth < x + width; tx++) {
+        int tileMinX = getTileMinX(tx);
+        int minX = Math.max(x, tileMinX);
+        int spanWidth = Math.min(x + width, tileMinX + getTileWidth(tx)) - minX;
+
+        PixelArray tile = getTile(tx, ty);
+        for (int row = minY; row < maxY; row++) {
+          tile.getRow(row - tileMinY, minX - tileMinX, spanWidth, rowValues, rowAlphas);
+
+          int index = (row - y) * width + minX - x;
+          System.arraycopy(rowValues, 0, channelValues, index * colorChannelCount,
+              spanWidth * colorChannelCount);
+          if (alphas != null) {
+            System.arraycopy(rowAlphas, 0, alphas, index, spanWidth);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    // Do nothing
+  }
+
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    // Do nothing
+  }
+
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
+  @Override
+  public PixelArray getParent() {
+    return null;
+  }
+
+  @Override
+  public int getWidth() {
+    return width;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public int getColorChannelCount() {
+    return colorChannelCount;
+  }
+
+  @Override
+  public boolean hasAlphaChannel() {
+    return hasAlpha;
+  }
+
+  @Override
+  public int getBandCount() {
+    return colorChannelCount + (hasAlpha ? 1 : 0);
+  }
+
+  @Override
+  public void toParentCoordinate(ImageCoordinate coord) {
+    // Do nothing
+  }
+
+  @Override
+  public void fromParentCoordinate(ImageCoordinate coord) {
+    // Do nothing
+  }
+
+  @Override
+  public void toParentWindow(ImageWindow window) {
+    // Do nothing
+  }
+
+  @Override
+  public void fromParentWindow(ImageWindow window) {
+    // Do nothing
+  }
+}
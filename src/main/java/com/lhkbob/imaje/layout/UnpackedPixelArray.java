@@ -35,6 +35,8 @@ import com.lhkbob.imaje.data.DataBuffer;
 import com.lhkbob.imaje.data.NumericData;
 import com.lhkbob.imaje.util.Arguments;
 
+import java.util.Arrays;
+
 /**
  * UnpackedPixelArray
  * ================
@@ -52,6 +54,7 @@ public class UnpackedPixelArray extends RootPixelArray {
   private final NumericData<?> data;
   private final PixelFormat format;
   private final DataLayout layout;
+  private final boolean hasSkippedFields;
 
   /**
    * Create a new UnpackedPixelArray that assumes logical color channel data is described by
@@ -111,6 +114,12 @@ public class UnpackedPixelArray extends RootPixelArray {
     this.data = data;
     this.format = format;
     this.layout = layout;
+
+    boolean skipped = false;
+    for (int i = 0; i < format.getDataFieldCount(); i++) {
+      skipped |= format.isDataFieldSkipped(i);
+    }
+    hasSkippedFields = skipped;
   }
 
   /**
@@ -195,6 +204,96 @@ public class UnpackedPixelArray extends RootPixelArray {
     }
   }
 
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = format.getColorChannelCount();
+    double[] run = new double[width * layout.getBandCount()];
+    layout.iterateWindow(x, y, width, height, (cx, cy, stride, length, bandOffsets) -> {
+      int pixel = (cy - y) * width + (cx - x);
+      long runStart = PixelArrays.getInterleavedRunStart(bandOffsets, stride);
+      if (runStart >= 0) {
+        // Every band of the segment is packed together so fetch it with a single bulk read
+        data.getValues(runStart, run, 0,
+            PixelArrays.getInterleavedRunLength(bandOffsets, stride, length, runStart));
+        for (int c = 0; c < channelCount; c++) {
+          int src = (int) (bandOffsets[format.getColorChannelDataField(c)] - runStart);
+          for (int p = 0; p < length; p++) {
+            channelValues[(pixel + p) * channelCount + c] = run[src + p * stride];
+          }
+        }
+        if (alphas != null && format.hasAlphaChannel()) {
+          int src = (int) (bandOffsets[format.getAlphaChannelDataField()] - runStart);
+          for (int p = 0; p < length; p++) {
+            alphas[pixel + p] = run[src + p * stride];
+          }
+        }
+      } else {
+        for (int c = 0; c < channelCount; c++) {
+          readBand(bandOffsets[format.getColorChannelDataField(c)], stride, length, run,
+              channelValues, pixel * channelCount + c, channelCount);
+        }
+        if (alphas != null && format.hasAlphaChannel()) {
+          readBand(bandOffsets[format.getAlphaChannelDataField()], stride, length, run, alphas,
+              pixel, 1);
+        }
+      }
+
+      if (alphas != null && !format.hasAlphaChannel()) {
+        Arrays.fill(alphas, pixel, pixel + length, 1.0);
+      }
+    });
+  }
+
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = format.getColorChannelCount();
+    float[] run = new float[width * layout.getBandCount()];
+    layout.iterateWindow(x, y, width, height, (cx, cy, stride, length, bandOffsets) -> {
+      int pixel = (cy - y) * width + (cx - x);
+      long runStart = PixelArrays.getInterleavedRunStart(bandOffsets, stride);
+      if (runStart >= 0) {
+        // Every band of the segment is packed together so fetch it with a single bulk read
+        data.getValues(runStart, run, 0,
+            PixelArrays.getInterleavedRunLength(bandOffsets, stride, length, runStart));
+        for (int c = 0; c < channelCount; c++) {
+          int src = (int) (bandOffsets[format.getColorChannelDataField(c)] - runStart);
+          for (int p = 0; p < length; p++) {
+            channelValues[(pixel + p) * channelCount + c] = run[src + p * stride];
+          }
+        }
+        if (alphas != null && format.hasAlphaChannel()) {
+          int src = (int) (bandOffsets[format.getAlphaChannelDataField()] - runStart);
+          for (int p = 0; p < length; p++) {
+            alphas[pixel + p] = run[src + p * stride];
+          }
+        }
+      } else {
+        for (int c = 0; c < channelCount; c++) {
+          readBand(bandOffsets[format.getColorChannelDataField(c)], stride, length, run,
+              channelValues, pixel * channelCount + c, channelCount);
+        }
+        if (alphas != null && format.hasAlphaChannel()) {
+          readBand(bandOffsets[format.getAlphaChannelDataField()], stride, length, run, alphas,
+              pixel, 1);
+        }
+      }
+
+      if (alphas != null && !format.hasAlphaChannel()) {
+        Arrays.fill(alphas, pixel, pixel + length, 1f);
+      }
+    });
+  }
+
   @Override
   public NumericData<?> getData(int band) {
     Arguments.checkIndex("band", format.getDataFieldCount(), band);
@@ -247,4 +346,156 @@ public class UnpackedPixelArray extends RootPixelArray {
       data.setValue(layout.getBandOffset(x, y, format.getAlphaChannelDataField()), alpha);
     } // otherwise no alpha channel so ignore the set request
   }
+
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = format.getColorChannelCount();
+    boolean writeAlpha = alphas != null && format.hasAlphaChannel();
+    // If any band is left untouched, interleaved runs must be read before they're overwritten
+    boolean preserveRun = hasSkippedFields || (format.hasAlphaChannel() && alphas == null);
+    double[] run = new double[width * layout.getBandCount()];
+    layout.iterateWindow(x, y, width, height, (cx, cy, stride, length, bandOffsets) -> {
+      int pixel = (cy - y) * width + (cx - x);
+      long runStart = PixelArrays.getInterleavedRunStart(bandOffsets, stride);
+      if (runStart >= 0) {
+        int runLength = PixelArrays.getInterleavedRunLength(bandOffsets, stride, length, runStart);
+        if (preserveRun) {
+          data.getValues(runStart, run, 0, runLength);
+        }
+        for (int c = 0; c < channelCount; c++) {
+          int dst = (int) (bandOffsets[format.getColorChannelDataField(c)] - runStart);
+          for (int p = 0; p < length; p++) {
+            run[dst + p * stride] = channelValues[(pixel + p) * channelCount + c];
+          }
+        }
+        if (writeAlpha) {
+          int dst = (int) (bandOffsets[format.getAlphaChannelDataField()] - runStart);
+          for (int p = 0; p < length; p++) {
+            run[dst + p * stride] = alphas[pixel + p];
+          }
+        }
+        data.setValues(runStart, run, 0, runLength);
+      } else {
+        for (int c = 0; c < channelCount; c++) {
+          writeBand(bandOffsets[format.getColorChannelDataField(c)], stride, length, run,
+              channelValues, pixel * channelCount + c, channelCount);
+        }
+        if (writeAlpha) {
+          writeBand(bandOffsets[format.getAlphaChannelDataField()], stride, length, run, alphas,
+              pixel, 1);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+
+    int channelCount = format.getColorChannelCount();
+    boolean writeAlpha = alphas != null && format.hasAlphaChannel();
+    // If any band is left untouched, interleaved runs must be read before they're overwritten
+    boolean preserveRun = hasSkippedFields || (format.hasAlphaChannel() && alphas == null);
+    float[] run = new float[width * layout.getBandCount()];
+    layout.iterateWindow(x, y, width, height, (cx, cy, stride, length, bandOffsets) -> {
+      int pixel = (cy - y) * width + (cx - x);
+      long runStart = PixelArrays.getInterleavedRunStart(bandOffsets, stride);
+      if (runStart >= 0) {
+        int runLength = PixelArrays.getInterleavedRunLength(bandOffsets, stride, length, runStart);
+        if (preserveRun) {
+          data.getValues(runStart, run, 0, runLength);
+        }
+        for (int c = 0; c < channelCount; c++) {
+          int dst = (int) (bandOffsets[format.getColorChannelDataField(c)] - runStart);
+          for (int p = 0; p < length; p++) {
+            run[dst + p * stride] = channelValues[(pixel + p) * channelCount + c];
+          }
+        }
+        if (writeAlpha) {
+          int dst = (int) (bandOffsets[format.getAlphaChannelDataField()] - runStart);
+          for (int p = 0; p < length; p++) {
+            run[dst + p * stride] = alphas[pixel + p];
+          }
+        }
+        data.setValues(runStart, run, 0, runLength);
+      } else {
+        for (int c = 0; c < channelCount; c++) {
+          writeBand(bandOffsets[format.getColorChannelDataField(c)], stride, length, run,
+              channelValues, pixel * channelCount + c, channelCount);
+        }
+        if (writeAlpha) {
+          writeBand(bandOffsets[format.getAlphaChannelDataField()], stride, length, run, alphas,
+              pixel, 1);
+        }
+      }
+    });
+  }
+
+  private void readBand(
+      long offset, int stride, int length, double[] scratch, double[] values, int valueOffset,
+      int valueStride) {
+    if (stride == 1) {
+      data.getValues(offset, scratch, 0, length);
+      for (int p = 0; p < length; p++) {
+        values[valueOffset + p * valueStride] = scratch[p];
+      }
+    } else {
+      for (int p = 0; p < length; p++) {
+        values[valueOffset + p * valueStride] = data.getValue(offset + p * stride);
+      }
+    }
+  }
+
+  private void writeBand(
+      long offset, int stride, int length, double[] scratch, double[] values, int valueOffset,
+      int valueStride) {
+    if (stride == 1) {
+      for (int p = 0; p < length; p++) {
+        scratch[p] = values[valueOffset + p * valueStride];
+      }
+      data.setValues(offset, scratch, 0, length);
+    } else {
+      for (int p = 0; p < length; p++) {
+        data.setValue(offset + p * stride, values[valueOffset + p * valueStride]);
+      }
+    }
+  }
+
+  private void readBand(
+      long offset, int stride, int length, float[] scratch, float[] values, int valueOffset,
+      int valueStride) {
+    if (stride == 1) {
+      data.getValues(offset, scratch, 0, length);
+      for (int p = 0; p < length; p++) {
+        values[valueOffset + p * valueStride] = scratch[p];
+      }
+    } else {
+      for (int p = 0; p < length; p++) {
+        values[valueOffset + p * valueStride] = (float) data.getValue(offset + p * stride);
+      }
+    }
+  }
+
+  private void writeBand(
+      long offset, int stride, int length, float[] scratch, float[] values, int valueOffset,
+      int valueStride) {
+    if (stride == 1) {
+      for (int p = 0; p < length; p++) {
+        scratch[p] = values[valueOffset + p * valueStride];
+      }
+      data.setValues(offset, scratch, 0, length);
+    } else {
+      for (int p = 0; p < length; p++) {
+        data.setValue(offset + p * stride, values[valueOffset + p * valueStride]);
+      }
+    }
+  }
 }
@@ -31,8 +31,107 @@
  */
 package com.lhkbob.imaje.layout.compressed;
 
+import com.lhkbob.imaje.data.ByteData;
+
 /**
- * https://msdn.microsoft.com/en-us/library/bb694531(v=vs.85).aspx
+ * BC1Array
+ * ========
+ *
+ * A read-only PixelArray that decodes BC1 (DXT1) compressed data. Each block stores two RGB 5:6:5
+ * endpoint colors followed by a 2-bit index per pixel. When the first endpoint is greater than the
+ * second, the indices select between the endpoints and two colors interpolated at one and two
+ * thirds. Otherwise they select between the endpoints, their midpoint, and transparent black.
+ *
+ * If the array is created without an alpha channel, the transparent pixels decode to black like
+ * the other pixels and alpha is always 1. See the
+ * [BC1 format](https://msdn.microsoft.com/en-us/library/bb694531(v=vs.85).aspx#BC1) for details.
+ *
+ * @author Michael Ludwig
  */
-public class BC1Array {
+public class BC1Array extends BCArray {
+  /**
+   * Create a new array that decodes `data`, starting at `dataOffset`, as described by `layout`.
+   *
+   * @param layout
+   *     The layout of the blocks
+   * @param data
+   *     The compressed data
+   * @param dataOffset
+   *     The index into `data` of the first byte of the image
+   * @param hasAlpha
+   *     True if the punch-through alpha of the blocks is exposed as an alpha channel
+   * @throws NullPointerException
+   *     if `layout` or `data` are null
+   * @throws IndexOutOfBoundsException
+   *     if `data` is too small to hold every block after `dataOffset`
+   */
+  public BC1Array(BC1Layout layout, ByteData data, long dataOffset, boolean hasAlpha) {
+    super(layout, data, dataOffset, 3, hasAlpha);
+  }
+
+  @Override
+  public BC1Layout getLayout() {
+    return (BC1Layout) super.getLayout();
+  }
+
+  @Override
+  protected void decodeBlock(ByteData data, long offset, double[] block, double[] palette) {
+    decodeColorBlock(data, offset, true, block, palette);
+  }
+
+  /**
+   * Decode the 8 byte color block at `offset` into the RGB values of `block`. When
+   * `punchThroughAlpha` is true, the block is decoded as a BC1 block and the alpha values of
+   * `block` are also assigned. Otherwise the block is decoded as the color block of BC2 and BC3,
+   * which always use four colors, and the alpha values are left unmodified. `palette` is scratch
+   * space that must hold at least 16 values.
+   */
+  static void decodeColorBlock(
+      ByteData data, long offset, boolean punchThroughAlpha, double[] block, double[] palette) {
+    int color0 = (int) getLittleEndian(data, offset, 2);
+    int color1 = (int) getLittleEndian(data, offset + 2, 2);
+    long indices = getLittleEndian(data, offset + 4, 4);
+
+    getPalette(color0, color1, punchThroughAlpha, palette);
+
+    int channels = punchThroughAlpha ? 4 : 3;
+    for (int i = 0; i < 16; i++) {
+      int index = (int) (indices >>> (2 * i)) & 0x3;
+      System.arraycopy(palette, 4 * index, block, 4 * i, channels);
+    }
+  }
+
+  /**
+   * Compute the RGBA values of the four colors that the indices of a color block select between,
+   * for the given 5:6:5 endpoints. The palette is decoded as {@link #decodeColorBlock(ByteData,
+   * long, boolean, double[], double[])} decodes it, so encoders can measure the exact error of
+   * endpoints.
+   */
+  static void getPalette(int color0, int color1, boolean punchThroughAlpha, double[] palette) {
+    // The palette holds RGBA for each of the 4 colors
+    unpack565(color0, palette, 0);
+    unpack565(color1, palette, 4);
+    boolean fourColors = !punchThroughAlpha || color0 > color1;
+    for (int c = 0; c < 3; c++) {
+      double c0 = palette[c];
+      double c1 = palette[4 + c];
+      if (fourColors) {
+        palette[8 + c] = (2.0 * c0 + c1) / 3.0;
+        palette[12 + c] = (c0 + 2.0 * c1) / 3.0;
+      } else {
+        palette[8 + c] = 0.5 * (c0 + c1);
+        palette[12 + c] = 0.0;
+      }
+    }
+    palette[3] = 1.0;
+    palette[7] = 1.0;
+    palette[11] = 1.0;
+    palette[15] = fourColors ? 1.0 : 0.0;
+  }
+
+  private static void unpack565(int color, double[] palette, int offset) {
+    palette[offset] = ((color >> 11) & 0x1f) / 31.0;
+    palette[offset + 1] = ((color >> 5) & 0x3f) / 63.0;
+    palette[offset + 2] = (color & 0x1f) / 31.0;
+  }
 }
@@ -31,8 +31,49 @@
  */
 package com.lhkbob.imaje.layout.compressed;
 
+import com.lhkbob.imaje.data.ByteData;
+
 /**
+ * BC2Array
+ * ========
+ *
+ * A read-only PixelArray that decodes BC2 (DXT3) compressed data. Each block stores an explicit
+ * 4-bit alpha value per pixel, followed by a BC1 color block that always selects between four
+ * colors. See the [BC2 format](https://msdn.microsoft.com/en-us/library/bb694531(v=vs.85).aspx#BC2)
+ * for details.
  *
+ * @author Michael Ludwig
  */
-public class BC2Array {
+public class BC2Array extends BCArray {
+  /**
+   * Create a new array that decodes `data`, starting at `dataOffset`, as described by `layout`.
+   *
+   * @param layout
+   *     The layout of the blocks
+   * @param data
+   *     The compressed data
+   * @param dataOffset
+   *     The index into `data` of the first byte of the image
+   * @throws NullPointerException
+   *     if `layout` or `data` are null
+   * @throws IndexOutOfBoundsException
+   *     if `data` is too small to hold every block after `dataOffset`
+   */
+  public BC2Array(BC2Layout layout, ByteData data, long dataOffset) {
+    super(layout, data, dataOffset, 3, true);
+  }
+
+  @Override
+  public BC2Layout getLayout() {
+    return (BC2Layout) super.getLayout();
+  }
+
+  @Override
+  protected void decodeBlock(ByteData data, long offset, double[] block, double[] palette) {
+    long alphas = getLittleEndian(data, offset, 8);
+    for (int i = 0; i < 16; i++) {
+      block[4 * i + 3] = ((alphas >>> (4 * i)) & 0xf) / 15.0;
+    }
+    BC1Array.decodeColorBlock(data, offset + 8, false, block, palette);
+  }
 }
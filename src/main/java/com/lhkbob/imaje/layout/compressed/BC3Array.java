@@ -31,8 +31,46 @@
  */
 package com.lhkbob.imaje.layout.compressed;
 
+import com.lhkbob.imaje.data.ByteData;
+
 /**
+ * BC3Array
+ * ========
+ *
+ * A read-only PixelArray that decodes BC3 (DXT5) compressed data. Each block stores its alpha
+ * values as a BC4 block, followed by a BC1 color block that always selects between four colors.
+ * See the [BC3 format](https://msdn.microsoft.com/en-us/library/bb694531(v=vs.85).aspx#BC3) for
+ * details.
  *
+ * @author Michael Ludwig
  */
-public class BC3Array {
+public class BC3Array extends BCArray {
+  /**
+   * Create a new array that decodes `data`, starting at `dataOffset`, as described by `layout`.
+   *
+   * @param layout
+   *     The layout of the blocks
+   * @param data
+   *     The compressed data
+   * @param dataOffset
+   *     The index into `data` of the first byte of the image
+   * @throws NullPointerException
+   *     if `layout` or `data` are null
+   * @throws IndexOutOfBoundsException
+   *     if `data` is too small to hold every block after `dataOffset`
+   */
+  public BC3Array(BC3Layout layout, ByteData data, long dataOffset) {
+    super(layout, data, dataOffset, 3, true);
+  }
+
+  @Override
+  public BC3Layout getLayout() {
+    return (BC3Layout) super.getLayout();
+  }
+
+  @Override
+  protected void decodeBlock(ByteData data, long offset, double[] block, double[] palette) {
+    BC4Array.decodeChannelBlock(data, offset, false, block, 3, palette);
+    BC1Array.decodeColorBlock(data, offset + 8, false, block, palette);
+  }
 }
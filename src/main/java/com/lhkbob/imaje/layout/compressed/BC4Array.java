@@ -31,8 +31,116 @@
  */
 package com.lhkbob.imaje.layout.compressed;
 
+import com.lhkbob.imaje.data.ByteData;
+
 /**
+ * BC4Array
+ * ========
+ *
+ * A read-only PixelArray that decodes BC4 compressed data into a single color channel. Each block
+ * stores two 8-bit endpoints followed by a 3-bit index per pixel. When the first endpoint is
+ * greater than the second, the indices select between the endpoints and six interpolated values.
+ * Otherwise they select between the endpoints, four interpolated values, and the minimum and
+ * maximum of the channel's range.
+ *
+ * Unsigned data decodes to values within `[0, 1]`, and signed data decodes to values within `[-1,
+ * 1]`. See the [BC4 format](https://msdn.microsoft.com/en-us/library/bb694531(v=vs.85).aspx#BC4)
+ * for details.
  *
+ * @author Michael Ludwig
  */
-public class BC4Array {
+public class BC4Array extends BCArray {
+  private final boolean signed;
+
+  /**
+   * Create a new array that decodes `data`, starting at `dataOffset`, as described by `layout`.
+   *
+   * @param layout
+   *     The layout of the blocks
+   * @param data
+   *     The compressed data
+   * @param dataOffset
+   *     The index into `data` of the first byte of the image
+   * @param signed
+   *     True if the endpoints are signed normalized values
+   * @throws NullPointerException
+   *     if `layout` or `data` are null
+   * @throws IndexOutOfBoundsException
+   *     if `data` is too small to hold every block after `dataOffset`
+   */
+  public BC4Array(BC4Layout layout, ByteData data, long dataOffset, boolean signed) {
+    super(layout, data, dataOffset, 1, false);
+    this.signed = signed;
+  }
+
+  /**
+   * @return True if the data is decoded as signed normalized values
+   */
+  public boolean isSigned() {
+    return signed;
+  }
+
+  @Override
+  public BC4Layout getLayout() {
+    return (BC4Layout) super.getLayout();
+  }
+
+  @Override
+  protected void decodeBlock(ByteData data, long offset, double[] block, double[] palette) {
+    decodeChannelBlock(data, offset, signed, block, 0, palette);
+  }
+
+  /**
+   * Decode the 8 byte BC4 block at `offset` into the values of `channel` in `block`, leaving the
+   * other values unmodified. This is also the alpha block of BC3 and each channel block of BC5.
+   * `palette` is scratch space that must hold at least 8 values.
+   */
+  static void decodeChannelBlock(
+      ByteData data, long offset, boolean signed, double[] block, int channel,
+      double[] palette) {
+    int endpoint0;
+    int endpoint1;
+    if (signed) {
+      endpoint0 = data.get(offset);
+      endpoint1 = data.get(offset + 1);
+    } else {
+      endpoint0 = data.get(offset) & 0xff;
+      endpoint1 = data.get(offset + 1) & 0xff;
+    }
+    long indices = getLittleEndian(data, offset + 2, 6);
+
+    getPalette(endpoint0, endpoint1, signed, palette);
+
+    for (int i = 0; i < 16; i++) {
+      block[4 * i + channel] = palette[(int) (indices >>> (3 * i)) & 0x7];
+    }
+  }
+
+  /**
+   * Compute the eight values that the indices of a channel block select between, for the given
+   * endpoints. Signed endpoints are within `[-128, 127]` and unsigned endpoints within `[0, 255]`.
+   */
+  static void getPalette(int endpoint0, int endpoint1, boolean signed, double[] palette) {
+    double scale = 255.0;
+    if (signed) {
+      // -128 and -127 both represent -1
+      endpoint0 = Math.max(-127, endpoint0);
+      endpoint1 = Math.max(-127, endpoint1);
+      scale = 127.0;
+    }
+
+    palette[0] = endpoint0 / scale;
+    palette[1] = endpoint1 / scale;
+    if (endpoint0 > endpoint1) {
+      for (int i = 1; i < 7; i++) {
+        palette[i + 1] = ((7 - i) * palette[0] + i * palette[1]) / 7.0;
+      }
+    } else {
+      for (int i = 1; i < 5; i++) {
+        palette[i + 1] = ((5 - i) * palette[0] + i * palette[1]) / 5.0;
+      }
+      palette[6] = signed ? -1.0 : 0.0;
+      palette[7] = 1.0;
+    }
+  }
 }
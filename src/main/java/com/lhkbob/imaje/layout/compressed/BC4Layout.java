@@ -32,7 +32,33 @@
 package com.lhkbob.imaje.layout.compressed;
 
 /**
+ * BC4Layout
+ * =========
  *
+ * The block layout of images using BC4 compression, which encodes a single channel of each block
+ * into 8 bytes.
+ *
+ * @author Michael Ludwig
  */
-public class BC4Layout {
+public class BC4Layout extends BCLayout {
+  /**
+   * The number of bytes that encode each block.
+   */
+  public static final int BLOCK_BYTE_SIZE = 8;
+
+  /**
+   * Create a new layout for an image of the given dimensions.
+   *
+   * @param width
+   *     The width of the image
+   * @param height
+   *     The height of the image
+   * @param topToBottom
+   *     True if the first row of blocks is at the top of the image
+   * @throws IllegalArgumentException
+   *     if `width` or `height` are not positive
+   */
+  public BC4Layout(int width, int height, boolean topToBottom) {
+    super(width, height, BLOCK_BYTE_SIZE, topToBottom);
+  }
 }
@@ -31,8 +31,59 @@
  */
 package com.lhkbob.imaje.layout.compressed;
 
+import com.lhkbob.imaje.data.ByteData;
+
 /**
+ * BC5Array
+ * ========
+ *
+ * A read-only PixelArray that decodes BC5 compressed data into two color channels. Each block
+ * stores the first channel as a BC4 block, followed by the second channel as another BC4 block.
+ * Unsigned data decodes to values within `[0, 1]`, and signed data decodes to values within `[-1,
+ * 1]`. See the [BC5 format](https://msdn.microsoft.com/en-us/library/bb694531(v=vs.85).aspx#BC5)
+ * for details.
  *
+ * @author Michael Ludwig
  */
-public class BC5Array {
+public class BC5Array extends BCArray {
+  private final boolean signed;
+
+  /**
+   * Create a new array that decodes `data`, starting at `dataOffset`, as described by `layout`.
+   *
+   * @param layout
+   *     The layout of the blocks
+   * @param data
+   *     The compressed data
+   * @param dataOffset
+   *     The index into `data` of the first byte of the image
+   * @param signed
+   *     True if the endpoints are signed normalized values
+   * @throws NullPointerException
+   *     if `layout` or `data` are null
+   * @throws IndexOutOfBoundsException
+   *     if `data` is too small to hold every block after `dataOffset`
+   */
+  public BC5Array(BC5Layout layout, ByteData data, long dataOffset, boolean signed) {
+    super(layout, data, dataOffset, 2, false);
+    this.signed = signed;
+  }
+
+  /**
+   * @return True if the data is decoded as signed normalized values
+   */
+  public boolean isSigned() {
+    return signed;
+  }
+
+  @Override
+  public BC5Layout getLayout() {
+    return (BC5Layout) super.getLayout();
+  }
+
+  @Override
+  protected void decodeBlock(ByteData data, long offset, double[] block, double[] palette) {
+    BC4Array.decodeChannelBlock(data, offset, signed, block, 0, palette);
+    BC4Array.decodeChannelBlock(data, offset + 8, signed, block, 1, palette);
+  }
 }
@@ -32,7 +32,33 @@
 package com.lhkbob.imaje.layout.compressed;
 
 /**
+ * BC5Layout
+ * =========
  *
+ * The block layout of images using BC5 compression, which encodes two channels of each block into
+ * 16 bytes as two consecutive BC4 blocks.
+ *
+ * @author Michael Ludwig
  */
-public class BC5Layout {
+public class BC5Layout extends BCLayout {
+  /**
+   * The number of bytes that encode each block.
+   */
+  public static final int BLOCK_BYTE_SIZE = 16;
+
+  /**
+   * Create a new layout for an image of the given dimensions.
+   *
+   * @param width
+   *     The width of the image
+   * @param height
+   *     The height of the image
+   * @param topToBottom
+   *     True if the first row of blocks is at the top of the image
+   * @throws IllegalArgumentException
+   *     if `width` or `height` are not positive
+   */
+  public BC5Layout(int width, int height, boolean topToBottom) {
+    super(width, height, BLOCK_BYTE_SIZE, topToBottom);
+  }
 }
@@ -0,0 +1,515 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.layout.compressed;
+
+import com.lhkbob.imaje.data.ByteData;
+import com.lhkbob.imaje.layout.ImageCoordinate;
+import com.lhkbob.imaje.layout.ImageWindow;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.layout.PixelArrays;
+import com.lhkbob.imaje.layout.ReadOnlyArray;
+import com.lhkbob.imaje.util.Arguments;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * BCArray
+ * =======
+ *
+ * A read-only PixelArray that decodes block compressed pixel data on demand. The data is arranged
+ * as described by a {@link BCLayout}, and subclasses implement the decoding of a single block for
+ * their compression format.
+ *
+ * Individual pixel accesses decode the entire 4x4 block containing the pixel. The most recently
+ * decoded blocks are kept in a small cache that covers a 16x16 pixel neighborhood, so that
+ * neighboring accesses do not decode the same block again. Each thread accessing the array has its
+ * own cache, so threads never evict each other's blocks and a cache miss decodes into storage the
+ * cache already owns instead of allocating. Window accesses decode each block they overlap exactly
+ * once and bypass the cache. The entire image can be decoded in parallel with {@link
+ * #decode(double[], double[], Executor)}, which distributes rows of blocks across an executor.
+ *
+ * Because the array is a view of compressed data, it has no parent even though it is not a {@link
+ * com.lhkbob.imaje.layout.RootPixelArray}. Setting pixel values is silently ignored, in the same
+ * manner as {@link ReadOnlyArray}.
+ *
+ * @author Michael Ludwig
+ */
+public abstract class BCArray implements PixelArray {
+  /**
+   * The number of values in a decoded block: four RGBA values for each of the block's 16 pixels,
+   * in the pixel order described by {@link BCLayout#getPixelIndex(int, int)}.
+   */
+  protected static final int DECODED_BLOCK_LENGTH = 4 * BCLayout.BLOCK_SIZE * BCLayout.BLOCK_SIZE;
+  /**
+   * The length of the scratch array given to {@link #decodeBlock(ByteData, long, double[],
+   * double[])}, which is large enough for the four RGBA colors of a color block palette and the
+   * eight values of a channel block palette.
+   */
+  protected static final int PALETTE_LENGTH = 16;
+
+  // The cache holds a 4x4 neighborhood of blocks, indexed by the low bits of the block coordinates
+  private static final int CACHE_SIZE = 16;
+  // The bulk decode splits the image into tasks of at least this many pixels
+  private static final int PIXELS_PER_TASK = 1 << 16;
+
+  private final BCLayout layout;
+  private final ByteData data;
+  private final long dataOffset;
+  private final int colorChannelCount;
+  private final boolean hasAlpha;
+
+  private final ThreadLocal<BlockCache> cache;
+
+  /**
+   * Create a new array that decodes the blocks described by `layout` from `data`, starting at
+   * `dataOffset`.
+   *
+   * @param layout
+   *     The layout of the blocks
+   * @param data
+   *     The compressed data
+   * @param dataOffset
+   *     The index into `data` of the first byte of the image
+   * @param colorChannelCount
+   *     The number of color channels decoded from each block, from 1 to 3
+   * @param hasAlpha
+   *     True if the decoded blocks have an alpha channel
+   * @throws NullPointerException
+   *     if `layout` or `data` are null
+   * @throws IndexOutOfBoundsException
+   *     if `data` is too small to hold every block after `dataOffset`
+   */
+  protected BCArray(
+      BCLayout layout, ByteData data, long dataOffset, int colorChannelCount, boolean hasAlpha) {
+    Arguments.notNull("layout", layout);
+    Arguments.notNull("data", data);
+    Arguments.inRangeInclusive("colorChannelCount", 1, 3, colorChannelCount);
+    Arguments.checkArrayRange("data", data.getLength(), dataOffset, layout.getRequiredByteCount());
+
+    this.layout = layout;
+    this.data = data;
+    this.dataOffset = dataOffset;
+    this.colorChannelCount = colorChannelCount;
+    this.hasAlpha = hasAlpha;
+    cache = ThreadLocal.withInitial(BlockCache::new);
+  }
+
+  /**
+   * Decode the block that starts at `offset` within `data`. The decoded values are stored in
+   * `block` as four values for each pixel. The first color channels hold the pixel's color, and the
+   * fourth value holds its alpha. Values for channels the format does not have are ignored.
+   *
+   * The caller owns `palette` and reuses it for every block it decodes, so implementations must
+   * not allocate per block and must not rely on its contents between calls.
+   *
+   * @param data
+   *     The compressed data
+   * @param offset
+   *     The index of the first byte of the block
+   * @param block
+   *     The array of length {@link #DECODED_BLOCK_LENGTH} to store the decoded values in
+   * @param palette
+   *     The scratch array of length {@link #PALETTE_LENGTH} for the block's palette
+   */
+  protected abstract void decodeBlock(
+      ByteData data, long offset, double[] block, double[] palette);
+
+  /**
+   * @return The layout of the compressed blocks
+   */
+  public BCLayout getLayout() {
+    return layout;
+  }
+
+  /**
+   * @return The compressed data of the array
+   */
+  public ByteData getData() {
+    return data;
+  }
+
+  /**
+   * @return The index into the data of the first byte of the image
+   */
+  public long getDataOffset() {
+    return dataOffset;
+  }
+
+  /**
+   * Decode every pixel of the array, distributing rows of blocks across the common fork-join pool.
+   * This is equivalent to calling {@link #decode(double[], double[], Executor)} with {@link
+   * ForkJoinPool#commonPool()}.
+   *
+   * @param channelValues
+   *     The array to store the interleaved color channel values of each pixel
+   * @param alphas
+   *     The array to store the alpha value of each pixel, or null if alpha is not needed
+   * @throws IndexOutOfBoundsException
+   *     if the value arrays are too small
+   */
+  public void decode(double[] channelValues, @Arguments.Nullable double[] alphas) {
+    decode(channelValues, alphas, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Decode every pixel of the array into `channelValues` and `alphas`, which are arranged in the
+   * same manner as {@link #getWindow(int, int, int, int, double[], double[])} for the window that
+   * covers the entire array. Groups of block rows are decoded as independent tasks submitted to
+   * `executor`, and this method blocks until they have all completed. If `executor` is null, the
+   * image is decoded on the calling thread.
+   *
+   * @param channelValues
+   *     The array to store the interleaved color channel values of each pixel
+   * @param alphas
+   *     The array to store the alpha value of each pixel, or null if alpha is not needed
+   * @param executor
+   *     The executor that decodes the block rows, or null to decode on the calling thread
+   * @throws IndexOutOfBoundsException
+   *     if the value arrays are too small
+   */
+  public void decode(
+      double[] channelValues, @Arguments.Nullable double[] alphas,
+      @Arguments.Nullable Executor executor) {
+    decode(channelValues, alphas, null, null, executor);
+  }
+
+  /**
+   * Decode every pixel of the array, distributing rows of blocks across the common fork-join pool.
+   * This is the `float` equivalent of {@link #decode(double[], double[])}.
+   *
+   * @param channelValues
+   *     The array to store the interleaved color channel values of each pixel
+   * @param alphas
+   *     The array to store the alpha value of each pixel, or null if alpha is not needed
+   * @throws IndexOutOfBoundsException
+   *     if the value arrays are too small
+   */
+  public void decode(float[] channelValues, @Arguments.Nullable float[] alphas) {
+    decode(channelValues, alphas, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Decode every pixel of the array using `executor`. This is the `float` equivalent of {@link
+   * #decode(double[], double[], Executor)}.
+   *
+   * @param channelValues
+   *     The array to store the interleaved color channel values of each pixel
+   * @param alphas
+   *     The array to store the alpha value of each pixel, or null if alpha is not needed
+   * @param executor
+   *     The executor that decodes the block rows, or null to decode on the calling thread
+   * @throws IndexOutOfBoundsException
+   *     if the value arrays are too small
+   */
+  public void decode(
+      float[] channelValues, @Arguments.Nullable float[] alphas,
+      @Arguments.Nullable Executor executor) {
+    decode(null, null, channelValues, alphas, executor);
+  }
+
+  @Override
+  public double get(int x, int y, double[] channelValues) {
+    checkCoordinate(x, y);
+    double[] block = getDecodedBlock(layout.getBlockX(x), layout.getBlockY(y));
+    int pixel = 4 * layout.getPixelIndex(x, y);
+    System.arraycopy(block, pixel, channelValues, 0, colorChannelCount);
+    return hasAlpha ? block[pixel + 3] : 1.0;
+  }
+
+  @Override
+  public double get(int x, int y, double[] channelValues, long[] bandOffsets) {
+    // Bands are not stored separately in compressed data, so there are no offsets to report
+    return get(x, y, channelValues);
+  }
+
+  @Override
+  public double getAlpha(int x, int y) {
+    checkCoordinate(x, y);
+    if (!hasAlpha) {
+      return 1.0;
+    }
+    double[] block = getDecodedBlock(layout.getBlockX(x), layout.getBlockY(y));
+    return block[4 * layout.getPixelIndex(x, y) + 3];
+  }
+
+  @Override
+  public void set(int x, int y, double[] channelValues, double a) {
+    // Do nothing
+  }
+
+  @Override
+  public void set(int x, int y, double[] channelValues, double a, long[] bandOffsets) {
+    // Do nothing
+  }
+
+  @Override
+  public void setAlpha(int x, int y, double alpha) {
+    // Do nothing
+  }
+
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+    decodeWindow(x, y, width, height, getMinBlockY(y, height), getMaxBlockY(y, height),
+        channelValues, alphas, null, null);
+  }
+
+  @Override
+  public void getWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    PixelArrays.checkWindow(this, x, y, width, height, channelValues.length,
+        alphas == null ? -1 : alphas.length);
+    decodeWindow(x, y, width, height, getMinBlockY(y, height), getMaxBlockY(y, height), null,
+        null, channelValues, alphas);
+  }
+
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, double[] channelValues,
+      @Arguments.Nullable double[] alphas) {
+    // Do nothing
+  }
+
+  @Override
+  public void setWindow(
+      int x, int y, int width, int height, float[] channelValues,
+      @Arguments.Nullable float[] alphas) {
+    // Do nothing
+  }
+
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
+  @Override
+  public PixelArray getParent() {
+    return null;
+  }
+
+  @Override
+  public int getWidth() {
+    return layout.getWidth();
+  }
+
+  @Override
+  public int getHeight() {
+    return layout.getHeight();
+  }
+
+  @Override
+  public int getColorChannelCount() {
+    return colorChannelCount;
+  }
+
+  @Override
+  public boolean hasAlphaChannel() {
+    return hasAlpha;
+  }
+
+  @Override
+  public int getBandCount() {
+    return colorChannelCount + (hasAlpha ? 1 : 0);
+  }
+
+  @Override
+  public void toParentCoordinate(ImageCoordinate coord) {
+    // Do nothing
+  }
+
+  @Override
+  public void fromParentCoordinate(ImageCoordinate coord) {
+    // Do nothing
+  }
+
+  @Override
+  public void toParentWindow(ImageWindow window) {
+    // Do nothing
+  }
+
+  @Override
+  public void fromParentWindow(ImageWindow window) {
+    // Do nothing
+  }
+
+  private void checkCoordinate(int x, int y) {
+    Arguments.checkIndex("x", layout.getWidth(), x);
+    Arguments.checkIndex("y", layout.getHeight(), y);
+  }
+
+  private double[] getDecodedBlock(int blockX, int blockY) {
+    int slot = (blockX & 3) | ((blockY & 3) << 2);
+    // The cache belongs to the calling thread, so a miss can overwrite the slot's values in place
+    BlockCache blocks = cache.get();
+    double[] values = blocks.values[slot];
+    if (blocks.blockX[slot] != blockX || blocks.blockY[slot] != blockY) {
+      decodeBlock(data, dataOffset + layout.getBlockOffset(blockX, blockY), values,
+          blocks.palette);
+      blocks.blockX[slot] = blockX;
+      blocks.blockY[slot] = blockY;
+    }
+    return values;
+  }
+
+  private int getMinBlockY(int y, int height) {
+    return Math.min(layout.getBlockY(y), layout.getBlockY(y + height - 1));
+  }
+
+  private int getMaxBlockY(int y, int height) {
+    return Math.max(layout.getBlockY(y), layout.getBlockY(y + height - 1));
+  }
+
+  private void decode(
+      double[] channelValues, double[] alphas, float[] floatValues, float[] floatAlphas,
+      Executor executor) {
+    int width = layout.getWidth();
+    int height = layout.getHeight();
+    PixelArrays.checkWindow(this, 0, 0, width, height,
+        channelValues != null ? channelValues.length : floatValues.length,
+        alphas != null ? alphas.length : (floatAlphas != null ? floatAlphas.length : -1));
+
+    int blockRows = layout.getBlockRowCount();
+    int rowsPerTask = Math.max(1, PIXELS_PER_TASK / (layout.getBlockColumnCount()
+        * BCLayout.BLOCK_SIZE * BCLayout.BLOCK_SIZE));
+    if (executor == null || rowsPerTask >= blockRows) {
+      decodeWindow(0, 0, width, height, 0, blockRows - 1, channelValues, alphas, floatValues,
+          floatAlphas);
+      return;
+    }
+
+    // Each task writes the disjoint set of pixel rows covered by its block rows
+    List<CompletableFuture<Void>> tasks = new ArrayList<>();
+    for (int minBlockY = 0; minBlockY < blockRows; minBlockY += rowsPerTask) {
+      int first = minBlockY;
+      int last = Math.min(blockRows, minBlockY + rowsPerTask) - 1;
+      tasks.add(CompletableFuture.runAsync(
+          () -> decodeWindow(0, 0, width, height, first, last, channelValues, alphas, floatValues,
+              floatAlphas), executor));
+    }
+
+    try {
+      // allOf() completes only after every task has finished, even when one of them fails
+      CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private void decodeWindow(
+      int x, int y, int width, int height, int minBlockY, int maxBlockY, double[] channelValues,
+      double[] alphas, float[] floatValues, float[] floatAlphas) {
+    int minBlockX = layout.getBlockX(x);
+    int maxBlockX = layout.getBlockX(x + width - 1);
+
+    // Scratch space for this call or task, reused for every block it decodes
+    double[] block = new double[DECODED_BLOCK_LENGTH];
+    double[] palette = new double[PALETTE_LENGTH];
+    for (int by = minBlockY; by <= maxBlockY; by++) {
+      for (int bx = minBlockX; bx <= maxBlockX; bx++) {
+        decodeBlock(data, dataOffset + layout.getBlockOffset(bx, by), block, palette);
+
+        for (int row = 0; row < BCLayout.BLOCK_SIZE; row++) {
+          int py = layout.getPixelY(by, row);
+          if (py < y || py >= y + height) {
+            continue;
+          }
+
+          for (int col = 0; col < BCLayout.BLOCK_SIZE; col++) {
+            int px = bx * BCLayout.BLOCK_SIZE + col;
+            if (px < x || px >= x + width) {
+              continue;
+            }
+
+            int index = (py - y) * width + px - x;
+            int pixel = 4 * (row * BCLayout.BLOCK_SIZE + col);
+            double a = hasAlpha ? block[pixel + 3] : 1.0;
+            if (channelValues != null) {
+              System.arraycopy(block, pixel, channelValues, index * colorChannelCount,
+                  colorChannelCount);
+              if (alphas != null) {
+                alphas[index] = a;
+              }
+            } else {
+              for (int c = 0; c < colorChannelCount; c++) {
+                floatValues[index * colorChannelCount + c] = (float) block[pixel + c];
+              }
+              if (floatAlphas != null) {
+                floatAlphas[index] = (float) a;
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // Every block compression format stores its endpoints and indices as little endian integers
+  static long getLittleEndian(ByteData data, long offset, int count) {
+    long value = 0L;
+    for (int i = count - 1; i >= 0; i--) {
+      value = (value << 8) | (data.get(offset + i) & 0xff);
+    }
+    return value;
+  }
+
+  private static class BlockCache {
+    final int[] blockX;
+    final int[] blockY;
+    final double[][] values;
+    final double[] palette;
+
+    BlockCache() {
+      blockX = new int[CACHE_SIZE];
+      blockY = new int[CACHE_SIZE];
+      values = new double[CACHE_SIZE][DECODED_BLOCK_LENGTH];
+      palette = new double[PALETTE_LENGTH];
+      // No block has negative coordinates, so every slot starts empty
+      Arrays.fill(blockX, -1);
+      Arrays.fill(blockY, -1);
+    }
+  }
+}
@@ -0,0 +1,447 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.layout.compressed;
+
+import com.lhkbob.imaje.Mipmap;
+import com.lhkbob.imaje.Raster;
+import com.lhkbob.imaje.color.Color;
+import com.lhkbob.imaje.data.ByteData;
+import com.lhkbob.imaje.data.Data;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.util.Arguments;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * BCEncoder
+ * =========
+ *
+ * Compresses pixel arrays into one of the block compression formats, producing the {@link BCArray}
+ * that decodes the format. The color channel values of the source are encoded as they are, so the
+ * returned array has the same color type as the source when it is wrapped in an image. Color
+ * channels are clamped to `[0, 1]`, or `[-1, 1]` for the signed formats. Formats that store more
+ * channels than the source has encode the missing channels as 0, and a missing alpha channel is
+ * encoded as fully opaque.
+ *
+ * Rows of blocks are independent, so each image is split into groups of block rows that are
+ * encoded as separate tasks on the encoder's executor, which is the common fork-join pool by
+ * default. An encoder is immutable and may be used by multiple threads at once.
+ *
+ * @author Michael Ludwig
+ */
+public class BCEncoder {
+  /**
+   * The block compression formats that can be encoded.
+   */
+  public enum Format {
+    /**
+     * BC1 without an alpha channel, decoded by a {@link BC1Array}.
+     */
+    BC1_RGB(BC1Layout.BLOCK_BYTE_SIZE),
+    /**
+     * BC1 with punch-through alpha, decoded by a {@link BC1Array}.
+     */
+    BC1_RGBA(BC1Layout.BLOCK_BYTE_SIZE),
+    /**
+     * BC2 with explicit alpha, decoded by a {@link BC2Array}.
+     */
+    BC2(BC2Layout.BLOCK_BYTE_SIZE),
+    /**
+     * BC3 with interpolated alpha, decoded by a {@link BC3Array}.
+     */
+    BC3(BC3Layout.BLOCK_BYTE_SIZE),
+    /**
+     * Unsigned single channel BC4, decoded by a {@link BC4Array}.
+     */
+    BC4_UNORM(BC4Layout.BLOCK_BYTE_SIZE),
+    /**
+     * Signed single channel BC4, decoded by a {@link BC4Array}.
+     */
+    BC4_SNORM(BC4Layout.BLOCK_BYTE_SIZE),
+    /**
+     * Unsigned two channel BC5, decoded by a {@link BC5Array}.
+     */
+    BC5_UNORM(BC5Layout.BLOCK_BYTE_SIZE),
+    /**
+     * Signed two channel BC5, decoded by a {@link BC5Array}.
+     */
+    BC5_SNORM(BC5Layout.BLOCK_BYTE_SIZE);
+
+    private final int blockByteSize;
+
+    Format(int blockByteSize) {
+      this.blockByteSize = blockByteSize;
+    }
+
+    /**
+     * @return The number of bytes that encode each block
+     */
+    public int getBlockByteSize() {
+      return blockByteSize;
+    }
+  }
+
+  /**
+   * The trade off between encoding speed and the quality of the compressed image.
+   */
+  public enum Quality {
+    /**
+     * Endpoints span the bounding box of each block. This is the fastest, but colors that do not
+     * vary along the box's diagonal lose the most accuracy.
+     */
+    FAST,
+    /**
+     * Endpoints are fit to the principal axis of each block's colors (a range fit), and channel
+     * blocks choose the better of their two palette modes.
+     */
+    NORMAL,
+    /**
+     * Color endpoints are solved by a least squares cluster fit, and channel endpoints are refined
+     * by searching their neighborhood. This is several times slower than {@link #NORMAL}.
+     */
+    HIGH
+  }
+
+  // Images are encoded in tasks of at least this many pixels
+  private static final int PIXELS_PER_TASK = 1 << 16;
+
+  private final Format format;
+  private final Quality quality;
+  private final boolean topToBottom;
+  private final Data.Factory dataFactory;
+  private final Executor executor;
+
+  /**
+   * Create an encoder for `format` that uses {@link Quality#NORMAL}, stores the bottom row of
+   * blocks first, allocates with the default data factory, and encodes on the common fork-join
+   * pool.
+   *
+   * @param format
+   *     The format to encode
+   * @throws NullPointerException
+   *     if `format` is null
+   */
+  public BCEncoder(Format format) {
+    this(format, Quality.NORMAL, false, null, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Create an encoder for `format`. The data of encoded arrays is allocated with `factory`, or the
+   * default data factory if it is null. Block rows are encoded as tasks on `executor`, or on the
+   * calling thread if it is null.
+   *
+   * @param format
+   *     The format to encode
+   * @param quality
+   *     The quality of the encoded blocks
+   * @param topToBottom
+   *     True if the encoded data stores the top row of blocks first, which {@link
+   *     com.lhkbob.imaje.io.dds.DDSWriter} does not accept
+   * @param factory
+   *     The factory that allocates encoded data
+   * @param executor
+   *     The executor that encodes block rows
+   * @throws NullPointerException
+   *     if `format` or `quality` are null
+   */
+  public BCEncoder(
+      Format format, Quality quality, boolean topToBottom,
+      @Arguments.Nullable Data.Factory factory, @Arguments.Nullable Executor executor) {
+    Arguments.notNull("format", format);
+    Arguments.notNull("quality", quality);
+    if (factory == null) {
+      factory = Data.getDefaultDataFactory();
+    }
+
+    this.format = format;
+    this.quality = quality;
+    this.topToBottom = topToBottom;
+    dataFactory = factory;
+    this.executor = executor;
+  }
+
+  /**
+   * @return The format that is encoded
+   */
+  public Format getFormat() {
+    return format;
+  }
+
+  /**
+   * @return The quality of the encoded blocks
+   */
+  public Quality getQuality() {
+    return quality;
+  }
+
+  /**
+   * @return True if encoded data stores the top row of blocks first
+   */
+  public boolean isTopToBottom() {
+    return topToBottom;
+  }
+
+  /**
+   * Encode the pixel array of `image`.
+   *
+   * @param image
+   *     The image to encode
+   * @param <T>
+   *     The color type of the image
+   * @return A raster of the same color type backed by the encoded array
+   *
+   * @throws NullPointerException
+   *     if `image` is null
+   */
+  public <T extends Color> Raster<T> encode(Raster<T> image) {
+    Arguments.notNull("image", image);
+    return new Raster<>(image.getColorType(), encode(image.getPixelArray()));
+  }
+
+  /**
+   * Encode every level of `image`. The levels are encoded one after the other, and each level is
+   * split across the executor.
+   *
+   * @param image
+   *     The image to encode
+   * @param <T>
+   *     The color type of the image
+   * @return A mipmap of the same color type backed by the encoded arrays
+   *
+   * @throws NullPointerException
+   *     if `image` is null
+   */
+  public <T extends Color> Mipmap<T> encode(Mipmap<T> image) {
+    Arguments.notNull("image", image);
+    List<PixelArray> levels = new ArrayList<>(image.getMipmapCount());
+    for (PixelArray level : image.getPixelArrays()) {
+      levels.add(encode(level));
+    }
+    return new Mipmap<>(image.getColorType(), levels);
+  }
+
+  /**
+   * Encode the color channel and alpha values of `source`. The returned array is the subclass of
+   * BCArray that decodes the encoder's format.
+   *
+   * @param source
+   *     The pixel array to encode
+   * @return A new array backed by the encoded data
+   *
+   * @throws NullPointerException
+   *     if `source` is null
+   */
+  public BCArray encode(PixelArray source) {
+    Arguments.notNull("source", source);
+    BCLayout layout = createLayout(source.getWidth(), source.getHeight());
+    ByteData data = dataFactory.newByteData(layout.getRequiredByteCount());
+
+    int blockRows = layout.getBlockRowCount();
+    int rowsPerTask = Math.max(1, PIXELS_PER_TASK / (layout.getBlockColumnCount()
+        * BCLayout.BLOCK_SIZE * BCLayout.BLOCK_SIZE));
+    if (executor == null || rowsPerTask >= blockRows) {
+      encodeBlockRows(source, layout, data, 0, blockRows - 1);
+    } else {
+      // Each task writes the disjoint range of bytes for its block rows
+      List<CompletableFuture<Void>> tasks = new ArrayList<>();
+      for (int minBlockY = 0; minBlockY < blockRows; minBlockY += rowsPerTask) {
+        int first = minBlockY;
+        int last = Math.min(blockRows, minBlockY + rowsPerTask) - 1;
+        tasks.add(CompletableFuture
+            .runAsync(() -> encodeBlockRows(source, layout, data, first, last), executor));
+      }
+
+      try {
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        } else if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        throw e;
+      }
+    }
+
+    return createArray(layout, data);
+  }
+
+  private BCLayout createLayout(int width, int height) {
+    switch (format) {
+    case BC1_RGB:
+    case BC1_RGBA:
+      return new BC1Layout(width, height, topToBottom);
+    case BC2:
+      return new BC2Layout(width, height, topToBottom);
+    case BC3:
+      return new BC3Layout(width, height, topToBottom);
+    case BC4_UNORM:
+    case BC4_SNORM:
+      return new BC4Layout(width, height, topToBottom);
+    case BC5_UNORM:
+    case BC5_SNORM:
+      return new BC5Layout(width, height, topToBottom);
+    default:
+      throw new UnsupportedOperationException("Unknown format: " + format);
+    }
+  }
+
+  private BCArray createArray(BCLayout layout, ByteData data) {
+    switch (format) {
+    case BC1_RGB:
+      return new BC1Array((BC1Layout) layout, data, 0, false);
+    case BC1_RGBA:
+      return new BC1Array((BC1Layout) layout, data, 0, true);
+    case BC2:
+      return new BC2Array((BC2Layout) layout, data, 0);
+    case BC3:
+      return new BC3Array((BC3Layout) layout, data, 0);
+    case BC4_UNORM:
+      return new BC4Array((BC4Layout) layout, data, 0, false);
+    case BC4_SNORM:
+      return new BC4Array((BC4Layout) layout, data, 0, true);
+    case BC5_UNORM:
+      return new BC5Array((BC5Layout) layout, data, 0, false);
+    case BC5_SNORM:
+      return new BC5Array((BC5Layout) layout, data, 0, true);
+    default:
+      throw new UnsupportedOperationException("Unknown format: " + format);
+    }
+  }
+
+  private void encodeBlockRows(
+      PixelArray source, BCLayout layout, ByteData data, int minBlockY, int maxBlockY) {
+    // Block encoders keep scratch state, so every task has its own
+    ColorBlockEncoder colorEncoder = null;
+    ChannelBlockEncoder channelEncoder = null;
+    switch (format) {
+    case BC1_RGB:
+      colorEncoder = new ColorBlockEncoder(false, quality);
+      break;
+    case BC1_RGBA:
+      colorEncoder = new ColorBlockEncoder(true, quality);
+      break;
+    case BC2:
+      colorEncoder = new ColorBlockEncoder(false, quality);
+      break;
+    case BC3:
+      colorEncoder = new ColorBlockEncoder(false, quality);
+      channelEncoder = new ChannelBlockEncoder(false, quality);
+      break;
+    case BC4_UNORM:
+    case BC5_UNORM:
+      channelEncoder = new ChannelBlockEncoder(false, quality);
+      break;
+    case BC4_SNORM:
+    case BC5_SNORM:
+      channelEncoder = new ChannelBlockEncoder(true, quality);
+      break;
+    }
+
+    int width = source.getWidth();
+    int channelCount = source.getColorChannelCount();
+    int blockColumns = layout.getBlockColumnCount();
+    byte[] encoded = new byte[blockColumns * format.getBlockByteSize()];
+    double[] block = new double[BCArray.DECODED_BLOCK_LENGTH];
+    float[] values = new float[width * BCLayout.BLOCK_SIZE * channelCount];
+    float[] alphas = new float[width * BCLayout.BLOCK_SIZE];
+
+    for (int by = minBlockY; by <= maxBlockY; by++) {
+      // The pixel rows of the block row, clipped to the image
+      int rowA = clampY(layout, layout.getPixelY(by, 0));
+      int rowB = clampY(layout, layout.getPixelY(by, BCLayout.BLOCK_SIZE - 1));
+      int minY = Math.min(rowA, rowB);
+      int height = Math.abs(rowB - rowA) + 1;
+      source.getWindow(0, minY, width, height, values, alphas);
+
+      for (int bx = 0; bx < blockColumns; bx++) {
+        // Padding pixels repeat the nearest pixel of the image so they do not skew the endpoints
+        for (int row = 0; row < BCLayout.BLOCK_SIZE; row++) {
+          int py = clampY(layout, layout.getPixelY(by, row)) - minY;
+          for (int col = 0; col < BCLayout.BLOCK_SIZE; col++) {
+            int px = Math.min(width - 1, bx * BCLayout.BLOCK_SIZE + col);
+            int pixel = 4 * (row * BCLayout.BLOCK_SIZE + col);
+            int index = py * width + px;
+            for (int c = 0; c < 3; c++) {
+              block[pixel + c] = c < channelCount ? values[index * channelCount + c] : 0.0;
+            }
+            block[pixel + 3] = source.hasAlphaChannel() ? alphas[index] : 1.0;
+          }
+        }
+
+        int offset = bx * format.getBlockByteSize();
+        switch (format) {
+        case BC1_RGB:
+        case BC1_RGBA:
+          colorEncoder.encode(block, encoded, offset);
+          break;
+        case BC2:
+          encodeExplicitAlpha(block, encoded, offset);
+          colorEncoder.encode(block, encoded, offset + 8);
+          break;
+        case BC3:
+          channelEncoder.encode(block, 3, encoded, offset);
+          colorEncoder.encode(block, encoded, offset + 8);
+          break;
+        case BC4_UNORM:
+        case BC4_SNORM:
+          channelEncoder.encode(block, 0, encoded, offset);
+          break;
+        case BC5_UNORM:
+        case BC5_SNORM:
+          channelEncoder.encode(block, 0, encoded, offset);
+          channelEncoder.encode(block, 1, encoded, offset + 8);
+          break;
+        }
+      }
+
+      data.set(layout.getBlockOffset(0, by), encoded);
+    }
+  }
+
+  private static int clampY(BCLayout layout, int y) {
+    return Math.max(0, Math.min(layout.getHeight() - 1, y));
+  }
+
+  private static void encodeExplicitAlpha(double[] block, byte[] out, int offset) {
+    for (int i = 0; i < 16; i += 2) {
+      int a0 = (int) Math.round(Math.max(0.0, Math.min(1.0, block[4 * i + 3])) * 15.0);
+      int a1 = (int) Math.round(Math.max(0.0, Math.min(1.0, block[4 * i + 7])) * 15.0);
+      out[offset + i / 2] = (byte) (a0 | (a1 << 4));
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.layout.compressed;
+
+import com.lhkbob.imaje.util.Arguments;
+
+/**
+ * BCLayout
+ * ========
+ *
+ * The arrangement of a block compressed image within a data buffer. The image is divided into a
+ * grid of 4x4 pixel blocks that are each encoded into a fixed number of bytes, and the blocks are
+ * stored consecutively a row of blocks at a time. Images whose dimensions are not multiples of four
+ * are padded to a whole number of blocks, and the padding pixels are ignored.
+ *
+ * The first row of blocks is the bottom of the image, which is how DDS files are read and written,
+ * or the top of the image if the layout was created with `topToBottom` set to true. Within a
+ * block, pixels are stored in the same row order as the blocks themselves.
+ *
+ * Subclasses only define the number of bytes that encode a block for the specific compression
+ * format.
+ *
+ * @author Michael Ludwig
+ */
+public abstract class BCLayout {
+  /**
+   * The width and height of every block, in pixels.
+   */
+  public static final int BLOCK_SIZE = 4;
+
+  private final int width;
+  private final int height;
+  private final int blockByteSize;
+  private final boolean topToBottom;
+
+  /**
+   * Create a new layout for an image of the given dimensions.
+   *
+   * @param width
+   *     The width of the image
+   * @param height
+   *     The height of the image
+   * @param blockByteSize
+   *     The number of bytes that encode each block
+   * @param topToBottom
+   *     True if the first row of blocks is at the top of the image
+   * @throws IllegalArgumentException
+   *     if `width`, `height`, or `blockByteSize` are not positive
+   */
+  protected BCLayout(int width, int height, int blockByteSize, boolean topToBottom) {
+    Arguments.isPositive("width", width);
+    Arguments.isPositive("height", height);
+    Arguments.isPositive("blockByteSize", blockByteSize);
+    this.width = width;
+    this.height = height;
+    this.blockByteSize = blockByteSize;
+    this.topToBottom = topToBottom;
+  }
+
+  /**
+   * @return The width of the image in pixels
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * @return The height of the image in pixels
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * @return True if the first row of blocks is at the top of the image
+   */
+  public boolean isTopToBottom() {
+    return topToBottom;
+  }
+
+  /**
+   * @return The number of bytes that encode a single block
+   */
+  public int getBlockByteSize() {
+    return blockByteSize;
+  }
+
+  /**
+   * @return The number of blocks in each row of blocks
+   */
+  public int getBlockColumnCount() {
+    return (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+  }
+
+  /**
+   * @return The number of rows of blocks
+   */
+  public int getBlockRowCount() {
+    return (height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+  }
+
+  /**
+   * @return The total number of bytes required to store the image
+   */
+  public long getRequiredByteCount() {
+    return (long) getBlockColumnCount() * getBlockRowCount() * blockByteSize;
+  }
+
+  /**
+   * Get the byte offset of the block at `(blockX, blockY)`, relative to the start of the image's
+   * data. Block `(0, 0)` is the first block stored.
+   *
+   * @param blockX
+   *     The column of the block
+   * @param blockY
+   *     The row of the block, in storage order
+   * @return The byte offset of the block
+   * @throws IndexOutOfBoundsException
+   *     if the block is outside of the block grid
+   */
+  public long getBlockOffset(int blockX, int blockY) {
+    Arguments.checkIndex("blockX", getBlockColumnCount(), blockX);
+    Arguments.checkIndex("blockY", getBlockRowCount(), blockY);
+    return ((long) blockY * getBlockColumnCount() + blockX) * blockByteSize;
+  }
+
+  /**
+   * @param x
+   *     The x coordinate of a pixel
+   * @return The column of the block containing pixels with the given x coordinate
+   */
+  public int getBlockX(int x) {
+    return x / BLOCK_SIZE;
+  }
+
+  /**
+   * @param y
+   *     The y coordinate of a pixel, where `0` is the bottom of the image
+   * @return The row of the block, in storage order, containing pixels with the given y coordinate
+   */
+  public int getBlockY(int y) {
+    return getStorageRow(y) / BLOCK_SIZE;
+  }
+
+  /**
+   * Get the index of the pixel at `(x, y)` within the 16 pixels of its block. Pixels are indexed in
+   * storage order, so index `0` is the first pixel of the first row stored in the block.
+   *
+   * @param x
+   *     The x coordinate of the pixel
+   * @param y
+   *     The y coordinate of the pixel, where `0` is the bottom of the image
+   * @return The index of the pixel within its block, from 0 to 15
+   */
+  public int getPixelIndex(int x, int y) {
+    return (getStorageRow(y) % BLOCK_SIZE) * BLOCK_SIZE + x % BLOCK_SIZE;
+  }
+
+  /**
+   * Get the y coordinate of the pixels stored in row `row` of block row `blockY`. The returned
+   * coordinate may be outside of the image if the block contains padding.
+   *
+   * @param blockY
+   *     The row of the block, in storage order
+   * @param row
+   *     The row of pixels within the block, from 0 to 3
+   * @return The y coordinate of the pixels, where `0` is the bottom of the image
+   */
+  public int getPixelY(int blockY, int row) {
+    int storageRow = blockY * BLOCK_SIZE + row;
+    return topToBottom ? height - 1 - storageRow : storageRow;
+  }
+
+  private int getStorageRow(int y) {
+    return topToBottom ? height - 1 - y : y;
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.layout.compressed;
+
+/**
+ * ChannelBlockEncoder
+ * ===================
+ *
+ * Encodes 16 values of a single channel into the 8 byte block shared by BC4, BC5, and the alpha of
+ * BC3. Endpoints are chosen according to the encoder's quality and every value is then assigned the
+ * nearest value of the block's palette, as computed by {@link BC4Array#getPalette(int, int,
+ * boolean, double[])}, so the error that is minimized is the error seen by decoders.
+ *
+ * @author Michael Ludwig
+ */
+final class ChannelBlockEncoder {
+  // The largest change made to each endpoint when refining them for BCEncoder.Quality.HIGH
+  private static final int REFINE_DISTANCE = 2;
+
+  private final boolean signed;
+  private final BCEncoder.Quality quality;
+
+  private final double[] values;
+  private final double[] palette;
+  private final int[] indices;
+  private final int[] bestIndices;
+
+  ChannelBlockEncoder(boolean signed, BCEncoder.Quality quality) {
+    this.signed = signed;
+    this.quality = quality;
+    values = new double[16];
+    palette = new double[8];
+    indices = new int[16];
+    bestIndices = new int[16];
+  }
+
+  /**
+   * Encode the values of `channel` within `block`, which holds RGBA values for each of the 16
+   * pixels, into the 8 bytes of `out` starting at `offset`.
+   */
+  void encode(double[] block, int channel, byte[] out, int offset) {
+    double min = signed ? -1.0 : 0.0;
+    double max = 1.0;
+
+    double low = max;
+    double high = min;
+    // The range of the values that are not exactly representable by the 6 value palette
+    double innerLow = max;
+    double innerHigh = min;
+    for (int i = 0; i < 16; i++) {
+      double v = Math.max(min, Math.min(max, block[4 * i + channel]));
+      values[i] = v;
+      low = Math.min(low, v);
+      high = Math.max(high, v);
+      if (v > min && v < max) {
+        innerLow = Math.min(innerLow, v);
+        innerHigh = Math.max(innerHigh, v);
+      }
+    }
+
+    // The 8 value palette is selected when the first endpoint is greater than the second
+    int endpoint0 = quantize(high);
+    int endpoint1 = quantize(low);
+    double bestError = fit(endpoint0, endpoint1, bestIndices);
+    int best0 = endpoint0;
+    int best1 = endpoint1;
+
+    if (quality != BCEncoder.Quality.FAST) {
+      // The 6 value palette spans the inner values and represents the range limits exactly
+      int inner0 = innerLow <= innerHigh ? quantize(innerLow) : quantize(min);
+      int inner1 = innerLow <= innerHigh ? quantize(innerHigh) : quantize(min);
+      double error = fit(inner0, inner1, indices);
+      if (error < bestError) {
+        bestError = error;
+        best0 = inner0;
+        best1 = inner1;
+        System.arraycopy(indices, 0, bestIndices, 0, 16);
+      }
+    }
+
+    if (quality == BCEncoder.Quality.HIGH && bestError > 0.0) {
+      // Search the neighborhood of the best endpoints, which compensates for rounding the
+      // endpoints independently of how the interpolated values fall
+      int center0 = best0;
+      int center1 = best1;
+      for (int d0 = -REFINE_DISTANCE; d0 <= REFINE_DISTANCE; d0++) {
+        for (int d1 = -REFINE_DISTANCE; d1 <= REFINE_DISTANCE; d1++) {
+          int e0 = clampEndpoint(center0 + d0);
+          int e1 = clampEndpoint(center1 + d1);
+          // Only consider endpoints that keep the palette mode that was chosen
+          if ((e0 > e1) != (center0 > center1)) {
+            continue;
+          }
+          double error = fit(e0, e1, indices);
+          if (error < bestError) {
+            bestError = error;
+            best0 = e0;
+            best1 = e1;
+            System.arraycopy(indices, 0, bestIndices, 0, 16);
+          }
+        }
+      }
+    }
+
+    out[offset] = (byte) best0;
+    out[offset + 1] = (byte) best1;
+    long bits = 0L;
+    for (int i = 0; i < 16; i++) {
+      bits |= ((long) bestIndices[i]) << (3 * i);
+    }
+    for (int i = 0; i < 6; i++) {
+      out[offset + 2 + i] = (byte) (bits >>> (8 * i));
+    }
+  }
+
+  private double fit(int endpoint0, int endpoint1, int[] indices) {
+    BC4Array.getPalette(endpoint0, endpoint1, signed, palette);
+    double error = 0.0;
+    for (int i = 0; i < 16; i++) {
+      int best = 0;
+      double bestError = Double.POSITIVE_INFINITY;
+      for (int j = 0; j < 8; j++) {
+        double d = palette[j] - values[i];
+        if (d * d < bestError) {
+          bestError = d * d;
+          best = j;
+        }
+      }
+      indices[i] = best;
+      error += bestError;
+    }
+    return error;
+  }
+
+  private int quantize(double value) {
+    return clampEndpoint((int) Math.round(value * (signed ? 127.0 : 255.0)));
+  }
+
+  private int clampEndpoint(int endpoint) {
+    return signed ? Math.max(-127, Math.min(127, endpoint)) : Math.max(0, Math.min(255, endpoint));
+  }
+}
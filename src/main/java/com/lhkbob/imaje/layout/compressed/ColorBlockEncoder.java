@@ -0,0 +1,356 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.layout.compressed;
+
+import java.util.Arrays;
+
+/**
+ * ColorBlockEncoder
+ * =================
+ *
+ * Encodes the RGB values of 16 pixels into the 8 byte color block shared by BC1, BC2, and BC3.
+ * The endpoints depend on the encoder's quality:
+ *
+ * * {@link BCEncoder.Quality#FAST} uses the corners of the block's bounding box.
+ * * {@link BCEncoder.Quality#NORMAL} uses the pixels at either end of the principal axis of the
+ *   block's colors, commonly called a range fit.
+ * * {@link BCEncoder.Quality#HIGH} also performs a cluster fit, which orders the pixels along the
+ *   principal axis and solves for the least squares endpoints of every partition of that order
+ *   into the palette's clusters.
+ *
+ * Once the endpoints are quantized, every pixel is assigned the nearest color of the palette
+ * computed by {@link BC1Array#getPalette(int, int, boolean, double[])}. When the block is encoded
+ * with punch-through alpha, pixels with alpha below one half are encoded as transparent black.
+ *
+ * @author Michael Ludwig
+ */
+final class ColorBlockEncoder {
+  private static final int POWER_ITERATIONS = 8;
+
+  private final boolean punchThroughAlpha;
+  private final BCEncoder.Quality quality;
+
+  // The colors of the opaque pixels, compacted into the first 3 * count values
+  private final double[] colors;
+  private final int[] pixels;
+  private final boolean[] transparent;
+  private int count;
+
+  private final double[] mean;
+  private final double[] covariance;
+  private final double[] nextAxis;
+  private final double[] axis;
+  private final double[] endpointA;
+  private final double[] endpointB;
+  private final double[] clusterA;
+  private final double[] clusterB;
+  private final double[] projections;
+  private final int[] order;
+  private final double[] prefixSums;
+
+  private final double[] palette;
+  private final int[] indices;
+  private final int[] bestIndices;
+  private int fitColor0;
+  private int fitColor1;
+
+  ColorBlockEncoder(boolean punchThroughAlpha, BCEncoder.Quality quality) {
+    this.punchThroughAlpha = punchThroughAlpha;
+    this.quality = quality;
+    colors = new double[48];
+    pixels = new int[16];
+    transparent = new boolean[16];
+    mean = new double[3];
+    covariance = new double[9];
+    nextAxis = new double[3];
+    axis = new double[3];
+    endpointA = new double[3];
+    endpointB = new double[3];
+    clusterA = new double[3];
+    clusterB = new double[3];
+    projections = new double[16];
+    order = new int[16];
+    prefixSums = new double[51];
+    palette = new double[16];
+    indices = new int[16];
+    bestIndices = new int[16];
+  }
+
+  /**
+   * Encode the RGB values of `block`, which holds RGBA values for each of the 16 pixels, into the
+   * 8 bytes of `out` starting at `offset`.
+   */
+  void encode(double[] block, byte[] out, int offset) {
+    count = 0;
+    for (int i = 0; i < 16; i++) {
+      transparent[i] = punchThroughAlpha && block[4 * i + 3] < 0.5;
+      if (!transparent[i]) {
+        for (int c = 0; c < 3; c++) {
+          colors[3 * count + c] = Math.max(0.0, Math.min(1.0, block[4 * i + c]));
+        }
+        pixels[count] = i;
+        count++;
+      }
+    }
+
+    int color0;
+    int color1;
+    if (count == 0) {
+      // Equal endpoints select the 3 color palette, and index 3 is transparent for every pixel
+      color0 = 0;
+      color1 = 0;
+      for (int i = 0; i < 16; i++) {
+        bestIndices[i] = 3;
+      }
+    } else {
+      boolean threeColors = count < 16;
+      if (quality == BCEncoder.Quality.FAST) {
+        boundingBoxFit();
+      } else {
+        computePrincipalAxis();
+        rangeFit();
+      }
+      double bestError = fit(endpointA, endpointB, threeColors, bestIndices);
+      color0 = fitColor0;
+      color1 = fitColor1;
+
+      if (quality == BCEncoder.Quality.HIGH && bestError > 0.0 && clusterFit(threeColors)) {
+        double error = fit(endpointA, endpointB, threeColors, indices);
+        if (error < bestError) {
+          color0 = fitColor0;
+          color1 = fitColor1;
+          System.arraycopy(indices, 0, bestIndices, 0, 16);
+        }
+      }
+    }
+
+    out[offset] = (byte) color0;
+    out[offset + 1] = (byte) (color0 >> 8);
+    out[offset + 2] = (byte) color1;
+    out[offset + 3] = (byte) (color1 >> 8);
+    int bits = 0;
+    for (int i = 0; i < 16; i++) {
+      bits |= bestIndices[i] << (2 * i);
+    }
+    for (int i = 0; i < 4; i++) {
+      out[offset + 4 + i] = (byte) (bits >>> (8 * i));
+    }
+  }
+
+  private void boundingBoxFit() {
+    for (int c = 0; c < 3; c++) {
+      endpointA[c] = 0.0;
+      endpointB[c] = 1.0;
+      for (int i = 0; i < count; i++) {
+        endpointA[c] = Math.max(endpointA[c], colors[3 * i + c]);
+        endpointB[c] = Math.min(endpointB[c], colors[3 * i + c]);
+      }
+    }
+  }
+
+  private void rangeFit() {
+    int max = 0;
+    int min = 0;
+    for (int i = 0; i < count; i++) {
+      projections[i] = project(i);
+      if (projections[i] > projections[max]) {
+        max = i;
+      }
+      if (projections[i] < projections[min]) {
+        min = i;
+      }
+    }
+    System.arraycopy(colors, 3 * max, endpointA, 0, 3);
+    System.arraycopy(colors, 3 * min, endpointB, 0, 3);
+  }
+
+  private boolean clusterFit(boolean threeColors) {
+    // Order the colors along the principal axis, the projections are left by rangeFit()
+    for (int i = 0; i < count; i++) {
+      int j = i;
+      while (j > 0 && projections[order[j - 1]] > projections[i]) {
+        order[j] = order[j - 1];
+        j--;
+      }
+      order[j] = i;
+    }
+    for (int c = 0; c < 3; c++) {
+      prefixSums[c] = 0.0;
+    }
+    for (int i = 0; i < count; i++) {
+      for (int c = 0; c < 3; c++) {
+        prefixSums[3 * (i + 1) + c] = prefixSums[3 * i + c] + colors[3 * order[i] + c];
+      }
+    }
+
+    // The weight of endpoint A for each cluster, the 3 color palette leaves the last cluster empty
+    double w1 = threeColors ? 0.5 : 2.0 / 3.0;
+    double w2 = threeColors ? 0.0 : 1.0 / 3.0;
+
+    double bestError = Double.POSITIVE_INFINITY;
+    double[] a = clusterA;
+    double[] b = clusterB;
+    for (int i = 0; i <= count; i++) {
+      for (int j = i; j <= count; j++) {
+        for (int k = threeColors ? count : j; k <= count; k++) {
+          // Clusters are [0, i) with weight 1, [i, j) with w1, [j, k) with w2, [k, count) with 0
+          int n0 = i;
+          int n1 = j - i;
+          int n2 = k - j;
+          int n3 = count - k;
+          double alpha2 = n0 + w1 * w1 * n1 + w2 * w2 * n2;
+          double beta2 = (1 - w1) * (1 - w1) * n1 + (1 - w2) * (1 - w2) * n2 + n3;
+          double alphaBeta = w1 * (1 - w1) * n1 + w2 * (1 - w2) * n2;
+          double det = alpha2 * beta2 - alphaBeta * alphaBeta;
+          if (Math.abs(det) < 1e-9) {
+            continue;
+          }
+
+          double error = 0.0;
+          for (int c = 0; c < 3; c++) {
+            double s0 = prefixSums[3 * i + c];
+            double s1 = prefixSums[3 * j + c] - s0;
+            double s2 = prefixSums[3 * k + c] - s0 - s1;
+            double s3 = prefixSums[3 * count + c] - s0 - s1 - s2;
+            double alphaX = s0 + w1 * s1 + w2 * s2;
+            double betaX = (1 - w1) * s1 + (1 - w2) * s2 + s3;
+
+            a[c] = Math.max(0.0, Math.min(1.0, (alphaX * beta2 - betaX * alphaBeta) / det));
+            b[c] = Math.max(0.0, Math.min(1.0, (betaX * alpha2 - alphaX * alphaBeta) / det));
+            // The squared error, minus the sum of squared colors that is the same for all fits
+            error += alpha2 * a[c] * a[c] + beta2 * b[c] * b[c] + 2.0 * alphaBeta * a[c] * b[c]
+                - 2.0 * (a[c] * alphaX + b[c] * betaX);
+          }
+
+          if (error < bestError) {
+            bestError = error;
+            System.arraycopy(a, 0, endpointA, 0, 3);
+            System.arraycopy(b, 0, endpointB, 0, 3);
+          }
+        }
+      }
+    }
+    return bestError < Double.POSITIVE_INFINITY;
+  }
+
+  private void computePrincipalAxis() {
+    Arrays.fill(mean, 0.0);
+    for (int i = 0; i < count; i++) {
+      for (int c = 0; c < 3; c++) {
+        mean[c] += colors[3 * i + c] / count;
+      }
+    }
+    Arrays.fill(covariance, 0.0);
+    for (int i = 0; i < count; i++) {
+      for (int r = 0; r < 3; r++) {
+        for (int c = 0; c < 3; c++) {
+          covariance[3 * r + c] += (colors[3 * i + r] - mean[r]) * (colors[3 * i + c] - mean[c]);
+        }
+      }
+    }
+
+    // Power iteration converges on the eigenvector with the largest eigenvalue
+    axis[0] = 1.0;
+    axis[1] = 1.0;
+    axis[2] = 1.0;
+    double[] next = nextAxis;
+    for (int iter = 0; iter < POWER_ITERATIONS; iter++) {
+      double length = 0.0;
+      for (int r = 0; r < 3; r++) {
+        next[r] = covariance[3 * r] * axis[0] + covariance[3 * r + 1] * axis[1]
+            + covariance[3 * r + 2] * axis[2];
+        length = Math.max(length, Math.abs(next[r]));
+      }
+      if (length < 1e-12) {
+        // Every color is the same, so any axis works
+        break;
+      }
+      for (int r = 0; r < 3; r++) {
+        axis[r] = next[r] / length;
+      }
+    }
+  }
+
+  private double project(int color) {
+    return colors[3 * color] * axis[0] + colors[3 * color + 1] * axis[1]
+        + colors[3 * color + 2] * axis[2];
+  }
+
+  private double fit(double[] a, double[] b, boolean threeColors, int[] indices) {
+    int color0 = quantize(a);
+    int color1 = quantize(b);
+    // The endpoint order selects the palette, the 4 color palette needs color0 > color1 for BC1
+    // and keeping that order for BC2 and BC3 matches decoders that mistakenly check it there too
+    if (threeColors ? color0 > color1 : color0 < color1) {
+      int t = color0;
+      color0 = color1;
+      color1 = t;
+    }
+    fitColor0 = color0;
+    fitColor1 = color1;
+
+    BC1Array.getPalette(color0, color1, punchThroughAlpha, palette);
+    // Index 3 of the 3 color palette is only used for transparent pixels
+    int choices = !punchThroughAlpha || color0 > color1 ? 4 : 3;
+    double error = 0.0;
+    for (int i = 0; i < 16; i++) {
+      if (transparent[i]) {
+        indices[i] = 3;
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      int best = 0;
+      double bestError = Double.POSITIVE_INFINITY;
+      for (int j = 0; j < choices; j++) {
+        double e = 0.0;
+        for (int c = 0; c < 3; c++) {
+          double d = palette[4 * j + c] - colors[3 * i + c];
+          e += d * d;
+        }
+        if (e < bestError) {
+          bestError = e;
+          best = j;
+        }
+      }
+      indices[pixels[i]] = best;
+      error += bestError;
+    }
+    return error;
+  }
+
+  private static int quantize(double[] color) {
+    int r = (int) Math.round(color[0] * 31.0);
+    int g = (int) Math.round(color[1] * 63.0);
+    int b = (int) Math.round(color[2] * 31.0);
+    return (r << 11) | (g << 5) | b;
+  }
+}
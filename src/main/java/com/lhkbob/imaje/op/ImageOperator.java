@@ -31,8 +31,769 @@
  */
 package com.lhkbob.imaje.op;
 
+import com.lhkbob.imaje.Mipmap;
+import com.lhkbob.imaje.Raster;
+import com.lhkbob.imaje.Volume;
+import com.lhkbob.imaje.color.Color;
+import com.lhkbob.imaje.color.ColorSpace;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.sampler.BoundaryStrategy;
+import com.lhkbob.imaje.util.Arguments;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
+ * ImageOperator
+ * =============
+ *
+ * ImageOperator executes {@link PixelOperator PixelOperators} and {@link WindowOperator
+ * WindowOperators} over entire images. The output image is divided into square tiles that are
+ * processed in parallel on a {@link ForkJoinPool}. Each tile of input pixels is read with a single
+ * bulk {@link PixelArray#getWindow(int, int, int, int, double[], double[])} call, which lets the
+ * pixel array walk its data layout row segment by row segment, and the computed tile is written
+ * back the same way.
+ *
+ * Every worker thread owns a set of flyweight color instances and tile buffers that are reused
+ * for every pixel and tile it processes, so running an operator does not allocate per pixel.
+ *
+ * The input and output images must have the same dimensions. A PixelOperator may use the same
+ * image for input and output, but a WindowOperator may not since neighboring tiles would observe
+ * partially written output.
  *
+ * @author Michael Ludwig
  */
 public class ImageOperator {
+  /**
+   * The default width and height of the tiles processed by each task.
+   */
+  public static final int DEFAULT_TILE_SIZE = 64;
+
+  private final ForkJoinPool pool;
+  private final int tileSize;
+
+  /**
+   * Create an ImageOperator that runs on the {@link ForkJoinPool#commonPool() common pool} and
+   * processes tiles that are {@link #DEFAULT_TILE_SIZE} pixels wide and tall.
+   */
+  public ImageOperator() {
+    this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+  }
+
+  /**
+   * Create an ImageOperator that runs on the given `pool` and processes tiles that are `tileSize`
+   * pixels wide and tall. Larger tiles amortize the cost of bulk reads and writes better, while
+   * smaller tiles balance work across threads better and keep each worker's buffers in cache.
+   *
+   * @param pool
+   *     The pool that executes tiles
+   * @param tileSize
+   *     The width and height of each tile
+   * @throws NullPointerException
+   *     if `pool` is null
+   * @throws IllegalArgumentException
+   *     if `tileSize` is not positive
+   */
+  public ImageOperator(ForkJoinPool pool, int tileSize) {
+    Arguments.notNull("pool", pool);
+    Arguments.isPositive("tileSize", tileSize);
+    this.pool = pool;
+    this.tileSize = tileSize;
+  }
+
+  /**
+   * @return The pool that executes tiles
+   */
+  public ForkJoinPool getPool() {
+    return pool;
+  }
+
+  /**
+   * @return The width and height of each tile
+   */
+  public int getTileSize() {
+    return tileSize;
+  }
+
+  /**
+   * Apply `op` to every pixel of `input`, storing the results in `output`.
+   *
+   * @param input
+   *     The input image
+   * @param output
+   *     The output image, which may be `input`
+   * @param op
+   *     The operator to run
+   * @throws IllegalArgumentException
+   *     if the images have different dimensions, or if their channel counts don't match the
+   *     operator's color spaces
+   */
+  public <I extends Color<I, SI>, SI extends ColorSpace<I, SI>, O extends Color<O, SO>,
+      SO extends ColorSpace<O, SO>> void apply(
+      Raster<I> input, Raster<O> output, PixelOperator<I, SI, O, SO> op) {
+    apply(input.getPixelArray(), output.getPixelArray(), op);
+  }
+
+  /**
+   * Apply `op` to every pixel of every level in `input`, storing the results in the corresponding
+   * level of `output`.
+   *
+   * @param input
+   *     The input image
+   * @param output
+   *     The output image, which may be `input`
+   * @param op
+   *     The operator to run
+   * @throws IllegalArgumentException
+   *     if the images have different mipmap counts or dimensions, or if their channel counts don't
+   *     match the operator's color spaces
+   */
+  public <I extends Color<I, SI>, SI extends ColorSpace<I, SI>, O extends Color<O, SO>,
+      SO extends ColorSpace<O, SO>> void apply(
+      Mipmap<I> input, Mipmap<O> output, PixelOperator<I, SI, O, SO> op) {
+    Arguments.equals("mipmap count", input.getMipmapCount(), output.getMipmapCount());
+    for (int i = 0; i < input.getMipmapCount(); i++) {
+      apply(input.getPixelArray(i), output.getPixelArray(i), op);
+    }
+  }
+
+  /**
+   * Apply `op` to every pixel of every depth slice in `input`, storing the results in the
+   * corresponding slice of `output`.
+   *
+   * @param input
+   *     The input image
+   * @param output
+   *     The output image, which may be `input`
+   * @param op
+   *     The operator to run
+   * @throws IllegalArgumentException
+   *     if the images have different dimensions, or if their channel counts don't match the
+   *     operator's color spaces
+   */
+  public <I extends Color<I, SI>, SI extends ColorSpace<I, SI>, O extends Color<O, SO>,
+      SO extends ColorSpace<O, SO>> void apply(
+      Volume<I> input, Volume<O> output, PixelOperator<I, SI, O, SO> op) {
+    Arguments.equals("depth", input.getDepth(), output.getDepth());
+    for (int z = 0; z < input.getDepth(); z++) {
+      apply(input.getPixelArray(z), output.getPixelArray(z), op);
+    }
+  }
+
+  /**
+   * Apply `op` to every pixel of the `input` pixel array, storing the results in `output`. The
+   * input array's color channels must be interpretable in the operator's input space and the
+   * output array's color channels in the operator's output space.
+   *
+   * @param input
+   *     The input pixels
+   * @param output
+   *     The output pixels, which may be `input`
+   * @param op
+   *     The operator to run
+   * @throws IllegalArgumentException
+   *     if the arrays have different dimensions, or if their channel counts don't match the
+   *     operator's color spaces
+   */
+  public <I extends Color<I, SI>, SI extends ColorSpace<I, SI>, O extends Color<O, SO>,
+      SO extends ColorSpace<O, SO>> void apply(
+      PixelArray input, PixelArray output, PixelOperator<I, SI, O, SO> op) {
+    checkCompatible(input, output, op.getInputSpace(), op.getOutputSpace());
+
+    ThreadLocal<PixelWorker<I, SI, O, SO>> workers = ThreadLocal
+        .withInitial(() -> new PixelWorker<>(op, tileSize));
+    forEachTile(output.getWidth(), output.getHeight(), tileSize, tileSize,
+        (x, y, width, height) -> workers.get().process(input, output, x, y, width, height));
+  }
+
+  /**
+   * Apply `op` to the neighborhood of every pixel of `input`, storing the results in `output`.
+   * Neighbors outside of `input` are resolved with `boundary`.
+   *
+   * @param input
+   *     The input image
+   * @param output
+   *     The output image, which cannot be `input`
+   * @param op
+   *     The operator to run
+   * @param boundary
+   *     The strategy for neighbors outside of the input image
+   * @throws IllegalArgumentException
+   *     if the images are the same, have different dimensions, or if their channel counts don't
+   *     match the operator's color spaces
+   */
+  public <I extends Color<I, SI>, SI extends ColorSpace<I, SI>, O extends Color<O, SO>,
+      SO extends ColorSpace<O, SO>> void apply(
+      Raster<I> input, Raster<O> output, WindowOperator<I, SI, O, SO> op,
+      BoundaryStrategy<I> boundary) {
+    apply(input.getPixelArray(), output.getPixelArray(), op, boundary);
+  }
+
+  /**
+   * Apply `op` to the neighborhood of every pixel of every level in `input`, storing the results
+   * in the corresponding level of `output`. Neighbors outside of a level are resolved with
+   * `boundary`.
+   *
+   * @param input
+   *     The input image
+   * @param output
+   *     The output image, which cannot be `input`
+   * @param op
+   *     The operator to run
+   * @param boundary
+   *     The strategy for neighbors outside of the input image
+   * @throws IllegalArgumentException
+   *     if the images are the same, have different mipmap counts or dimensions, or if their channel
+   *     counts don't match the operator's color spaces
+   */
+  public <I extends Color<I, SI>, SI extends ColorSpace<I, SI>, O extends Color<O, SO>,
+      SO extends ColorSpace<O, SO>> void apply(
+      Mipmap<I> input, Mipmap<O> output, WindowOperator<I, SI, O, SO> op,
+      BoundaryStrategy<I> boundary) {
+    Arguments.equals("mipmap count", input.getMipmapCount(), output.getMipmapCount());
+    for (int i = 0; i < input.getMipmapCount(); i++) {
+      apply(input.getPixelArray(i), output.getPixelArray(i), op, boundary);
+    }
+  }
+
+  /**
+   * Apply `op` to the neighborhood of every pixel of the `input` pixel array, storing the results
+   * in `output`. Neighbors outside of `input` are resolved with `boundary`.
+   *
+   * @param input
+   *     The input pixels
+   * @param output
+   *     The output pixels, which cannot be `input`
+   * @param op
+   *     The operator to run
+   * @param boundary
+   *     The strategy for neighbors outside of the input array
+   * @throws IllegalArgumentException
+   *     if the arrays are the same, have different dimensions, or if their channel counts don't
+   *     match the operator's color spaces
+   */
+  public <I extends Color<I, SI>, SI extends ColorSpace<I, SI>, O extends Color<O, SO>,
+      SO extends ColorSpace<O, SO>> void apply(
+      PixelArray input, PixelArray output, WindowOperator<I, SI, O, SO> op,
+      BoundaryStrategy<I> boundary) {
+    Arguments.notNull("boundary", boundary);
+    checkCompatible(input, output, op.getInputSpace(), op.getOutputSpace());
+    if (input == output) {
+      throw new IllegalArgumentException("Window operators cannot be applied in place");
+    }
+
+    ThreadLocal<WindowWorker<I, SI, O, SO>> workers = ThreadLocal
+        .withInitial(() -> new WindowWorker<>(op, boundary, input, tileSize));
+    forEachTile(output.getWidth(), output.getHeight(), tileSize, tileSize,
+        (x, y, width, height) -> workers.get().process(output, x, y, width, height));
+  }
+
+  /**
+   * Convolve `input` with `kernel`, storing the results in `output`. This is equivalent to
+   * applying {@link Kernel#asOperator(ColorSpace)} with {@link #apply(Raster, Raster,
+   * WindowOperator, BoundaryStrategy)}, but is considerably faster. See {@link
+   * #convolve(PixelArray, PixelArray, Kernel, BoundaryStrategy)} for details.
+   *
+   * @param input
+   *     The input image
+   * @param output
+   *     The output image, which cannot be `input`
+   * @param kernel
+   *     The convolution kernel
+   * @param boundary
+   *     The strategy for pixels outside of the input image
+   * @throws IllegalArgumentException
+   *     if the images are the same or have different dimensions or channel counts
+   */
+  public <T extends Color> void convolve(
+      Raster<T> input, Raster<T> output, Kernel kernel, BoundaryStrategy<T> boundary) {
+    convolve(input.getPixelArray(), output.getPixelArray(), kernel, boundary);
+  }
+
+  /**
+   * Convolve `input` with `kernel`, storing the results in `output`. Every color channel and alpha
+   * are convolved independently with the same weights, so the two arrays must have the same color
+   * channel count but can otherwise have different formats. Pixels outside of `input` are resolved
+   * with `boundary`.
+   *
+   * The output is processed in tall tiles. Each worker walks down its tile one input row at a time,
+   * reading the row with a single bulk read into single precision buffers and storing it in a ring
+   * buffer holding only the `kernel.getHeight()` rows that the current output row depends on. When
+   * the kernel is {@link Kernel#isSeparable() separable}, rows are filtered horizontally as they
+   * enter the ring buffer so each output row requires a single vertical pass. Memory use is thus
+   * proportional to the tile width and kernel height, and very large images can be convolved
+   * without a full size intermediate copy.
+   *
+   * @param input
+   *     The input pixels
+   * @param output
+   *     The output pixels, which cannot be `input`
+   * @param kernel
+   *     The convolution kernel
+   * @param boundary
+   *     The strategy for pixels outside of the input array
+   * @throws IllegalArgumentException
+   *     if the arrays are the same or have different dimensions or channel counts, or if the
+   *     boundary's border color has the wrong channel count
+   */
+  public void convolve(
+      PixelArray input, PixelArray output, Kernel kernel, BoundaryStrategy<?> boundary) {
+    Arguments.notNull("kernel", kernel);
+    Arguments.notNull("boundary", boundary);
+    Arguments.equals("output width", input.getWidth(), output.getWidth());
+    Arguments.equals("output height", input.getHeight(), output.getHeight());
+    Arguments.equals("output channel count", input.getColorChannelCount(),
+        output.getColorChannelCount());
+    if (boundary.hasBorderColor()) {
+      Arguments.equals("border channel count", input.getColorChannelCount(),
+          boundary.getBorderColor().getChannelCount());
+    }
+    if (input == output) {
+      throw new IllegalArgumentException("Convolution cannot be applied in place");
+    }
+
+    // Tiles are taller than they are wide so the rows needed to prime each ring buffer are
+    // amortized over more output rows
+    int tileHeight = Math.max(4 * tileSize, 2 * kernel.getHeight());
+    ThreadLocal<ConvolutionWorker> workers = ThreadLocal
+        .withInitial(() -> new ConvolutionWorker(kernel, boundary, input, tileSize));
+    forEachTile(output.getWidth(), output.getHeight(), tileSize, tileHeight,
+        (x, y, width, height) -> workers.get().process(output, x, y, width, height));
+  }
+
+  private static void checkCompatible(
+      PixelArray input, PixelArray output, ColorSpace<?, ?> inputSpace,
+      ColorSpace<?, ?> outputSpace) {
+    Arguments.equals("output width", input.getWidth(), output.getWidth());
+    Arguments.equals("output height", input.getHeight(), output.getHeight());
+    Arguments.equals("input channel count", inputSpace.getChannelCount(),
+        input.getColorChannelCount());
+    Arguments.equals("output channel count", outputSpace.getChannelCount(),
+        output.getColorChannelCount());
+  }
+
+  private void forEachTile(
+      int width, int height, int tileWidth, int tileHeight, TileProcessor processor) {
+    int tilesX = (width + tileWidth - 1) / tileWidth;
+    int tilesY = (height + tileHeight - 1) / tileHeight;
+    pool.invoke(new TileTask(processor, width, height, tileWidth, tileHeight, tilesX, 0,
+        tilesX * tilesY));
+  }
+
+  @FunctionalInterface
+  private interface TileProcessor {
+    void process(int x, int y, int width, int height);
+  }
+
+  private static class TileTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final TileProcessor processor;
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int tilesX;
+    private final int firstTile;
+    private final int lastTile;
+
+    TileTask(
+        TileProcessor processor, int width, int height, int tileWidth, int tileHeight, int tilesX,
+        int firstTile, int lastTile) {
+      this.processor = processor;
+      this.width = width;
+      this.height = height;
+      this.tileWidth = tileWidth;
+      this.tileHeight = tileHeight;
+      this.tilesX = tilesX;
+      this.firstTile = firstTile;
+      this.lastTile = lastTile;
+    }
+
+    @Override
+    protected void compute() {
+      if (lastTile - firstTile > 1) {
+        // Split the remaining tiles in half, tiles are ordered by row so each half stays local
+        int mid = (firstTile + lastTile) >>> 1;
+        invokeAll(new TileTask(processor, width, height, tileWidth, tileHeight, tilesX, firstTile,
+                mid),
+            new TileTask(processor, width, height, tileWidth, tileHeight, tilesX, mid, lastTile));
+      } else {
+        int x = (firstTile % tilesX) * tileWidth;
+        int y = (firstTile / tilesX) * tileHeight;
+        processor.process(x, y, Math.min(tileWidth, width - x), Math.min(tileHeight, height - y));
+      }
+    }
+  }
+
+  private static class PixelWorker<I extends Color<I, SI>, SI extends ColorSpace<I, SI>,
+      O extends Color<O, SO>, SO extends ColorSpace<O, SO>> {
+    private final PixelOperator<I, SI, O, SO> op;
+    private final I input;
+    private final O output;
+
+    private final double[] inputValues;
+    private final double[] outputValues;
+    private final double[] alphas;
+
+    PixelWorker(PixelOperator<I, SI, O, SO> op, int tileSize) {
+      this.op = op;
+      input = op.getInputSpace().newValue();
+      output = op.getOutputSpace().newValue();
+
+      int pixels = tileSize * tileSize;
+      inputValues = new double[pixels * input.getChannelCount()];
+      outputValues = new double[pixels * output.getChannelCount()];
+      alphas = new double[pixels];
+    }
+
+    void process(PixelArray src, PixelArray dst, int x, int y, int width, int height) {
+      src.getWindow(x, y, width, height, inputValues, alphas);
+
+      double[] in = input.getChannels();
+      double[] out = output.getChannels();
+      int pixels = width * height;
+      for (int p = 0; p < pixels; p++) {
+        System.arraycopy(inputValues, p * in.length, in, 0, in.length);
+        // Alphas are updated in place since each input alpha is only needed by its own pixel
+        alphas[p] = op.apply(input, alphas[p], output);
+        System.arraycopy(out, 0, outputValues, p * out.length, out.length);
+      }
+
+      dst.setWindow(x, y, width, height, outputValues, alphas);
+    }
+  }
+
+  private static class WindowWorker<I extends Color<I, SI>, SI extends ColorSpace<I, SI>,
+      O extends Color<O, SO>, SO extends ColorSpace<O, SO>>
+      implements WindowOperator.Neighborhood<I> {
+    private final WindowOperator<I, SI, O, SO> op;
+    private final BoundaryStrategy<I> boundary;
+    private final PixelArray src;
+    private final O output;
+    private final int channelCount;
+
+    // The input tile expanded by the operator's radii (clamped to the image)
+    private final double[] values;
+    private final double[] alphas;
+    private int bufferX;
+    private int bufferY;
+    private int bufferWidth;
+    private int bufferHeight;
+
+    private final double[] outputValues;
+    private final double[] outputAlphas;
+
+    // Storage for neighbors that wrap to a pixel outside of the buffered region
+    private final double[] fallback;
+    private final long[] bandOffsets;
+
+    private int centerX;
+    private int centerY;
+
+    // The location of the most recently resolved neighbor
+    private double[] resolvedValues;
+    private int resolvedOffset;
+    private double resolvedAlpha;
+
+    WindowWorker(
+        WindowOperator<I, SI, O, SO> op, BoundaryStrategy<I> boundary, PixelArray src,
+        int tileSize) {
+      this.op = op;
+      this.boundary = boundary;
+      this.src = src;
+      output = op.getOutputSpace().newValue();
+      channelCount = op.getInputSpace().getChannelCount();
+
+      int bufferPixels = (tileSize + 2 * op.getRadiusX()) * (tileSize + 2 * op.getRadiusY());
+      values = new double[bufferPixels * channelCount];
+      alphas = new double[bufferPixels];
+      outputValues = new double[tileSize * tileSize * output.getChannelCount()];
+      outputAlphas = new double[tileSize * tileSize];
+
+      fallback = new double[channelCount];
+      bandOffsets = new long[src.getBandCount()];
+    }
+
+    void process(PixelArray dst, int x, int y, int width, int height) {
+      bufferX = Math.max(0, x - op.getRadiusX());
+      bufferY = Math.max(0, y - op.getRadiusY());
+      bufferWidth = Math.min(src.getWidth(), x + width + op.getRadiusX()) - bufferX;
+      bufferHeight = Math.min(src.getHeight(), y + height + op.getRadiusY()) - bufferY;
+      src.getWindow(bufferX, bufferY, bufferWidth, bufferHeight, values, alphas);
+
+      double[] out = output.getChannels();
+      for (int j = 0; j < height; j++) {
+        for (int i = 0; i < width; i++) {
+          centerX = x + i;
+          centerY = y + j;
+          int p = j * width + i;
+          outputAlphas[p] = op.apply(this, output);
+          System.arraycopy(out, 0, outputValues, p * out.length, out.length);
+        }
+      }
+
+      dst.setWindow(x, y, width, height, outputValues, outputAlphas);
+    }
+
+    private void resolve(int dx, int dy) {
+      int sx = centerX + dx;
+      int sy = centerY + dy;
+      int width = src.getWidth();
+      int height = src.getHeight();
+      if (sx < 0 || sx >= width || sy < 0 || sy >= height) {
+        if (boundary.useBorder(sx, width) || boundary.useBorder(sy, height)) {
+          resolvedValues = boundary.getBorderColor().getChannels();
+          resolvedOffset = 0;
+          resolvedAlpha = boundary.getBorderAlpha();
+          return;
+        }
+        sx = boundary.wrap(sx, width);
+        sy = boundary.wrap(sy, height);
+      }
+
+      int bx = sx - bufferX;
+      int by = sy - bufferY;
+      if (bx >= 0 && bx < bufferWidth && by >= 0 && by < bufferHeight) {
+        int index = by * bufferWidth + bx;
+        resolvedValues = values;
+        resolvedOffset = index * channelCount;
+        resolvedAlpha = alphas[index];
+      } else {
+        // Only reachable when a boundary strategy wraps to the opposite side of the image
+        resolvedAlpha = src.get(sx, sy, fallback, bandOffsets);
+        resolvedValues = fallback;
+        resolvedOffset = 0;
+      }
+    }
+
+    @Override
+    public int getX() {
+      return centerX;
+    }
+
+    @Override
+    public int getY() {
+      return centerY;
+    }
+
+    @Override
+    public double get(int dx, int dy, I result) {
+      resolve(dx, dy);
+      System.arraycopy(resolvedValues, resolvedOffset, result.getChannels(), 0, channelCount);
+      return resolvedAlpha;
+    }
+
+    @Override
+    public double getChannel(int dx, int dy, int channel) {
+      resolve(dx, dy);
+      return resolvedValues[resolvedOffset + channel];
+    }
+
+    @Override
+    public double getAlpha(int dx, int dy) {
+      resolve(dx, dy);
+      return resolvedAlpha;
+    }
+  }
+
+  private static class ConvolutionWorker {
+    private final BoundaryStrategy<?> boundary;
+    private final PixelArray src;
+    private final int channelCount;
+    // Each pixel is stored as its color channels followed by alpha while filtering
+    private final int stride;
+    private final int radiusX;
+    private final int radiusY;
+
+    private final boolean separable;
+    private final float[] weights;
+    private final float[] horizontal;
+    private final float[] vertical;
+
+    // Bulk read destination for the portion of a row inside the image
+    private final float[] rowColors;
+    private final float[] rowAlphas;
+    // A row extended by radiusX pixels on either side, with boundaries resolved
+    private final float[] expanded;
+    // Rows that the next output row depends on, indexed by input row modulo the kernel height;
+    // these hold horizontally filtered rows for separable kernels and expanded rows otherwise
+    private final float[][] ring;
+
+    private final float[] sums;
+    private final float[] outColors;
+    private final float[] outAlphas;
+
+    private final double[] fallback;
+    private final long[] bandOffsets;
+
+    ConvolutionWorker(Kernel kernel, BoundaryStrategy<?> boundary, PixelArray src, int tileSize) {
+      this.boundary = boundary;
+      this.src = src;
+      channelCount = src.getColorChannelCount();
+      stride = channelCount + 1;
+      radiusX = kernel.getRadiusX();
+      radiusY = kernel.getRadiusY();
+
+      separable = kernel.isSeparable();
+      if (separable) {
+        weights = null;
+        horizontal = new float[kernel.getWidth()];
+        for (int i = 0; i < horizontal.length; i++) {
+          horizontal[i] = (float) kernel.getHorizontalWeight(i - radiusX);
+        }
+        vertical = new float[kernel.getHeight()];
+        for (int i = 0; i < vertical.length; i++) {
+          vertical[i] = (float) kernel.getVerticalWeight(i - radiusY);
+        }
+      } else {
+        horizontal = null;
+        vertical = null;
+        weights = new float[kernel.getWidth() * kernel.getHeight()];
+        for (int j = 0; j < kernel.getHeight(); j++) {
+          for (int i = 0; i < kernel.getWidth(); i++) {
+            weights[j * kernel.getWidth() + i] = (float) kernel.getWeight(i - radiusX, j - radiusY);
+          }
+        }
+      }
+
+      int expandedWidth = tileSize + 2 * radiusX;
+      rowColors = new float[expandedWidth * channelCount];
+      rowAlphas = new float[expandedWidth];
+      expanded = new float[expandedWidth * stride];
+      ring = new float[kernel.getHeight()][(separable ? tileSize : expandedWidth) * stride];
+
+      sums = new float[tileSize * stride];
+      outColors = new float[tileSize * channelCount];
+      outAlphas = new float[tileSize];
+
+      fallback = new double[channelCount];
+      bandOffsets = new long[src.getBandCount()];
+    }
+
+    void process(PixelArray dst, int x, int y, int width, int height) {
+      int ringSize = ring.length;
+      for (int sy = y - radiusY; sy < y + height + radiusY; sy++) {
+        loadRow(sy, x - radiusX, width + 2 * radiusX);
+
+        float[] slot = ring[Math.floorMod(sy, ringSize)];
+        if (separable) {
+          filterRow(slot, width);
+        } else {
+          System.arraycopy(expanded, 0, slot, 0, (width + 2 * radiusX) * stride);
+        }
+
+        // Once row sy is loaded, every row needed by output row sy - radiusY is available
+        int oy = sy - radiusY;
+        if (oy >= y) {
+          if (separable) {
+            filterColumns(oy, width);
+          } else {
+            filter2D(oy, width);
+          }
+
+          for (int p = 0; p < width; p++) {
+            System.arraycopy(sums, p * stride, outColors, p * channelCount, channelCount);
+            outAlphas[p] = sums[p * stride + channelCount];
+          }
+          dst.setRow(oy, x, width, outColors, outAlphas);
+        }
+      }
+    }
+
+    private void filterRow(float[] slot, int width) {
+      int length = width * stride;
+      Arrays.fill(slot, 0, length, 0f);
+      for (int i = 0; i < horizontal.length; i++) {
+        float w = horizontal[i];
+        int shift = i * stride;
+        for (int e = 0; e < length; e++) {
+          slot[e] += w * expanded[e + shift];
+        }
+      }
+    }
+
+    private void filterColumns(int oy, int width) {
+      int length = width * stride;
+      Arrays.fill(sums, 0, length, 0f);
+      for (int j = 0; j < vertical.length; j++) {
+        float w = vertical[j];
+        float[] row = ring[Math.floorMod(oy - radiusY + j, ring.length)];
+        for (int e = 0; e < length; e++) {
+          sums[e] += w * row[e];
+        }
+      }
+    }
+
+    private void filter2D(int oy, int width) {
+      int length = width * stride;
+      int kernelWidth = 2 * radiusX + 1;
+      Arrays.fill(sums, 0, length, 0f);
+      for (int j = 0; j < ring.length; j++) {
+        float[] row = ring[Math.floorMod(oy - radiusY + j, ring.length)];
+        for (int i = 0; i < kernelWidth; i++) {
+          float w = weights[j * kernelWidth + i];
+          if (w == 0f) {
+            continue;
+          }
+          int shift = i * stride;
+          for (int e = 0; e < length; e++) {
+            sums[e] += w * row[e + shift];
+          }
+        }
+      }
+    }
+
+    private void loadRow(int sy, int ex, int ew) {
+      int imageWidth = src.getWidth();
+      int imageHeight = src.getHeight();
+      if (sy < 0 || sy >= imageHeight) {
+        if (boundary.useBorder(sy, imageHeight)) {
+          for (int i = 0; i < ew; i++) {
+            storeBorder(i);
+          }
+          return;
+        }
+        sy = boundary.wrap(sy, imageHeight);
+      }
+
+      // The tile is within the image, so the clamped segment is never empty
+      int ax = Math.max(0, ex);
+      int bx = Math.min(imageWidth, ex + ew);
+      src.getRow(sy, ax, bx - ax, rowColors, rowAlphas);
+
+      for (int i = 0; i < ew; i++) {
+        int sx = ex + i;
+        if (sx < ax || sx >= bx) {
+          if (boundary.useBorder(sx, imageWidth)) {
+            storeBorder(i);
+            continue;
+          }
+          sx = boundary.wrap(sx, imageWidth);
+        }
+
+        if (sx >= ax && sx < bx) {
+          System.arraycopy(rowColors, (sx - ax) * channelCount, expanded, i * stride,
+              channelCount);
+          expanded[i * stride + channelCount] = rowAlphas[sx - ax];
+        } else {
+          // Only reachable when a boundary strategy wraps to a pixel that was not read
+          double alpha = src.get(sx, sy, fallback, bandOffsets);
+          for (int c = 0; c < channelCount; c++) {
+            expanded[i * stride + c] = (float) fallback[c];
+          }
+          expanded[i * stride + channelCount] = (float) alpha;
+        }
+      }
+    }
+
+    private void storeBorder(int i) {
+      double[] border = boundary.getBorderColor().getChannels();
+      for (int c = 0; c < channelCount; c++) {
+        expanded[i * stride + c] = (float) border[c];
+      }
+      expanded[i * stride + channelCount] = (float) boundary.getBorderAlpha();
+    }
+  }
 }
@@ -31,8 +31,410 @@
  */
 package com.lhkbob.imaje.op;
 
+import com.lhkbob.imaje.color.Color;
+import com.lhkbob.imaje.color.ColorSpace;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.sampler.BoundaryStrategy;
+import com.lhkbob.imaje.util.Arguments;
+
+import java.util.Arrays;
+
 /**
+ * Kernel
+ * ======
+ *
+ * Kernel is an immutable two dimensional grid of weights used for convolution. Its width and
+ * height are odd so that it is centered on the pixel being computed; it extends {@link
+ * #getRadiusX()} pixels to the left and right and {@link #getRadiusY()} pixels below and above the
+ * center. A Kernel can be executed over an image by converting it to a {@link WindowOperator} with
+ * {@link #asOperator(ColorSpace)} and running it with an {@link ImageOperator}, or more
+ * efficiently with {@link ImageOperator#convolve(PixelArray, PixelArray, Kernel,
+ * BoundaryStrategy)}.
  *
+ * A kernel created by {@link #separable(double[], double[])}, or by the box, Gaussian and Lanczos
+ * factories, remembers the horizontal and vertical weights whose outer product forms the kernel.
+ * Such {@link #isSeparable() separable} kernels are convolved as two one dimensional passes, which
+ * costs `width + height` operations per pixel instead of `width * height`.
+ *
+ * @author Michael Ludwig
  */
-public class Kernel {
+public final class Kernel {
+  private final int width;
+  private final int height;
+  private final double[] weights;
+
+  // Null unless the kernel is separable
+  private final double[] horizontal;
+  private final double[] vertical;
+
+  /**
+   * Create a new Kernel with the given dimensions. `weights` holds the kernel in row-major order,
+   * starting with the bottom row to match the orientation of images, so the weight for the offset
+   * `(dx, dy)` from the center is stored at `(dy + getRadiusY()) * width + (dx + getRadiusX())`.
+   * The weights are copied so future changes to the array will not affect the kernel.
+   *
+   * @param width
+   *     The width of the kernel, must be odd
+   * @param height
+   *     The height of the kernel, must be odd
+   * @param weights
+   *     The row-major kernel weights
+   * @throws IllegalArgumentException
+   *     if `width` or `height` are not positive and odd, or if `weights` has a length other than
+   *     `width * height`
+   */
+  public Kernel(int width, int height, double... weights) {
+    Arguments.isPositive("width", width);
+    Arguments.isPositive("height", height);
+    if (width % 2 == 0 || height % 2 == 0) {
+      throw new IllegalArgumentException(
+          "Kernel dimensions must be odd, not " + width + " x " + height);
+    }
+    Arguments.equals("weights.length", width * height, weights.length);
+
+    this.width = width;
+    this.height = height;
+    this.weights = Arrays.copyOf(weights, weights.length);
+    horizontal = null;
+    vertical = null;
+  }
+
+  private Kernel(double[] horizontal, double[] vertical) {
+    width = horizontal.length;
+    height = vertical.length;
+    this.horizontal = horizontal;
+    this.vertical = vertical;
+
+    weights = new double[width * height];
+    for (int j = 0; j < height; j++) {
+      for (int i = 0; i < width; i++) {
+        weights[j * width + i] = vertical[j] * horizontal[i];
+      }
+    }
+  }
+
+  /**
+   * Create a separable Kernel whose weight at `(dx, dy)` is `horizontal[dx + radiusX] *
+   * vertical[dy + radiusY]`. The arrays are copied so future changes will not affect the kernel.
+   *
+   * @param horizontal
+   *     The weights applied along each row, from left to right
+   * @param vertical
+   *     The weights applied along each column, from bottom to top
+   * @return The separable kernel
+   *
+   * @throws IllegalArgumentException
+   *     if either array does not have an odd length
+   */
+  public static Kernel separable(double[] horizontal, double[] vertical) {
+    if (horizontal.length % 2 == 0 || vertical.length % 2 == 0) {
+      throw new IllegalArgumentException(
+          "Kernel dimensions must be odd, not " + horizontal.length + " x " + vertical.length);
+    }
+    return new Kernel(Arrays.copyOf(horizontal, horizontal.length),
+        Arrays.copyOf(vertical, vertical.length));
+  }
+
+  /**
+   * Create a separable box filter that averages the `(2 * radius + 1)^2` pixels centered on each
+   * pixel.
+   *
+   * @param radius
+   *     The radius of the box
+   * @return The box kernel
+   *
+   * @throws IllegalArgumentException
+   *     if `radius` is negative
+   */
+  public static Kernel box(int radius) {
+    Arguments.isGreaterThanOrEqualToZero("radius", radius);
+    double[] weights = new double[2 * radius + 1];
+    Arrays.fill(weights, 1.0 / weights.length);
+    return new Kernel(weights, weights);
+  }
+
+  /**
+   * Create a separable, normalized Gaussian blur with the given standard deviation, in pixels. The
+   * kernel is truncated at three standard deviations, which retains more than 99% of the
+   * distribution's weight.
+   *
+   * @param sigma
+   *     The standard deviation of the Gaussian
+   * @return The Gaussian kernel
+   *
+   * @throws IllegalArgumentException
+   *     if `sigma` is not positive
+   */
+  public static Kernel gaussian(double sigma) {
+    Arguments.isPositive("sigma", sigma);
+    int radius = (int) Math.ceil(3.0 * sigma);
+    double[] weights = new double[2 * radius + 1];
+    for (int i = -radius; i <= radius; i++) {
+      weights[i + radius] = Math.exp(-(i * i) / (2.0 * sigma * sigma));
+    }
+    normalizeInPlace(weights);
+    return new Kernel(weights, weights);
+  }
+
+  /**
+   * Create a separable, normalized Lanczos filter with `lobes` lobes that is stretched by `scale`.
+   * A scale of `1` reproduces the image exactly, since the Lanczos window is zero at every other
+   * integer offset; larger scales low-pass the image with the sharp cutoff of a windowed sinc,
+   * which is appropriate before reducing the resolution of an image by the same factor.
+   *
+   * @param lobes
+   *     The number of lobes of the windowed sinc, typically 2 or 3
+   * @param scale
+   *     The factor by which the filter is stretched, at least 1
+   * @return The Lanczos kernel
+   *
+   * @throws IllegalArgumentException
+   *     if `lobes` is not positive or `scale` is less than 1
+   */
+  public static Kernel lanczos(int lobes, double scale) {
+    Arguments.isPositive("lobes", lobes);
+    Arguments.isGreaterThanOrEqualTo("scale", 1.0, scale);
+    // The last integer offset strictly inside the support has a non-zero weight
+    int radius = (int) Math.ceil(lobes * scale) - 1;
+    double[] weights = new double[2 * radius + 1];
+    for (int i = -radius; i <= radius; i++) {
+      double x = i / scale;
+      weights[i + radius] = sinc(x) * sinc(x / lobes);
+    }
+    normalizeInPlace(weights);
+    return new Kernel(weights, weights);
+  }
+
+  private static double sinc(double x) {
+    if (x == 0.0) {
+      return 1.0;
+    }
+    double px = Math.PI * x;
+    return Math.sin(px) / px;
+  }
+
+  private static void normalizeInPlace(double[] weights) {
+    double sum = 0.0;
+    for (double w : weights) {
+      sum += w;
+    }
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] /= sum;
+    }
+  }
+
+  /**
+   * @return True if the kernel is the outer product of a horizontal and vertical kernel
+   */
+  public boolean isSeparable() {
+    return horizontal != null;
+  }
+
+  /**
+   * Get the weight applied along each row at the horizontal offset `dx` for a separable kernel.
+   *
+   * @param dx
+   *     The horizontal offset, from `-getRadiusX()` to `getRadiusX()`
+   * @return The horizontal weight
+   *
+   * @throws IllegalStateException
+   *     if the kernel is not separable
+   * @throws IndexOutOfBoundsException
+   *     if the offset is outside of the kernel
+   */
+  public double getHorizontalWeight(int dx) {
+    if (horizontal == null) {
+      throw new IllegalStateException("Kernel is not separable");
+    }
+    Arguments.checkIndex("dx + radiusX", width, dx + getRadiusX());
+    return horizontal[dx + getRadiusX()];
+  }
+
+  /**
+   * Get the weight applied along each column at the vertical offset `dy` for a separable kernel.
+   *
+   * @param dy
+   *     The vertical offset, from `-getRadiusY()` to `getRadiusY()`
+   * @return The vertical weight
+   *
+   * @throws IllegalStateException
+   *     if the kernel is not separable
+   * @throws IndexOutOfBoundsException
+   *     if the offset is outside of the kernel
+   */
+  public double getVerticalWeight(int dy) {
+    if (vertical == null) {
+      throw new IllegalStateException("Kernel is not separable");
+    }
+    Arguments.checkIndex("dy + radiusY", height, dy + getRadiusY());
+    return vertical[dy + getRadiusY()];
+  }
+
+  /**
+   * @return The width of the kernel
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * @return The height of the kernel
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * @return The number of pixels the kernel extends to the left and right of its center
+   */
+  public int getRadiusX() {
+    return width / 2;
+  }
+
+  /**
+   * @return The number of pixels the kernel extends below and above its center
+   */
+  public int getRadiusY() {
+    return height / 2;
+  }
+
+  /**
+   * Get the weight applied to the pixel at `(dx, dy)` relative to the center of the kernel.
+   *
+   * @param dx
+   *     The horizontal offset, from `-getRadiusX()` to `getRadiusX()`
+   * @param dy
+   *     The vertical offset, from `-getRadiusY()` to `getRadiusY()`
+   * @return The weight at the offset
+   *
+   * @throws IndexOutOfBoundsException
+   *     if the offsets are outside of the kernel
+   */
+  public double getWeight(int dx, int dy) {
+    Arguments.checkIndex("dx + radiusX", width, dx + getRadiusX());
+    Arguments.checkIndex("dy + radiusY", height, dy + getRadiusY());
+    return weights[(dy + getRadiusY()) * width + dx + getRadiusX()];
+  }
+
+  /**
+   * Get a new Kernel with the same dimensions as this kernel, whose weights are scaled so that
+   * they sum to one. Convolving with a normalized kernel preserves the average intensity of an
+   * image.
+   *
+   * @return The normalized kernel
+   *
+   * @throws IllegalStateException
+   *     if the weights of this kernel sum to zero
+   */
+  public Kernel normalize() {
+    double sum = 0.0;
+    for (double w : weights) {
+      sum += w;
+    }
+    if (sum == 0.0) {
+      throw new IllegalStateException("Cannot normalize a kernel whose weights sum to 0");
+    }
+
+    if (isSeparable()) {
+      // Scaling one of the factors is enough to normalize the product
+      double[] normalized = Arrays.copyOf(horizontal, horizontal.length);
+      for (int i = 0; i < normalized.length; i++) {
+        normalized[i] /= sum;
+      }
+      return new Kernel(normalized, Arrays.copyOf(vertical, vertical.length));
+    } else {
+      double[] normalized = new double[weights.length];
+      for (int i = 0; i < weights.length; i++) {
+        normalized[i] = weights[i] / sum;
+      }
+      return new Kernel(width, height, normalized);
+    }
+  }
+
+  /**
+   * Create a WindowOperator that convolves an image in `space` with this kernel. Every color
+   * channel and alpha are convolved independently with the same weights.
+   *
+   * @param space
+   *     The color space of the images being convolved
+   * @return A WindowOperator computing the convolution
+   *
+   * @throws NullPointerException
+   *     if `space` is null
+   */
+  public <C extends Color<C, S>, S extends ColorSpace<C, S>> WindowOperator<C, S, C, S> asOperator(
+      S space) {
+    Arguments.notNull("space", space);
+    return new WindowOperator<C, S, C, S>() {
+      @Override
+      public S getInputSpace() {
+        return space;
+      }
+
+      @Override
+      public S getOutputSpace() {
+        return space;
+      }
+
+      @Override
+      public int getRadiusX() {
+        return Kernel.this.getRadiusX();
+      }
+
+      @Override
+      public int getRadiusY() {
+        return Kernel.this.getRadiusY();
+      }
+
+      @Override
+      public double apply(Neighborhood<C> neighborhood, C output) {
+        int rx = Kernel.this.getRadiusX();
+        int ry = Kernel.this.getRadiusY();
+        double[] channels = output.getChannels();
+        Arrays.fill(channels, 0.0);
+
+        double alpha = 0.0;
+        int index = 0;
+        for (int dy = -ry; dy <= ry; dy++) {
+          for (int dx = -rx; dx <= rx; dx++) {
+            double w = weights[index++];
+            if (w == 0.0) {
+              continue;
+            }
+            for (int c = 0; c < channels.length; c++) {
+              channels[c] += w * neighborhood.getChannel(dx, dy, c);
+            }
+            alpha += w * neighborhood.getAlpha(dx, dy);
+          }
+        }
+        return alpha;
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof Kernel)) {
+      return false;
+    }
+    Kernel k = (Kernel) o;
+    return k.width == width && k.height == height && Arrays.equals(k.weights, weights);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 17;
+    result = 31 * result + width;
+    result = 31 * result + height;
+    result = 31 * result + Arrays.hashCode(weights);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Kernel (%d x %d): %s", width, height, Arrays.toString(weights));
+  }
 }
@@ -0,0 +1,613 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.op;
+
+import com.lhkbob.imaje.Mipmap;
+import com.lhkbob.imaje.MipmapArray;
+import com.lhkbob.imaje.MipmapVolume;
+import com.lhkbob.imaje.color.ColorSpace;
+import com.lhkbob.imaje.color.space.rgb.RGBSpace;
+import com.lhkbob.imaje.color.space.xyz.XYZSpace;
+import com.lhkbob.imaje.color.transform.Transform;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.util.Arguments;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MipmapGenerator
+ * ===============
+ *
+ * MipmapGenerator fills every level of a {@link Mipmap}, {@link MipmapArray} or {@link
+ * MipmapVolume} by repeatedly downsampling the previous level, starting from level 0. The
+ * reconstruction filter is selected with a {@link Filter}, and is applied separably along each
+ * dimension with the filter stretched to match the reduction in resolution, which also handles
+ * levels whose dimensions are odd or clamped to 1. Pixels beyond the edges of a level are clamped
+ * to the nearest edge.
+ *
+ * Averaging gamma encoded values darkens images, so pixel data that is not linear is filtered
+ * through a linearizing transform. Each input row is transformed before filtering, and each
+ * filtered row is transformed back with the transform's inverse before it is stored. The overloads
+ * that take a {@link ColorSpace} derive the transform from the space the image's colors are
+ * defined in: XYZ spaces and RGB spaces without a decoding gamma curve are filtered as they are,
+ * and every other space, such as sRGB, is filtered in XYZ using {@link
+ * ColorSpace#getTransformToXYZ()}. A specific transform, or null to disable linearization, can be
+ * passed to the overloads that take one instead. Alpha values are always filtered as they are.
+ *
+ * Each level is divided into bands of rows (and depth slices for volumes) that are processed in
+ * parallel on a {@link ForkJoinPool}. Levels depend on the level before them and are generated in
+ * order, but the levels of separate layers in a MipmapArray are generated concurrently.
+ *
+ * @author Michael Ludwig
+ */
+public class MipmapGenerator {
+  /**
+   * The default number of output rows processed by each task.
+   */
+  public static final int DEFAULT_BAND_HEIGHT = 32;
+
+  /**
+   * Filter
+   * ======
+   *
+   * The reconstruction filters available for downsampling. Each filter is defined over offsets
+   * measured in output pixels and is normalized after being sampled at the input pixels it covers.
+   */
+  public enum Filter {
+    /**
+     * Average the input pixels covered by each output pixel. This is the cheapest filter, but it
+     * leaves some aliasing in images with high frequency detail.
+     */
+    BOX(0.5) {
+      @Override
+      double evaluate(double t) {
+        return Math.abs(t) <= 0.5 ? 1.0 : 0.0;
+      }
+    },
+    /**
+     * A sinc filter windowed by a Kaiser window, with a radius of 3 output pixels. This keeps
+     * images sharp while suppressing most aliasing and has smaller ringing than Lanczos.
+     */
+    KAISER(3.0) {
+      private final double alpha = 4.0;
+      private final double normalization = 1.0 / besselI0(alpha);
+
+      @Override
+      double evaluate(double t) {
+        double x = t / getRadius();
+        if (x <= -1.0 || x >= 1.0) {
+          return 0.0;
+        }
+        return sinc(t) * besselI0(alpha * Math.sqrt(1.0 - x * x)) * normalization;
+      }
+    },
+    /**
+     * A three lobed Lanczos filter, which produces the sharpest results at the cost of slight
+     * ringing around strong edges.
+     */
+    LANCZOS(3.0) {
+      @Override
+      double evaluate(double t) {
+        if (t <= -getRadius() || t >= getRadius()) {
+          return 0.0;
+        }
+        return sinc(t) * sinc(t / getRadius());
+      }
+    };
+
+    private final double radius;
+
+    Filter(double radius) {
+      this.radius = radius;
+    }
+
+    /**
+     * @return The radius of the filter's support, in output pixels
+     */
+    public double getRadius() {
+      return radius;
+    }
+
+    abstract double evaluate(double t);
+
+    private static double sinc(double x) {
+      if (x == 0.0) {
+        return 1.0;
+      }
+      double px = Math.PI * x;
+      return Math.sin(px) / px;
+    }
+
+    private static double besselI0(double x) {
+      // Power series for the zeroth order modified Bessel function of the first kind, which
+      // converges quickly for the small arguments used by the Kaiser window
+      double sum = 1.0;
+      double term = 1.0;
+      double halfX = x / 2.0;
+      for (int k = 1; k < 32; k++) {
+        term *= (halfX / k) * (halfX / k);
+        sum += term;
+        if (term < 1e-12 * sum) {
+          break;
+        }
+      }
+      return sum;
+    }
+  }
+
+  private final Filter filter;
+  private final ForkJoinPool pool;
+  private final int bandHeight;
+
+  /**
+   * Create a MipmapGenerator that uses `filter`, runs on the {@link ForkJoinPool#commonPool()
+   * common pool} and processes {@link #DEFAULT_BAND_HEIGHT} rows per task.
+   *
+   * @param filter
+   *     The downsampling filter
+   * @throws NullPointerException
+   *     if `filter` is null
+   */
+  public MipmapGenerator(Filter filter) {
+    this(filter, ForkJoinPool.commonPool(), DEFAULT_BAND_HEIGHT);
+  }
+
+  /**
+   * Create a MipmapGenerator that uses `filter`, runs on `pool` and processes `bandHeight` rows per
+   * task.
+   *
+   * @param filter
+   *     The downsampling filter
+   * @param pool
+   *     The pool that executes each band
+   * @param bandHeight
+   *     The number of output rows processed by each task
+   * @throws NullPointerException
+   *     if `filter` or `pool` are null
+   * @throws IllegalArgumentException
+   *     if `bandHeight` is not positive
+   */
+  public MipmapGenerator(Filter filter, ForkJoinPool pool, int bandHeight) {
+    Arguments.notNull("filter", filter);
+    Arguments.notNull("pool", pool);
+    Arguments.isPositive("bandHeight", bandHeight);
+    this.filter = filter;
+    this.pool = pool;
+    this.bandHeight = bandHeight;
+  }
+
+  /**
+   * @return The downsampling filter
+   */
+  public Filter getFilter() {
+    return filter;
+  }
+
+  /**
+   * Generate every level after level 0 of `mipmap`, filtering in a linear space derived from
+   * `space` as described in the class documentation.
+   *
+   * @param mipmap
+   *     The mipmap to fill
+   * @param space
+   *     The color space of the mipmap's colors
+   */
+  public void generate(Mipmap<?> mipmap, ColorSpace<?, ?> space) {
+    generate(mipmap, getDefaultLinearization(space));
+  }
+
+  /**
+   * Generate every level after level 0 of `mipmap`. If `toLinear` is not null, pixels are filtered
+   * in its output space and converted back with its inverse.
+   *
+   * @param mipmap
+   *     The mipmap to fill
+   * @param toLinear
+   *     The transform converting the mipmap's colors to a linear space, or null if the colors are
+   *     already linear
+   * @throws IllegalArgumentException
+   *     if `toLinear` does not have an inverse or does not match the mipmap's channel count
+   */
+  public void generate(Mipmap<?> mipmap, @Arguments.Nullable Transform<?, ?, ?, ?> toLinear) {
+    List<List<PixelArray>> levels = new ArrayList<>(mipmap.getMipmapCount());
+    for (PixelArray level : mipmap.getPixelArrays()) {
+      levels.add(Collections.singletonList(level));
+    }
+    generate(Collections.singletonList(levels), toLinear);
+  }
+
+  /**
+   * Generate every level after level 0 of each layer in `mipmaps`, filtering in a linear space
+   * derived from `space` as described in the class documentation.
+   *
+   * @param mipmaps
+   *     The mipmap array to fill
+   * @param space
+   *     The color space of the array's colors
+   */
+  public void generate(MipmapArray<?> mipmaps, ColorSpace<?, ?> space) {
+    generate(mipmaps, getDefaultLinearization(space));
+  }
+
+  /**
+   * Generate every level after level 0 of each layer in `mipmaps`. If `toLinear` is not null,
+   * pixels are filtered in its output space and converted back with its inverse.
+   *
+   * @param mipmaps
+   *     The mipmap array to fill
+   * @param toLinear
+   *     The transform converting the colors to a linear space, or null if the colors are already
+   *     linear
+   * @throws IllegalArgumentException
+   *     if `toLinear` does not have an inverse or does not match the array's channel count
+   */
+  public void generate(
+      MipmapArray<?> mipmaps, @Arguments.Nullable Transform<?, ?, ?, ?> toLinear) {
+    List<List<List<PixelArray>>> chains = new ArrayList<>(mipmaps.getLayerCount());
+    for (int i = 0; i < mipmaps.getLayerCount(); i++) {
+      List<List<PixelArray>> levels = new ArrayList<>(mipmaps.getMipmapCount());
+      for (PixelArray level : mipmaps.getPixelArraysForLayer(i)) {
+        levels.add(Collections.singletonList(level));
+      }
+      chains.add(levels);
+    }
+    generate(chains, toLinear);
+  }
+
+  /**
+   * Generate every level after level 0 of `volume`, filtering along depth as well as width and
+   * height, in a linear space derived from `space` as described in the class documentation.
+   *
+   * @param volume
+   *     The mipmapped volume to fill
+   * @param space
+   *     The color space of the volume's colors
+   */
+  public void generate(MipmapVolume<?> volume, ColorSpace<?, ?> space) {
+    generate(volume, getDefaultLinearization(space));
+  }
+
+  /**
+   * Generate every level after level 0 of `volume`, filtering along depth as well as width and
+   * height. If `toLinear` is not null, pixels are filtered in its output space and converted back
+   * with its inverse.
+   *
+   * @param volume
+   *     The mipmapped volume to fill
+   * @param toLinear
+   *     The transform converting the colors to a linear space, or null if the colors are already
+   *     linear
+   * @throws IllegalArgumentException
+   *     if `toLinear` does not have an inverse or does not match the volume's channel count
+   */
+  public void generate(
+      MipmapVolume<?> volume, @Arguments.Nullable Transform<?, ?, ?, ?> toLinear) {
+    generate(Collections.singletonList(volume.getPixelArrays()), toLinear);
+  }
+
+  private static Transform<?, ?, ?, ?> getDefaultLinearization(ColorSpace<?, ?> space) {
+    Arguments.notNull("space", space);
+    if (space instanceof XYZSpace) {
+      return null;
+    } else if (space instanceof RGBSpace
+        && ((RGBSpace<?, ?>) space).getDirectTransformToXYZ().getDecodingGammaFunction() == null) {
+      return null;
+    } else {
+      return space.getTransformToXYZ();
+    }
+  }
+
+  private void generate(
+      List<List<List<PixelArray>>> chains, @Arguments.Nullable Transform<?, ?, ?, ?> toLinear) {
+    Transform<?, ?, ?, ?> fromLinear = null;
+    if (toLinear != null) {
+      fromLinear = toLinear.inverse().orElseThrow(
+          () -> new IllegalArgumentException("Linearizing transform must have an inverse"));
+    }
+
+    int levelCount = 0;
+    for (List<List<PixelArray>> chain : chains) {
+      levelCount = Math.max(levelCount, chain.size());
+      if (toLinear != null) {
+        Arguments.equals("linearizing input channel count",
+            toLinear.getInputSpace().getChannelCount(),
+            chain.get(0).get(0).getColorChannelCount());
+      }
+    }
+
+    // Each level only depends on the level before it, so all chains advance one level at a time
+    // and every band of every slice of that level is an independent task
+    for (int level = 1; level < levelCount; level++) {
+      List<RecursiveAction> tasks = new ArrayList<>();
+      for (List<List<PixelArray>> chain : chains) {
+        if (level < chain.size()) {
+          addLevelTasks(chain.get(level - 1), chain.get(level), toLinear, fromLinear, tasks);
+        }
+      }
+
+      pool.invoke(new RecursiveAction() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+          invokeAll(tasks);
+        }
+      });
+    }
+  }
+
+  private void addLevelTasks(
+      List<PixelArray> src, List<PixelArray> dst, Transform<?, ?, ?, ?> toLinear,
+      Transform<?, ?, ?, ?> fromLinear, List<RecursiveAction> tasks) {
+    int dstWidth = dst.get(0).getWidth();
+    int dstHeight = dst.get(0).getHeight();
+    Resampling xs = new Resampling(filter, src.get(0).getWidth(), dstWidth);
+    Resampling ys = new Resampling(filter, src.get(0).getHeight(), dstHeight);
+    Resampling zs = new Resampling(filter, src.size(), dst.size());
+
+    ThreadLocal<LevelWorker> workers = ThreadLocal
+        .withInitial(() -> new LevelWorker(src, xs, ys, zs, bandHeight, toLinear, fromLinear));
+    for (int z = 0; z < dst.size(); z++) {
+      for (int y = 0; y < dstHeight; y += bandHeight) {
+        PixelArray slice = dst.get(z);
+        int dz = z;
+        int y0 = y;
+        int y1 = Math.min(dstHeight, y + bandHeight);
+        tasks.add(new RecursiveAction() {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected void compute() {
+            workers.get().process(slice, dz, y0, y1);
+          }
+        });
+      }
+    }
+  }
+
+  /*
+   * The input pixels and normalized weights contributing to each output pixel along a single
+   * dimension, with input indices already clamped to the edges
+   */
+  private static class Resampling {
+    private final int[][] indices;
+    private final float[][] weights;
+
+    Resampling(Filter filter, int srcSize, int dstSize) {
+      indices = new int[dstSize][];
+      weights = new float[dstSize][];
+
+      double scale = (double) srcSize / dstSize;
+      double support = filter.getRadius() * Math.max(scale, 1.0);
+      for (int d = 0; d < dstSize; d++) {
+        double center = (d + 0.5) * scale - 0.5;
+        int lo = (int) Math.ceil(center - support);
+        int hi = (int) Math.floor(center + support);
+
+        double[] w = new double[hi - lo + 1];
+        double sum = 0.0;
+        for (int i = lo; i <= hi; i++) {
+          w[i - lo] = filter.evaluate((i - center) / Math.max(scale, 1.0));
+          sum += w[i - lo];
+        }
+
+        int[] index = new int[w.length];
+        float[] weight = new float[w.length];
+        for (int i = lo; i <= hi; i++) {
+          index[i - lo] = Math.max(0, Math.min(srcSize - 1, i));
+          weight[i - lo] = (float) (sum == 0.0 ? 1.0 / w.length : w[i - lo] / sum);
+        }
+        indices[d] = index;
+        weights[d] = weight;
+      }
+    }
+
+    int getMinIndex(int from, int to) {
+      int min = Integer.MAX_VALUE;
+      for (int d = from; d < to; d++) {
+        for (int index : indices[d]) {
+          min = Math.min(min, index);
+        }
+      }
+      return min;
+    }
+
+    int getMaxIndex(int from, int to) {
+      int max = Integer.MIN_VALUE;
+      for (int d = from; d < to; d++) {
+        for (int index : indices[d]) {
+          max = Math.max(max, index);
+        }
+      }
+      return max;
+    }
+  }
+
+  private static class LevelWorker {
+    private final List<PixelArray> src;
+    private final Resampling xs;
+    private final Resampling ys;
+    private final Resampling zs;
+    private final Transform<?, ?, ?, ?> toLinear;
+    private final Transform<?, ?, ?, ?> fromLinear;
+
+    private final int channelCount;
+    private final int linearCount;
+    // Pixels are stored as their linear channels followed by alpha while filtering
+    private final int stride;
+    private final int dstWidth;
+
+    private final float[] rowColors;
+    private final float[] rowAlphas;
+    private final float[] linearRow;
+    // Horizontally filtered input rows needed by the current band
+    private float[] filteredRows;
+    private final float[] sums;
+    private final float[] outColors;
+    private final float[] outAlphas;
+
+    // Rows of pixels in the image's color space and in the linear space when linearizing
+    private final double[] pixelRow;
+    private final double[] linearPixelRow;
+
+    LevelWorker(
+        List<PixelArray> src, Resampling xs, Resampling ys, Resampling zs, int bandHeight,
+        Transform<?, ?, ?, ?> toLinear, Transform<?, ?, ?, ?> fromLinear) {
+      this.src = src;
+      this.xs = xs;
+      this.ys = ys;
+      this.zs = zs;
+      this.toLinear = toLinear;
+      this.fromLinear = fromLinear;
+
+      channelCount = src.get(0).getColorChannelCount();
+      linearCount = (toLinear == null ? channelCount
+          : toLinear.getOutputSpace().getChannelCount());
+      stride = linearCount + 1;
+      dstWidth = xs.indices.length;
+
+      int srcWidth = src.get(0).getWidth();
+      rowColors = new float[srcWidth * channelCount];
+      rowAlphas = new float[srcWidth];
+      linearRow = new float[srcWidth * stride];
+      filteredRows = new float[0];
+      sums = new float[bandHeight * dstWidth * stride];
+      outColors = new float[dstWidth * channelCount];
+      outAlphas = new float[dstWidth];
+
+      int maxWidth = Math.max(srcWidth, dstWidth);
+      pixelRow = (toLinear == null ? null : new double[maxWidth * channelCount]);
+      linearPixelRow = (toLinear == null ? null : new double[maxWidth * linearCount]);
+    }
+
+    void process(PixelArray dst, int z, int y0, int y1) {
+      int rowLength = dstWidth * stride;
+      Arrays.fill(sums, 0, (y1 - y0) * rowLength, 0f);
+
+      int minRow = ys.getMinIndex(y0, y1);
+      int maxRow = ys.getMaxIndex(y0, y1);
+      int rowCount = maxRow - minRow + 1;
+      if (filteredRows.length < rowCount * rowLength) {
+        filteredRows = new float[rowCount * rowLength];
+      }
+
+      for (int t = 0; t < zs.indices[z].length; t++) {
+        PixelArray slice = src.get(zs.indices[z][t]);
+        float wz = zs.weights[z][t];
+
+        for (int r = 0; r < rowCount; r++) {
+          filterRow(slice, minRow + r, r * rowLength);
+        }
+
+        for (int y = y0; y < y1; y++) {
+          int sumOffset = (y - y0) * rowLength;
+          for (int t2 = 0; t2 < ys.indices[y].length; t2++) {
+            float w = wz * ys.weights[y][t2];
+            int rowOffset = (ys.indices[y][t2] - minRow) * rowLength;
+            for (int e = 0; e < rowLength; e++) {
+              sums[sumOffset + e] += w * filteredRows[rowOffset + e];
+            }
+          }
+        }
+      }
+
+      for (int y = y0; y < y1; y++) {
+        int sumOffset = (y - y0) * rowLength;
+        if (fromLinear != null) {
+          // Convert the whole filtered row back to the image's color space with one batched call
+          for (int x = 0; x < dstWidth; x++) {
+            for (int c = 0; c < linearCount; c++) {
+              linearPixelRow[x * linearCount + c] = sums[sumOffset + x * stride + c];
+            }
+          }
+          fromLinear.applyUnchecked(linearPixelRow, 0, pixelRow, 0, dstWidth);
+          for (int i = 0; i < dstWidth * channelCount; i++) {
+            outColors[i] = (float) pixelRow[i];
+          }
+        } else {
+          for (int x = 0; x < dstWidth; x++) {
+            System.arraycopy(sums, sumOffset + x * stride, outColors, x * channelCount,
+                channelCount);
+          }
+        }
+        for (int x = 0; x < dstWidth; x++) {
+          outAlphas[x] = sums[sumOffset + x * stride + linearCount];
+        }
+        dst.setRow(y, 0, dstWidth, outColors, outAlphas);
+      }
+    }
+
+    private void filterRow(PixelArray slice, int y, int offset) {
+      int srcWidth = slice.getWidth();
+      slice.getRow(y, 0, srcWidth, rowColors, rowAlphas);
+
+      if (toLinear != null) {
+        // Linearize the whole row with one batched call
+        for (int i = 0; i < srcWidth * channelCount; i++) {
+          pixelRow[i] = rowColors[i];
+        }
+        toLinear.applyUnchecked(pixelRow, 0, linearPixelRow, 0, srcWidth);
+        for (int x = 0; x < srcWidth; x++) {
+          for (int c = 0; c < linearCount; c++) {
+            linearRow[x * stride + c] = (float) linearPixelRow[x * linearCount + c];
+          }
+        }
+      } else {
+        for (int x = 0; x < srcWidth; x++) {
+          System.arraycopy(rowColors, x * channelCount, linearRow, x * stride, channelCount);
+        }
+      }
+      for (int x = 0; x < srcWidth; x++) {
+        linearRow[x * stride + linearCount] = rowAlphas[x];
+      }
+
+      for (int d = 0; d < dstWidth; d++) {
+        int out = offset + d * stride;
+        for (int k = 0; k < stride; k++) {
+          filteredRows[out + k] = 0f;
+        }
+        for (int t = 0; t < xs.indices[d].length; t++) {
+          float w = xs.weights[d][t];
+          int in = xs.indices[d][t] * stride;
+          for (int k = 0; k < stride; k++) {
+            filteredRows[out + k] += w * linearRow[in + k];
+          }
+        }
+      }
+    }
+  }
+}
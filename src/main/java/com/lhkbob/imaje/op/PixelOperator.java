@@ -31,8 +31,85 @@
  */
 package com.lhkbob.imaje.op;
 
+import com.lhkbob.imaje.color.Color;
+import com.lhkbob.imaje.color.ColorSpace;
+import com.lhkbob.imaje.color.transform.Transform;
+import com.lhkbob.imaje.util.Arguments;
+
 /**
+ * PixelOperator
+ * =============
+ *
+ * PixelOperator is a function that computes the color and alpha of a single output pixel from the
+ * color and alpha of the input pixel at the same location. It is executed over entire images by an
+ * {@link ImageOperator}, which processes the image tile by tile in parallel.
  *
+ * The color instances passed to {@link #apply(Color, double, Color)} are flyweights created from
+ * {@link #getInputSpace()} and {@link #getOutputSpace()} and are reused for every pixel processed
+ * by a worker thread. Implementations must not hold onto them after `apply` returns, and because a
+ * single operator is invoked concurrently from multiple threads, it must not modify its own state
+ * within `apply`.
+ *
+ * @author Michael Ludwig
  */
-public class PixelOperator {
+public interface PixelOperator<I extends Color<I, SI>, SI extends ColorSpace<I, SI>,
+    O extends Color<O, SO>, SO extends ColorSpace<O, SO>> {
+  /**
+   * @return The color space of the input pixels
+   */
+  SI getInputSpace();
+
+  /**
+   * @return The color space of the output pixels
+   */
+  SO getOutputSpace();
+
+  /**
+   * Compute the output pixel for the given `input` color and alpha value. The output color must be
+   * stored in `output` and the output alpha is returned. `output` holds arbitrary values from the
+   * previously processed pixel when this is invoked.
+   *
+   * @param input
+   *     The input color of the pixel
+   * @param alpha
+   *     The input alpha of the pixel
+   * @param output
+   *     The color that receives the output color of the pixel
+   * @return The output alpha of the pixel
+   */
+  double apply(I input, double alpha, O output);
+
+  /**
+   * Create a PixelOperator that transforms the color of every pixel with `transform` and passes
+   * alpha through unmodified.
+   *
+   * @param transform
+   *     The color transformation applied to each pixel
+   * @return A PixelOperator wrapping the transform
+   *
+   * @throws NullPointerException
+   *     if `transform` is null
+   */
+  static <I extends Color<I, SI>, SI extends ColorSpace<I, SI>, O extends Color<O, SO>,
+      SO extends ColorSpace<O, SO>> PixelOperator<I, SI, O, SO> fromTransform(
+      Transform<I, SI, O, SO> transform) {
+    Arguments.notNull("transform", transform);
+    return new PixelOperator<I, SI, O, SO>() {
+      @Override
+      public SI getInputSpace() {
+        return transform.getInputSpace();
+      }
+
+      @Override
+      public SO getOutputSpace() {
+        return transform.getOutputSpace();
+      }
+
+      @Override
+      public double apply(I input, double alpha, O output) {
+        transform.apply(input, output);
+        return alpha;
+      }
+    };
+  }
 }
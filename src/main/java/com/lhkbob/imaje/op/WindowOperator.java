@@ -31,8 +31,120 @@
  */
 package com.lhkbob.imaje.op;
 
+import com.lhkbob.imaje.color.Color;
+import com.lhkbob.imaje.color.ColorSpace;
+
 /**
+ * WindowOperator
+ * ==============
+ *
+ * WindowOperator is a function that computes the color and alpha of a single output pixel from a
+ * rectangular neighborhood of input pixels centered on the same location. The neighborhood extends
+ * {@link #getRadiusX()} pixels to the left and right of the center, and {@link #getRadiusY()}
+ * pixels below and above it. It is executed over entire images by an {@link ImageOperator}, which
+ * buffers each tile of the input with the extra rows and columns required by the neighborhood, and
+ * resolves neighbors outside of the image with a {@link
+ * com.lhkbob.imaje.sampler.BoundaryStrategy}.
+ *
+ * Like {@link PixelOperator}, the colors and neighborhood passed to {@link #apply(Neighborhood,
+ * Color)} are reused by each worker thread and the operator is invoked concurrently, so it must
+ * not modify its own state within `apply`.
  *
+ * @author Michael Ludwig
  */
-public class WindowOperator {
+public interface WindowOperator<I extends Color<I, SI>, SI extends ColorSpace<I, SI>,
+    O extends Color<O, SO>, SO extends ColorSpace<O, SO>> {
+  /**
+   * Neighborhood
+   * ============
+   *
+   * The input pixels surrounding the output pixel being computed by a WindowOperator. Neighbors are
+   * addressed relative to the center pixel, so `(0, 0)` is the input pixel at the same location as
+   * the output pixel. Offsets must be within the radii reported by the operator.
+   *
+   * @param <I>
+   *     The input color type
+   */
+  interface Neighborhood<I extends Color> {
+    /**
+     * @return The x coordinate of the center pixel in the input image
+     */
+    int getX();
+
+    /**
+     * @return The y coordinate of the center pixel in the input image
+     */
+    int getY();
+
+    /**
+     * Copy the color of the neighbor at `(dx, dy)` relative to the center into `result`, and return
+     * its alpha value.
+     *
+     * @param dx
+     *     The horizontal offset from the center
+     * @param dy
+     *     The vertical offset from the center
+     * @param result
+     *     The color that receives the neighbor's color
+     * @return The alpha value of the neighbor
+     */
+    double get(int dx, int dy, I result);
+
+    /**
+     * Get a single color channel of the neighbor at `(dx, dy)` relative to the center. This avoids
+     * copying the entire color when an operator treats channels independently.
+     *
+     * @param dx
+     *     The horizontal offset from the center
+     * @param dy
+     *     The vertical offset from the center
+     * @param channel
+     *     The color channel to access
+     * @return The channel value of the neighbor
+     */
+    double getChannel(int dx, int dy, int channel);
+
+    /**
+     * Get the alpha value of the neighbor at `(dx, dy)` relative to the center.
+     *
+     * @param dx
+     *     The horizontal offset from the center
+     * @param dy
+     *     The vertical offset from the center
+     * @return The alpha value of the neighbor
+     */
+    double getAlpha(int dx, int dy);
+  }
+
+  /**
+   * @return The color space of the input pixels
+   */
+  SI getInputSpace();
+
+  /**
+   * @return The color space of the output pixels
+   */
+  SO getOutputSpace();
+
+  /**
+   * @return The number of pixels the neighborhood extends to the left and right of its center
+   */
+  int getRadiusX();
+
+  /**
+   * @return The number of pixels the neighborhood extends below and above its center
+   */
+  int getRadiusY();
+
+  /**
+   * Compute the output pixel for the given input `neighborhood`. The output color must be stored
+   * in `output` and the output alpha is returned.
+   *
+   * @param neighborhood
+   *     The input pixels surrounding the output pixel
+   * @param output
+   *     The color that receives the output color of the pixel
+   * @return The output alpha of the pixel
+   */
+  double apply(Neighborhood<I> neighborhood, O output);
 }
@@ -0,0 +1,264 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * LRUCache
+ * ========
+ *
+ * A thread-safe, bounded, least recently used cache that tracks its hit, miss, and eviction
+ * counts. It holds the locking and bookkeeping shared by the library's more specific caches, such
+ * as the transform and tile caches. The cache is bounded by the total weight of its values, as
+ * reported by a weigher function; a weigher that always returns `1` bounds the number of entries.
+ * When adding a value exceeds the budget, the least recently used values are evicted until the
+ * cache fits again. The most recently added value is always kept, even if it alone exceeds the
+ * budget.
+ *
+ * Values are loaded outside of the cache's lock, so a slow load does not block lookups of other
+ * keys. The loader may therefore be invoked concurrently by multiple threads requesting the same
+ * missing key, in which case the first value added to the cache is returned to all of them.
+ *
+ * @author Michael Ludwig
+ */
+public final class LRUCache<K, V> {
+  /**
+   * Loader
+   * ======
+   *
+   * Creates the value for a key that is not cached.
+   *
+   * @param <V>
+   *     The value type
+   * @param <X>
+   *     The exception type thrown by the loader
+   */
+  @FunctionalInterface
+  public interface Loader<V, X extends Exception> {
+    /**
+     * @return The newly created value, which must not be null
+     *
+     * @throws X
+     *     if the value cannot be created
+     */
+    V load() throws X;
+  }
+
+  private final long maximumWeight;
+  private final ToLongFunction<? super V> weigher;
+  // Access ordered so the eldest entry is the least recently used value
+  private final LinkedHashMap<K, Entry<V>> values;
+  private long currentWeight;
+
+  private final LongAdder hits;
+  private final LongAdder misses;
+  private final LongAdder evictions;
+
+  /**
+   * Create a new, empty cache that holds values up to a total weight of `maximumWeight`.
+   *
+   * @param maximumWeight
+   *     The maximum total weight of the cached values
+   * @param weigher
+   *     The function computing the weight of a value when it is added
+   * @throws IllegalArgumentException
+   *     if `maximumWeight` is less than 1
+   * @throws NullPointerException
+   *     if `weigher` is null
+   */
+  public LRUCache(long maximumWeight, ToLongFunction<? super V> weigher) {
+    Arguments.isPositive("maximumWeight", maximumWeight);
+    Arguments.notNull("weigher", weigher);
+    this.maximumWeight = maximumWeight;
+    this.weigher = weigher;
+    values = new LinkedHashMap<>(16, 0.75f, true);
+    currentWeight = 0;
+
+    hits = new LongAdder();
+    misses = new LongAdder();
+    evictions = new LongAdder();
+  }
+
+  /**
+   * Get the value cached for `key`, invoking `loader` to create it if it is not cached.
+   *
+   * @param key
+   *     The key of the value
+   * @param loader
+   *     The function that creates the value on a cache miss
+   * @return The cached or newly loaded value
+   *
+   * @throws X
+   *     if the value must be loaded and the loader fails
+   * @throws NullPointerException
+   *     if `key`, `loader`, or the loaded value are null
+   */
+  public <X extends Exception> V get(K key, Loader<? extends V, X> loader) throws X {
+    Arguments.notNull("key", key);
+    Arguments.notNull("loader", loader);
+    synchronized (values) {
+      Entry<V> cached = values.get(key);
+      if (cached != null) {
+        hits.increment();
+        return cached.value;
+      }
+    }
+
+    // Load outside of the lock so slow loads don't block lookups of other keys
+    misses.increment();
+    V loaded = loader.load();
+    Arguments.notNull("loader.load()", loaded);
+    long weight = weigher.applyAsLong(loaded);
+    synchronized (values) {
+      Entry<V> raced = values.get(key);
+      if (raced != null) {
+        return raced.value;
+      }
+
+      values.put(key, new Entry<>(loaded, weight));
+      currentWeight += weight;
+
+      Iterator<Entry<V>> it = values.values().iterator();
+      while (currentWeight > maximumWeight && values.size() > 1) {
+        Entry<V> eldest = it.next();
+        it.remove();
+        currentWeight -= eldest.weight;
+        evictions.increment();
+      }
+      return loaded;
+    }
+  }
+
+  /**
+   * Remove every entry accepted by `filter` from the cache. This does not count as an eviction.
+   *
+   * @param filter
+   *     The predicate selecting the keys and values to remove
+   * @throws NullPointerException
+   *     if `filter` is null
+   */
+  public void removeIf(BiPredicate<? super K, ? super V> filter) {
+    Arguments.notNull("filter", filter);
+    synchronized (values) {
+      Iterator<Map.Entry<K, Entry<V>>> it = values.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<K, Entry<V>> e = it.next();
+        if (filter.test(e.getKey(), e.getValue().value)) {
+          currentWeight -= e.getValue().weight;
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Remove every entry from the cache. The hit, miss, and eviction counts are not reset.
+   */
+  public void clear() {
+    synchronized (values) {
+      values.clear();
+      currentWeight = 0;
+    }
+  }
+
+  /**
+   * @return The number of values currently cached
+   */
+  public int size() {
+    synchronized (values) {
+      return values.size();
+    }
+  }
+
+  /**
+   * @return The total weight of the currently cached values
+   */
+  public long getCurrentWeight() {
+    synchronized (values) {
+      return currentWeight;
+    }
+  }
+
+  /**
+   * @return The maximum total weight of values the cache will hold
+   */
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+  /**
+   * @return The number of requests that were answered by a cached value
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return The number of requests that had to load a value
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @return The number of values removed to keep the cache within its maximum weight
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return The fraction of requests answered by a cached value, or `0` if there have been no
+   * requests
+   */
+  public double getHitRate() {
+    long h = hits.sum();
+    long total = h + misses.sum();
+    return (total == 0 ? 0.0 : h / (double) total);
+  }
+
+  private static class Entry<V> {
+    private final V value;
+    private final long weight;
+
+    Entry(V value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
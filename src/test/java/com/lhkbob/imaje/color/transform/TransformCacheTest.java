@@ -0,0 +1,127 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.color.transform;
+
+import com.lhkbob.imaje.color.RGB;
+import com.lhkbob.imaje.color.icc.RenderingIntent;
+import com.lhkbob.imaje.color.space.rgb.SRGB;
+import com.lhkbob.imaje.color.transform.curves.Curve;
+import com.lhkbob.imaje.color.transform.curves.TabulatedCurve;
+import com.lhkbob.imaje.color.transform.curves.UnitGammaFunction;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TransformCacheTest {
+  // The sRGB decoding curve
+  private static final Curve DECODE = new UnitGammaFunction(
+      2.4, 1.0 / 1.055, 0.055 / 1.055, 0.0, 1.0 / 12.92, 0.0, 0.04045);
+  // The fixed estimate of a transform without tables
+  private static final long BASE_BYTES = TransformCache.getEstimatedBytes(
+      new CurveTransform<>(SRGB.SPACE, SRGB.SPACE, Arrays.asList(DECODE, DECODE, DECODE)));
+
+  @Test
+  public void testTablesAreWeighed() {
+    // One 8-bit table of doubles and two untabulated channels
+    assertEquals(BASE_BYTES + 256 * 8, TransformCache.getEstimatedBytes(newTabulated(8)));
+
+    // A 2x2x2 grid of 3 single precision values
+    LookupTable<RGB<SRGB>, SRGB, RGB<SRGB>, SRGB> table = new LookupTable<>(
+        SRGB.SPACE, SRGB.SPACE, 2, new double[24]);
+    assertEquals(BASE_BYTES + 24 * 4, TransformCache.getEstimatedBytes(table));
+
+    // Every stage of a composition is weighed, but the composition is only counted once
+    Composition<?, ?, ?, ?, ?, ?> composition = new Composition<>(newTabulated(8), table);
+    assertEquals(2, composition.getStages().size());
+    long stageTables = 0;
+    for (Transform<?, ?, ?, ?> stage : composition.getStages()) {
+      stageTables += TransformCache.getEstimatedBytes(stage) - BASE_BYTES;
+    }
+    assertEquals(256 * 8 + 24 * 4, stageTables);
+    assertEquals(BASE_BYTES + stageTables, TransformCache.getEstimatedBytes(composition));
+  }
+
+  @Test
+  public void testEvictsByBytes() {
+    long tableBytes = BASE_BYTES + 256 * 8;
+    TransformCache cache = new TransformCache(2 * tableBytes + BASE_BYTES);
+    assertEquals(2 * tableBytes + BASE_BYTES, cache.getMaximumBytes());
+
+    Transform<?, ?, ?, ?> a = cache.getTransform(
+        SRGB.SPACE, SRGB.SPACE, null, () -> newTabulated(8));
+    cache.getTransform(SRGB.SPACE, SRGB.SPACE, RenderingIntent.PERCEPTUAL,
+        () -> newTabulated(8));
+    assertEquals(2, cache.size());
+    assertEquals(2 * tableBytes, cache.getCurrentBytes());
+    assertEquals(0, cache.getEvictionCount());
+
+    // A third table exceeds the budget, so the least recently used table is evicted
+    cache.getTransform(SRGB.SPACE, SRGB.SPACE, RenderingIntent.SATURATION,
+        () -> newTabulated(8));
+    assertEquals(2, cache.size());
+    assertEquals(2 * tableBytes, cache.getCurrentBytes());
+    assertEquals(1, cache.getEvictionCount());
+    assertFalse(a == cache.getTransform(SRGB.SPACE, SRGB.SPACE, null, () -> newTabulated(8)));
+
+    // A single transform larger than the budget is still cached
+    TransformCache small = new TransformCache(1);
+    Transform<?, ?, ?, ?> large = small.getTransform(
+        SRGB.SPACE, SRGB.SPACE, null, () -> newTabulated(16));
+    assertEquals(1, small.size());
+    assertEquals(BASE_BYTES + 65536 * 8, small.getCurrentBytes());
+    assertSame(large, small.getTransform(SRGB.SPACE, SRGB.SPACE, null, () -> newTabulated(16)));
+  }
+
+  @Test
+  public void testSuppliedTransformsDoNotShareConversionKeys() {
+    TransformCache cache = new TransformCache(TransformCache.DEFAULT_MAXIMUM_BYTES);
+    Transform<?, ?, ?, ?> supplied = cache.getTransform(
+        SRGB.SPACE, SRGB.SPACE, null, () -> newTabulated(8));
+    Transform<?, ?, ?, ?> conversion = cache.getTransform(SRGB.SPACE, SRGB.SPACE);
+
+    assertTrue(conversion instanceof Identity);
+    assertEquals(2, cache.size());
+    assertSame(supplied, cache.getTransform(SRGB.SPACE, SRGB.SPACE, null, () -> newTabulated(8)));
+    assertSame(conversion, cache.getTransform(SRGB.SPACE, SRGB.SPACE));
+  }
+
+  private static CurveTransform<RGB<SRGB>, SRGB, RGB<SRGB>, SRGB> newTabulated(int bits) {
+    return new CurveTransform<>(SRGB.SPACE, SRGB.SPACE,
+        Arrays.asList(TabulatedCurve.forIntegerInput(DECODE, bits), DECODE, DECODE));
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.color.transform.curves;
+
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TabulatedCurveTest {
+  // The sRGB decoding and encoding curves
+  private static final Curve DECODE = new UnitGammaFunction(
+      2.4, 1.0 / 1.055, 0.055 / 1.055, 0.0, 1.0 / 12.92, 0.0, 0.04045);
+  private static final Curve ENCODE = new UnitGammaFunction(
+      1.0 / 2.4, Math.pow(1.055, 2.4), 0.0, -0.055, 12.92, 0.0, 0.0031308);
+
+  @Test
+  public void testIntegerTableIsExact() {
+    Curve tabulated = TabulatedCurve.forIntegerInput(DECODE, 8);
+    assertTrue(tabulated instanceof TabulatedCurve);
+    assertEquals(256, ((TabulatedCurve) tabulated).getTableSize());
+    assertEquals(0.0, ((TabulatedCurve) tabulated).getEstimatedError(), 0.0);
+
+    for (int i = 0; i < 256; i++) {
+      double x = i / 255.0;
+      assertEquals(DECODE.evaluate(x), tabulated.evaluate(x), 0.0);
+    }
+    // Arguments between table entries are passed to the source curve
+    assertEquals(DECODE.evaluate(0.3), tabulated.evaluate(0.3), 0.0);
+    assertEquals(DECODE.evaluate(0.5 / 255.0), tabulated.evaluate(0.5 / 255.0), 0.0);
+  }
+
+  @Test
+  public void testFloatTableMeetsErrorTarget() {
+    double[] targets = new double[] { 1e-3, 1e-4, 0.25 / 255.0, 0.25 / 65535.0 };
+    for (Curve source : new Curve[] { DECODE, ENCODE }) {
+      for (double target : targets) {
+        Curve tabulated = TabulatedCurve.forFloatInput(source, target);
+        assertTrue(tabulated instanceof TabulatedCurve);
+        double estimate = ((TabulatedCurve) tabulated).getEstimatedError();
+        assertTrue(estimate <= target);
+
+        // Measure the true error far more densely than the table was sampled; the sRGB curves
+        // are smooth within each interval so the estimate is close to the true error
+        double error = maxError(source, tabulated, 1 << 20);
+        assertTrue(String.format("%s: %g > %g", source, error, target), error <= target);
+      }
+    }
+  }
+
+  @Test
+  public void testFloatTableInterpolatesSmallCurves() {
+    Curve line = new LinearFunction(2.0, 0.5);
+    Curve tabulated = TabulatedCurve.forFloatInput(line, 1e-9);
+    assertTrue(tabulated instanceof TabulatedCurve);
+    assertEquals(0.0, maxError(line, tabulated, 1 << 16), 1e-12);
+  }
+
+  @Test
+  public void testDiscontinuousCurveIsNotTabulated() {
+    // The jump at 0.5 produces an interpolation error near 0.5 for every table size
+    Curve step = new Step(0.5 + 1e-7);
+    assertSame(step, TabulatedCurve.forFloatInput(step, 1e-3));
+  }
+
+  @Test
+  public void testTabulatedCurveIsNotRetabulated() {
+    Curve tabulated = TabulatedCurve.forFloatInput(ENCODE, 1e-4);
+    assertSame(tabulated, TabulatedCurve.forFloatInput(tabulated, 1e-6));
+    assertSame(tabulated, TabulatedCurve.forIntegerInput(tabulated, 8));
+  }
+
+  private static double maxError(Curve expected, Curve actual, int samples) {
+    double max = 0.0;
+    for (int i = 0; i <= samples; i++) {
+      double x = i / (double) samples;
+      max = Math.max(max, Math.abs(expected.evaluate(x) - actual.evaluate(x)));
+    }
+    return max;
+  }
+
+  private static class Step implements Curve {
+    private final double threshold;
+
+    Step(double threshold) {
+      this.threshold = threshold;
+    }
+
+    @Override
+    public double evaluate(double x) {
+      return x < threshold ? 0.0 : 1.0;
+    }
+
+    @Override
+    public double getDomainMax() {
+      return 1.0;
+    }
+
+    @Override
+    public double getDomainMin() {
+      return 0.0;
+    }
+
+    @Override
+    public Optional<Curve> inverse() {
+      return Optional.empty();
+    }
+  }
+}
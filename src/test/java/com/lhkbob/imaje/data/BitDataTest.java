@@ -0,0 +1,177 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.data;
+
+import com.lhkbob.imaje.data.large.LargeByteData;
+import com.lhkbob.imaje.data.large.LargeIntData;
+import com.lhkbob.imaje.data.large.LargeLongData;
+import com.lhkbob.imaje.data.large.LargeShortData;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+
+public class BitDataTest {
+  private static final int LENGTH = 12;
+  private static final int OFFSET = 3;
+  private static final int COUNT = 7;
+  // Bytes before the buffer's position that must not be touched
+  private static final int PADDING = 5;
+
+  private static final ByteOrder[] ORDERS = { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN };
+
+  @Test
+  public void testArrayData() {
+    for (int bytes : new int[] { 1, 2, 4, 8 }) {
+      for (ByteOrder order : ORDERS) {
+        assertRoundTrip(newData(Data.arrayDataFactory(), bytes), bytes, order);
+      }
+    }
+  }
+
+  @Test
+  public void testBufferData() {
+    for (int bytes : new int[] { 1, 2, 4, 8 }) {
+      for (ByteOrder order : ORDERS) {
+        assertRoundTrip(newData(Data.nioDataFactory(), bytes), bytes, order);
+      }
+    }
+  }
+
+  @Test
+  public void testLargeData() {
+    // The accessed range crosses the boundary between the two sources
+    Data.Factory f = Data.arrayDataFactory();
+    for (ByteOrder order : ORDERS) {
+      assertRoundTrip(new LargeByteData(
+          new ByteData[] { f.newByteData(6), f.newByteData(6) }), 1, order);
+      assertRoundTrip(new LargeShortData(
+          new ShortData[] { f.newShortData(6), f.newShortData(6) }), 2, order);
+      assertRoundTrip(new LargeIntData(
+          new IntData[] { f.newIntData(6), f.newIntData(6) }), 4, order);
+      assertRoundTrip(new LargeLongData(
+          new LongData[] { f.newLongData(6), f.newLongData(6) }), 8, order);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPartialElementGet() {
+    Data.arrayDataFactory().newIntData(LENGTH).getBits(0, ByteBuffer.allocate(6));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPartialElementSet() {
+    Data.arrayDataFactory().newShortData(LENGTH).setBits(0, ByteBuffer.allocate(3));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testOutOfBoundsGet() {
+    Data.arrayDataFactory().newLongData(LENGTH).getBits(LENGTH - 1, ByteBuffer.allocate(16));
+  }
+
+  private static void assertRoundTrip(BitData data, int bytes, ByteOrder order) {
+    String msg = data.getClass().getSimpleName() + " " + order;
+    for (int i = 0; i < LENGTH; i++) {
+      data.setBits(i, getValue(i, bytes));
+    }
+
+    // Read a range into the middle of a buffer and compare against the buffer's own encoding
+    ByteBuffer read = ByteBuffer.allocate(PADDING + COUNT * bytes + PADDING).order(order);
+    read.position(PADDING).limit(PADDING + COUNT * bytes);
+    data.getBits(OFFSET, read);
+    assertEquals(msg, PADDING + COUNT * bytes, read.position());
+
+    ByteBuffer expected = ByteBuffer.allocate(read.capacity()).order(order);
+    expected.position(PADDING);
+    for (int i = 0; i < COUNT; i++) {
+      putValue(expected, getValue(OFFSET + i, bytes), bytes);
+    }
+    for (int i = 0; i < read.capacity(); i++) {
+      assertEquals(msg + " byte " + i, expected.array()[i], read.array()[i]);
+    }
+
+    // Write the same bytes into a cleared range and make sure the neighbors are untouched
+    for (int i = 0; i < LENGTH; i++) {
+      data.setBits(i, i < OFFSET || i >= OFFSET + COUNT ? getValue(i, bytes) : 0L);
+    }
+    read.position(PADDING);
+    data.setBits(OFFSET, read);
+    assertEquals(msg, PADDING + COUNT * bytes, read.position());
+    for (int i = 0; i < LENGTH; i++) {
+      // The single element accessors of the primitive buffers sign extend, so mask to compare
+      assertEquals(msg + " element " + i, getValue(i, bytes), data.getBits(i) & getMask(bytes));
+    }
+  }
+
+  private static BitData newData(Data.Factory factory, int bytes) {
+    switch (bytes) {
+    case 1:
+      return factory.newByteData(LENGTH);
+    case 2:
+      return factory.newShortData(LENGTH);
+    case 4:
+      return factory.newIntData(LENGTH);
+    default:
+      return factory.newLongData(LENGTH);
+    }
+  }
+
+  private static long getValue(int index, int bytes) {
+    // Every byte differs so swapped or shifted bytes are detected, and the high bit is often set
+    long value = 0x8142c3a4e5269768L * (index + 1) + index;
+    return value & getMask(bytes);
+  }
+
+  private static long getMask(int bytes) {
+    return bytes == 8 ? -1L : (1L << (8 * bytes)) - 1;
+  }
+
+  private static void putValue(ByteBuffer buffer, long value, int bytes) {
+    switch (bytes) {
+    case 1:
+      buffer.put((byte) value);
+      break;
+    case 2:
+      buffer.putShort((short) value);
+      break;
+    case 4:
+      buffer.putInt((int) value);
+      break;
+    default:
+      buffer.putLong(value);
+      break;
+    }
+  }
+}
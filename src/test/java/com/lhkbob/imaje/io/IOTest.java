@@ -0,0 +1,212 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io;
+
+import com.lhkbob.imaje.data.ByteData;
+import com.lhkbob.imaje.data.DoubleData;
+import com.lhkbob.imaje.data.FloatData;
+import com.lhkbob.imaje.data.IntData;
+import com.lhkbob.imaje.data.LongData;
+import com.lhkbob.imaje.data.ShortData;
+import com.lhkbob.imaje.data.large.LargeByteData;
+import com.lhkbob.imaje.data.large.LargeDoubleData;
+import com.lhkbob.imaje.data.large.LargeFloatData;
+import com.lhkbob.imaje.data.large.LargeIntData;
+import com.lhkbob.imaje.data.large.LargeLongData;
+import com.lhkbob.imaje.data.large.LargeShortData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IOTest {
+  // Split every mapping after 16 bytes so a small file needs several mappings
+  private static final long MAPPING_BYTES = 16;
+  // Mapped regions start after a header so the mappings are not aligned to the file
+  private static final int POSITION = 3;
+  private static final int FILE_BYTES = 203;
+
+  private Path file;
+  private byte[] contents;
+  private FileChannel channel;
+
+  @Before
+  public void setup() throws IOException {
+    contents = new byte[FILE_BYTES];
+    for (int i = 0; i < contents.length; i++) {
+      contents[i] = (byte) (31 * i + 7);
+    }
+    file = Files.createTempFile("imaje-io", ".bin");
+    Files.write(file, contents);
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+    IO.maxMappingBytes = MAPPING_BYTES;
+  }
+
+  @After
+  public void teardown() throws IOException {
+    IO.maxMappingBytes = IO.MAX_MAPPING_BYTES;
+    channel.close();
+    Files.delete(file);
+  }
+
+  @Test
+  public void testMapByteData() throws IOException {
+    int length = FILE_BYTES - POSITION;
+    ByteData data = IO.mapByteData(channel, POSITION, length);
+    assertTrue(data instanceof LargeByteData);
+    assertEquals(length, data.getLength());
+    for (int i = 0; i < length; i++) {
+      assertEquals(contents[POSITION + i], data.get(i));
+    }
+
+    // A bulk read that straddles several mapping boundaries
+    byte[] values = new byte[40];
+    data.get(10, values);
+    for (int i = 0; i < values.length; i++) {
+      assertEquals(contents[POSITION + 10 + i], values[i]);
+    }
+  }
+
+  @Test
+  public void testMapShortData() throws IOException {
+    for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+      int length = (FILE_BYTES - POSITION) / Short.BYTES;
+      ShortData data = IO.mapShortData(channel, POSITION, length, order);
+      assertTrue(data instanceof LargeShortData);
+      assertEquals(length, data.getLength());
+      ByteBuffer expected = ByteBuffer.wrap(contents).order(order);
+      for (int i = 0; i < length; i++) {
+        assertEquals(expected.getShort(POSITION + Short.BYTES * i), data.get(i));
+      }
+
+      short[] values = new short[20];
+      data.get(5, values);
+      for (int i = 0; i < values.length; i++) {
+        assertEquals(expected.getShort(POSITION + Short.BYTES * (5 + i)), values[i]);
+      }
+    }
+  }
+
+  @Test
+  public void testMapIntData() throws IOException {
+    for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+      int length = (FILE_BYTES - POSITION) / Integer.BYTES;
+      IntData data = IO.mapIntData(channel, POSITION, length, order);
+      assertTrue(data instanceof LargeIntData);
+      assertEquals(length, data.getLength());
+      ByteBuffer expected = ByteBuffer.wrap(contents).order(order);
+      for (int i = 0; i < length; i++) {
+        assertEquals(expected.getInt(POSITION + Integer.BYTES * i), data.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testMapLongData() throws IOException {
+    for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+      int length = (FILE_BYTES - POSITION) / Long.BYTES;
+      LongData data = IO.mapLongData(channel, POSITION, length, order);
+      assertTrue(data instanceof LargeLongData);
+      assertEquals(length, data.getLength());
+      ByteBuffer expected = ByteBuffer.wrap(contents).order(order);
+      for (int i = 0; i < length; i++) {
+        assertEquals(expected.getLong(POSITION + Long.BYTES * i), data.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testMapFloatData() throws IOException {
+    for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+      int length = (FILE_BYTES - POSITION) / Float.BYTES;
+      FloatData data = IO.mapFloatData(channel, POSITION, length, order);
+      assertTrue(data instanceof LargeFloatData);
+      assertEquals(length, data.getLength());
+      ByteBuffer expected = ByteBuffer.wrap(contents).order(order);
+      for (int i = 0; i < length; i++) {
+        // Compare bits so NaN patterns are checked exactly
+        assertEquals(expected.getInt(POSITION + Float.BYTES * i),
+            Float.floatToRawIntBits(data.get(i)));
+      }
+    }
+  }
+
+  @Test
+  public void testMapDoubleData() throws IOException {
+    for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+      int length = (FILE_BYTES - POSITION) / Double.BYTES;
+      DoubleData data = IO.mapDoubleData(channel, POSITION, length, order);
+      assertTrue(data instanceof LargeDoubleData);
+      assertEquals(length, data.getLength());
+      ByteBuffer expected = ByteBuffer.wrap(contents).order(order);
+      for (int i = 0; i < length; i++) {
+        assertEquals(expected.getLong(POSITION + Double.BYTES * i),
+            Double.doubleToRawLongBits(data.get(i)));
+      }
+    }
+  }
+
+  @Test
+  public void testSingleMapping() throws IOException {
+    // A region that fits in one mapping is not concatenated
+    ShortData data = IO.mapShortData(channel, POSITION, MAPPING_BYTES / Short.BYTES,
+        ByteOrder.LITTLE_ENDIAN);
+    assertFalse(data instanceof LargeShortData);
+
+    short[] values = new short[(int) data.getLength()];
+    data.get(0, values);
+    short[] expected = new short[values.length];
+    ByteBuffer.wrap(contents, POSITION, (int) MAPPING_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+        .asShortBuffer().get(expected);
+    assertArrayEquals(expected, values);
+  }
+
+  @Test(expected = EOFException.class)
+  public void testRegionPastEndOfFile() throws IOException {
+    IO.mapIntData(channel, POSITION, (FILE_BYTES - POSITION) / Integer.BYTES + 1,
+        ByteOrder.BIG_ENDIAN);
+  }
+}
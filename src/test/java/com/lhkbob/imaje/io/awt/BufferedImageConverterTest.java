@@ -0,0 +1,240 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.awt;
+
+import com.lhkbob.imaje.data.Data;
+import com.lhkbob.imaje.data.types.CustomBinaryData;
+import com.lhkbob.imaje.layout.PackedPixelArray;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.layout.PixelFormat;
+import com.lhkbob.imaje.layout.ScanlineLayout;
+import com.lhkbob.imaje.layout.UnpackedPixelArray;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class BufferedImageConverterTest {
+  private static final int WIDTH = 7;
+  private static final int HEIGHT = 5;
+
+  private static final int[] COLOR_TYPES = {
+      BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+      BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+      BufferedImage.TYPE_USHORT_565_RGB, BufferedImage.TYPE_USHORT_555_RGB
+  };
+  private static final int[] GRAY_TYPES = {
+      BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY
+  };
+
+  @Test
+  public void testColorTypesRoundTrip() {
+    for (int type : COLOR_TYPES) {
+      BufferedImage image = createImage(WIDTH, HEIGHT, type);
+      PixelArray array = createArray(type, WIDTH, HEIGHT);
+      assertTrue(copyFrom(image, array));
+      assertColorsMatch(type, image, array, 0);
+
+      BufferedImage copy = BufferedImageConverter.copyToStandardType(array, false);
+      assertNotNull(copy);
+      assertEquals(type, copy.getType());
+      assertRGBEquals(type, image, copy, 0);
+    }
+  }
+
+  @Test
+  public void testGrayTypesRoundTrip() {
+    for (int type : GRAY_TYPES) {
+      BufferedImage image = createImage(WIDTH, HEIGHT, type);
+      PixelArray array = createArray(type, WIDTH, HEIGHT);
+      assertTrue(copyFrom(image, array));
+      // Gray samples are copied as-is instead of being decoded through getRGB()
+      assertSamplesMatch(type, image, array);
+
+      BufferedImage copy = BufferedImageConverter.copyToStandardType(array, true);
+      assertNotNull(copy);
+      assertEquals(type, copy.getType());
+      for (int y = 0; y < HEIGHT; y++) {
+        for (int x = 0; x < WIDTH; x++) {
+          assertEquals(image.getRaster().getSample(x, y, 0), copy.getRaster().getSample(x, y, 0));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testPremultipliedTypes() {
+    int[][] types = {
+        { BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_INT_ARGB },
+        { BufferedImage.TYPE_4BYTE_ABGR_PRE, BufferedImage.TYPE_4BYTE_ABGR }
+    };
+    for (int[] pair : types) {
+      BufferedImage image = createImage(WIDTH, HEIGHT, pair[0]);
+      PixelArray array = createArray(pair[0], WIDTH, HEIGHT);
+      assertTrue(copyFrom(image, array));
+      // The array holds unpremultiplied colors, which can round differently than AWT
+      assertColorsMatch(pair[0], image, array, 1);
+
+      // Premultiplied types are never created, the array is copied to the plain type instead
+      BufferedImage copy = BufferedImageConverter.copyToStandardType(array, false);
+      assertNotNull(copy);
+      assertEquals(pair[1], copy.getType());
+      assertRGBEquals(pair[0], image, copy, 1);
+    }
+  }
+
+  @Test
+  public void testSubImages() {
+    for (int type : COLOR_TYPES) {
+      BufferedImage parent = createImage(WIDTH + 4, HEIGHT + 5, type);
+      BufferedImage image = parent.getSubimage(3, 2, WIDTH, HEIGHT);
+      assertEquals(type, image.getType());
+
+      PixelArray array = createArray(type, WIDTH, HEIGHT);
+      assertTrue(copyFrom(image, array));
+      assertColorsMatch(type, image, array, 0);
+    }
+    for (int type : GRAY_TYPES) {
+      BufferedImage parent = createImage(WIDTH + 4, HEIGHT + 5, type);
+      BufferedImage image = parent.getSubimage(1, 4, WIDTH, HEIGHT);
+      assertEquals(type, image.getType());
+
+      PixelArray array = createArray(type, WIDTH, HEIGHT);
+      assertTrue(copyFrom(image, array));
+      assertSamplesMatch(type, image, array);
+    }
+  }
+
+  @Test
+  public void testMismatchedFormatsAreNotCopied() {
+    BufferedImage image = createImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    assertEquals(false, copyFrom(image, createArray(BufferedImage.TYPE_INT_RGB, WIDTH, HEIGHT)));
+    assertEquals(false,
+        copyFrom(image, createArray(BufferedImage.TYPE_4BYTE_ABGR, WIDTH, HEIGHT)));
+  }
+
+  private static boolean copyFrom(BufferedImage image, PixelArray array) {
+    return BufferedImageConverter.copyFromStandardType(image, array);
+  }
+
+  private static void assertColorsMatch(
+      int type, BufferedImage image, PixelArray array, int tolerance) {
+    double[] channels = new double[3];
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        // The pixel array's origin is the bottom left corner, AWT's is the top left
+        int argb = image.getRGB(x, HEIGHT - y - 1);
+        double alpha = array.get(x, y, channels);
+        String msg = "type " + type + " at (" + x + ", " + y + ")";
+        assertEquals(msg, (argb >> 16) & 0xff, 255.0 * channels[0], tolerance + 0.5);
+        assertEquals(msg, (argb >> 8) & 0xff, 255.0 * channels[1], tolerance + 0.5);
+        assertEquals(msg, argb & 0xff, 255.0 * channels[2], tolerance + 0.5);
+        if (image.getColorModel().hasAlpha()) {
+          assertEquals(msg, argb >>> 24, 255.0 * alpha, 1e-6);
+        }
+      }
+    }
+  }
+
+  private static void assertSamplesMatch(int type, BufferedImage image, PixelArray array) {
+    double scale = type == BufferedImage.TYPE_USHORT_GRAY ? 65535.0 : 255.0;
+    double[] channels = new double[1];
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        array.get(x, y, channels);
+        assertEquals("type " + type + " at (" + x + ", " + y + ")",
+            image.getRaster().getSample(x, HEIGHT - y - 1, 0), scale * channels[0], 1e-6);
+      }
+    }
+  }
+
+  private static void assertRGBEquals(
+      int type, BufferedImage expected, BufferedImage actual, int tolerance) {
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        int e = expected.getRGB(x, y);
+        int a = actual.getRGB(x, y);
+        for (int shift = 0; shift < 32; shift += 8) {
+          assertEquals("type " + type + " at (" + x + ", " + y + ")", (e >>> shift) & 0xff,
+              (a >>> shift) & 0xff, tolerance);
+        }
+      }
+    }
+  }
+
+  private static BufferedImage createImage(int width, int height, int type) {
+    BufferedImage image = new BufferedImage(width, height, type);
+    Random r = new Random(type);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, r.nextInt());
+      }
+    }
+    if (type == BufferedImage.TYPE_USHORT_GRAY) {
+      // setRGB() only produces 8-bit gray levels, so fill in the low bits directly
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          image.getRaster().setSample(x, y, 0, r.nextInt(65536));
+        }
+      }
+    }
+    return image;
+  }
+
+  private static PixelArray createArray(int type, int width, int height) {
+    PixelFormat format = BufferedImageConverter.getStandardFormat(type);
+    Data.Factory factory = Data.getDefaultDataFactory();
+    if (BufferedImageConverter.isPackedType(type)) {
+      ScanlineLayout layout = new ScanlineLayout(width, height, 1);
+      if (format.getBitSize() == 32) {
+        return new PackedPixelArray(format, layout, factory.newIntData(width * height));
+      } else {
+        return new PackedPixelArray(format, layout, factory.newShortData(width * height));
+      }
+    } else {
+      int bands = format.getDataFieldCount();
+      ScanlineLayout layout = new ScanlineLayout(width, height, bands);
+      if (type == BufferedImage.TYPE_USHORT_GRAY) {
+        return new UnpackedPixelArray(format, layout,
+            new CustomBinaryData<>(Data.UNORM16, factory.newShortData(width * height * bands)));
+      } else {
+        return new UnpackedPixelArray(format, layout,
+            new CustomBinaryData<>(Data.UNORM8, factory.newByteData(width * height * bands)));
+      }
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.dds;
+
+import com.lhkbob.imaje.Mipmap;
+import com.lhkbob.imaje.Raster;
+import com.lhkbob.imaje.RasterArray;
+import com.lhkbob.imaje.io.IO;
+import com.lhkbob.imaje.io.InvalidImageException;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.layout.TileCache;
+import com.lhkbob.imaje.layout.compressed.BC1Array;
+import com.lhkbob.imaje.layout.compressed.BC4Array;
+import com.lhkbob.imaje.util.ByteBufferChannel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DDSReaderTest {
+  @Test
+  public void testFourCCBlockCompressedSubresources() throws IOException {
+    // DXT1 is BC1 with 8 byte blocks, and 10x6 has levels 10x6, 5x3, 2x1 and 1x1
+    ByteBufferChannel file = createFile(10, 6, 4, 1, null, "DXT1", new byte[48 + 16 + 8 + 8]);
+    List<DDSSubresource> subresources = DDSReader.readSubresources(file);
+
+    assertEquals(4, subresources.size());
+    assertSubresource(subresources.get(0), 0, 0, 10, 6, 128, 48);
+    assertSubresource(subresources.get(1), 0, 1, 5, 3, 176, 16);
+    assertSubresource(subresources.get(2), 0, 2, 2, 1, 192, 8);
+    assertSubresource(subresources.get(3), 0, 3, 1, 1, 200, 8);
+  }
+
+  @Test
+  public void testDX10BlockCompressedSubresources() throws IOException {
+    // BC5 uses 16 byte blocks, and each 8x8 layer is 2x2 blocks
+    ByteBufferChannel file = createFile(8, 8, 1, 2, DXGIFormat.BC5_UNORM, null, new byte[128]);
+    List<DDSSubresource> subresources = DDSReader.readSubresources(file);
+
+    assertEquals(2, subresources.size());
+    assertSubresource(subresources.get(0), 0, 0, 8, 8, 148, 64);
+    assertSubresource(subresources.get(1), 1, 0, 8, 8, 212, 64);
+  }
+
+  @Test(expected = InvalidImageException.class)
+  public void testTruncatedBlockCompressedSubresources() throws IOException {
+    ByteBufferChannel file = createFile(8, 8, 1, 1, DXGIFormat.BC3_UNORM, null, new byte[63]);
+    DDSReader.readSubresources(file);
+  }
+
+  @Test
+  public void testReadBC1Mipmap() throws IOException {
+    // 4x8 has levels 4x8, 2x4, 1x2 and 1x1, the base level is a white block row above a black one
+    byte[] blocks = new byte[16 + 8 + 8 + 8];
+    setBC1Block(blocks, 0, 0xffff);
+    setBC1Block(blocks, 8, 0x0000);
+    setBC1Block(blocks, 16, 0xffff);
+    setBC1Block(blocks, 24, 0xffff);
+    setBC1Block(blocks, 32, 0xffff);
+    ByteBufferChannel file = createFile(4, 8, 4, 1, null, "DXT1", blocks);
+    Mipmap<?> image = (Mipmap<?>) new DDSReader().read(file);
+
+    assertEquals(4, image.getMipmapCount());
+    PixelArray base = image.getPixelArray(0);
+    assertTrue(base instanceof BC1Array);
+    assertFalse(((BC1Array) base).getLayout().isTopToBottom());
+    assertEquals(4, base.getWidth());
+    assertEquals(8, base.getHeight());
+
+    // The first block row of the file is the first row of the image
+    double[] rgb = new double[3];
+    assertEquals(1.0, base.get(0, 0, rgb), 1e-6);
+    assertArrayEquals(new double[] { 1.0, 1.0, 1.0 }, rgb, 1e-6);
+    base.get(3, 7, rgb);
+    assertArrayEquals(new double[] { 0.0, 0.0, 0.0 }, rgb, 1e-6);
+
+    assertEquals(2, image.getPixelArray(1).getWidth());
+    assertEquals(4, image.getPixelArray(1).getHeight());
+  }
+
+  @Test
+  public void testReadSignedBC4Array() throws IOException {
+    // Two layers of one block whose first endpoint is -1 and selected for every pixel
+    byte[] blocks = new byte[16];
+    blocks[0] = (byte) 0x80;
+    blocks[1] = (byte) 0x7f;
+    blocks[8] = (byte) 0x7f;
+    blocks[9] = (byte) 0x80;
+    ByteBufferChannel file = createFile(4, 4, 1, 2, DXGIFormat.BC4_SNORM, null, blocks);
+    RasterArray<?> image = (RasterArray<?>) new DDSReader().read(file);
+
+    assertEquals(2, image.getLayerCount());
+    BC4Array first = (BC4Array) image.getPixelArray(0);
+    assertTrue(first.isSigned());
+    double[] value = new double[1];
+    first.get(2, 1, value);
+    assertEquals(-1.0, value[0], 1e-6);
+    image.getPixelArray(1).get(2, 1, value);
+    assertEquals(1.0, value[0], 1e-6);
+  }
+
+  @Test
+  public void testReadBC5Lazily() throws IOException {
+    // The red channel selects its maximum endpoint and the green channel its minimum
+    byte[] blocks = new byte[16];
+    blocks[0] = (byte) 0xff;
+    blocks[9] = (byte) 0xff;
+    ByteBufferChannel file = createFile(4, 4, 1, 1, DXGIFormat.BC5_UNORM, null, blocks);
+    Raster<?> image = (Raster<?>) new DDSReader().readLazy(file, new TileCache(1024));
+
+    PixelArray data = image.getPixelArray();
+    assertEquals(2, data.getColorChannelCount());
+    double[] rg = new double[2];
+    data.get(3, 3, rg);
+    assertArrayEquals(new double[] { 1.0, 0.0 }, rg, 1e-6);
+  }
+
+  private static void setBC1Block(byte[] blocks, int offset, int color) {
+    // Both endpoints are the same 5:6:5 color and every index selects the first one
+    blocks[offset] = (byte) color;
+    blocks[offset + 1] = (byte) (color >> 8);
+    blocks[offset + 2] = (byte) color;
+    blocks[offset + 3] = (byte) (color >> 8);
+  }
+
+  private static void assertSubresource(
+      DDSSubresource s, int layer, int level, int width, int height, long offset, long length) {
+    assertEquals(layer, s.getLayer());
+    assertEquals(level, s.getMipmapLevel());
+    assertEquals(width, s.getWidth());
+    assertEquals(height, s.getHeight());
+    assertEquals(1, s.getDepth());
+    assertEquals(offset, s.getOffset());
+    assertEquals(length, s.getLength());
+  }
+
+  static ByteBufferChannel createFile(
+      int width, int height, int mipmaps, int layers, DXGIFormat dx10Format, String fourCC,
+      byte[] data) throws IOException {
+    DDSHeader header = DDSHeader.newHeader();
+    header.setCapabilitiesValid(true);
+    header.setWidthValid(true);
+    header.setHeightValid(true);
+    header.setPixelFormatValid(true);
+    header.setWidth(width);
+    header.setHeight(height);
+    header.setTexture(true);
+    if (mipmaps > 1) {
+      header.setMipmapCountValid(true);
+      header.setMipmapCount(mipmaps);
+      header.setMipmapped(true);
+      header.setComplex(true);
+    }
+
+    header.getPixelFormat().setFourCCValid(true);
+    if (dx10Format != null) {
+      DX10Header dx10 = new DX10Header();
+      dx10.setDXGIFormat(dx10Format);
+      dx10.setArraySize(layers);
+      dx10.setResourceDimension(DX10Header.D3D10ResourceDimension.TEXTURE2D);
+      header.getPixelFormat().setFourCC(DDSHeader.FOURCC_DX10);
+      header.setDX10Header(dx10);
+    } else {
+      header.getPixelFormat().setFourCC(DDSHeader.makeFourCC(fourCC));
+    }
+
+    ByteBufferChannel file = new ByteBufferChannel();
+    header.write(file, IO.createWOrkBufferForWriting(
+        DDSHeader.HEADER_LENGTH + DX10Header.HEADER_LENGTH + 4));
+    file.write(ByteBuffer.wrap(data));
+    file.position(0);
+    return file;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.dds;
+
+import com.lhkbob.imaje.io.IO;
+import com.lhkbob.imaje.util.ByteBufferChannel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DX10HeaderTest {
+  @Test
+  public void testReadWrittenHeader() throws IOException {
+    DX10Header header = new DX10Header();
+    header.setDXGIFormat(DXGIFormat.BC5_SNORM);
+    header.setResourceDimension(DX10Header.D3D10ResourceDimension.TEXTURE2D);
+    header.setCubeMap(true);
+    header.setArraySize(3);
+
+    ByteBuffer work = IO.createWOrkBufferForWriting(DX10Header.HEADER_LENGTH);
+    header.write(work);
+    ByteBufferChannel file = new ByteBufferChannel();
+    IO.write(work, file);
+    file.position(0);
+
+    DX10Header read = DX10Header.read(
+        file, IO.createWorkBufferForReading(DX10Header.HEADER_LENGTH));
+    assertEquals(DXGIFormat.BC5_SNORM, read.getDXGIFormat());
+    assertEquals(DX10Header.D3D10ResourceDimension.TEXTURE2D, read.getResourceDimension());
+    assertTrue(read.isCubeMap());
+    assertEquals(3, read.getArraySize());
+  }
+
+  @Test
+  public void testDXGIFormatBounds() throws IOException {
+    DXGIFormat[] formats = DXGIFormat.values();
+    assertEquals(DXGIFormat.UNKNOWN, readFormat(0));
+    assertEquals(formats[formats.length - 1], readFormat(formats.length - 1));
+    // Values past the known formats, or negative when read as a signed int, are not valid
+    assertEquals(DXGIFormat.UNKNOWN, readFormat(formats.length));
+    assertEquals(DXGIFormat.UNKNOWN, readFormat(-1));
+  }
+
+  private static DXGIFormat readFormat(int dxgiFormat) throws IOException {
+    ByteBuffer bytes = ByteBuffer.allocate(DX10Header.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    bytes.putInt(0, dxgiFormat);
+    bytes.putInt(4, DX10Header.D3D10ResourceDimension.TEXTURE2D.ordinal());
+    bytes.putInt(12, 1);
+    return DX10Header.read(new ByteBufferChannel(bytes),
+        IO.createWorkBufferForReading(DX10Header.HEADER_LENGTH)).getDXGIFormat();
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import com.lhkbob.imaje.io.InvalidImageException;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class B44DecompressorTest {
+  @Test
+  public void testExactBlocks() throws Exception {
+    // Values whose ordered differences fit in 6 bits are stored exactly with a shift of 0
+    char[] plane = new char[16];
+    for (int i = 0; i < 16; i++) {
+      // Halves from 1.0 upwards, the first row descending slightly
+      plane[i] = (char) (0x3c00 + 5 * (i % 4) + 9 * (i / 4));
+    }
+    plane[1] = 0x3bfc;
+
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    pack14(plane, 0, 4, encoded);
+    assertDecoded(
+        Collections.singletonList(new Channel("Y", ChannelFormat.HALF, false, 1, 1)),
+        encoded.toByteArray(), toLittleEndian(plane), 4, 4);
+  }
+
+  @Test
+  public void testNegativeBlock() throws Exception {
+    char[] plane = new char[16];
+    for (int i = 0; i < 16; i++) {
+      // -2.0 with increasing magnitude, which decreases in the ordered space
+      plane[i] = (char) (0xc000 + i);
+    }
+
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    pack14(plane, 0, 4, encoded);
+    assertDecoded(
+        Collections.singletonList(new Channel("Y", ChannelFormat.HALF, false, 1, 1)),
+        encoded.toByteArray(), toLittleEndian(plane), 4, 4);
+  }
+
+  @Test
+  public void testFlatBlocksAndPartialEdges() throws Exception {
+    // A 6x5 chunk has 2x2 blocks; the right and bottom blocks are clipped
+    int width = 6;
+    int height = 5;
+    char[] values = { 0x3c00, 0x4000, 0xbc00, 0x0000 };
+
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    for (char v : values) {
+      int s = toOrdered(v);
+      encoded.write(s >> 8);
+      encoded.write(s & 0xff);
+      encoded.write(0xfc);
+    }
+    // The UINT channel follows uncompressed as little endian 16-bit values
+    int[] ids = new int[width * height];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = 0x01020304 * (i + 1);
+      encoded.write(ids[i]);
+      encoded.write(ids[i] >> 8);
+      encoded.write(ids[i] >> 16);
+      encoded.write(ids[i] >> 24);
+    }
+
+    byte[] expected = new byte[width * height * 6];
+    int write = 0;
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        char v = values[(y / 4) * 2 + x / 4];
+        expected[write++] = (byte) v;
+        expected[write++] = (byte) (v >> 8);
+      }
+      for (int x = 0; x < width; x++) {
+        int id = ids[y * width + x];
+        for (int b = 0; b < 4; b++) {
+          expected[write++] = (byte) (id >> (8 * b));
+        }
+      }
+    }
+
+    List<Channel> channels = Arrays.asList(
+        new Channel("Y", ChannelFormat.HALF, false, 1, 1),
+        new Channel("id", ChannelFormat.UINT, false, 1, 1));
+    assertDecoded(channels, encoded.toByteArray(), expected, width, height);
+  }
+
+  @Test
+  public void testFlatBlockMarkers() throws Exception {
+    // Any third byte with a shift above 12 marks a flat block, not just the 0xfc writers emit
+    int[] markers = { 13 << 2, (13 << 2) | 0x3, 0xd0, 0xff };
+    char value = 0x3c00;
+    byte[] expected = new byte[32];
+    for (int i = 0; i < 16; i++) {
+      expected[2 * i] = (byte) value;
+      expected[2 * i + 1] = (byte) (value >> 8);
+    }
+
+    for (int marker : markers) {
+      int s = toOrdered(value);
+      byte[] encoded = { (byte) (s >> 8), (byte) s, (byte) marker };
+      assertDecoded(
+          Collections.singletonList(new Channel("Y", ChannelFormat.HALF, false, 1, 1)), encoded,
+          expected, 4, 4);
+    }
+  }
+
+  @Test(expected = InvalidImageException.class)
+  public void testTruncatedBlock() throws Exception {
+    byte[] encoded = new byte[10];
+    new B44Decompressor().decompress(encoded, encoded.length, new byte[32],
+        Collections.singletonList(new Channel("Y", ChannelFormat.HALF, false, 1, 1)), 4, 4);
+  }
+
+  private static void assertDecoded(
+      List<Channel> channels, byte[] encoded, byte[] expected, int width, int height) throws
+      Exception {
+    byte[] out = new byte[expected.length];
+    new B44Decompressor().decompress(encoded, encoded.length, out, channels, width, height);
+    assertArrayEquals(expected, out);
+  }
+
+  private static byte[] toLittleEndian(char[] values) {
+    byte[] bytes = new byte[2 * values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[2 * i] = (byte) values[i];
+      bytes[2 * i + 1] = (byte) (values[i] >> 8);
+    }
+    return bytes;
+  }
+
+  // Map half bits so that their unsigned order matches their numeric order, as the encoder does
+  private static int toOrdered(char h) {
+    if ((h & 0x8000) != 0) {
+      return ~h & 0xffff;
+    } else {
+      return h | 0x8000;
+    }
+  }
+
+  // Reference packing of a 4x4 block whose ordered differences fit in 6 bits with a shift of 0
+  private static void pack14(char[] plane, int offset, int stride, ByteArrayOutputStream out) {
+    int[] t = new int[16];
+    for (int i = 0; i < 16; i++) {
+      t[i] = toOrdered(plane[offset + (i / 4) * stride + i % 4]);
+    }
+
+    int[] d = new int[16];
+    for (int i = 1; i < 16; i++) {
+      // First column differs from the value above, other columns from the value to the left
+      int ref = (i % 4 == 0 ? i - 4 : i - 1);
+      d[i] = t[i] - t[ref] + 0x20;
+      if (d[i] < 0 || d[i] > 0x3f) {
+        throw new IllegalArgumentException("Block is not exactly representable");
+      }
+    }
+
+    out.write(t[0] >> 8);
+    out.write(t[0] & 0xff);
+    out.write(d[4] >> 4);
+    out.write(((d[4] & 0xf) << 4) | (d[8] >> 2));
+    out.write(((d[8] & 0x3) << 6) | d[12]);
+    for (int c = 1; c < 4; c++) {
+      out.write((d[c] << 2) | (d[c + 4] >> 4));
+      out.write(((d[c + 4] & 0xf) << 4) | (d[c + 8] >> 2));
+      out.write(((d[c + 8] & 0x3) << 6) | d[c + 12]);
+    }
+  }
+}
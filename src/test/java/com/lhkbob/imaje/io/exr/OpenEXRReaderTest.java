@@ -0,0 +1,266 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import com.lhkbob.imaje.Image;
+import com.lhkbob.imaje.Images;
+import com.lhkbob.imaje.Raster;
+import com.lhkbob.imaje.color.RGB;
+import com.lhkbob.imaje.data.Bytes;
+import com.lhkbob.imaje.data.Data;
+import com.lhkbob.imaje.io.IO;
+import com.lhkbob.imaje.io.UnsupportedImageFormatException;
+import com.lhkbob.imaje.layout.ImageWindow;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.util.ByteBufferChannel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OpenEXRReaderTest {
+  // Odd dimensions so the last chunk of every compression is partial
+  private static final int WIDTH = 19;
+  private static final int HEIGHT = 37;
+
+  @Test
+  public void testWorkerCounts() throws IOException {
+    Raster<RGB.Linear> source = createSource();
+    // ZIPS has a chunk per line, ZIP and PIZ cover 16 and 32 lines, and the tiles form a 3x5 grid
+    ByteBufferChannel[] files = new ByteBufferChannel[] {
+        write(source, new OpenEXRWriter(Compression.ZIPS, ChannelFormat.HALF, 0, null, 1)),
+        write(source, new OpenEXRWriter(Compression.ZIP, ChannelFormat.HALF, 0, null, 1)),
+        write(source, new OpenEXRWriter(Compression.PIZ, ChannelFormat.FLOAT, 0, null, 1)),
+        write(source, new OpenEXRWriter(Compression.ZIP, ChannelFormat.HALF, 8, null, 1))
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (ByteBufferChannel file : files) {
+        assertRead(source, new OpenEXRReader(null, null, 1), file);
+        for (int workers : new int[] { 1, 2, 3, 8 }) {
+          assertRead(source, new OpenEXRReader(null, executor, workers), file);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testRegionAcrossChunks() throws IOException {
+    Raster<RGB.Linear> source = createSource();
+    // Rows 10 to 29 are OpenEXR lines 7 to 26, crossing the 16 line chunks and the 8x8 tiles
+    ImageWindow region = new ImageWindow(3, 10, 9, 20);
+    for (OpenEXRWriter writer : new OpenEXRWriter[] {
+        new OpenEXRWriter(Compression.ZIP, ChannelFormat.HALF, 0, null, 1),
+        new OpenEXRWriter(Compression.PIZ, ChannelFormat.HALF, 8, null, 1)
+    }) {
+      ByteBufferChannel file = write(source, writer);
+      Image<?> read = new OpenEXRReader().readRegion(file, region, 0, null);
+      assertTrue(read instanceof Raster);
+      assertTrue(read.hasAlphaChannel());
+      assertRegion(source.getPixelArray(), ((Raster<?>) read).getPixelArray(), region, true);
+    }
+  }
+
+  @Test
+  public void testRegionChannelSubset() throws IOException {
+    Raster<RGB.Linear> source = createSource();
+    ByteBufferChannel file = write(
+        source, new OpenEXRWriter(Compression.ZIPS, ChannelFormat.HALF, 0, null, 1));
+
+    ImageWindow region = new ImageWindow(0, 30, WIDTH, 7);
+    Image<?> read = new OpenEXRReader().readRegion(
+        file, region, 0, new HashSet<>(Arrays.asList("R", "G", "B")));
+    assertEquals(RGB.Linear.class, read.getColorType());
+    assertFalse(read.hasAlphaChannel());
+    assertRegion(source.getPixelArray(), ((Raster<?>) read).getPixelArray(), region, false);
+  }
+
+  @Test
+  public void testRegionRequiresUniformFormat() throws IOException {
+    ByteBufferChannel file = writeMixedFormats();
+    ImageWindow region = new ImageWindow(2, 2, 5, 5);
+
+    // The half precision color channels can be read on their own
+    Image<?> read = new OpenEXRReader().readRegion(
+        file, region, 0, new HashSet<>(Arrays.asList("R", "G", "B")));
+    assertRegion(createSource().getPixelArray(), ((Raster<?>) read).getPixelArray(), region,
+        false);
+
+    try {
+      file.position(0);
+      new OpenEXRReader().readRegion(file, region, 0, new HashSet<>(Arrays.asList("R", "Z")));
+      fail("Expected UnsupportedImageFormatException");
+    } catch (UnsupportedImageFormatException e) {
+      // Expected
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRegionOutsideOfImage() throws IOException {
+    ByteBufferChannel file = write(
+        createSource(), new OpenEXRWriter(Compression.NONE, ChannelFormat.HALF, 0, null, 1));
+    new OpenEXRReader().readRegion(file, new ImageWindow(10, 30, 10, 8), 0, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRegionUnknownChannel() throws IOException {
+    ByteBufferChannel file = write(
+        createSource(), new OpenEXRWriter(Compression.NONE, ChannelFormat.HALF, 0, null, 1));
+    new OpenEXRReader().readRegion(
+        file, new ImageWindow(0, 0, 4, 4), 0, Collections.singleton("Q"));
+  }
+
+  private static Raster<RGB.Linear> createSource() {
+    Raster<RGB.Linear> source = Images.newRaster(RGB.Linear.class).width(WIDTH).height(HEIGHT)
+        .rgba().sfloat32().build();
+    PixelArray data = source.getPixelArray();
+    double[] rgb = new double[3];
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        getColor(x, y, rgb);
+        data.set(x, y, rgb, ((x + y) % 9) / 8.0);
+      }
+    }
+    return source;
+  }
+
+  private static void getColor(int x, int y, double[] rgb) {
+    // Multiples of 1/8 that are exactly representable as halves
+    rgb[0] = x / 8.0;
+    rgb[1] = -y / 8.0;
+    rgb[2] = (x + y) / 4.0;
+  }
+
+  private static ByteBufferChannel write(Raster<RGB.Linear> source, OpenEXRWriter writer) throws
+      IOException {
+    ByteBufferChannel file = new ByteBufferChannel();
+    writer.write(source, file);
+    file.position(0);
+    return file;
+  }
+
+  // An uncompressed scanline image with half precision R, G and B and a float Z channel, which the
+  // writer can't produce since it uses a single format for every channel
+  private static ByteBufferChannel writeMixedFormats() throws IOException {
+    List<Channel> channels = Arrays.asList(new Channel("B", ChannelFormat.HALF, false, 1, 1),
+        new Channel("G", ChannelFormat.HALF, false, 1, 1),
+        new Channel("R", ChannelFormat.HALF, false, 1, 1),
+        new Channel("Z", ChannelFormat.FLOAT, false, 1, 1));
+    Box2Int window = new Box2Int(0, 0, WIDTH - 1, HEIGHT - 1);
+    OpenEXRHeader header = new OpenEXRHeader(channels, Compression.NONE, window, window,
+        LineOrder.INCREASING_Y, 1f, new V2F(0f, 0f), 1f, null, null, null, null, null, null, null,
+        PartFormat.SCANLINE, Collections.emptyMap());
+
+    ByteBufferChannel file = new ByteBufferChannel();
+    ByteBuffer work = ByteBuffer.allocate(IO.DEFAULT_WORKBUFFER_LEN);
+    Bytes.intToBytesLE(20000630, work);
+    Bytes.intToBytesLE(2, work);
+    header.write(file, work);
+
+    int lineBytes = WIDTH * (3 * 2 + 4);
+    long chunkStart = file.position() + 8 * HEIGHT;
+    ByteBuffer data = ByteBuffer.allocate(8 * HEIGHT + HEIGHT * (8 + lineBytes))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < HEIGHT; i++) {
+      data.putLong(chunkStart + i * (8 + lineBytes));
+    }
+
+    double[] rgb = new double[3];
+    for (int line = 0; line < HEIGHT; line++) {
+      data.putInt(line).putInt(lineBytes);
+      // OpenEXR's first line is imaJe's top row, and channels are stored in B, G, R, Z order
+      int y = HEIGHT - line - 1;
+      for (int c = 2; c >= 0; c--) {
+        for (int x = 0; x < WIDTH; x++) {
+          getColor(x, y, rgb);
+          data.putShort((short) Data.SFLOAT16.toBits(rgb[c]));
+        }
+      }
+      for (int x = 0; x < WIDTH; x++) {
+        data.putFloat(x * y);
+      }
+    }
+    IO.write(data, file);
+    file.position(0);
+    return file;
+  }
+
+  private static void assertRead(
+      Raster<RGB.Linear> source, OpenEXRReader reader, ByteBufferChannel file) throws
+      IOException {
+    file.position(0);
+    Image<?> read = reader.read(file);
+    assertTrue(read instanceof Raster);
+    assertEquals(RGB.Linear.class, read.getColorType());
+    assertTrue(read.hasAlphaChannel());
+    assertRegion(source.getPixelArray(), ((Raster<?>) read).getPixelArray(),
+        new ImageWindow(0, 0, WIDTH, HEIGHT), true);
+  }
+
+  private static void assertRegion(
+      PixelArray source, PixelArray read, ImageWindow region, boolean checkAlpha) {
+    assertEquals(region.getWidth(), read.getWidth());
+    assertEquals(region.getHeight(), read.getHeight());
+
+    double[] expected = new double[3];
+    double[] actual = new double[3];
+    for (int y = 0; y < region.getHeight(); y++) {
+      for (int x = 0; x < region.getWidth(); x++) {
+        double expectedAlpha = source.get(region.getX() + x, region.getY() + y, expected);
+        double actualAlpha = read.get(x, y, actual);
+        String pixel = "(" + x + ", " + y + ") of " + region;
+        for (int i = 0; i < 3; i++) {
+          assertEquals(pixel, expected[i], actual[i], 0.0);
+        }
+        if (checkAlpha) {
+          assertEquals(pixel, expectedAlpha, actualAlpha, 0.0);
+        }
+      }
+    }
+  }
+}
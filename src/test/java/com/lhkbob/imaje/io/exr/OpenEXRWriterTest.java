@@ -0,0 +1,133 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import com.lhkbob.imaje.Image;
+import com.lhkbob.imaje.Images;
+import com.lhkbob.imaje.Raster;
+import com.lhkbob.imaje.color.RGB;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.util.ByteBufferChannel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OpenEXRWriterTest {
+  // Odd dimensions so the last chunk of every compression is partial
+  private static final int WIDTH = 19;
+  private static final int HEIGHT = 37;
+
+  @Test
+  public void testScanlineRoundTrip() throws IOException {
+    for (Compression c : new Compression[] {
+        Compression.NONE, Compression.ZIPS, Compression.ZIP, Compression.PIZ
+    }) {
+      assertRoundTrip(new OpenEXRWriter(c, ChannelFormat.HALF, 0, null, 1));
+    }
+  }
+
+  @Test
+  public void testTiledRoundTrip() throws IOException {
+    for (Compression c : new Compression[] {
+        Compression.NONE, Compression.ZIP, Compression.PIZ
+    }) {
+      assertRoundTrip(new OpenEXRWriter(c, ChannelFormat.HALF, 8, null, 1));
+    }
+  }
+
+  @Test
+  public void testFloatRoundTrip() throws IOException {
+    assertRoundTrip(new OpenEXRWriter(Compression.PIZ, ChannelFormat.FLOAT, 0, null, 1));
+    assertRoundTrip(new OpenEXRWriter(Compression.ZIP, ChannelFormat.FLOAT, 16, null, 1));
+  }
+
+  @Test
+  public void testConcurrentRoundTrip() throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      // More chunks than the writer's window so that encoders are reused
+      assertRoundTrip(new OpenEXRWriter(Compression.ZIPS, ChannelFormat.HALF, 0, executor, 3));
+      assertRoundTrip(new OpenEXRWriter(Compression.PIZ, ChannelFormat.HALF, 4, executor, 3));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void assertRoundTrip(OpenEXRWriter writer) throws IOException {
+    Raster<RGB.Linear> source = Images.newRaster(RGB.Linear.class).width(WIDTH).height(HEIGHT)
+        .rgba().sfloat32().build();
+    PixelArray data = source.getPixelArray();
+    double[] rgb = new double[3];
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        // Multiples of 1/8 that are exactly representable as halves
+        rgb[0] = x / 8.0;
+        rgb[1] = -y / 8.0;
+        rgb[2] = (x + y) / 4.0;
+        data.set(x, y, rgb, ((x + y) % 9) / 8.0);
+      }
+    }
+
+    ByteBufferChannel file = new ByteBufferChannel();
+    writer.write(source, file);
+    file.position(0);
+    Image<?> read = new OpenEXRReader().read(file);
+
+    String msg = writer.getCompression() + " (" + writer.getChannelFormat() + ")";
+    assertTrue(msg, read instanceof Raster);
+    assertEquals(msg, RGB.Linear.class, read.getColorType());
+    assertTrue(msg, read.hasAlphaChannel());
+    PixelArray readData = ((Raster<?>) read).getPixelArray();
+    assertEquals(msg, WIDTH, readData.getWidth());
+    assertEquals(msg, HEIGHT, readData.getHeight());
+
+    double[] expected = new double[3];
+    double[] actual = new double[3];
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        double expectedAlpha = data.get(x, y, expected);
+        double actualAlpha = readData.get(x, y, actual);
+        String pixel = msg + " at (" + x + ", " + y + ")";
+        for (int i = 0; i < 3; i++) {
+          assertEquals(pixel, expected[i], actual[i], 0.0);
+        }
+        assertEquals(pixel, expectedAlpha, actualAlpha, 0.0);
+      }
+    }
+  }
+}
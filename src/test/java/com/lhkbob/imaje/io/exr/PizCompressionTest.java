@@ -0,0 +1,149 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PizCompressionTest {
+  private static final List<Channel> CHANNELS = Arrays.asList(
+      new Channel("A", ChannelFormat.HALF, false, 1, 1),
+      new Channel("B", ChannelFormat.FLOAT, false, 1, 1),
+      new Channel("G", ChannelFormat.HALF, false, 1, 1),
+      new Channel("id", ChannelFormat.UINT, false, 1, 1));
+  // 2 + 4 + 2 + 4 bytes per pixel
+  private static final int PIXEL_SIZE = 12;
+
+  @Test
+  public void testHuffmanRoundTrip() throws Exception {
+    Random r = new Random(7);
+    char[] raw = new char[5000];
+    for (int i = 0; i < raw.length; i++) {
+      // Skewed distribution with long runs so run length codes are produced
+      if (i > 0 && r.nextInt(4) != 0) {
+        raw[i] = raw[i - 1];
+      } else {
+        raw[i] = (char) (r.nextGaussian() * 40 + 1000);
+      }
+    }
+    // A few outliers spanning the full symbol range
+    raw[10] = 0;
+    raw[20] = 0xffff;
+
+    HuffmanEncoder encoder = new HuffmanEncoder();
+    byte[] encoded = new byte[encoder.prepare(raw, raw.length)];
+    encoder.write(raw, raw.length, encoded, 0);
+
+    char[] decoded = new char[raw.length];
+    new HuffmanDecoder().decode(encoded, 0, encoded.length, decoded, decoded.length);
+    assertArrayEquals(raw, decoded);
+  }
+
+  @Test
+  public void testHuffmanSingleSymbol() throws Exception {
+    char[] raw = new char[100];
+    Arrays.fill(raw, (char) 42);
+
+    HuffmanEncoder encoder = new HuffmanEncoder();
+    byte[] encoded = new byte[encoder.prepare(raw, raw.length)];
+    encoder.write(raw, raw.length, encoded, 0);
+
+    char[] decoded = new char[raw.length];
+    new HuffmanDecoder().decode(encoded, 0, encoded.length, decoded, decoded.length);
+    assertArrayEquals(raw, decoded);
+  }
+
+  @Test
+  public void testPizRoundTripRandom() throws Exception {
+    Random r = new Random(11);
+    // Odd dimensions exercise the partial wavelet levels
+    byte[] chunk = new byte[13 * 7 * PIXEL_SIZE];
+    r.nextBytes(chunk);
+    assertRoundTrip(chunk, 13, 7);
+  }
+
+  @Test
+  public void testPizRoundTripSmooth() throws Exception {
+    int width = 32;
+    int height = 16;
+    byte[] chunk = new byte[width * height * PIXEL_SIZE];
+    int write = 0;
+    for (int y = 0; y < height; y++) {
+      for (Channel c : CHANNELS) {
+        for (int x = 0; x < width; x++) {
+          int value = 15000 + 10 * x + 3 * y;
+          for (int b = 0; b < c.getFormat().getByteCount(); b++) {
+            chunk[write++] = (byte) (value >> (8 * (b % 2)));
+          }
+        }
+      }
+    }
+    assertRoundTrip(chunk, width, height);
+  }
+
+  @Test
+  public void testPizRoundTripZero() throws Exception {
+    assertRoundTrip(new byte[4 * 4 * PIXEL_SIZE], 4, 4);
+  }
+
+  @Test
+  public void testPizCompressorReuse() throws Exception {
+    Random r = new Random(3);
+    PizCompressor compressor = new PizCompressor();
+    PizDecompressor decompressor = new PizDecompressor();
+    for (int size = 9; size >= 1; size -= 4) {
+      byte[] chunk = new byte[size * size * PIXEL_SIZE];
+      r.nextBytes(chunk);
+      int length = compressor.compress(chunk, CHANNELS, size, size);
+      byte[] out = new byte[chunk.length];
+      decompressor.decompress(compressor.getCompressed(), length, out, CHANNELS, size, size);
+      assertArrayEquals(chunk, out);
+    }
+  }
+
+  private static void assertRoundTrip(byte[] chunk, int width, int height) throws Exception {
+    PizCompressor compressor = new PizCompressor();
+    int length = compressor.compress(chunk, CHANNELS, width, height);
+    byte[] compressed = Arrays.copyOf(compressor.getCompressed(), length);
+
+    byte[] out = new byte[chunk.length];
+    new PizDecompressor().decompress(compressed, compressed.length, out, CHANNELS, width, height);
+    assertArrayEquals(chunk, out);
+    assertEquals(chunk.length, out.length);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.exr;
+
+import com.lhkbob.imaje.io.InvalidImageException;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class Pxr24DecompressorTest {
+  private static final List<Channel> CHANNELS = Arrays.asList(
+      new Channel("Y", ChannelFormat.HALF, false, 1, 1),
+      new Channel("Z", ChannelFormat.FLOAT, false, 1, 1),
+      new Channel("id", ChannelFormat.UINT, false, 1, 1));
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    int width = 7;
+    int height = 3;
+    Random r = new Random(5);
+
+    // Scanline order: for each line, each channel's values as little endian bytes
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    ByteArrayOutputStream planes = new ByteArrayOutputStream();
+    for (int y = 0; y < height; y++) {
+      for (Channel c : CHANNELS) {
+        int[] values = new int[width];
+        for (int x = 0; x < width; x++) {
+          switch (c.getFormat()) {
+          case HALF:
+            values[x] = r.nextInt(1 << 16);
+            break;
+          case FLOAT:
+            // FLOAT keeps only its 24 most significant bits
+            values[x] = Float.floatToIntBits(r.nextFloat() * 100f - 50f) & 0xffffff00;
+            break;
+          case UINT:
+            values[x] = r.nextInt();
+            break;
+          }
+          for (int b = 0; b < c.getFormat().getByteCount(); b++) {
+            expected.write(values[x] >> (8 * b));
+          }
+        }
+        writePlanes(c.getFormat(), values, planes);
+      }
+    }
+
+    byte[] raw = planes.toByteArray();
+    Deflater deflater = new Deflater();
+    deflater.setInput(raw);
+    deflater.finish();
+    byte[] compressed = new byte[raw.length + 64];
+    int length = deflater.deflate(compressed);
+    deflater.end();
+
+    byte[] out = new byte[expected.size()];
+    Inflater inflater = new Inflater();
+    try {
+      Pxr24Decompressor.decompress(
+          inflater, compressed, length, new byte[out.length], out, CHANNELS, width, height);
+    } finally {
+      inflater.end();
+    }
+    assertArrayEquals(expected.toByteArray(), out);
+  }
+
+  @Test(expected = InvalidImageException.class)
+  public void testTruncatedChunk() throws Exception {
+    Deflater deflater = new Deflater();
+    deflater.setInput(new byte[10]);
+    deflater.finish();
+    byte[] compressed = new byte[64];
+    int length = deflater.deflate(compressed);
+    deflater.end();
+
+    Inflater inflater = new Inflater();
+    try {
+      Pxr24Decompressor.decompress(
+          inflater, compressed, length, new byte[72], new byte[72], CHANNELS, 4, 2);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  // Reference encoding of one line of a channel: deltas split into byte planes, MSB first
+  private static void writePlanes(ChannelFormat format, int[] values, ByteArrayOutputStream out) {
+    int planeCount = (format == ChannelFormat.HALF ? 2 : (format == ChannelFormat.FLOAT ? 3 : 4));
+    int shift = (format == ChannelFormat.HALF ? 8 : 24);
+    int[] deltas = new int[values.length];
+    int previous = 0;
+    for (int x = 0; x < values.length; x++) {
+      deltas[x] = values[x] - previous;
+      previous = values[x];
+    }
+    for (int p = 0; p < planeCount; p++) {
+      for (int delta : deltas) {
+        out.write(delta >> (shift - 8 * p));
+      }
+    }
+  }
+}
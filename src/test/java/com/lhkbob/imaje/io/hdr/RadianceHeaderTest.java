@@ -0,0 +1,111 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.hdr;
+
+import com.lhkbob.imaje.io.IO;
+import com.lhkbob.imaje.util.ByteBufferChannel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RadianceHeaderTest {
+  @Test
+  public void testWrittenBytes() throws IOException {
+    RadianceHeader h = new RadianceHeader();
+    h.setFormatRGB();
+    h.setWidth(640);
+    h.setHeight(480);
+    h.setTopToBottom(true);
+    h.setLeftToRight(true);
+
+    ByteBufferChannel out = new ByteBufferChannel();
+    h.write(out, IO.createWorkBufferForWriting());
+
+    // The header was previously lost because the work buffer was flipped twice
+    assertEquals("#?RADIANCE\n#Written by imaJe\nFORMAT=32-bit_rle_rgbe\n\n-Y 480 +X 640\n",
+        getWritten(out));
+  }
+
+  @Test
+  public void testSmallWorkBuffer() throws IOException {
+    RadianceHeader h = new RadianceHeader();
+    h.setFormatXYZ();
+    h.setWidth(3);
+    h.setHeight(5);
+
+    ByteBufferChannel large = new ByteBufferChannel();
+    h.write(large, IO.createWorkBufferForWriting());
+    // The header is written in pieces when it doesn't fit in the work buffer
+    ByteBufferChannel small = new ByteBufferChannel();
+    h.write(small, ByteBuffer.allocate(7));
+
+    assertEquals(getWritten(large), getWritten(small));
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    RadianceHeader h = new RadianceHeader();
+    h.setFormatRGB();
+    h.setExposure(2.5);
+    h.setWidth(17);
+    h.setHeight(9);
+    h.setTopToBottom(false);
+    h.setLeftToRight(true);
+
+    ByteBufferChannel file = new ByteBufferChannel();
+    h.write(file, IO.createWorkBufferForWriting());
+    file.position(0);
+    RadianceHeader read = RadianceHeader.read(file, IO.createWorkBufferForReading());
+
+    assertTrue(read.isFormatRGB());
+    assertFalse(read.isFormatXYZ());
+    assertEquals(2.5, read.getExposure(), 1e-4);
+    assertEquals(17, read.getWidth());
+    assertEquals(9, read.getHeight());
+    assertFalse(read.isTopToBottom());
+    assertTrue(read.isLeftToRight());
+  }
+
+  private static String getWritten(ByteBufferChannel channel) {
+    ByteBuffer buffer = channel.getBuffer();
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.hdr;
+
+import com.lhkbob.imaje.Images;
+import com.lhkbob.imaje.Raster;
+import com.lhkbob.imaje.color.RGB;
+import com.lhkbob.imaje.color.space.rgb.SRGB;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.util.ByteBufferChannel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+public class RadianceWriterTest {
+  @Test
+  public void testRunLengthEncodedRoundTrip() throws IOException {
+    assertRoundTrip(new RadianceWriter(null, 1), 300, 23);
+  }
+
+  @Test
+  public void testFlatScanlineRoundTrip() throws IOException {
+    // Scanlines narrower than 8 pixels are not run-length encoded
+    assertRoundTrip(new RadianceWriter(null, 1), 5, 11);
+  }
+
+  @Test
+  public void testConcurrentRoundTrip() throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      // More scanlines than the writer's window so that encoders are reused
+      assertRoundTrip(new RadianceWriter(executor, 4), 64, 50);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testColorsConvertedFromSpace() throws IOException {
+    Raster<RGB> source = Images.newRaster(RGB.class).width(16).height(2).rgb().sfloat32().build();
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 16; x++) {
+        source.getPixelArray().set(x, y, new double[] { x / 15.0, 0.5, 1.0 }, 1.0);
+      }
+    }
+
+    ByteBufferChannel file = new ByteBufferChannel();
+    new RadianceWriter(null, 1).write(source, SRGB.SPACE, file);
+    file.position(0);
+    PixelArray readData = new RadianceReader().read(file).getPixelArray();
+
+    // The sRGB values are stored as their linear equivalents
+    double[] actual = new double[3];
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 16; x++) {
+        readData.get(x, y, actual);
+        assertEquals(decodeSRGB(x / 15.0), actual[0], 1.0 / 128.0);
+        assertEquals(decodeSRGB(0.5), actual[1], 1.0 / 128.0);
+        assertEquals(1.0, actual[2], 1.0 / 128.0);
+      }
+    }
+  }
+
+  private static double decodeSRGB(double value) {
+    return value <= 0.04045 ? value / 12.92 : Math.pow((value + 0.055) / 1.055, 2.4);
+  }
+
+  private static void assertRoundTrip(RadianceWriter writer, int width, int height) throws
+      IOException {
+    Raster<RGB.Linear> source = Images.newRaster(RGB.Linear.class).width(width).height(height)
+        .rgb().sfloat32().build();
+    PixelArray data = source.getPixelArray();
+    Random r = new Random(width * 31 + height);
+    double[] rgb = new double[3];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        if (x > width / 2) {
+          // Long runs of a single value exercise the run packets
+          rgb[0] = 0.5;
+          rgb[1] = y;
+          rgb[2] = 0.0;
+        } else {
+          // Noise over a wide dynamic range exercises the literal packets
+          rgb[0] = r.nextDouble() * 100.0;
+          rgb[1] = r.nextDouble() * 0.01;
+          rgb[2] = r.nextDouble();
+        }
+        data.set(x, y, rgb, 1.0);
+      }
+    }
+
+    ByteBufferChannel file = new ByteBufferChannel();
+    writer.write(source, file);
+    file.position(0);
+    Raster<?> read = new RadianceReader().read(file);
+
+    assertEquals(RGB.Linear.class, read.getColorType());
+    PixelArray readData = read.getPixelArray();
+    assertEquals(width, readData.getWidth());
+    assertEquals(height, readData.getHeight());
+
+    double[] expected = new double[3];
+    double[] actual = new double[3];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        data.get(x, y, expected);
+        readData.get(x, y, actual);
+
+        // RGBE shares an exponent, so the error is relative to the largest component. The read
+        // image is stored as sfloat16, which adds its own relative error.
+        double max = Math.max(expected[0], Math.max(expected[1], expected[2]));
+        for (int i = 0; i < 3; i++) {
+          assertEquals("(" + x + ", " + y + ")", expected[i], actual[i],
+              max / 128.0 + Math.abs(expected[i]) / 1024.0);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.tga;
+
+import com.lhkbob.imaje.Raster;
+import com.lhkbob.imaje.color.RGB;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.util.ByteBufferChannel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TGAReaderTest {
+  @Test
+  public void testPacketLength() {
+    // The low 7 bits hold one less than the pixel count, for raw and run-length packets alike
+    assertEquals(1, TGAReader.getPacketLength((byte) 0x00));
+    assertEquals(128, TGAReader.getPacketLength((byte) 0x7f));
+    assertEquals(1, TGAReader.getPacketLength((byte) 0x80));
+    assertEquals(3, TGAReader.getPacketLength((byte) 0x82));
+    assertEquals(128, TGAReader.getPacketLength((byte) 0xff));
+
+    assertFalse(TGAReader.isRLEPacket((byte) 0x7f));
+    assertTrue(TGAReader.isRLEPacket((byte) 0x80));
+  }
+
+  @Test
+  public void testReadRunLengthEncoded() throws IOException {
+    byte[] file = new byte[] {
+        // No ID or color map, RLE true color, 4x2 pixels, 24 bits per pixel, top to bottom
+        0, 0, 10, 0, 0, 0, 0, 0, 0, 0, 0, 0, 4, 0, 2, 0, 24, 0x20,
+        // Top row: a run of 3 red pixels, then a raw packet with 1 green pixel (stored as BGR)
+        (byte) 0x82, 0, 0, (byte) 0xff,
+        0x00, 0, (byte) 0xff, 0,
+        // Bottom row: a raw packet with 2 blue pixels and a run of 2 white pixels
+        0x01, (byte) 0xff, 0, 0, (byte) 0xff, 0, 0,
+        (byte) 0x81, (byte) 0xff, (byte) 0xff, (byte) 0xff
+    };
+
+    Raster<RGB> image = new TGAReader().read(new ByteBufferChannel(ByteBuffer.wrap(file)));
+    assertEquals(4, image.getWidth());
+    assertEquals(2, image.getHeight());
+
+    // Raster coordinates start at the bottom left
+    PixelArray data = image.getPixelArray();
+    double[] red = { 1.0, 0.0, 0.0 };
+    double[] green = { 0.0, 1.0, 0.0 };
+    double[] blue = { 0.0, 0.0, 1.0 };
+    double[] white = { 1.0, 1.0, 1.0 };
+    assertPixel(red, data, 0, 1);
+    assertPixel(red, data, 1, 1);
+    assertPixel(red, data, 2, 1);
+    assertPixel(green, data, 3, 1);
+    assertPixel(blue, data, 0, 0);
+    assertPixel(blue, data, 1, 0);
+    assertPixel(white, data, 2, 0);
+    assertPixel(white, data, 3, 0);
+  }
+
+  private static void assertPixel(double[] expected, PixelArray data, int x, int y) {
+    double[] actual = new double[3];
+    data.get(x, y, actual);
+    assertArrayEquals(expected, actual, 1e-6);
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.io.tga;
+
+import com.lhkbob.imaje.ImageBuilder;
+import com.lhkbob.imaje.Images;
+import com.lhkbob.imaje.Raster;
+import com.lhkbob.imaje.color.RGB;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.util.ByteBufferChannel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class TGAWriterTest {
+  @Test
+  public void testRunLengthEncodedRoundTrip() throws IOException {
+    assertRoundTrip(new TGAWriter(true), false);
+    assertRoundTrip(new TGAWriter(true), true);
+  }
+
+  @Test
+  public void testUncompressedRoundTrip() throws IOException {
+    assertRoundTrip(new TGAWriter(false), false);
+    assertRoundTrip(new TGAWriter(false), true);
+  }
+
+  @Test
+  public void testBGRCopyRoundTrip() throws IOException {
+    // Unorm8 BGR(A) scanlines are copied without conversion
+    Raster<RGB> source = Images.newRaster(RGB.class).width(150).height(7).bgra().unorm8()
+        .build();
+    fill(source.getPixelArray(), true);
+
+    assertRoundTrip(new TGAWriter(true), source);
+  }
+
+  private static void assertRoundTrip(TGAWriter writer, boolean alpha) throws IOException {
+    // Wider than the longest packet so runs and raw packets are split; stored as floats so the
+    // writer converts each scanline
+    ImageBuilder.OfRaster<RGB> builder = Images.newRaster(RGB.class).width(300).height(9);
+    if (alpha) {
+      builder.rgba();
+    }
+    Raster<RGB> source = builder.sfloat32().build();
+    fill(source.getPixelArray(), alpha);
+    assertRoundTrip(writer, source);
+  }
+
+  private static void assertRoundTrip(TGAWriter writer, Raster<RGB> source) throws IOException {
+    ByteBufferChannel file = new ByteBufferChannel();
+    writer.write(source, file);
+    file.position(0);
+    Raster<RGB> read = new TGAReader().read(file);
+
+    PixelArray expected = source.getPixelArray();
+    PixelArray actual = read.getPixelArray();
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    assertEquals(expected.hasAlphaChannel(), actual.hasAlphaChannel());
+
+    double[] e = new double[3];
+    double[] a = new double[3];
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        double expectedAlpha = expected.get(x, y, e);
+        double actualAlpha = actual.get(x, y, a);
+        String pixel = "(" + x + ", " + y + ")";
+        for (int i = 0; i < 3; i++) {
+          // Values are multiples of 1/255, so they survive the 8-bit file exactly
+          assertEquals(pixel, e[i], a[i], 1e-6);
+        }
+        if (expected.hasAlphaChannel()) {
+          assertEquals(pixel, expectedAlpha, actualAlpha, 1e-6);
+        }
+      }
+    }
+  }
+
+  private static void fill(PixelArray data, boolean alpha) {
+    double[] rgb = new double[3];
+    for (int y = 0; y < data.getHeight(); y++) {
+      for (int x = 0; x < data.getWidth(); x++) {
+        if (x < 200 && y % 2 == 0) {
+          // A run longer than a single packet
+          rgb[0] = 1.0;
+          rgb[1] = y / 255.0;
+          rgb[2] = 0.0;
+        } else {
+          rgb[0] = (x % 256) / 255.0;
+          rgb[1] = ((x * 7 + y) % 256) / 255.0;
+          rgb[2] = ((x * 13) % 256) / 255.0;
+        }
+        data.set(x, y, rgb, alpha ? ((x + y) % 256) / 255.0 : 1.0);
+      }
+    }
+  }
+}
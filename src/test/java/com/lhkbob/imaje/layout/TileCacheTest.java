@@ -0,0 +1,213 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.layout;
+
+import com.lhkbob.imaje.data.Data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TileCacheTest {
+  @Test
+  public void testHitsAndMisses() throws IOException {
+    TileCache cache = new TileCache(1024);
+    AtomicInteger loads = new AtomicInteger();
+    TiledPixelArray array = createArray(8, 8, 4, 4, cache, loads);
+
+    PixelArray tile = cache.getTile(array, 0, 0);
+    assertSame(tile, cache.getTile(array, 0, 0));
+    cache.getTile(array, 1, 1);
+    assertSame(tile, cache.getTile(array, 0, 0));
+
+    assertEquals(2, loads.get());
+    assertEquals(2, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(0, cache.getEvictionCount());
+    assertEquals(0.5, cache.getHitRate(), 1e-12);
+    assertEquals(2, cache.size());
+    // Each 4x4 tile uses 4 bytes per pixel
+    assertEquals(2 * 64, cache.getCurrentBytes());
+  }
+
+  @Test
+  public void testEvictionByBytes() throws IOException {
+    // Room for two full 4x4 tiles at 4 bytes per pixel
+    TileCache cache = new TileCache(128);
+    assertEquals(128, cache.getMaximumBytes());
+    TiledPixelArray array = createArray(10, 4, 4, 4, cache, new AtomicInteger());
+
+    PixelArray first = cache.getTile(array, 0, 0);
+    PixelArray second = cache.getTile(array, 1, 0);
+    // The clipped 2x4 tile only needs 32 bytes, so it evicts one tile
+    PixelArray clipped = cache.getTile(array, 2, 0);
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(2, cache.size());
+    assertEquals(64 + 32, cache.getCurrentBytes());
+
+    assertSame(clipped, cache.getTile(array, 2, 0));
+    assertSame(second, cache.getTile(array, 1, 0));
+    assertNotSame(first, cache.getTile(array, 0, 0));
+  }
+
+  @Test
+  public void testTileLargerThanBudgetIsKept() throws IOException {
+    TileCache cache = new TileCache(16);
+    TiledPixelArray array = createArray(8, 8, 8, 8, cache, new AtomicInteger());
+
+    PixelArray tile = cache.getTile(array, 0, 0);
+    assertEquals(1, cache.size());
+    assertEquals(256, cache.getCurrentBytes());
+    assertSame(tile, cache.getTile(array, 0, 0));
+  }
+
+  @Test
+  public void testInvalidateAndClear() throws IOException {
+    TileCache cache = new TileCache(1024);
+    TiledPixelArray a = createArray(8, 4, 4, 4, cache, new AtomicInteger());
+    TiledPixelArray b = createArray(8, 4, 4, 4, cache, new AtomicInteger());
+    cache.getTile(a, 0, 0);
+    cache.getTile(a, 1, 0);
+    cache.getTile(b, 0, 0);
+
+    cache.invalidate(a);
+    assertEquals(1, cache.size());
+    assertEquals(64, cache.getCurrentBytes());
+    assertEquals(0, cache.getEvictionCount());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getCurrentBytes());
+  }
+
+  @Test
+  public void testTilesOfCollectedArraysAreRemoved() throws Exception {
+    TileCache cache = new TileCache(1024);
+    TiledPixelArray kept = createArray(4, 4, 4, 4, cache, new AtomicInteger());
+    cache.getTile(kept, 0, 0);
+    cacheUnreachableArray(cache);
+    assertEquals(2, cache.size());
+
+    // Collected arrays are only purged when a tile is requested
+    for (int i = 0; i < 50 && cache.size() > 1; i++) {
+      System.gc();
+      Thread.sleep(10);
+      cache.getTile(kept, 0, 0);
+    }
+    assertEquals(1, cache.size());
+    assertEquals(64, cache.getCurrentBytes());
+  }
+
+  @Test
+  public void testConcurrentLoadsOfSameTile() throws Exception {
+    TileCache cache = new TileCache(1024);
+    // Both loaders must be running before either finishes, so both threads miss
+    CountDownLatch loading = new CountDownLatch(2);
+    AtomicInteger loads = new AtomicInteger();
+    TiledPixelArray array = new TiledPixelArray(4, 4, 4, 4, false, 1, false, 4, (x, y) -> {
+      loads.incrementAndGet();
+      loading.countDown();
+      try {
+        loading.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return createTile(4, 4);
+    }, cache);
+
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Future<PixelArray> first = pool.submit(() -> cache.getTile(array, 0, 0));
+      Future<PixelArray> second = pool.submit(() -> cache.getTile(array, 0, 0));
+      assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdown();
+    }
+
+    assertEquals(2, loads.get());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(1, cache.size());
+    assertEquals(64, cache.getCurrentBytes());
+  }
+
+  @Test
+  public void testPixelAccessUsesCache() {
+    TileCache cache = new TileCache(1024);
+    AtomicInteger loads = new AtomicInteger();
+    TiledPixelArray array = createArray(8, 8, 4, 4, cache, loads);
+
+    double[] channels = new double[1];
+    for (int y = 0; y < 8; y++) {
+      for (int x = 0; x < 8; x++) {
+        array.get(x, y, channels);
+      }
+    }
+    assertEquals(4, loads.get());
+    assertEquals(4, cache.size());
+    assertTrue(cache.getHitCount() >= 60);
+  }
+
+  private static void cacheUnreachableArray(TileCache cache) throws IOException {
+    TiledPixelArray collected = createArray(4, 4, 4, 4, cache, new AtomicInteger());
+    cache.getTile(collected, 0, 0);
+  }
+
+  private static TiledPixelArray createArray(
+      int width, int height, int tileWidth, int tileHeight, TileCache cache,
+      AtomicInteger loads) {
+    // The loader must not reference the array so the cache doesn't keep it reachable
+    return new TiledPixelArray(width, height, tileWidth, tileHeight, false, 1, false, 4,
+        (x, y) -> {
+          loads.incrementAndGet();
+          return createTile(Math.min(tileWidth, width - x * tileWidth),
+              Math.min(tileHeight, height - y * tileHeight));
+        }, cache);
+  }
+
+  private static PixelArray createTile(int width, int height) {
+    return new UnpackedPixelArray(
+        new PixelFormat(new int[] { 0 }, new PixelFormat.Type[] { PixelFormat.Type.SFLOAT },
+            new int[] { 32 }), new ScanlineLayout(width, height, 1),
+        Data.getDefaultDataFactory().newFloatData(width * height));
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.layout.compressed;
+
+import com.lhkbob.imaje.data.Data;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.layout.PixelFormat;
+import com.lhkbob.imaje.layout.ScanlineLayout;
+import com.lhkbob.imaje.layout.UnpackedPixelArray;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BCEncoderTest {
+  private static final int SIZE = 64;
+
+  @Test
+  public void testBC1Quality() {
+    PixelArray source = createSource(3, false, false);
+    assertQuality(BCEncoder.Format.BC1_RGB, BC1Array.class, source, 21.0, 25.0, 28.0);
+  }
+
+  @Test
+  public void testBC1PunchThroughAlpha() {
+    PixelArray source = createSource(3, false, false);
+    double[] color = new double[3];
+    for (int y = 0; y < SIZE; y++) {
+      for (int x = 0; x < SIZE; x++) {
+        source.get(x, y, color);
+        source.set(x, y, color, (x + y) % 5 == 0 ? 0.0 : 1.0);
+      }
+    }
+
+    for (BCEncoder.Quality quality : BCEncoder.Quality.values()) {
+      BCArray encoded = new BCEncoder(BCEncoder.Format.BC1_RGBA, quality, false, null, null)
+          .encode(source);
+      assertTrue(encoded.hasAlphaChannel());
+      for (int y = 0; y < SIZE; y++) {
+        for (int x = 0; x < SIZE; x++) {
+          assertEquals(source.getAlpha(x, y), encoded.getAlpha(x, y), 0.0);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testBC2Quality() {
+    PixelArray source = createSource(3, true, false);
+    assertQuality(BCEncoder.Format.BC2, BC2Array.class, source, 22.5, 26.5, 29.0);
+  }
+
+  @Test
+  public void testBC3Quality() {
+    PixelArray source = createSource(3, true, false);
+    assertQuality(BCEncoder.Format.BC3, BC3Array.class, source, 22.5, 26.5, 29.0);
+  }
+
+  @Test
+  public void testBC4Quality() {
+    PixelArray source = createSource(1, false, false);
+    assertQuality(BCEncoder.Format.BC4_UNORM, BC4Array.class, source, 41.0, 41.0, 42.0);
+    PixelArray signed = createSource(1, false, true);
+    assertQuality(BCEncoder.Format.BC4_SNORM, BC4Array.class, signed, 41.0, 41.0, 42.0);
+  }
+
+  @Test
+  public void testBC5Quality() {
+    PixelArray source = createSource(2, false, false);
+    assertQuality(BCEncoder.Format.BC5_UNORM, BC5Array.class, source, 39.0, 39.0, 40.0);
+    PixelArray signed = createSource(2, false, true);
+    assertQuality(BCEncoder.Format.BC5_SNORM, BC5Array.class, signed, 39.0, 39.0, 40.0);
+  }
+
+  @Test
+  public void testParallelEncodingMatchesSerial() {
+    PixelArray source = createSource(3, true, false);
+    for (BCEncoder.Quality quality : BCEncoder.Quality.values()) {
+      BCArray serial = new BCEncoder(BCEncoder.Format.BC3, quality, false, null, null)
+          .encode(source);
+      BCArray parallel = new BCEncoder(BCEncoder.Format.BC3, quality, false, null,
+          ForkJoinPool.commonPool()).encode(source);
+      assertArrayEquals(getBytes(serial), getBytes(parallel));
+    }
+  }
+
+  private static void assertQuality(
+      BCEncoder.Format format, Class<? extends BCArray> arrayType, PixelArray source,
+      double... minimumPSNR) {
+    // Signed data spans [-1, 1] so its peak error is twice that of unsigned data
+    double peak = format == BCEncoder.Format.BC4_SNORM || format == BCEncoder.Format.BC5_SNORM
+        ? 2.0 : 1.0;
+    double previous = 0.0;
+    for (BCEncoder.Quality quality : BCEncoder.Quality.values()) {
+      BCArray encoded = new BCEncoder(format, quality, false, null, null).encode(source);
+      assertEquals(arrayType, encoded.getClass());
+
+      double psnr = getPSNR(source, encoded, peak);
+      assertTrue(format + " at " + quality + " has a PSNR of " + psnr,
+          psnr >= minimumPSNR[quality.ordinal()]);
+      // A higher quality tier should never be noticeably worse than the one before it
+      assertTrue(format + " at " + quality + " is worse than the previous quality tier",
+          psnr >= previous - 0.01);
+      previous = psnr;
+    }
+  }
+
+  private static double getPSNR(PixelArray expected, PixelArray actual, double peak) {
+    int channels = expected.getColorChannelCount();
+    double[] e = new double[channels];
+    double[] a = new double[channels];
+    double error = 0.0;
+    long samples = 0;
+    for (int y = 0; y < SIZE; y++) {
+      for (int x = 0; x < SIZE; x++) {
+        double alphaError = expected.get(x, y, e) - actual.get(x, y, a);
+        for (int i = 0; i < channels; i++) {
+          error += (e[i] - a[i]) * (e[i] - a[i]);
+        }
+        samples += channels;
+        if (expected.hasAlphaChannel()) {
+          error += alphaError * alphaError;
+          samples++;
+        }
+      }
+    }
+    return 10.0 * Math.log10(peak * peak / (error / samples));
+  }
+
+  private static byte[] getBytes(BCArray array) {
+    byte[] bytes = new byte[Math.toIntExact(array.getLayout().getRequiredByteCount())];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = array.getData().get(array.getDataOffset() + i);
+    }
+    return bytes;
+  }
+
+  private static PixelArray createSource(int channels, boolean alpha, boolean signed) {
+    int bands = alpha ? channels + 1 : channels;
+    int[] channelMap = new int[bands];
+    PixelFormat.Type[] types = new PixelFormat.Type[bands];
+    int[] bits = new int[bands];
+    for (int i = 0; i < bands; i++) {
+      channelMap[i] = i < channels ? i : PixelFormat.ALPHA_CHANNEL;
+      types[i] = PixelFormat.Type.SFLOAT;
+      bits[i] = 32;
+    }
+    PixelArray source = new UnpackedPixelArray(new PixelFormat(channelMap, types, bits),
+        new ScanlineLayout(SIZE, SIZE, bands),
+        Data.getDefaultDataFactory().newFloatData(SIZE * SIZE * bands));
+
+    // Smooth waves with a little noise, and a vertical ramp for alpha
+    Random random = new Random(42);
+    double[] color = new double[channels];
+    for (int y = 0; y < SIZE; y++) {
+      for (int x = 0; x < SIZE; x++) {
+        for (int i = 0; i < channels; i++) {
+          double value = 0.5 + 0.35 * Math.sin(0.15 * x * (i + 1) + 0.1 * y)
+              + 0.1 * (random.nextDouble() - 0.5);
+          color[i] = signed ? 2.0 * value - 1.0 : value;
+        }
+        source.set(x, y, color, alpha ? (double) y / (SIZE - 1) : 1.0);
+      }
+    }
+    return source;
+  }
+}
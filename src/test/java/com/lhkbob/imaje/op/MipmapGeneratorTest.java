@@ -0,0 +1,242 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.op;
+
+import com.lhkbob.imaje.Mipmap;
+import com.lhkbob.imaje.MipmapArray;
+import com.lhkbob.imaje.MipmapVolume;
+import com.lhkbob.imaje.color.RGB;
+import com.lhkbob.imaje.color.space.rgb.Linear;
+import com.lhkbob.imaje.color.space.rgb.SRGB;
+import com.lhkbob.imaje.color.transform.Transform;
+import com.lhkbob.imaje.data.Data;
+import com.lhkbob.imaje.layout.PixelArray;
+import com.lhkbob.imaje.layout.PixelFormat;
+import com.lhkbob.imaje.layout.ScanlineLayout;
+import com.lhkbob.imaje.layout.UnpackedPixelArray;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MipmapGeneratorTest {
+  @Test
+  public void testBoxFilterOddNonSquareLevels() {
+    // 5x3 -> 2x1 -> 1x1, with colors x + 10y in every channel and alpha x / 4
+    List<PixelArray> levels = createLevels(5, 3, 3);
+    PixelArray base = levels.get(0);
+    for (int y = 0; y < 3; y++) {
+      for (int x = 0; x < 5; x++) {
+        base.set(x, y, gray(x + 10 * y), x / 4.0);
+      }
+    }
+
+    new MipmapGenerator(MipmapGenerator.Filter.BOX)
+        .generate(new Mipmap<>(RGB.class, levels), (Transform<?, ?, ?, ?>) null);
+
+    // Each output pixel of level 1 covers input columns 0-2 and 2-4, and all three rows
+    assertPixel(levels.get(1), 0, 0, 11.0, 0.25);
+    assertPixel(levels.get(1), 1, 0, 13.0, 0.75);
+    assertPixel(levels.get(2), 0, 0, 12.0, 0.5);
+  }
+
+  @Test
+  public void testFiltersPreserveConstantImages() {
+    for (MipmapGenerator.Filter filter : MipmapGenerator.Filter.values()) {
+      // 7x5 -> 3x2 -> 1x1
+      List<PixelArray> levels = createLevels(7, 5, 3);
+      fill(levels.get(0), 0.25, 0.75);
+
+      new MipmapGenerator(filter)
+          .generate(new Mipmap<>(RGB.class, levels), (Transform<?, ?, ?, ?>) null);
+      for (PixelArray level : levels.subList(1, levels.size())) {
+        for (int y = 0; y < level.getHeight(); y++) {
+          for (int x = 0; x < level.getWidth(); x++) {
+            assertPixel(level, x, y, 0.25, 0.75);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSRGBFilteredInLinearSpace() {
+    // Black and white columns average to 0.5 in linear space, which is brighter once encoded
+    List<PixelArray> levels = createLevels(2, 2, 3);
+    for (int y = 0; y < 2; y++) {
+      levels.get(0).set(0, y, gray(0.0), 1.0);
+      levels.get(0).set(1, y, gray(1.0), 1.0);
+    }
+    List<PixelArray> linearLevels = createLevels(2, 2, 3);
+    for (int y = 0; y < 2; y++) {
+      linearLevels.get(0).set(0, y, gray(0.0), 1.0);
+      linearLevels.get(0).set(1, y, gray(1.0), 1.0);
+    }
+
+    MipmapGenerator generator = new MipmapGenerator(MipmapGenerator.Filter.BOX);
+    generator.generate(new Mipmap<>(RGB.class, levels), SRGB.SPACE);
+    generator.generate(new Mipmap<>(RGB.class, linearLevels), Linear.SPACE_SRGB);
+
+    double encoded = 1.055 * Math.pow(0.5, 1.0 / 2.4) - 0.055;
+    assertPixel(levels.get(1), 0, 0, encoded, 1.0);
+    assertPixel(linearLevels.get(1), 0, 0, 0.5, 1.0);
+  }
+
+  @Test
+  public void testMipmapArrayLayersAreIndependent() {
+    List<List<PixelArray>> layers = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      List<PixelArray> levels = createLevels(3, 6, 3);
+      fill(levels.get(0), i, 1.0);
+      layers.add(levels);
+    }
+
+    new MipmapGenerator(MipmapGenerator.Filter.LANCZOS)
+        .generate(new MipmapArray<>(RGB.class, layers), (Transform<?, ?, ?, ?>) null);
+    for (int i = 0; i < 3; i++) {
+      // 3x6 -> 1x3 -> 1x1
+      List<PixelArray> levels = layers.get(i);
+      assertEquals(3, levels.size());
+      assertPixel(levels.get(1), 0, 2, i, 1.0);
+      assertPixel(levels.get(2), 0, 0, i, 1.0);
+    }
+  }
+
+  @Test
+  public void testMipmapVolumeFiltersDepth() {
+    // 2x2x3 -> 1x1x1, where each slice is filled with its z coordinate
+    List<List<PixelArray>> volume = new ArrayList<>();
+    List<PixelArray> base = new ArrayList<>();
+    for (int z = 0; z < 3; z++) {
+      PixelArray slice = createLevel(2, 2, 3);
+      fill(slice, z, 1.0);
+      base.add(slice);
+    }
+    volume.add(base);
+    volume.add(Arrays.asList(createLevel(1, 1, 3)));
+
+    new MipmapGenerator(MipmapGenerator.Filter.BOX)
+        .generate(new MipmapVolume<>(RGB.class, volume), (Transform<?, ?, ?, ?>) null);
+    assertPixel(volume.get(1).get(0), 0, 0, 1.0, 1.0);
+  }
+
+  @Test
+  public void testBandsMatchSingleTask() {
+    List<PixelArray> banded = createLevels(37, 29, 3);
+    List<PixelArray> single = createLevels(37, 29, 3);
+    for (int y = 0; y < 29; y++) {
+      for (int x = 0; x < 37; x++) {
+        double[] color = new double[] { Math.sin(x * 0.3), Math.cos(y * 0.2), (x ^ y) / 64.0 };
+        banded.get(0).set(x, y, color, 1.0);
+        single.get(0).set(x, y, color, 1.0);
+      }
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      new MipmapGenerator(MipmapGenerator.Filter.KAISER, pool, 1)
+          .generate(new Mipmap<>(RGB.class, banded), SRGB.SPACE);
+      new MipmapGenerator(MipmapGenerator.Filter.KAISER, pool, 64)
+          .generate(new Mipmap<>(RGB.class, single), SRGB.SPACE);
+    } finally {
+      pool.shutdown();
+    }
+
+    for (int i = 1; i < banded.size(); i++) {
+      PixelArray a = banded.get(i);
+      PixelArray b = single.get(i);
+      double[] ca = new double[3];
+      double[] cb = new double[3];
+      for (int y = 0; y < a.getHeight(); y++) {
+        for (int x = 0; x < a.getWidth(); x++) {
+          a.get(x, y, ca);
+          b.get(x, y, cb);
+          assertArrayEquals(cb, ca, 0.0);
+        }
+      }
+    }
+  }
+
+  private static void assertPixel(
+      PixelArray level, int x, int y, double expectedColor, double expectedAlpha) {
+    double[] color = new double[level.getColorChannelCount()];
+    double alpha = level.get(x, y, color);
+    for (double c : color) {
+      assertEquals(expectedColor, c, 1e-4);
+    }
+    assertEquals(expectedAlpha, alpha, 1e-4);
+  }
+
+  private static double[] gray(double value) {
+    return new double[] { value, value, value };
+  }
+
+  private static void fill(PixelArray array, double color, double alpha) {
+    for (int y = 0; y < array.getHeight(); y++) {
+      for (int x = 0; x < array.getWidth(); x++) {
+        array.set(x, y, gray(color), alpha);
+      }
+    }
+  }
+
+  private static List<PixelArray> createLevels(int width, int height, int channels) {
+    List<PixelArray> levels = new ArrayList<>();
+    while (true) {
+      levels.add(createLevel(width, height, channels));
+      if (width == 1 && height == 1) {
+        return levels;
+      }
+      width = Math.max(1, width / 2);
+      height = Math.max(1, height / 2);
+    }
+  }
+
+  private static PixelArray createLevel(int width, int height, int channels) {
+    int[] channelMap = new int[channels + 1];
+    PixelFormat.Type[] types = new PixelFormat.Type[channels + 1];
+    int[] bits = new int[channels + 1];
+    for (int i = 0; i <= channels; i++) {
+      channelMap[i] = i < channels ? i : PixelFormat.ALPHA_CHANNEL;
+      types[i] = PixelFormat.Type.SFLOAT;
+      bits[i] = 32;
+    }
+    return new UnpackedPixelArray(new PixelFormat(channelMap, types, bits),
+        new ScanlineLayout(width, height, channels + 1),
+        Data.getDefaultDataFactory().newFloatData(width * height * (channels + 1)));
+  }
+}
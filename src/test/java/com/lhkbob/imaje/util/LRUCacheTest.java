@@ -0,0 +1,166 @@
+/*
+ * BSD 3-Clause License - imaJe
+ *
+ * Copyright (c) 2016, Michael Ludwig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.lhkbob.imaje.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class LRUCacheTest {
+  @Test
+  public void testHitsAndMisses() {
+    LRUCache<String, String> cache = new LRUCache<>(10, v -> 1);
+    assertEquals(0.0, cache.getHitRate(), 0.0);
+
+    String a = cache.get("a", () -> new String("a"));
+    assertSame(a, cache.get("a", () -> new String("a")));
+    assertSame(a, cache.get("a", () -> new String("a")));
+    cache.get("b", () -> new String("b"));
+
+    assertEquals(2, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(0, cache.getEvictionCount());
+    assertEquals(0.5, cache.getHitRate(), 1e-12);
+    assertEquals(2, cache.size());
+    assertEquals(2, cache.getCurrentWeight());
+  }
+
+  @Test
+  public void testEvictionByWeight() {
+    LRUCache<String, int[]> cache = new LRUCache<>(10, v -> v.length);
+    int[] a = cache.get("a", () -> new int[4]);
+    int[] b = cache.get("b", () -> new int[4]);
+    assertEquals(8, cache.getCurrentWeight());
+
+    // Touch a so that b becomes the least recently used entry
+    assertSame(a, cache.get("a", () -> new int[4]));
+    int[] c = cache.get("c", () -> new int[2]);
+    assertEquals(3, cache.size());
+    assertEquals(10, cache.getCurrentWeight());
+    assertEquals(0, cache.getEvictionCount());
+
+    // Exceeding the budget evicts b first, and then a
+    cache.get("d", () -> new int[5]);
+    assertEquals(2, cache.getEvictionCount());
+    assertEquals(2, cache.size());
+    assertEquals(7, cache.getCurrentWeight());
+    assertSame(c, cache.get("c", () -> new int[2]));
+    assertNotSame(b, cache.get("b", () -> new int[4]));
+    assertNotSame(a, cache.get("a", () -> new int[4]));
+  }
+
+  @Test
+  public void testEntryLargerThanBudgetIsKept() {
+    LRUCache<String, int[]> cache = new LRUCache<>(10, v -> v.length);
+    cache.get("a", () -> new int[4]);
+    int[] large = cache.get("large", () -> new int[25]);
+
+    assertEquals(1, cache.size());
+    assertEquals(25, cache.getCurrentWeight());
+    assertEquals(1, cache.getEvictionCount());
+    assertSame(large, cache.get("large", () -> new int[25]));
+
+    // The next entry evicts the oversized one since the cache is over budget
+    cache.get("b", () -> new int[1]);
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getCurrentWeight());
+  }
+
+  @Test
+  public void testRemoveIfAndClear() {
+    LRUCache<Integer, int[]> cache = new LRUCache<>(100, v -> v.length);
+    for (int i = 0; i < 6; i++) {
+      int size = i + 1;
+      cache.get(i, () -> new int[size]);
+    }
+    assertEquals(21, cache.getCurrentWeight());
+
+    cache.removeIf((k, v) -> k % 2 == 0);
+    assertEquals(3, cache.size());
+    assertEquals(2 + 4 + 6, cache.getCurrentWeight());
+    assertEquals(0, cache.getEvictionCount());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getCurrentWeight());
+    assertEquals(6, cache.getMissCount());
+  }
+
+  @Test
+  public void testConcurrentLoadsOfSameKey() throws Exception {
+    LRUCache<String, Object> cache = new LRUCache<>(10, v -> 1);
+    // Both loaders must be running before either finishes, so both threads miss
+    CountDownLatch loading = new CountDownLatch(2);
+    AtomicInteger loads = new AtomicInteger();
+    LRUCache.Loader<Object, InterruptedException> loader = () -> {
+      loads.incrementAndGet();
+      loading.countDown();
+      loading.await(10, TimeUnit.SECONDS);
+      return new Object();
+    };
+
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Future<Object> first = pool.submit(() -> cache.get("key", loader));
+      Future<Object> second = pool.submit(() -> cache.get("key", loader));
+      Object value = first.get(10, TimeUnit.SECONDS);
+      assertSame(value, second.get(10, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdown();
+    }
+
+    assertEquals(2, loads.get());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getCurrentWeight());
+    assertSame(cache.get("key", Object::new), cache.get("key", Object::new));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonPositiveMaximumWeight() {
+    new LRUCache<String, String>(0, v -> 1);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNullLoadedValue() {
+    new LRUCache<String, String>(10, v -> 1).get("a", () -> null);
+  }
+}